@@ -16,6 +16,8 @@
 
 package org.gradle.internal.hash;
 
+import java.nio.ByteBuffer;
+
 /**
  * Hasher abstraction that can be fed different kinds of primitives.
  * Inspired by the Google Guava project – https://github.com/google/guava.
@@ -23,6 +25,7 @@ package org.gradle.internal.hash;
 public interface Hasher {
     void putBytes(byte[] bytes);
     void putBytes(byte[] bytes, int off, int len);
+    void putBytes(ByteBuffer bytes);
     void putByte(byte value);
     void putInt(int value);
     void putLong(long value);
@@ -148,6 +148,12 @@ public class Hashing {
             digest.update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            checkNotDone();
+            digest.update(bytes);
+        }
+
         @Override
         public HashCode hash() {
             done = true;
@@ -18,6 +18,7 @@ package org.gradle.internal.hash;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
     /**
@@ -30,4 +31,16 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the entire content of the given file channel, regardless of the channel's position.
+     * The content is read into a direct buffer, rather than copied into the heap. The method will not close the channel.
+     */
+    HashCode hash(FileChannel channel) throws IOException;
+
+    /**
+     * Returns the hash of the entire content of the given file channel, regardless of the channel's position.
+     * The content is mapped into memory, and read instead when the file is truncated while it is mapped. The method will not close the channel.
+     */
+    HashCode hashMapped(FileChannel channel) throws IOException;
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import org.gradle.caching.internal.controller.BuildCachePrefetcher
+import org.gradle.integtests.fixtures.AbstractIntegrationSpec
+import spock.lang.Timeout
+
+@Timeout(120)
+class HttpBuildCachePrefetchIntegrationTest extends AbstractIntegrationSpec implements HttpBuildCacheFixture {
+
+    def setup() {
+        // Prefetching looks up the entries for tasks that become ready together with a single request
+        httpBuildCacheServer.withBatchLookup()
+        httpBuildCacheServer.start()
+        settingsFile << """
+            buildCache {
+                local(DirectoryBuildCache) {
+                    directory = file("local-cache")
+                }
+                remote(HttpBuildCache) {
+                    url = "${httpBuildCacheServer.uri}/"
+                    push = true
+                }
+            }
+        """
+
+        buildFile << """
+            apply plugin: "java"
+        """
+
+        file("src/main/java/Hello.java") << """
+            public class Hello {
+                public static void main(String... args) {
+                    System.out.println("Hello World!");
+                }
+            }
+        """
+        file("src/main/resources/resource.properties") << """
+            test=true
+        """
+    }
+
+    def "loads prefetched entries from the local build cache"() {
+        withBuildCache().succeeds "jar"
+        withBuildCache().succeeds "clean"
+        file("local-cache").deleteDir()
+
+        when:
+        executer.withArgument("-D${BuildCachePrefetcher.PREFETCH_PROPERTY}=true")
+        withBuildCache().succeeds "jar"
+
+        then:
+        skippedTasks.containsAll ":compileJava", ":jar"
+        localCacheEntries() == httpBuildCacheServer.cacheDir.list() as Set
+    }
+
+    def "loads entries as usual when the prefetch budget is used up"() {
+        withBuildCache().succeeds "jar"
+        withBuildCache().succeeds "clean"
+        file("local-cache").deleteDir()
+
+        when:
+        executer.withArgument("-D${BuildCachePrefetcher.PREFETCH_PROPERTY}=true")
+        executer.withArgument("-D${BuildCachePrefetcher.MAX_FETCHED_BYTES_PROPERTY}=0")
+        withBuildCache().succeeds "jar"
+
+        then:
+        skippedTasks.containsAll ":compileJava", ":jar"
+    }
+
+    private Set<String> localCacheEntries() {
+        file("local-cache").list().findAll { it ==~ /\p{XDigit}{32}/ } as Set
+    }
+}
@@ -292,6 +292,129 @@ class HttpBuildCacheServiceTest extends Specification {
         server.authenticationAttempts == ['Basic'] as Set
     }
 
+    def "looks up several entries with a single request"() {
+        def otherKey = key("abcdef0123456")
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("return stored keys") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                assert request.contentType.startsWith(HttpBuildCacheService.BUILD_CACHE_KEYS_CONTENT_TYPE)
+                assert request.reader.readLines() as Set == [key.hashCode, otherKey.hashCode] as Set
+
+                response.setStatus(200)
+                response.setContentType(HttpBuildCacheService.BUILD_CACHE_KEYS_CONTENT_TYPE)
+                response.writer.write("${otherKey.hashCode}\n")
+            }
+        })
+
+        when:
+        def stored = (cache as HttpBuildCacheService).findStored([key, otherKey])
+
+        then:
+        stored.size() == 1
+        stored.iterator().next().is(otherKey)
+    }
+
+    def "does not look up entries when the server responds with http code #httpCode"(int httpCode) {
+        def otherKey = key("abcdef0123456")
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("reject lookup") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(httpCode)
+            }
+        })
+
+        when:
+        def stored = (cache as HttpBuildCacheService).findStored([key, otherKey])
+
+        then:
+        stored == null
+
+        when:
+        stored = (cache as HttpBuildCacheService).findStored([key])
+
+        then:
+        stored == null
+
+        where:
+        httpCode << [HttpStatus.SC_NOT_FOUND, HttpStatus.SC_METHOD_NOT_ALLOWED, HttpStatus.SC_NOT_IMPLEMENTED]
+    }
+
+    def "keeps looking up entries after a lookup fails"() {
+        def otherKey = key("abcdef0123456")
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("fail lookup") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR)
+            }
+        })
+
+        when:
+        def stored = (cache as HttpBuildCacheService).findStored([key, otherKey])
+
+        then:
+        stored == null
+
+        when:
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("return stored keys") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(200)
+                response.setContentType(HttpBuildCacheService.BUILD_CACHE_KEYS_CONTENT_TYPE)
+                response.writer.write("${key.hashCode}\n")
+            }
+        })
+        stored = (cache as HttpBuildCacheService).findStored([key, otherKey])
+
+        then:
+        stored.size() == 1
+        stored.iterator().next().is(key)
+    }
+
+    def "reports non-recoverable error when looking up entries is not permitted"() {
+        server.expect("/cache/", ["POST"], new HttpServer.ActionSupport("forbid lookup") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(HttpStatus.SC_FORBIDDEN)
+            }
+        })
+
+        when:
+        (cache as HttpBuildCacheService).findStored([key, key("abcdef0123456")])
+
+        then:
+        UncheckedIOException exception = thrown()
+        exception.message.contains("response status 403")
+    }
+
+    def "collects statistics about requests"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+        server.expectPut("/cache/${key.hashCode}", tempDir.file("stored.zip"), HttpStatus.SC_OK, null, 3)
+
+        when:
+        cache.load(key) { input -> input.text }
+        cache.store(key, writer("abc".bytes))
+        def statistics = (cache as HttpBuildCacheService).statistics
+
+        then:
+        statistics.loads == 1
+        statistics.hits == 1
+        statistics.bytesDownloaded == 4
+        statistics.stores == 1
+        statistics.bytesUploaded == 3
+        statistics.requests == 2
+    }
+
+    private static BuildCacheKey key(String hashCode) {
+        return new BuildCacheKey() {
+            @Override
+            String getHashCode() {
+                return hashCode
+            }
+
+            @Override
+            String getDisplayName() {
+                return hashCode
+            }
+        }
+    }
+
     private HttpResourceInteraction expectError(int httpCode, String method) {
         server.expect("/cache/${key.hashCode}", false, [method], new HttpServer.ActionSupport("return ${httpCode} broken") {
             @Override
@@ -16,23 +16,32 @@
 
 package org.gradle.caching.http.internal;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CountingInputStream;
 import org.apache.commons.lang.IncompleteArgumentException;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpMessage;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BuildCacheEntryLookup;
 import org.gradle.caching.internal.tasks.TaskOutputPacker;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
@@ -40,20 +49,34 @@ import org.gradle.util.GradleVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
+ *
+ * <p>The body of a response that was handled completely is read to the end, so that the connection can be returned to the pool and reused for the next request.
+ * A request whose response is abandoned, because of an error or an unexpected response, is aborted instead of reading a body of unknown size.</p>
+ *
+ * <p>Looks up which of several entries are stored with a single {@code POST} of their keys to the cache root, when the server supports it.
+ * The request body lists one key per line, and the server responds with the keys it has stored in the same format.
+ * When the server responds with 404, 405 or 501, it does not support looking up entries, and they are not looked up from then on. When a lookup fails in any
+ * other way, it is unknown which of the entries are stored, and they are loaded one at a time.</p>
  */
-public class HttpBuildCacheService implements BuildCacheService {
+public class HttpBuildCacheService implements BuildCacheService, BuildCacheEntryLookup {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
     static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v" + TaskOutputPacker.CACHE_ENTRY_FORMAT;
+    static final String BUILD_CACHE_KEYS_CONTENT_TYPE = "application/vnd.gradle.build-cache-keys.v1";
 
     private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
         HttpStatus.SC_USE_PROXY,
@@ -66,8 +89,15 @@ public class HttpBuildCacheService implements BuildCacheService {
         511 // network authentication required
     );
 
+    // Responses from servers that do not handle looking up several entries at once
+    private static final Set<Integer> BATCH_LOOKUP_UNSUPPORTED_HTTP_CODES = ImmutableSet.of(
+        HttpStatus.SC_NOT_FOUND, HttpStatus.SC_METHOD_NOT_ALLOWED, HttpStatus.SC_NOT_IMPLEMENTED
+    );
+
     private final URI root;
     private final HttpClientHelper httpClientHelper;
+    private final HttpBuildCacheStatistics statistics = new HttpBuildCacheStatistics();
+    private volatile boolean batchLookupSupported = true;
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url) {
         if (!url.getPath().endsWith("/")) {
@@ -85,6 +115,8 @@ public class HttpBuildCacheService implements BuildCacheService {
         addDiagnosticHeaders(httpGet);
 
         CloseableHttpResponse response = null;
+        boolean completed = false;
+        long start = System.nanoTime();
         try {
             response = httpClientHelper.performHttpRequest(httpGet);
             StatusLine statusLine = response.getStatusLine();
@@ -93,9 +125,14 @@ public class HttpBuildCacheService implements BuildCacheService {
             }
             int statusCode = statusLine.getStatusCode();
             if (isHttpSuccess(statusCode)) {
-                reader.readFrom(response.getEntity().getContent());
+                CountingInputStream content = new CountingInputStream(response.getEntity().getContent());
+                reader.readFrom(content);
+                statistics.loaded(true, content.getCount());
+                completed = true;
                 return true;
             } else if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                statistics.loaded(false, 0);
+                completed = true;
                 return false;
             } else {
                 return throwHttpStatusCodeException(
@@ -107,7 +144,7 @@ public class HttpBuildCacheService implements BuildCacheService {
             // Right now, everything is considered recoverable.
             throw new BuildCacheException(String.format("Unable to load entry from '%s': %s", safeUri(uri), e.getMessage()), e);
         } finally {
-            HttpClientUtils.closeQuietly(response);
+            release(httpGet, response, completed, start);
         }
     }
 
@@ -149,6 +186,8 @@ public class HttpBuildCacheService implements BuildCacheService {
             }
         });
         CloseableHttpResponse response = null;
+        boolean completed = false;
+        long start = System.nanoTime();
         try {
             response = httpClientHelper.performHttpRequest(httpPut);
             StatusLine statusLine = response.getStatusLine();
@@ -162,6 +201,8 @@ public class HttpBuildCacheService implements BuildCacheService {
                     String.format("Storing entry at '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase())
                 );
             }
+            statistics.stored(output.getSize());
+            completed = true;
         } catch (UnknownHostException e) {
             throw new UncheckedException(e);
         } catch (IOException e) {
@@ -169,8 +210,99 @@ public class HttpBuildCacheService implements BuildCacheService {
             // Right now, everything is considered recoverable.
             throw new BuildCacheException(String.format("Unable to store entry at '%s': %s", safeUri(uri), e.getMessage()), e);
         } finally {
-            HttpClientUtils.closeQuietly(response);
+            release(httpPut, response, completed, start);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<BuildCacheKey> findStored(Collection<BuildCacheKey> keys) throws BuildCacheException {
+        if (!batchLookupSupported) {
+            return null;
         }
+        statistics.lookedUp(keys.size());
+        return findStoredInBatch(keys);
+    }
+
+    /**
+     * Returns the stored keys, or {@code null} when the server did not answer the lookup. Stops looking up entries when the server does not support looking up several keys at once.
+     */
+    @Nullable
+    private Set<BuildCacheKey> findStoredInBatch(Collection<BuildCacheKey> keys) {
+        Map<String, BuildCacheKey> keysByHash = new HashMap<String, BuildCacheKey>();
+        StringBuilder body = new StringBuilder();
+        for (BuildCacheKey key : keys) {
+            keysByHash.put(key.getHashCode(), key);
+            body.append(key.getHashCode()).append('\n');
+        }
+        HttpPost httpPost = new HttpPost(root);
+        httpPost.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_KEYS_CONTENT_TYPE);
+        addDiagnosticHeaders(httpPost);
+        httpPost.setEntity(new StringEntity(body.toString(), ContentType.create(BUILD_CACHE_KEYS_CONTENT_TYPE, Charsets.UTF_8)));
+
+        CloseableHttpResponse response = null;
+        boolean completed = false;
+        long start = System.nanoTime();
+        try {
+            response = httpClientHelper.performHttpRequest(httpPost);
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for POST {}: {}", safeUri(root), statusLine);
+            }
+            int statusCode = statusLine.getStatusCode();
+            if (BATCH_LOOKUP_UNSUPPORTED_HTTP_CODES.contains(statusCode)) {
+                LOGGER.debug("Build cache at '{}' does not support looking up several entries at once, not looking up entries from now on.", safeUri(root));
+                batchLookupSupported = false;
+                completed = true;
+                return null;
+            }
+            if (FATAL_HTTP_ERROR_CODES.contains(statusCode)) {
+                throw new UncheckedIOException(String.format("Looking up entries at '%s' response status %d: %s", safeUri(root), statusCode, statusLine.getReasonPhrase()));
+            }
+            HttpEntity entity = response.getEntity();
+            if (statusCode != HttpStatus.SC_OK || entity == null || !isKeysContentType(entity)) {
+                // Load the entries one at a time instead
+                return null;
+            }
+            Set<BuildCacheKey> stored = new HashSet<BuildCacheKey>();
+            for (String line : EntityUtils.toString(entity, Charsets.UTF_8).split("\n")) {
+                BuildCacheKey key = keysByHash.get(line.trim());
+                if (key != null) {
+                    stored.add(key);
+                }
+            }
+            completed = true;
+            return stored;
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to look up entries at '%s': %s", safeUri(root), e.getMessage()), e);
+        } finally {
+            release(httpPost, response, completed, start);
+        }
+    }
+
+    private static boolean isKeysContentType(HttpEntity entity) {
+        ContentType contentType = ContentType.get(entity);
+        return contentType != null && BUILD_CACHE_KEYS_CONTENT_TYPE.equals(contentType.getMimeType());
+    }
+
+    /**
+     * Releases the connection used by the request. When the response was handled completely, what is left of its body is read, so that the connection is kept alive.
+     * Otherwise, the request is aborted rather than reading the body of an abandoned response.
+     */
+    private void release(HttpRequestBase request, @Nullable CloseableHttpResponse response, boolean completed, long start) {
+        if (response != null) {
+            if (completed) {
+                EntityUtils.consumeQuietly(response.getEntity());
+            } else {
+                request.abort();
+            }
+            statistics.requestCompleted(start);
+        }
+        HttpClientUtils.closeQuietly(response);
+    }
+
+    HttpBuildCacheStatistics getStatistics() {
+        return statistics;
     }
 
     private boolean isHttpSuccess(int statusCode) {
@@ -187,6 +319,9 @@ public class HttpBuildCacheService implements BuildCacheService {
 
     @Override
     public void close() throws IOException {
+        if (statistics.getRequests() > 0) {
+            LOGGER.info("HTTP build cache at '{}': {}", safeUri(root), statistics);
+        }
         httpClientHelper.close();
     }
 
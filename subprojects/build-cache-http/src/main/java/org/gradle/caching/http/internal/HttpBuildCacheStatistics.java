@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests made to an HTTP build cache, and the time spent waiting for them.
+ */
+class HttpBuildCacheStatistics {
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestTimeNanos = new AtomicLong();
+
+    void loaded(boolean hit, long bytes) {
+        loads.incrementAndGet();
+        if (hit) {
+            hits.incrementAndGet();
+            bytesDownloaded.addAndGet(bytes);
+        }
+    }
+
+    void stored(long bytes) {
+        stores.incrementAndGet();
+        bytesUploaded.addAndGet(bytes);
+    }
+
+    void lookedUp(int keys) {
+        lookups.addAndGet(keys);
+    }
+
+    void requestCompleted(long startNanos) {
+        requests.incrementAndGet();
+        requestTimeNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+
+    long getLoads() {
+        return loads.get();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    long getStores() {
+        return stores.get();
+    }
+
+    long getBytesUploaded() {
+        return bytesUploaded.get();
+    }
+
+    long getLookups() {
+        return lookups.get();
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getAverageRequestTimeMillis() {
+        long count = requests.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(requestTimeNanos.get() / count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d loads (%d hits, %d bytes downloaded), %d stores (%d bytes uploaded), %d keys looked up, %d requests (%d ms average)",
+            getLoads(), getHits(), getBytesDownloaded(), getStores(), getBytesUploaded(), getLookups(), getRequests(), getAverageRequestTimeMillis());
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Implemented by a {@link org.gradle.caching.BuildCacheService} that can find out which entries it contains without loading them.
+ */
+public interface BuildCacheEntryLookup {
+    /**
+     * Returns those of the given keys that have an entry in the cache, or null when the cache cannot tell which entries it has.
+     */
+    @Nullable
+    Set<BuildCacheKey> findStored(Collection<BuildCacheKey> keys) throws BuildCacheException;
+}
@@ -16,10 +16,12 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Collection;
 
 /**
  * Internal coordinator of build cache operations.
@@ -33,6 +35,18 @@ public interface BuildCacheController extends Closeable {
 
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Stores the entry in those build caches that do not contain it already. Each build cache is checked separately, and the entry is stored
+     * in a build cache that cannot tell whether it contains the entry. Does nothing when all build caches contain the entry.
+     */
+    void storeMissing(BuildCacheStoreCommand command);
+
+    /**
+     * Starts fetching the entries with the given keys from the remote build cache into the local build cache, so that a later {@link #load(BuildCacheLoadCommand)} finds them locally.
+     * Does not wait for the entries to be fetched, and does nothing when prefetching is not enabled.
+     */
+    void prefetch(Collection<BuildCacheKey> keys);
+
     @Override
     void close();
 
@@ -20,6 +20,7 @@ import org.gradle.caching.BuildCacheKey;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 public interface BuildCacheLoadCommand<T> {
 
@@ -51,6 +52,11 @@ public interface BuildCacheLoadCommand<T> {
          */
         T getMetadata();
 
+        /**
+         * The keys of other entries that the loaded artifact refers to, and that need to be kept in the build cache for as long as the artifact is.
+         */
+        Collection<BuildCacheKey> getReferencedKeys();
+
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LoadTarget;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches entries from the remote build cache into the local build cache ahead of the tasks that load them.
+ *
+ * <p>Prefetching is best effort. Requests are dropped rather than queued once {@code maxQueued} entries are waiting to be fetched, and once {@code maxFetchedBytes}
+ * have been fetched during the build. Entries are streamed to a temporary file of the local build cache, so the memory used does not depend on the size of the entries.</p>
+ *
+ * <p>When asked to prefetch several entries at once, the prefetcher first asks the remote build cache which of them it contains, when the remote build cache supports this,
+ * so that no request is made for an entry that is missing.</p>
+ *
+ * <p>A load of an entry that is being fetched waits for the fetch to complete, and a load of an entry that is still waiting to be fetched cancels the fetch,
+ * so that an entry is never downloaded twice.</p>
+ */
+public class BuildCachePrefetcher implements Stoppable {
+
+    private static final Logger LOGGER = Logging.getLogger(BuildCachePrefetcher.class);
+
+    /**
+     * Enables prefetching entries from the remote build cache.
+     */
+    public static final String PREFETCH_PROPERTY = "org.gradle.caching.prefetch";
+
+    /**
+     * The maximum number of bytes to fetch ahead of the tasks during a build.
+     */
+    public static final String MAX_FETCHED_BYTES_PROPERTY = "org.gradle.caching.prefetch.max-bytes";
+
+    static final int CONCURRENT_FETCHES = 4;
+    static final int MAX_QUEUED = 256;
+    private static final long DEFAULT_MAX_FETCHED_BYTES = 512L * 1024 * 1024;
+
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildCacheTempFileStore tmp;
+    private final ManagedExecutor executor;
+    private final Semaphore queued;
+    private final long maxFetchedBytes;
+    private final AtomicLong fetchedBytes = new AtomicLong();
+    private final ConcurrentMap<String, FutureTask<Void>> fetches = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+    BuildCachePrefetcher(BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildCacheTempFileStore tmp, ManagedExecutor executor, int maxQueued, long maxFetchedBytes) {
+        this.remote = remote;
+        this.local = local;
+        this.tmp = tmp;
+        this.executor = executor;
+        this.queued = new Semaphore(maxQueued);
+        this.maxFetchedBytes = maxFetchedBytes;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(PREFETCH_PROPERTY);
+    }
+
+    static long getMaxFetchedBytes() {
+        return Long.getLong(MAX_FETCHED_BYTES_PROPERTY, DEFAULT_MAX_FETCHED_BYTES);
+    }
+
+    void prefetch(Collection<BuildCacheKey> keys) {
+        Collection<BuildCacheKey> candidates = keys;
+        if (keys.size() > 1 && fetchedBytes.get() < maxFetchedBytes) {
+            candidates = new ArrayList<BuildCacheKey>(keys.size());
+            for (BuildCacheKey key : keys) {
+                if (!isStoredLocally(key)) {
+                    candidates.add(key);
+                }
+            }
+            // Find out which of the entries the remote cache has with a single request, if it can, rather than requesting each of them
+            Set<BuildCacheKey> stored = candidates.size() > 1 ? remote.findStored(candidates) : null;
+            if (stored != null) {
+                candidates = stored;
+            }
+        }
+        for (BuildCacheKey key : candidates) {
+            prefetch(key);
+        }
+    }
+
+    void prefetch(final BuildCacheKey key) {
+        if (fetchedBytes.get() >= maxFetchedBytes || !queued.tryAcquire()) {
+            return;
+        }
+        final String hashCode = key.getHashCode();
+        FutureTask<Void> fetch = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    fetch(key);
+                } finally {
+                    fetches.remove(hashCode);
+                    queued.release();
+                }
+            }
+        }, null);
+        if (fetches.putIfAbsent(hashCode, fetch) != null) {
+            queued.release();
+            return;
+        }
+        try {
+            executor.execute(fetch);
+        } catch (RejectedExecutionException e) {
+            fetches.remove(hashCode);
+            queued.release();
+        }
+    }
+
+    private void fetch(final BuildCacheKey key) {
+        if (!remote.canLoad() || fetchedBytes.get() >= maxFetchedBytes || isStoredLocally(key)) {
+            return;
+        }
+        tmp.allocateTempFile(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                LoadTarget loadTarget = new LoadTarget(file);
+                remote.load(key, loadTarget);
+                if (loadTarget.isLoaded()) {
+                    fetchedBytes.addAndGet(loadTarget.getLoadedSize());
+                    local.store(key, file);
+                    LOGGER.debug("Prefetched build cache entry {}", key);
+                }
+            }
+        });
+    }
+
+    private boolean isStoredLocally(BuildCacheKey key) {
+        final boolean[] found = new boolean[1];
+        local.load(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Waits for the entry with the given key to be fetched, if it is being fetched. Cancels the fetch if it has not started yet.
+     */
+    void awaitFetched(BuildCacheKey key) {
+        String hashCode = key.getHashCode();
+        FutureTask<Void> fetch = fetches.get(hashCode);
+        if (fetch == null) {
+            return;
+        }
+        if (fetch.cancel(false)) {
+            // A cancelled fetch does not run at all, so clean up after it here
+            fetches.remove(hashCode, fetch);
+            queued.release();
+            return;
+        }
+        try {
+            fetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The remote handle reports failures itself, so fall back to loading the entry as usual
+            LOGGER.debug("Could not prefetch build cache entry {}", key, e.getCause());
+        }
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+        executor.stop();
+    }
+}
@@ -20,6 +20,7 @@ import org.gradle.caching.BuildCacheKey;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 
 public interface BuildCacheStoreCommand {
 
@@ -44,6 +45,11 @@ public interface BuildCacheStoreCommand {
          */
         long getArtifactEntryCount();
 
+        /**
+         * The keys of other entries that the stored artifact refers to, and that need to be kept in the build cache for as long as the artifact is.
+         */
+        Collection<BuildCacheKey> getReferencedKeys();
+
     }
 
 }
@@ -27,6 +27,7 @@ import org.gradle.caching.internal.controller.operations.PackOperationDetails;
 import org.gradle.caching.internal.controller.operations.PackOperationResult;
 import org.gradle.caching.internal.controller.operations.UnpackOperationDetails;
 import org.gradle.caching.internal.controller.operations.UnpackOperationResult;
+import org.gradle.caching.internal.controller.service.AsyncStoreBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BaseBuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
@@ -43,6 +44,8 @@ import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
@@ -55,6 +58,9 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
@@ -69,12 +75,15 @@ public class DefaultBuildCacheController implements BuildCacheController {
 
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
+    @Nullable
+    private final BuildCachePrefetcher prefetcher;
 
     private boolean closed;
 
     public DefaultBuildCacheController(
         BuildCacheServicesConfiguration config,
         BuildOperationExecutor buildOperationExecutor,
+        ExecutorFactory executorFactory,
         File gradleUserHomeDir,
         boolean logStackTraces
     ) {
@@ -91,7 +100,38 @@ public class DefaultBuildCacheController implements BuildCacheController {
             this.tmp = new DefaultBuildCacheTempFileStore(new File(gradleUserHomeDir, "build-cache-tmp"), BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
         }
 
-        this.remote = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        this.remote = toRemoteHandle(config.remote, config.remotePush, buildOperationExecutor, executorFactory, logStackTraces);
+        this.prefetcher = createPrefetcher(executorFactory);
+    }
+
+    @Nullable
+    private BuildCachePrefetcher createPrefetcher(ExecutorFactory executorFactory) {
+        if (!BuildCachePrefetcher.isEnabled() || !local.canStore() || !remote.canLoad()) {
+            return null;
+        }
+        ManagedExecutor executor = executorFactory.create("Build cache prefetch", BuildCachePrefetcher.CONCURRENT_FETCHES);
+        return new BuildCachePrefetcher(remote, local, tmp, executor, BuildCachePrefetcher.MAX_QUEUED, BuildCachePrefetcher.getMaxFetchedBytes());
+    }
+
+    private boolean isStoredLocally(BuildCacheKey key) {
+        if (!local.canLoad()) {
+            return false;
+        }
+        final boolean[] found = new boolean[1];
+        local.load(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+        if (prefetcher != null) {
+            prefetcher.prefetch(keys);
+        }
     }
 
     @Nullable
@@ -99,6 +139,10 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public <T> T load(final BuildCacheLoadCommand<T> command) {
         final Unpack<T> unpack = new Unpack<T>(command);
 
+        if (prefetcher != null) {
+            prefetcher.awaitFetched(command.getKey());
+        }
+
         if (local.canLoad()) {
             try {
                 local.load(command.getKey(), unpack);
@@ -136,6 +180,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                         }
                         if (local.canStore()) {
                             local.store(command.getKey(), file);
+                            accessReferencedEntries(unpack.result.getReferencedKeys());
                         }
                     }
                 }
@@ -196,9 +241,26 @@ public class DefaultBuildCacheController implements BuildCacheController {
     }
 
     @Override
-    public void store(final BuildCacheStoreCommand command) {
-        boolean anyStore = local.canStore() || legacyLocal.canStore() || remote.canStore();
-        if (!anyStore) {
+    public void store(BuildCacheStoreCommand command) {
+        store(command, local.canStore(), legacyLocal.canStore(), remote.canStore());
+    }
+
+    @Override
+    public void storeMissing(BuildCacheStoreCommand command) {
+        BuildCacheKey key = command.getKey();
+        boolean storeLocal = local.canStore() && !isStoredLocally(key);
+        boolean storeLegacyLocal = legacyLocal.canStore() && !isStored(legacyLocal, key);
+        boolean storeRemote = remote.canStore() && !isStored(remote, key);
+        store(command, storeLocal, storeLegacyLocal, storeRemote);
+    }
+
+    private static boolean isStored(BuildCacheServiceHandle handle, BuildCacheKey key) {
+        Set<BuildCacheKey> stored = handle.findStored(Collections.singleton(key));
+        return stored != null && stored.contains(key);
+    }
+
+    private void store(BuildCacheStoreCommand command, final boolean storeLocal, final boolean storeLegacyLocal, final boolean storeRemote) {
+        if (!storeLocal && !storeLegacyLocal && !storeRemote) {
             return;
         }
 
@@ -210,25 +272,38 @@ public class DefaultBuildCacheController implements BuildCacheController {
             public void execute(File file) {
                 pack.execute(file);
 
-                if (legacyLocal.canStore()) {
+                if (storeLegacyLocal) {
                     legacyLocal.store(key, new StoreTarget(file));
                 }
 
-                if (remote.canStore()) {
+                if (storeRemote) {
                     remote.store(key, new StoreTarget(file));
                 }
 
-                if (local.canStore()) {
+                if (storeLocal) {
                     local.store(key, file);
+                    accessReferencedEntries(pack.result.getReferencedKeys());
                 }
             }
         });
     }
 
+    /**
+     * Accesses the entries that an entry refers to in the local build cache, after the entry itself was stored there.
+     * This way, the entries are used more recently than the entry, and are not removed from the local build cache before it.
+     */
+    private void accessReferencedEntries(Collection<BuildCacheKey> keys) {
+        for (BuildCacheKey key : keys) {
+            isStoredLocally(key);
+        }
+    }
+
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
 
+        private BuildCacheStoreCommand.Result result;
+
         private Pack(BuildCacheStoreCommand command) {
             this.command = command;
         }
@@ -239,7 +314,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
                 @Override
                 public void run(BuildOperationContext context) {
                     try {
-                        BuildCacheStoreCommand.Result result = command.store(new FileOutputStream(file));
+                        result = command.store(new FileOutputStream(file));
                         context.setResult(new PackOperationResult(
                             result.getArtifactEntryCount(),
                             file.length()
@@ -263,7 +338,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public void close() {
         if (!closed) {
             closed = true;
-            CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
+            // Stop prefetching and close the remote first, as they may still be transferring entries stored in the local temporary directory
+            CompositeStoppable.stoppable(prefetcher, remote, legacyLocal, local).stop();
         }
     }
 
@@ -273,6 +349,16 @@ public class DefaultBuildCacheController implements BuildCacheController {
             : toNonNullHandle(service, push, role, buildOperationExecutor, logStackTraces);
     }
 
+    private static BuildCacheServiceHandle toRemoteHandle(BuildCacheService service, boolean push, BuildOperationExecutor buildOperationExecutor, ExecutorFactory executorFactory, boolean logStackTraces) {
+        BuildCacheServiceHandle handle = toHandle(service, push, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        int concurrency = AsyncStoreBuildCacheServiceHandle.getConcurrency();
+        if (concurrency == 0 || !handle.canStore()) {
+            return handle;
+        }
+        ManagedExecutor executor = executorFactory.create("Build cache remote store", concurrency);
+        return new AsyncStoreBuildCacheServiceHandle(handle, executor, AsyncStoreBuildCacheServiceHandle.maxPendingStores(concurrency));
+    }
+
     private static BuildCacheServiceHandle toNonNullHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, BuildOperationExecutor buildOperationExecutor, boolean logStackTraces) {
         if (role == BuildCacheServiceRole.LOCAL) {
             return new BaseBuildCacheServiceHandle(service, push, role, logStackTraces);
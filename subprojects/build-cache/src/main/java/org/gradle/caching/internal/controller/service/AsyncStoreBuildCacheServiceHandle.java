@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.concurrent.ManagedExecutor;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores entries in the remote build cache in the background, so that task completion does not wait for the upload.
+ *
+ * <p>Each entry is handed to the upload queue as a link to, or copy of, the packed entry, as the packed entry is discarded as soon as {@link #store(BuildCacheKey, StoreTarget)} returns.
+ * At most {@code maxPendingStores} entries are queued or uploading at once. When the queue is full, storing blocks until an upload completes.
+ * The uploads are still run by the given handle, so they are reported as build operations in the same way as synchronous stores.</p>
+ *
+ * <p>Closing the handle waits for all queued uploads to complete.</p>
+ */
+public class AsyncStoreBuildCacheServiceHandle implements BuildCacheServiceHandle {
+
+    private static final Logger LOGGER = Logging.getLogger(AsyncStoreBuildCacheServiceHandle.class);
+
+    /**
+     * The number of entries to upload to the remote build cache concurrently. Entries are uploaded synchronously when not set.
+     */
+    public static final String CONCURRENCY_PROPERTY = "org.gradle.caching.remote.store.concurrency";
+
+    private static final int PENDING_STORES_PER_UPLOAD = 4;
+
+    private final BuildCacheServiceHandle delegate;
+    private final ManagedExecutor executor;
+    private final Semaphore pendingStores;
+
+    public AsyncStoreBuildCacheServiceHandle(BuildCacheServiceHandle delegate, ManagedExecutor executor, int maxPendingStores) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.pendingStores = new Semaphore(maxPendingStores);
+    }
+
+    /**
+     * Returns the number of concurrent uploads requested, or 0 when entries should be uploaded synchronously.
+     */
+    public static int getConcurrency() {
+        Integer concurrency = Integer.getInteger(CONCURRENCY_PROPERTY);
+        return concurrency == null ? 0 : Math.max(concurrency, 0);
+    }
+
+    public static int maxPendingStores(int concurrency) {
+        return concurrency * PENDING_STORES_PER_UPLOAD;
+    }
+
+    @Nullable
+    @Override
+    public BuildCacheService getService() {
+        return delegate.getService();
+    }
+
+    @Override
+    public boolean canLoad() {
+        return delegate.canLoad();
+    }
+
+    @Override
+    public void load(BuildCacheKey key, LoadTarget loadTarget) {
+        delegate.load(key, loadTarget);
+    }
+
+    @Override
+    public boolean canStore() {
+        return delegate.canStore();
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, StoreTarget storeTarget) {
+        pendingStores.acquireUninterruptibly();
+        final File file;
+        try {
+            file = takeCopy(storeTarget.getFile());
+        } catch (RuntimeException e) {
+            pendingStores.release();
+            throw e;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (delegate.canStore()) {
+                            delegate.store(key, new StoreTarget(file));
+                        }
+                    } finally {
+                        discard(file);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            discard(file);
+            throw e;
+        }
+    }
+
+    private File takeCopy(File file) {
+        File copy = null;
+        try {
+            // Use a unique name, as other uploads of the same entry may still be queued, or may have been left behind by a process that stopped
+            copy = File.createTempFile(file.getName() + "-upload-", "", file.getParentFile());
+            Files.delete(copy.toPath());
+            try {
+                // Linking avoids copying the entry when the file system supports it
+                Files.createLink(copy.toPath(), file.toPath());
+            } catch (UnsupportedOperationException e) {
+                // Links are not supported by the file system
+                Files.copy(file.toPath(), copy.toPath());
+            } catch (AccessDeniedException e) {
+                // Links are not permitted
+                Files.copy(file.toPath(), copy.toPath());
+            }
+        } catch (IOException e) {
+            if (copy != null) {
+                copy.delete();
+            }
+            throw new UncheckedIOException("Could not queue build cache entry " + file + " for upload", e);
+        }
+        return copy;
+    }
+
+    private void discard(File file) {
+        try {
+            if (!file.delete() && file.exists()) {
+                LOGGER.debug("Could not delete build cache entry {} after upload", file);
+            }
+        } finally {
+            pendingStores.release();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<BuildCacheKey> findStored(Collection<BuildCacheKey> keys) {
+        // Entries that are still being stored are not found
+        return delegate.findStored(keys);
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.stop();
+        } finally {
+            delegate.close();
+        }
+    }
+}
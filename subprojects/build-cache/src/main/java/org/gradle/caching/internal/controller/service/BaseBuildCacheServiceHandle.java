@@ -21,8 +21,11 @@ import org.gradle.api.logging.Logging;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.BuildCacheEntryLookup;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Set;
 
 public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -34,7 +37,7 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
     private final boolean pushEnabled;
     private final boolean logStackTraces;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseBuildCacheServiceHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, boolean logStackTraces) {
         this.role = role;
@@ -93,10 +96,28 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
         service.store(key, storeTarget);
     }
 
+    @Nullable
+    @Override
+    public Set<BuildCacheKey> findStored(Collection<BuildCacheKey> keys) {
+        if (disabled || !(service instanceof BuildCacheEntryLookup)) {
+            return null;
+        }
+        LOGGER.debug("Look up {} entries in {} build cache", keys.size(), role.getDisplayName());
+        try {
+            return ((BuildCacheEntryLookup) service).findStored(keys);
+        } catch (Exception e) {
+            failure("Could not look up entries in " + role.getDisplayName() + " build cache", e);
+            return null;
+        }
+    }
+
     private void failure(String verb, String preposition, BuildCacheKey key, Throwable e) {
+        failure("Could not " + verb + " entry " + key.getDisplayName() + " " + preposition + " " + role.getDisplayName() + " build cache", e);
+    }
+
+    private void failure(String description, Throwable e) {
         disabled = true;
 
-        String description = "Could not " + verb + " entry " + key.getDisplayName() + " " + preposition + " " + role.getDisplayName() + " build cache";
         if (LOGGER.isWarnEnabled()) {
             if (logStackTraces) {
                 LOGGER.warn(description, e);
@@ -22,6 +22,8 @@ import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.Set;
 
 public interface BuildCacheServiceHandle extends Closeable {
 
@@ -37,6 +39,12 @@ public interface BuildCacheServiceHandle extends Closeable {
 
     void store(BuildCacheKey key, StoreTarget storeTarget);
 
+    /**
+     * Returns those of the given keys that have an entry in the cache, or null if the cache cannot tell without loading the entries.
+     */
+    @Nullable
+    Set<BuildCacheKey> findStored(Collection<BuildCacheKey> keys);
+
     @Override
     void close();
 }
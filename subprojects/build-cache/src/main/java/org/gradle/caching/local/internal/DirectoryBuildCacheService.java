@@ -20,6 +20,7 @@ import com.google.common.io.Closer;
 import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CacheAccessLog;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
@@ -42,12 +43,14 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final String failedFileSuffix;
+    private final CacheAccessLog accessLog;
 
-    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix, CacheAccessLog accessLog) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.failedFileSuffix = failedFileSuffix;
+        this.accessLog = accessLog;
     }
 
     private static class LoadAction implements Action<File> {
@@ -95,6 +98,7 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
                 if (resource != null) {
                     final File file = resource.getFile();
                     GFileUtils.touch(file); // Mark as recently used
+                    accessLog.accessed(key.getHashCode());
 
                     try {
                         reader.execute(file);
@@ -142,7 +146,9 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         persistentCache.useCache(new Runnable() {
             @Override
             public void run() {
+                long size = file.length();
                 fileStore.move(key.getHashCode(), file);
+                accessLog.stored(key.getHashCode(), size);
             }
         });
     }
@@ -21,8 +21,9 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CacheAccessLog;
 import org.gradle.cache.internal.CacheScopeMapping;
-import org.gradle.cache.internal.FixedSizeOldestCacheCleanup;
+import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.VersionStrategy;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -77,16 +78,17 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
             config("targetSize", humanReadableCacheSize);
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
+        CacheAccessLog accessLog = new CacheAccessLog(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(new FixedSizeOldestCacheCleanup(buildOperationExecutor, targetSizeInMB, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX))
+            .withCleanup(new LeastRecentlyUsedCacheCleanup(buildOperationExecutor, accessLog, targetSizeInMB, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX, accessLog);
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller
+
+import org.gradle.api.Action
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle
+import org.gradle.caching.internal.controller.service.LoadTarget
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle
+import org.gradle.caching.local.internal.BuildCacheTempFileStore
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testing.internal.util.Specification
+import org.junit.Rule
+
+import java.util.concurrent.CountDownLatch
+
+class BuildCachePrefetcherTest extends Specification {
+
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def executorFactory = new DefaultExecutorFactory()
+    // A single thread, so that the entries are fetched in order
+    def executor = executorFactory.create("test", 1)
+    def key = Mock(BuildCacheKey) {
+        getHashCode() >> "key"
+    }
+    def remote = Mock(BuildCacheServiceHandle)
+    def local = Mock(LocalBuildCacheServiceHandle)
+    def tmp = Stub(BuildCacheTempFileStore) {
+        allocateTempFile(_, _) >> { BuildCacheKey key, Action<File> action ->
+            action.execute(tmpDir.file("tmp"))
+        }
+    }
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "fetches entry from remote into local cache"() {
+        def prefetcher = prefetcher(4, 1024)
+
+        when:
+        prefetcher.prefetch(key)
+        executor.stop()
+
+        then:
+        1 * local.load(key, _)
+        1 * remote.canLoad() >> true
+        1 * remote.load(key, _) >> { BuildCacheKey key, LoadTarget target ->
+            target.readFrom(new ByteArrayInputStream("entry".bytes))
+        }
+        1 * local.store(key, tmpDir.file("tmp"))
+    }
+
+    def "does not fetch entry that is already in local cache"() {
+        def prefetcher = prefetcher(4, 1024)
+
+        when:
+        prefetcher.prefetch(key)
+        executor.stop()
+
+        then:
+        1 * local.load(key, _) >> { BuildCacheKey key, Action<File> reader ->
+            reader.execute(tmpDir.file("entry"))
+        }
+        _ * remote.canLoad() >> true
+        0 * remote.load(_, _)
+        0 * local.store(_, _)
+    }
+
+    def "stops fetching once the budget is used up"() {
+        def prefetcher = prefetcher(4, 3)
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "other"
+        }
+        def stored = new CountDownLatch(1)
+        remote.canLoad() >> true
+        remote.load(key, _) >> { BuildCacheKey key, LoadTarget target ->
+            target.readFrom(new ByteArrayInputStream("entry".bytes))
+        }
+        local.store(key, _) >> { stored.countDown() }
+
+        when:
+        prefetcher.prefetch(key)
+        stored.await()
+        prefetcher.prefetch(otherKey)
+        executor.stop()
+
+        then:
+        0 * remote.load(otherKey, _)
+    }
+
+    def "does not fetch entry that is loaded before the fetch starts"() {
+        def prefetcher = prefetcher(4, 1024)
+        def blockingKey = Mock(BuildCacheKey) {
+            getHashCode() >> "blocking"
+        }
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        remote.canLoad() >> true
+        remote.load(blockingKey, _) >> {
+            started.countDown()
+            release.await()
+        }
+
+        when:
+        prefetcher.prefetch(blockingKey)
+        started.await()
+        prefetcher.prefetch(key)
+        prefetcher.awaitFetched(key)
+        release.countDown()
+        prefetcher.stop()
+
+        then:
+        0 * remote.load(key, _)
+    }
+
+    def "asks remote which of several entries it has and fetches only those"() {
+        def prefetcher = prefetcher(4, 1024)
+        def missingKey = Mock(BuildCacheKey) {
+            getHashCode() >> "missing"
+        }
+        def localKey = Mock(BuildCacheKey) {
+            getHashCode() >> "local"
+        }
+        remote.canLoad() >> true
+        local.load(localKey, _) >> { BuildCacheKey key, Action<File> reader ->
+            reader.execute(tmpDir.file("entry"))
+        }
+
+        when:
+        prefetcher.prefetch([key, missingKey, localKey])
+        executor.stop()
+
+        then:
+        1 * remote.findStored([key, missingKey]) >> ([key] as Set)
+        1 * remote.load(key, _)
+        0 * remote.load(missingKey, _)
+        0 * remote.load(localKey, _)
+    }
+
+    def prefetcher(int maxQueued, long maxFetchedBytes) {
+        new BuildCachePrefetcher(remote, local, tmp, executor, maxQueued, maxFetchedBytes)
+    }
+}
@@ -21,8 +21,10 @@ import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.BuildCacheEntryLookup
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
@@ -46,6 +48,8 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     BuildCacheService legacyLocal = null
 
+    Collection<BuildCacheKey> referencedKeys = []
+
     def storeCommand = Stub(BuildCacheStoreCommand) {
         getKey() >> key
         store(_) >> { OutputStream output ->
@@ -55,6 +59,11 @@ class DefaultBuildCacheControllerTest extends Specification {
                 long getArtifactEntryCount() {
                     return 0
                 }
+
+                @Override
+                Collection<BuildCacheKey> getReferencedKeys() {
+                    return referencedKeys
+                }
             }
         }
     }
@@ -73,6 +82,11 @@ class DefaultBuildCacheControllerTest extends Specification {
                 Object getMetadata() {
                     return null
                 }
+
+                @Override
+                Collection<BuildCacheKey> getReferencedKeys() {
+                    return referencedKeys
+                }
             }
         }
     }
@@ -84,6 +98,8 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
+    interface LookupRemote extends BuildCacheService, BuildCacheEntryLookup {}
+
     BuildCacheController getController() {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
@@ -91,6 +107,7 @@ class DefaultBuildCacheControllerTest extends Specification {
                 remote, remotePush
             ),
             operations,
+            new DefaultExecutorFactory(),
             tmpDir.file("dir"),
             false
         )
@@ -144,6 +161,86 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.store(key, _)
     }
 
+    def "stores missing entry to remote when local contains it"() {
+        given:
+        1 * local.load(key, _ as Action) >> { BuildCacheKey key, Action<File> action ->
+            action.execute(tmpDir.file("file"))
+        }
+
+        when:
+        controller.storeMissing(storeCommand)
+
+        then:
+        1 * remote.store(key, _)
+        0 * local.store(key, _)
+    }
+
+    def "stores missing entry to local when remote contains it"() {
+        given:
+        remote = Mock(LookupRemote)
+        1 * local.load(key, _ as Action) // miss
+        1 * remote.findStored(_) >> ([key] as Set)
+
+        when:
+        controller.storeMissing(storeCommand)
+
+        then:
+        0 * remote.store(key, _)
+        1 * local.store(key, _)
+    }
+
+    def "does not store missing entry that all caches contain"() {
+        given:
+        remote = Mock(LookupRemote)
+        1 * local.load(key, _ as Action) >> { BuildCacheKey key, Action<File> action ->
+            action.execute(tmpDir.file("file"))
+        }
+        1 * remote.findStored(_) >> ([key] as Set)
+
+        when:
+        controller.storeMissing(storeCommand)
+
+        then:
+        0 * remote.store(key, _)
+        0 * local.store(key, _)
+        operations.log.descriptors.empty
+    }
+
+    def "accesses referenced entries after storing to local"() {
+        given:
+        def referencedKey = Mock(BuildCacheKey)
+        referencedKeys = [referencedKey]
+
+        when:
+        controller.store(storeCommand)
+
+        then:
+        1 * local.store(key, _)
+
+        then:
+        1 * local.load(referencedKey, _ as Action)
+    }
+
+    def "accesses referenced entries after storing remote load to local"() {
+        given:
+        def referencedKey = Mock(BuildCacheKey)
+        referencedKeys = [referencedKey]
+        1 * local.load(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(loadCommand)
+
+        then:
+        1 * local.store(key, _)
+
+        then:
+        1 * local.load(referencedKey, _ as Action)
+    }
+
     def "local load does not stores to local"() {
         given:
         1 * local.load(key, _) >> { BuildCacheKey key, Action<File> action ->
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller.service
+
+import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testing.internal.util.Specification
+import org.junit.Rule
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AsyncStoreBuildCacheServiceHandleTest extends Specification {
+
+    @Rule
+    final TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+
+    def executorFactory = new DefaultExecutorFactory()
+    def key = Mock(BuildCacheKey)
+    def delegate = Mock(BuildCacheServiceHandle)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "uploads a copy of the entry after store returns"() {
+        def handle = new AsyncStoreBuildCacheServiceHandle(delegate, executorFactory.create("test", 1), 4)
+        def file = temporaryFolder.file("entry") << "content"
+        def uploaded = null
+
+        when:
+        handle.store(key, new StoreTarget(file))
+        file.delete()
+        handle.close()
+
+        then:
+        1 * delegate.canStore() >> true
+        1 * delegate.store(key, _) >> { BuildCacheKey k, StoreTarget target ->
+            def output = new ByteArrayOutputStream()
+            target.writeTo(output)
+            uploaded = output.toString()
+        }
+        1 * delegate.close()
+        uploaded == "content"
+        temporaryFolder.testDirectory.listFiles().length == 0
+    }
+
+    def "uploads entry when an earlier upload of the same entry was left behind"() {
+        def handle = new AsyncStoreBuildCacheServiceHandle(delegate, executorFactory.create("test", 1), 4)
+        def file = temporaryFolder.file("entry") << "content"
+        def leftover = temporaryFolder.file("entry-upload") << "leftover"
+        def uploaded = null
+
+        when:
+        handle.store(key, new StoreTarget(file))
+        handle.close()
+
+        then:
+        1 * delegate.canStore() >> true
+        1 * delegate.store(key, _) >> { BuildCacheKey k, StoreTarget target ->
+            def output = new ByteArrayOutputStream()
+            target.writeTo(output)
+            uploaded = output.toString()
+        }
+        uploaded == "content"
+        leftover.text == "leftover"
+        temporaryFolder.testDirectory.listFiles() as Set == [file, leftover] as Set
+    }
+
+    def "does not upload once the remote build cache is disabled"() {
+        def handle = new AsyncStoreBuildCacheServiceHandle(delegate, executorFactory.create("test", 1), 4)
+        def file = temporaryFolder.file("entry") << "content"
+
+        when:
+        handle.store(key, new StoreTarget(file))
+        handle.close()
+
+        then:
+        1 * delegate.canStore() >> false
+        0 * delegate.store(_, _)
+        temporaryFolder.testDirectory.listFiles() == [file] as File[]
+    }
+
+    def "blocks store when too many uploads are pending"() {
+        def handle = new AsyncStoreBuildCacheServiceHandle(delegate, executorFactory.create("test", 1), 1)
+        def uploading = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def secondQueued = new CountDownLatch(1)
+        def uploads = 0
+        delegate.canStore() >> true
+        delegate.store(key, _) >> {
+            uploads++
+            uploading.countDown()
+            release.await()
+        }
+
+        when:
+        handle.store(key, new StoreTarget(temporaryFolder.file("first") << "first"))
+        uploading.await()
+        def second = Thread.start {
+            handle.store(key, new StoreTarget(temporaryFolder.file("second") << "second"))
+            secondQueued.countDown()
+        }
+
+        then:
+        !secondQueued.await(100, TimeUnit.MILLISECONDS)
+
+        when:
+        release.countDown()
+        second.join()
+        handle.close()
+
+        then:
+        secondQueued.count == 0
+        uploads == 2
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class GZipTaskOutputPackerTest extends Specification {
+    def contents = ("output " * 10000).bytes
+    def delegate = Mock(TaskOutputPacker)
+
+    @Unroll
+    def "can unpack output packed with #compression compression"() {
+        def output = new ByteArrayOutputStream()
+        def unpacked = new ByteArrayOutputStream()
+
+        when:
+        new GZipTaskOutputPacker(delegate, compression).pack(new TreeSet(), [:], output, Stub(TaskOutputOriginWriter))
+
+        then:
+        1 * delegate.pack(_, _, _, _) >> { specs, snapshots, OutputStream delegateOutput, writeOrigin ->
+            delegateOutput.write(contents)
+            new TaskOutputPacker.PackResult(1)
+        }
+
+        when:
+        new GZipTaskOutputPacker(delegate).unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), Stub(TaskOutputOriginReader))
+
+        then:
+        1 * delegate.unpack(_, _, _) >> { specs, InputStream delegateInput, readOrigin ->
+            unpacked << delegateInput
+            null
+        }
+        unpacked.toByteArray() == contents
+        compressed(output.size()) == expectCompressed
+
+        where:
+        compression                  | expectCompressed
+        TaskOutputCompression.DEFAULT | true
+        TaskOutputCompression.FAST    | true
+        TaskOutputCompression.STORE   | false
+    }
+
+    def "compression can be selected with system property"() {
+        System.setProperty(TaskOutputCompression.COMPRESSION_PROPERTY, "fast")
+
+        expect:
+        TaskOutputCompression.fromSystemProperty() == TaskOutputCompression.FAST
+
+        cleanup:
+        System.clearProperty(TaskOutputCompression.COMPRESSION_PROPERTY)
+    }
+
+    private boolean compressed(int size) {
+        size < contents.length
+    }
+}
@@ -25,7 +25,9 @@ import org.gradle.api.internal.tasks.OutputType
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.hash.DefaultStreamHasher
+import org.gradle.internal.hash.HashCode
 import org.gradle.internal.hash.Hashing
 import org.gradle.internal.nativeplatform.filesystem.FileSystem
 import org.gradle.test.fixtures.file.CleanupTestDirectory
@@ -255,6 +257,98 @@ class TarTaskOutputPackerTest extends Specification {
         0 * _
     }
 
+    def "stores contents of output files in blob store"() {
+        def blobStore = new InMemoryBlobStore()
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, blobStore)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        sourceOutputDir.file("first.txt") << "output"
+        sourceOutputDir.file("second.txt") << "output"
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def packResult = pack output, prop(DIRECTORY, sourceOutputDir)
+
+        then:
+        _ * fileSystem.getUnixMode(_) >> 0644
+        blobStore.blobs.keySet() == [TestFile.md5(sourceOutputDir.file("first.txt"))] as Set
+        blobStore.stored == 1
+        packResult.referencedKeys == [new TaskOutputContentKey(TestFile.md5(sourceOutputDir.file("first.txt")))] as Set
+
+        when:
+        def input = new ByteArrayInputStream(output.toByteArray())
+        def unpackResult = unpack input, prop(DIRECTORY, targetOutputDir)
+
+        then:
+        _ * fileSystem.chmod(_, _)
+        targetOutputDir.file("first.txt").text == "output"
+        targetOutputDir.file("second.txt").text == "output"
+        unpackResult.referencedKeys == packResult.referencedKeys
+    }
+
+    def "packs contents of output files that the blob store does not store"() {
+        def blobStore = new InMemoryBlobStore(storeEnabled: false)
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, blobStore)
+        def sourceOutputFile = temporaryFolder.file("source.txt") << "output"
+        def targetOutputFile = temporaryFolder.file("target.txt")
+        def output = new ByteArrayOutputStream()
+
+        when:
+        def packResult = pack output, prop(FILE, sourceOutputFile)
+        unpack new ByteArrayInputStream(output.toByteArray()), prop(FILE, targetOutputFile)
+
+        then:
+        _ * fileSystem.getUnixMode(_) >> 0644
+        _ * fileSystem.chmod(_, _)
+        blobStore.blobs.isEmpty()
+        packResult.referencedKeys.empty
+        targetOutputFile.text == "output"
+    }
+
+    def "fails to unpack when contents are missing from blob store"() {
+        def blobStore = new InMemoryBlobStore()
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, blobStore)
+        def sourceOutputFile = temporaryFolder.file("source.txt") << "output"
+        def targetOutputFile = temporaryFolder.file("target.txt")
+        def output = new ByteArrayOutputStream()
+        pack output, prop(FILE, sourceOutputFile)
+        blobStore.blobs.clear()
+
+        when:
+        unpack new ByteArrayInputStream(output.toByteArray()), prop(FILE, targetOutputFile)
+
+        then:
+        def e = thrown IllegalStateException
+        e.message.contains("not found")
+    }
+
+    def "can unpack task output directory using concurrent writer"() {
+        def fileWriter = new TaskOutputFileWriter(streamHasher, new DefaultExecutorFactory(), 4)
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, TaskOutputBlobStore.NONE, fileWriter)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        100.times { index ->
+            sourceOutputDir.file("dir-${index % 10}/file-${index}.txt") << "output ${index}"
+        }
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+
+        when:
+        def input = new ByteArrayInputStream(output.toByteArray())
+        def result = unpack input, prop(DIRECTORY, targetOutputDir)
+
+        then:
+        100.times { index ->
+            assert targetOutputDir.file("dir-${index % 10}/file-${index}.txt").text == "output ${index}"
+        }
+        def snapshots = result.snapshots.get("test")
+        snapshots.size() == 111
+        snapshots.find { it.path == targetOutputDir.file("dir-3/file-13.txt").absolutePath }.content.contentMd5 == TestFile.md5(targetOutputDir.file("dir-3/file-13.txt"))
+
+        cleanup:
+        fileWriter.stop()
+    }
+
     def pack(OutputStream output, TaskOutputOriginWriter writeOrigin = this.writeOrigin, PropertyDefinition... propertyDefs) {
         def propertySpecs = propertyDefs*.property as SortedSet
         def outputSnapshots = propertyDefs.collectEntries { propertyDef ->
@@ -299,6 +393,33 @@ class TarTaskOutputPackerTest extends Specification {
         }
     }
 
+    private static class InMemoryBlobStore implements TaskOutputBlobStore {
+        Map<HashCode, byte[]> blobs = [:]
+        int stored
+        boolean storeEnabled = true
+
+        @Override
+        boolean store(HashCode hash, File file) {
+            if (!storeEnabled) {
+                return false
+            }
+            if (!blobs.containsKey(hash)) {
+                blobs[hash] = file.bytes
+                stored++
+            }
+            return true
+        }
+
+        @Override
+        boolean load(HashCode hash, TaskOutputBlobStore.ContentReader reader) {
+            if (!blobs.containsKey(hash)) {
+                return false
+            }
+            reader.read(new ByteArrayInputStream(blobs[hash]))
+            return true
+        }
+    }
+
     private static class PropertyDefinition {
         ResolvedTaskOutputFilePropertySpec property
         Callable<Map<String, FileCollectionSnapshot>> outputSnapshots
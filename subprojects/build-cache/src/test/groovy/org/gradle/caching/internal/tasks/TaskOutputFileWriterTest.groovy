@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.api.Transformer
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.hash.DefaultStreamHasher
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+@CleanupTestDirectory
+class TaskOutputFileWriterTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def streamHasher = new DefaultStreamHasher({ Hashing.md5().newHasher() })
+    def writer = new TaskOutputFileWriter(streamHasher, new DefaultExecutorFactory(), 4)
+
+    def cleanup() {
+        writer.stop()
+    }
+
+    def "writes files and returns results in order"() {
+        def files = (0..<50).collect { temporaryFolder.file("file-${it}.txt") }
+
+        when:
+        def writes = (0..<50).collect { index ->
+            def file = files[index]
+            def bytes = "contents ${index}".bytes
+            writer.write(new ByteArrayInputStream(bytes), bytes.length, file, { HashCode hash -> [file, hash] } as Transformer)
+        }
+        def results = TaskOutputFileWriter.awaitAll(writes)
+
+        then:
+        results*.get(0) == files
+        results.every { it[0].text.startsWith("contents ") && TestFile.md5(it[0]) == it[1] }
+    }
+
+    def "consumes input of files it writes in the background"() {
+        def file = temporaryFolder.file("file.txt")
+        def input = new ByteArrayInputStream("first second".bytes)
+
+        when:
+        def write = writer.write(input, 5, file, { it } as Transformer)
+        def rest = input.text
+
+        then:
+        rest == " second"
+        TaskOutputFileWriter.awaitAll([write])
+        file.text == "first"
+    }
+
+    def "writes large files on the calling thread"() {
+        def file = temporaryFolder.file("large.bin")
+        def bytes = new byte[2 * 1024 * 1024]
+        new Random(1234L).nextBytes(bytes)
+        def thread = null
+
+        when:
+        def write = writer.write(new ByteArrayInputStream(bytes), bytes.length, file, { thread = Thread.currentThread(); it } as Transformer)
+
+        then:
+        write.done
+        thread == Thread.currentThread()
+        file.bytes == bytes
+    }
+
+    def "waits for all writes before reporting first failure"() {
+        def failure = new IOException("broken")
+        def file = temporaryFolder.file("file.txt")
+
+        when:
+        def writes = [
+            writer.write(new ByteArrayInputStream("a".bytes), 1, temporaryFolder.file("missing/dir/file.txt"), { it } as Transformer),
+            writer.write(new ByteArrayInputStream("b".bytes), 1, file, { throw failure } as Transformer),
+            writer.write(new ByteArrayInputStream("c".bytes), 1, temporaryFolder.file("other.txt"), { it } as Transformer)
+        ]
+        TaskOutputFileWriter.awaitAll(writes)
+
+        then:
+        thrown(FileNotFoundException)
+        writes.every { it.done }
+        file.text == "b"
+    }
+}
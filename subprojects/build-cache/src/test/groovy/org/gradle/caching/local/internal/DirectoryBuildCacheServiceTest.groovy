@@ -17,8 +17,12 @@
 package org.gradle.caching.local.internal
 
 import org.gradle.cache.PersistentCache
+import org.gradle.cache.internal.CacheAccessLog
+import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.Factory
+import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -36,7 +40,8 @@ class DirectoryBuildCacheServiceTest extends Specification {
         getBaseDir() >> cacheDir
     }
     def tempFileStore = new DefaultBuildCacheTempFileStore(cacheDir, ".part")
-    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, ".failed")
+    def accessLog = Mock(CacheAccessLog)
+    def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, ".failed", accessLog)
     def key = Mock(BuildCacheKey)
 
     def "does not store partial result"() {
@@ -67,5 +72,38 @@ class DirectoryBuildCacheServiceTest extends Specification {
         ex.message == "Simulated write error"
         cacheDir.listFiles() as List == []
         1 * key.getHashCode() >> hashCode
+        0 * accessLog._
+    }
+
+    def "records stored entries in access log"() {
+        def file = temporaryFolder.file("entry") << "abcd"
+
+        when:
+        service.store(key, file)
+
+        then:
+        1 * persistentCache.useCache(_) >> { Runnable action -> action.run() }
+        _ * key.getHashCode() >> "1234abcd"
+        1 * fileStore.move("1234abcd", file)
+        1 * accessLog.stored("1234abcd", 4)
+    }
+
+    def "records loaded entries in access log"() {
+        def file = cacheDir.file("1234abcd") << "abcd"
+        def resource = Mock(LocallyAvailableResource) {
+            getFile() >> file
+        }
+        def reader = Mock(BuildCacheEntryReader)
+
+        when:
+        def loaded = service.load(key, reader)
+
+        then:
+        loaded
+        1 * persistentCache.withFileLock(_) >> { Factory action -> action.create() }
+        _ * key.getHashCode() >> "1234abcd"
+        1 * fileStore.get("1234abcd") >> resource
+        1 * reader.readFrom(_)
+        1 * accessLog.accessed("1234abcd")
     }
 }
@@ -1218,4 +1218,81 @@ class CopyTaskIntegrationSpec extends AbstractIntegrationSpec {
         "fileMode"           | "0600"                       | "0644"
         "filteringCharset"   | "'iso8859-1'"                | "'utf-8'"
     }
+
+    def "only copies the files whose source changed"() {
+        given:
+        file('files/one.txt').text = 'one'
+        file('files/two.txt').text = 'two'
+        buildScript '''
+            task (copy, type:Copy) {
+               from 'files'
+               into 'dest'
+            }
+        '''.stripIndent()
+        run 'copy'
+        def lastModified = 1000000000000L
+        file('dest/one.txt').setLastModified(lastModified)
+
+        when:
+        file('files/two.txt').text = 'changed'
+        run 'copy'
+
+        then:
+        file('dest/two.txt').text == 'changed'
+        file('dest/one.txt').text == 'one'
+        file('dest/one.txt').lastModified() == lastModified
+    }
+
+    def "leaves the files copied from removed sources in the destination"() {
+        given:
+        file('files/one.txt').text = 'one'
+        file('files/two.txt').text = 'two'
+        buildScript '''
+            task (copy, type:Copy) {
+               from 'files'
+               into 'dest'
+               rename 'two.txt', 'renamed.txt'
+            }
+        '''.stripIndent()
+        run 'copy'
+
+        when:
+        file('files/two.txt').delete()
+        run 'copy'
+
+        then:
+        file('dest').assertHasDescendants('one.txt', 'renamed.txt')
+    }
+
+    def "copies all files with the changed spec when a source is removed in the same build"() {
+        given:
+        file('files/one.txt').text = 'one'
+        file('files/two.txt').text = 'two'
+        file('files/empty').createDir()
+        buildScript copyTaskIncludingEmptyDirs(false)
+        run 'copy'
+        def lastModified = 1000000000000L
+        file('dest/two.txt').setLastModified(lastModified)
+
+        when:
+        file('files/one.txt').delete()
+        buildScript copyTaskIncludingEmptyDirs(true)
+        run 'copy'
+
+        then:
+        file('dest').assertHasDescendants('one.txt', 'two.txt')
+        file('dest/empty').assertIsDir()
+        file('dest/two.txt').text == 'two'
+        file('dest/two.txt').lastModified() != lastModified
+    }
+
+    private static String copyTaskIncludingEmptyDirs(boolean includeEmptyDirs) {
+        """
+            task (copy, type:Copy) {
+               from 'files'
+               into 'dest'
+               includeEmptyDirs = $includeEmptyDirs
+            }
+        """.stripIndent()
+    }
 }
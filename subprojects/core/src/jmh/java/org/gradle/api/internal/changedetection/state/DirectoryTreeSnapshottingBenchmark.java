@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares snapshotting a directory tree with serial hashing to snapshotting it with parallel hashing.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DirectoryTreeSnapshottingBenchmark {
+    private static final int FILES_PER_DIRECTORY = 50;
+
+    @Param({"1000", "20000"})
+    int fileCount;
+
+    @Param({"1024", "65536"})
+    int fileSize;
+
+    @Param({"1", "4", "8"})
+    int parallelism;
+
+    File root;
+    FileHasher fileHasher;
+    FileSystem fileSystem;
+    DirectoryFileTreeFactory directoryFileTreeFactory;
+    ParallelFileHasher parallelFileHasher;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = File.createTempFile("jmh", "tree");
+        root.delete();
+        Random random = new Random(1234L);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < fileCount; i++) {
+            File dir = new File(root, "dir" + (i / FILES_PER_DIRECTORY));
+            dir.mkdirs();
+            random.nextBytes(content);
+            FileOutputStream outputStream = new FileOutputStream(new File(dir, "file" + i + ".txt"));
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+        }
+        fileHasher = new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory()));
+        fileSystem = FileSystems.getDefault();
+        directoryFileTreeFactory = new DefaultDirectoryFileTreeFactory();
+        parallelFileHasher = new ParallelFileHasher(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        parallelFileHasher.stop();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public void snapshotDirectoryTree(Blackhole bh) {
+        // Use a fresh mirror, so that the tree is walked and hashed each time
+        DefaultFileSystemMirror mirror = new DefaultFileSystemMirror(Collections.<CachedJarFileStore>emptyList());
+        DefaultFileSystemSnapshotter snapshotter = new DefaultFileSystemSnapshotter(fileHasher, parallelFileHasher.forHasher(fileHasher), new StringInterner(), fileSystem, directoryFileTreeFactory, mirror);
+        bh.consume(snapshotter.snapshotDirectoryTree(root));
+    }
+}
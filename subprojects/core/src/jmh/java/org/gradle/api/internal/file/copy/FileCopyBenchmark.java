@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.copy;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares copying a tree of files through Java streams to copying it with {@link FileTransfer}, both into an empty directory and over an earlier copy.
+ *
+ * <p>Over an earlier copy, each target is rewritten by the streams and transfer modes, as neither compares the content of the target with the source,
+ * and is left untouched by the hard links mode, as the target already is a link to the source.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileCopyBenchmark {
+    @Param({"1000", "10000"})
+    int fileCount;
+
+    @Param({"4096", "262144"})
+    int fileSize;
+
+    @Param({"streams", "transfer", "hardlinks"})
+    String mode;
+
+    File root;
+    File[] sources;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = File.createTempFile("jmh", "copy");
+        root.delete();
+        File sourceDir = new File(root, "source");
+        sourceDir.mkdirs();
+        Random random = new Random(1234L);
+        byte[] content = new byte[fileSize];
+        sources = new File[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            random.nextBytes(content);
+            sources[i] = new File(sourceDir, "file" + i + ".bin");
+            FileOutputStream outputStream = new FileOutputStream(sources[i]);
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+        }
+        System.setProperty(FileTransfer.HARD_LINKS_PROPERTY, String.valueOf(mode.equals("hardlinks")));
+        copyTree(new File(root, "existing"));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        System.clearProperty(FileTransfer.HARD_LINKS_PROPERTY);
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public void copyIntoEmptyDirectory() throws IOException {
+        // Deleting the previous copy is measured as well, and costs the same for each mode
+        File targetDir = new File(root, "target");
+        FileUtils.deleteDirectory(targetDir);
+        copyTree(targetDir);
+    }
+
+    @Benchmark
+    public void copyOverEarlierCopy() throws IOException {
+        copyTree(new File(root, "existing"));
+    }
+
+    private void copyTree(File targetDir) throws IOException {
+        targetDir.mkdirs();
+        boolean streams = mode.equals("streams");
+        for (File source : sources) {
+            File target = new File(targetDir, source.getName());
+            if (streams) {
+                copyWithStreams(source, target);
+            } else {
+                FileTransfer.transfer(source, target, true);
+            }
+        }
+    }
+
+    private static void copyWithStreams(File source, File target) throws IOException {
+        FileInputStream inputStream = new FileInputStream(source);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(target);
+            try {
+                IOUtils.copyLarge(inputStream, outputStream);
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the read and write throughput of a single BTree file guarded by a single lock with that of a sharded store with a write-ahead log per shard,
+ * at 1, 8 and 32 threads.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class IndexedCacheThroughputBenchmark {
+    private static final int KEYS = 100000;
+    private static final String[] KEY_NAMES = new String[KEYS];
+
+    static {
+        for (int i = 0; i < KEYS; i++) {
+            KEY_NAMES[i] = "/some/project/build/classes/java/main/org/gradle/Class" + i + ".class";
+        }
+    }
+
+    @Param({"btree", "sharded"})
+    String store;
+
+    File dir;
+    PersistentIndexedStore<String, Long> cache;
+
+    @Setup(Level.Iteration)
+    public void createCache() throws IOException {
+        dir = File.createTempFile("jmh", "cache");
+        dir.delete();
+        dir.mkdirs();
+        if (store.equals("btree")) {
+            cache = new SynchronizedStore<String, Long>(new BTreePersistentIndexedCache<String, Long>(new File(dir, "cache.bin"), BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.LONG_SERIALIZER));
+        } else {
+            cache = new ShardedBTreePersistentIndexedCache<String, Long>(dir, "cache", 8, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.LONG_SERIALIZER);
+        }
+        for (int i = 0; i < KEYS; i += 2) {
+            cache.put(KEY_NAMES[i], (long) i);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeCache() throws Exception {
+        cache.close();
+        FileUtils.forceDelete(dir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Long read_1_thread() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long read_8_threads() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Long read_32_threads() {
+        return read();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void write_1_thread() {
+        write();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void write_8_threads() {
+        write();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void write_32_threads() {
+        write();
+    }
+
+    private Long read() {
+        return cache.get(KEY_NAMES[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    private void write() {
+        int key = ThreadLocalRandom.current().nextInt(KEYS);
+        cache.put(KEY_NAMES[key], (long) key);
+    }
+
+    /**
+     * Serializes all access to a store, as the cache lock does for a single BTree file.
+     */
+    private static class SynchronizedStore<K, V> implements PersistentIndexedStore<K, V> {
+        private final PersistentIndexedStore<K, V> delegate;
+
+        SynchronizedStore(PersistentIndexedStore<K, V> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized V get(K key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public synchronized void remove(K key) {
+            delegate.remove(key);
+        }
+
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableSortedSet;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.DirContentSnapshot;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot;
+import org.gradle.api.internal.tasks.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.id.UniqueId;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.gradle.internal.nativeplatform.filesystem.FileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+
+/**
+ * Compares packing and unpacking task output with each {@link TaskOutputCompression}, and unpacking it with serial and concurrent writing of the unpacked files.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TaskOutputPackingBenchmark {
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final String[] WORDS = {"public", "class", "return", "import", "static", "final", "void", "int", "String", "new", "if", "else", "{", "}", ";", "\n"};
+    private static final TaskOutputOriginWriter WRITE_ORIGIN = new TaskOutputOriginWriter() {
+        @Override
+        public void execute(OutputStream outputStream) {
+        }
+    };
+    private static final TaskOutputOriginReader READ_ORIGIN = new TaskOutputOriginReader() {
+        @Override
+        public TaskOutputOriginMetadata execute(InputStream inputStream) {
+            return new TaskOutputOriginMetadata(UniqueId.generate());
+        }
+    };
+
+    @Param({"2000"})
+    int fileCount;
+
+    @Param({"4096", "262144"})
+    int fileSize;
+
+    @Param({"DEFAULT", "FAST", "STORE"})
+    TaskOutputCompression compression;
+
+    @Param({"1", "4"})
+    int parallelism;
+
+    File root;
+    File source;
+    File target;
+    SortedSet<ResolvedTaskOutputFilePropertySpec> sourceSpecs;
+    SortedSet<ResolvedTaskOutputFilePropertySpec> targetSpecs;
+    Map<String, Map<String, FileContentSnapshot>> outputSnapshots;
+    TaskOutputFileWriter fileWriter;
+    TaskOutputPacker packer;
+    byte[] packed;
+
+    @Setup(Level.Trial)
+    public void createOutputs() throws IOException {
+        root = File.createTempFile("jmh", "outputs");
+        root.delete();
+        source = new File(root, "source");
+        target = new File(root, "target");
+        StreamHasher streamHasher = new DefaultStreamHasher(new DefaultContentHasherFactory());
+        Map<String, FileContentSnapshot> snapshots = new LinkedHashMap<String, FileContentSnapshot>();
+        snapshots.put(source.getAbsolutePath(), DirContentSnapshot.INSTANCE);
+        Random random = new Random(1234L);
+        for (int i = 0; i < fileCount; i++) {
+            File dir = new File(source, "dir" + (i / FILES_PER_DIRECTORY));
+            if (dir.mkdirs()) {
+                snapshots.put(dir.getAbsolutePath(), DirContentSnapshot.INSTANCE);
+            }
+            File file = new File(dir, "file" + i + ".txt");
+            writeContent(file, random);
+            snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(streamHasher.hash(new ByteArrayInputStream(FileUtils.readFileToByteArray(file)))));
+        }
+        sourceSpecs = ImmutableSortedSet.of(new ResolvedTaskOutputFilePropertySpec("outputs", OutputType.DIRECTORY, source));
+        targetSpecs = ImmutableSortedSet.of(new ResolvedTaskOutputFilePropertySpec("outputs", OutputType.DIRECTORY, target));
+        outputSnapshots = Collections.singletonMap("outputs", snapshots);
+
+        FileSystem fileSystem = FileSystems.getDefault();
+        fileWriter = new TaskOutputFileWriter(streamHasher, new DefaultExecutorFactory(), parallelism);
+        packer = new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, streamHasher, new StringInterner(), TaskOutputBlobStore.NONE, fileWriter), compression);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(sourceSpecs, outputSnapshots, output, WRITE_ORIGIN);
+        packed = output.toByteArray();
+    }
+
+    private void writeContent(File file, Random random) throws IOException {
+        // Somewhat compressible, like generated sources
+        StringBuilder content = new StringBuilder(fileSize);
+        while (content.length() < fileSize) {
+            content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        content.setLength(fileSize);
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content.toString().getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteOutputs() throws IOException {
+        fileWriter.stop();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        FileUtils.deleteDirectory(target);
+    }
+
+    @Benchmark
+    public void pack(Blackhole bh) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(packed.length);
+        bh.consume(packer.pack(sourceSpecs, outputSnapshots, output, WRITE_ORIGIN));
+    }
+
+    @Benchmark
+    public void unpack(Blackhole bh) throws IOException {
+        bh.consume(packer.unpack(targetSpecs, new ByteArrayInputStream(packed), READ_ORIGIN));
+    }
+}
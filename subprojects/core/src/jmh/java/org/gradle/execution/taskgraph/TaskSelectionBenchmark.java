@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+import org.gradle.api.internal.TaskInternal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares selecting the next task to run by scanning the whole execution queue with selecting it from the queue of ready tasks,
+ * while simulating the execution of a synthetic task graph by a number of workers.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class TaskSelectionBenchmark {
+    // Each task depends on tasks among this many tasks before it in the plan, so that many tasks can run in parallel
+    private static final int DEPENDENCY_WINDOW = 500;
+    private static final int MAX_DEPENDENCIES = 3;
+
+    @Param({"10000", "100000"})
+    int taskCount;
+
+    @Param({"32"})
+    int workers;
+
+    List<TaskInfo> plan;
+
+    @Setup(Level.Invocation)
+    public void createGraph() {
+        Random random = new Random(1234L);
+        plan = new ArrayList<TaskInfo>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            TaskInfo taskInfo = new TaskInfo(task(String.format(":project%d:task%d", i % 100, i)));
+            taskInfo.require();
+            int dependencies = i == 0 ? 0 : random.nextInt(MAX_DEPENDENCIES + 1);
+            for (int j = 0; j < dependencies; j++) {
+                taskInfo.addDependencySuccessor(plan.get(Math.max(0, i - 1 - random.nextInt(DEPENDENCY_WINDOW))));
+            }
+            plan.add(taskInfo);
+        }
+    }
+
+    @Benchmark
+    public int scanExecutionQueue() {
+        final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>(plan);
+        final Set<TaskInfo> dependenciesComplete = new HashSet<TaskInfo>();
+        return execute(new Selector() {
+            @Override
+            public TaskInfo select() {
+                Iterator<TaskInfo> iterator = executionQueue.iterator();
+                while (iterator.hasNext()) {
+                    TaskInfo taskInfo = iterator.next();
+                    if (taskInfo.isReady() && (dependenciesComplete.contains(taskInfo) || taskInfo.allDependenciesComplete())) {
+                        dependenciesComplete.add(taskInfo);
+                        iterator.remove();
+                        return taskInfo;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void completed(TaskInfo taskInfo) {
+            }
+        });
+    }
+
+    @Benchmark
+    public int selectFromReadyQueue() {
+        final ReadyTaskQueue queue = new ReadyTaskQueue();
+        for (TaskInfo taskInfo : plan) {
+            queue.add(taskInfo);
+        }
+        return execute(new Selector() {
+            @Override
+            public TaskInfo select() {
+                Iterator<TaskInfo> iterator = queue.readyTasks();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                TaskInfo taskInfo = iterator.next();
+                iterator.remove();
+                return taskInfo;
+            }
+
+            @Override
+            public void completed(TaskInfo taskInfo) {
+                queue.taskComplete(taskInfo);
+            }
+        });
+    }
+
+    private int execute(Selector selector) {
+        Deque<TaskInfo> running = new ArrayDeque<TaskInfo>();
+        int executed = 0;
+        while (true) {
+            TaskInfo next = running.size() < workers ? selector.select() : null;
+            if (next != null) {
+                next.startExecution();
+                running.add(next);
+                continue;
+            }
+            TaskInfo finished = running.poll();
+            if (finished == null) {
+                return executed;
+            }
+            finished.finishExecution();
+            selector.completed(finished);
+            executed++;
+        }
+    }
+
+    private interface Selector {
+        TaskInfo select();
+
+        void completed(TaskInfo taskInfo);
+    }
+
+    private static TaskInternal task(final String path) {
+        return (TaskInternal) Proxy.newProxyInstance(TaskInternal.class.getClassLoader(), new Class<?>[]{TaskInternal.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("compareTo")) {
+                    return path.compareTo(((Task) args[0]).getPath());
+                }
+                if (method.getName().equals("getPath") || method.getName().equals("toString")) {
+                    return path;
+                }
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
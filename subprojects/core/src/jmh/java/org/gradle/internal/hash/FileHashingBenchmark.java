@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares hashing files by streaming their content through a heap buffer, by reading it into a direct buffer, and by mapping it into memory.
+ *
+ * The corpus is either many small files, files around the channel threshold, a few large files, or a mix that resembles a typical set of task inputs.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+    private static final int SMALL_FILE_SIZE = 4 * 1024;
+    private static final int LARGE_FILE_SIZE = 8 * 1024 * 1024;
+
+    @Param({"small", "medium", "large", "mixed"})
+    String corpus;
+
+    @Param({"streaming", "channel", "mapping"})
+    String strategy;
+
+    File root;
+    List<File> files;
+    FileHasher fileHasher;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        root = File.createTempFile("jmh", "files");
+        root.delete();
+        root.mkdirs();
+        files = new ArrayList<File>();
+        Random random = new Random(1234L);
+        if (corpus.equals("small")) {
+            createFiles(random, 2000, SMALL_FILE_SIZE);
+        } else if (corpus.equals("medium")) {
+            createFiles(random, 100, 128 * 1024);
+            createFiles(random, 100, 512 * 1024);
+        } else if (corpus.equals("large")) {
+            createFiles(random, 8, LARGE_FILE_SIZE);
+        } else {
+            createFiles(random, 1000, SMALL_FILE_SIZE);
+            createFiles(random, 100, 64 * 1024);
+            createFiles(random, 4, LARGE_FILE_SIZE);
+        }
+        long channelThreshold = strategy.equals("streaming") ? Long.MAX_VALUE : 0;
+        long mappingThreshold = strategy.equals("mapping") ? 0 : Long.MAX_VALUE;
+        fileHasher = new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory()), channelThreshold, mappingThreshold);
+    }
+
+    private void createFiles(Random random, int count, int size) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(content);
+            File file = new File(root, "file" + files.size() + ".bin");
+            FileOutputStream outputStream = new FileOutputStream(file);
+            try {
+                outputStream.write(content);
+            } finally {
+                outputStream.close();
+            }
+            files.add(file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public void hashFiles(Blackhole bh) {
+        for (File file : files) {
+            bh.consume(fileHasher.hash(file));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Task;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.execution.taskgraph.TaskDurationHistory;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the task durations in the task history store, next to the task history.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory {
+    private final PersistentIndexedCache<String, Long> durations;
+
+    public CacheBackedTaskDurationHistory(TaskHistoryStore store) {
+        this.durations = store.createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
+    }
+
+    @Nullable
+    @Override
+    public Long getDuration(Task task) {
+        return durations.get(task.getPath());
+    }
+
+    @Override
+    public void recordDuration(Task task, long durationMillis) {
+        durations.put(task.getPath(), durationMillis);
+    }
+}
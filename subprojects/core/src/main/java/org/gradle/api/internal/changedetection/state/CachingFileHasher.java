@@ -29,17 +29,28 @@ import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
-public class CachingFileHasher implements FileHasher {
+public class CachingFileHasher implements FileHasher, BatchFileHasher {
+    private final TaskHistoryStore store;
     private final PersistentIndexedCache<String, FileInfo> cache;
     private final FileHasher delegate;
     private final FileSystem fileSystem;
     private final StringInterner stringInterner;
     private final FileTimeStampInspector timestampInspector;
+    private final ParallelFileHasher parallelFileHasher;
 
     public CachingFileHasher(FileHasher delegate, TaskHistoryStore store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem) {
+        this(delegate, store, stringInterner, timestampInspector, cacheName, fileSystem, new ParallelFileHasher(1));
+    }
+
+    public CachingFileHasher(FileHasher delegate, TaskHistoryStore store, StringInterner stringInterner, FileTimeStampInspector timestampInspector, String cacheName, FileSystem fileSystem, ParallelFileHasher parallelFileHasher) {
         this.delegate = delegate;
+        this.parallelFileHasher = parallelFileHasher;
+        this.store = store;
         this.fileSystem = fileSystem;
         this.cache = store.createCache(cacheName, String.class, new FileInfoSerializer(), 400000, true);
         this.stringInterner = stringInterner;
@@ -77,6 +88,59 @@ public class CachingFileHasher implements FileHasher {
 
     private FileInfo snapshot(File file, long length, long timestamp) {
         String absolutePath = file.getAbsolutePath();
+        FileInfo info = lookup(absolutePath, length, timestamp);
+        if (info != null) {
+            return info;
+        }
+
+        HashCode hash = delegate.hash(file);
+        return record(absolutePath, hash, length, timestamp);
+    }
+
+    /**
+     * All of the files are looked up in the cache while holding the cache lock once. The files whose hash is not up-to-date in the cache
+     * are then hashed in parallel, without holding the lock.
+     */
+    @Override
+    public HashCode[] hashAll(final List<? extends FileTreeElement> files) {
+        final HashCode[] hashes = new HashCode[files.size()];
+        final List<FileTreeElement> misses = new ArrayList<FileTreeElement>();
+        final int[] missIndexes = new int[files.size()];
+        store.useCache(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < hashes.length; i++) {
+                    FileTreeElement file = files.get(i);
+                    FileInfo info = lookup(file.getFile().getAbsolutePath(), file.getSize(), file.getLastModified());
+                    if (info != null) {
+                        hashes[i] = info.hash;
+                    } else {
+                        missIndexes[misses.size()] = i;
+                        misses.add(file);
+                    }
+                }
+            }
+        });
+        if (misses.isEmpty()) {
+            return hashes;
+        }
+
+        final HashCode[] missHashes = parallelFileHasher.hash(delegate, misses);
+        store.useCache(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < missHashes.length; i++) {
+                    FileTreeElement file = misses.get(i);
+                    record(file.getFile().getAbsolutePath(), missHashes[i], file.getSize(), file.getLastModified());
+                    hashes[missIndexes[i]] = missHashes[i];
+                }
+            }
+        });
+        return hashes;
+    }
+
+    @Nullable
+    private FileInfo lookup(String absolutePath, long length, long timestamp) {
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
             FileInfo info = cache.get(absolutePath);
 
@@ -84,8 +148,10 @@ public class CachingFileHasher implements FileHasher {
                 return info;
             }
         }
+        return null;
+    }
 
-        HashCode hash = delegate.hash(file);
+    private FileInfo record(String absolutePath, HashCode hash, long length, long timestamp) {
         FileInfo info = new FileInfo(hash, length, timestamp);
         cache.put(stringInterner.intern(absolutePath), info);
         return info;
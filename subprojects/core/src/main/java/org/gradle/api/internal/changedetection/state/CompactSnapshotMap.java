@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map from absolute path to {@link NormalizedFileSnapshot}, which keeps the snapshots in a few arrays rather than as individual objects.
+ * The snapshot objects are created on demand whenever they are queried, and are not retained.
+ *
+ * <p>Content hashes are packed into a single byte array. Normalized paths and indexes, and last modified times, are only stored when the map contains
+ * snapshots that use them. Snapshots that cannot be encoded this way are kept as they are.</p>
+ *
+ * <p>Iterates in the order the entries were added.</p>
+ */
+class CompactSnapshotMap extends AbstractMap<String, NormalizedFileSnapshot> {
+    private static final int DIR_SNAPSHOT = 0;
+    private static final int MISSING_FILE_SNAPSHOT = 1;
+    private static final int REGULAR_FILE_SNAPSHOT = 2;
+    private static final int UNENCODED_SNAPSHOT = 3;
+    private static final int CONTENT_MASK = 3;
+
+    private static final int NO_NORMALIZATION = 0;
+    private static final int DEFAULT_NORMALIZATION = 1 << 2;
+    private static final int INDEXED_NORMALIZATION = 2 << 2;
+    private static final int IGNORED_PATH_NORMALIZATION = 3 << 2;
+    private static final int NORMALIZATION_MASK = 3 << 2;
+
+    private static final int HASH_LENGTH = 16;
+
+    private final int size;
+    private final String[] paths;
+    private final byte[] kinds;
+    private final byte[] hashes;
+    private final long[] lastModified;
+    private final String[] normalizedPaths;
+    private final int[] indexes;
+    private final NormalizedFileSnapshot[] unencoded;
+    // Open addressing hash table holding the position of each path plus one, zero marks an empty slot
+    private final int[] table;
+
+    private CompactSnapshotMap(Builder builder) {
+        this.size = builder.size;
+        this.paths = builder.paths;
+        this.kinds = builder.kinds;
+        this.hashes = builder.hashes;
+        this.lastModified = builder.lastModified;
+        this.normalizedPaths = builder.normalizedPaths;
+        this.indexes = builder.indexes;
+        this.unencoded = builder.unencoded;
+        this.table = new int[tableSizeFor(size)];
+        for (int i = 0; i < size; i++) {
+            int slot = slotFor(paths[i]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Returns a compact copy of the given snapshots, or the snapshots themselves when they are empty or already compact.
+     */
+    static Map<String, NormalizedFileSnapshot> copyOf(Map<String, NormalizedFileSnapshot> snapshots) {
+        if (snapshots.isEmpty() || snapshots instanceof CompactSnapshotMap) {
+            return snapshots;
+        }
+        Builder builder = builder(snapshots.size());
+        for (Map.Entry<String, NormalizedFileSnapshot> entry : snapshots.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    private static int tableSizeFor(int size) {
+        int tableSize = 2;
+        while (tableSize < size * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private int slotFor(String path) {
+        int hash = path.hashCode();
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private int indexOf(@Nullable Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String path = (String) key;
+        for (int slot = slotFor(path); table[slot] != 0; slot = (slot + 1) & (table.length - 1)) {
+            int index = table[slot] - 1;
+            if (paths[index].equals(path)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private NormalizedFileSnapshot snapshotAt(int index) {
+        int kind = kinds[index];
+        FileContentSnapshot content;
+        switch (kind & CONTENT_MASK) {
+            case DIR_SNAPSHOT:
+                content = DirContentSnapshot.getInstance();
+                break;
+            case MISSING_FILE_SNAPSHOT:
+                content = MissingFileContentSnapshot.getInstance();
+                break;
+            case REGULAR_FILE_SNAPSHOT:
+                HashCode hash = HashCode.fromBytes(Arrays.copyOfRange(hashes, index * HASH_LENGTH, (index + 1) * HASH_LENGTH));
+                content = new FileHashSnapshot(hash, lastModified == null ? 0L : lastModified[index]);
+                break;
+            default:
+                return unencoded[index];
+        }
+        switch (kind & NORMALIZATION_MASK) {
+            case NO_NORMALIZATION:
+                return new NonNormalizedFileSnapshot(paths[index], content);
+            case DEFAULT_NORMALIZATION:
+                return new DefaultNormalizedFileSnapshot(normalizedPaths[index], content);
+            case INDEXED_NORMALIZATION:
+                return new IndexedNormalizedFileSnapshot(paths[index], indexes[index], content);
+            default:
+                return new IgnoredPathFileSnapshot(content);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public NormalizedFileSnapshot get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : snapshotAt(index);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new PositionIterator<String>() {
+                    @Override
+                    protected String elementAt(int index) {
+                        return paths[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, NormalizedFileSnapshot>> entrySet() {
+        return new AbstractSet<Entry<String, NormalizedFileSnapshot>>() {
+            @Override
+            public Iterator<Entry<String, NormalizedFileSnapshot>> iterator() {
+                return new PositionIterator<Entry<String, NormalizedFileSnapshot>>() {
+                    @Override
+                    protected Entry<String, NormalizedFileSnapshot> elementAt(int index) {
+                        return new SimpleImmutableEntry<String, NormalizedFileSnapshot>(paths[index], snapshotAt(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private abstract class PositionIterator<T> implements Iterator<T> {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            return elementAt(next++);
+        }
+
+        protected abstract T elementAt(int index);
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class Builder {
+        private int size;
+        private String[] paths;
+        private byte[] kinds;
+        private byte[] hashes;
+        private long[] lastModified;
+        private String[] normalizedPaths;
+        private int[] indexes;
+        private NormalizedFileSnapshot[] unencoded;
+
+        private Builder(int expectedSize) {
+            paths = new String[expectedSize];
+            kinds = new byte[expectedSize];
+            hashes = new byte[expectedSize * HASH_LENGTH];
+        }
+
+        /**
+         * Adds the snapshot for the given path, which must not have been added before.
+         */
+        void put(String path, NormalizedFileSnapshot snapshot) {
+            if (size == paths.length) {
+                grow();
+            }
+            int index = size++;
+            paths[index] = path;
+            int contentKind = encodeContent(index, snapshot.getSnapshot());
+            int normalizationKind = contentKind == UNENCODED_SNAPSHOT ? NO_NORMALIZATION : encodeNormalization(index, path, snapshot);
+            if (contentKind == UNENCODED_SNAPSHOT || normalizationKind < 0) {
+                if (unencoded == null) {
+                    unencoded = new NormalizedFileSnapshot[paths.length];
+                }
+                unencoded[index] = snapshot;
+                kinds[index] = UNENCODED_SNAPSHOT;
+            } else {
+                kinds[index] = (byte) (contentKind | normalizationKind);
+            }
+        }
+
+        private int encodeContent(int index, FileContentSnapshot content) {
+            if (content instanceof DirContentSnapshot) {
+                return DIR_SNAPSHOT;
+            }
+            if (content instanceof MissingFileContentSnapshot) {
+                return MISSING_FILE_SNAPSHOT;
+            }
+            if (content instanceof FileHashSnapshot && content.getContentMd5().length() == HASH_LENGTH) {
+                System.arraycopy(content.getContentMd5().toByteArray(), 0, hashes, index * HASH_LENGTH, HASH_LENGTH);
+                long fileLastModified = ((FileHashSnapshot) content).getLastModified();
+                if (fileLastModified != 0L) {
+                    if (lastModified == null) {
+                        lastModified = new long[paths.length];
+                    }
+                    lastModified[index] = fileLastModified;
+                }
+                return REGULAR_FILE_SNAPSHOT;
+            }
+            return UNENCODED_SNAPSHOT;
+        }
+
+        /**
+         * Returns -1 when the snapshot cannot be recreated from its path and normalization kind.
+         */
+        private int encodeNormalization(int index, String path, NormalizedFileSnapshot snapshot) {
+            if (snapshot instanceof NonNormalizedFileSnapshot) {
+                return snapshot.getNormalizedPath().equals(path) ? NO_NORMALIZATION : -1;
+            }
+            if (snapshot instanceof DefaultNormalizedFileSnapshot) {
+                if (normalizedPaths == null) {
+                    normalizedPaths = new String[paths.length];
+                }
+                normalizedPaths[index] = snapshot.getNormalizedPath();
+                return DEFAULT_NORMALIZATION;
+            }
+            if (snapshot instanceof IndexedNormalizedFileSnapshot) {
+                IndexedNormalizedFileSnapshot indexedSnapshot = (IndexedNormalizedFileSnapshot) snapshot;
+                if (!indexedSnapshot.getAbsolutePath().equals(path)) {
+                    return -1;
+                }
+                if (indexes == null) {
+                    indexes = new int[paths.length];
+                }
+                indexes[index] = indexedSnapshot.getIndex();
+                return INDEXED_NORMALIZATION;
+            }
+            if (snapshot instanceof IgnoredPathFileSnapshot) {
+                return IGNORED_PATH_NORMALIZATION;
+            }
+            return -1;
+        }
+
+        private void grow() {
+            resize(Math.max(4, paths.length * 2));
+        }
+
+        private void resize(int capacity) {
+            paths = Arrays.copyOf(paths, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            hashes = Arrays.copyOf(hashes, capacity * HASH_LENGTH);
+            if (lastModified != null) {
+                lastModified = Arrays.copyOf(lastModified, capacity);
+            }
+            if (normalizedPaths != null) {
+                normalizedPaths = Arrays.copyOf(normalizedPaths, capacity);
+            }
+            if (indexes != null) {
+                indexes = Arrays.copyOf(indexes, capacity);
+            }
+            if (unencoded != null) {
+                unencoded = Arrays.copyOf(unencoded, capacity);
+            }
+        }
+
+        CompactSnapshotMap build() {
+            if (size != paths.length) {
+                resize(size);
+            }
+            return new CompactSnapshotMap(this);
+        }
+    }
+}
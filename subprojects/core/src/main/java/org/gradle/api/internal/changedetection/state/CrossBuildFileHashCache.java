@@ -51,6 +51,11 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
         return cache.createCache(parameters);
     }
 
+    @Override
+    public void useCache(Runnable action) {
+        cache.useCache(action);
+    }
+
     @Override
     public void close() throws IOException {
         cache.close();
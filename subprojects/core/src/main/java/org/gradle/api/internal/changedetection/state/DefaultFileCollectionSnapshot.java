@@ -63,7 +63,7 @@ public class DefaultFileCollectionSnapshot implements FileCollectionSnapshot {
     }
 
     DefaultFileCollectionSnapshot(Map<String, NormalizedFileSnapshot> snapshots, @Nullable HashCode hashCode, TaskFilePropertyCompareStrategy compareStrategy, boolean pathIsAbsolute) {
-        this.snapshots = snapshots;
+        this.snapshots = CompactSnapshotMap.copyOf(snapshots);
         this.hashCode = hashCode;
         this.compareStrategy = compareStrategy;
         this.pathIsAbsolute = pathIsAbsolute;
@@ -24,9 +24,13 @@ import org.gradle.internal.file.FileHierarchySet;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
@@ -42,6 +46,10 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
     private final FileHierarchySet cachedDirectories;
+    // Index over the roots of the known directory trees, used to find the trees that contain or are contained in a given directory
+    private final Object treeIndexLock = new Object();
+    private volatile FileHierarchySet treeRoots = DefaultFileHierarchySet.of();
+    private final NavigableSet<String> treePaths = new ConcurrentSkipListSet<String>();
 
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
@@ -96,8 +104,25 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Nullable
     @Override
     public FileTreeSnapshot getDirectoryTree(String path) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
-        // Could possibly also short-circuit some scanning if we have details for some sub trees
+        FileTreeSnapshot tree = getTree(path);
+        if (tree == null && treeRoots.contains(path)) {
+            // Use the details of the closest ancestor tree, if any
+            for (File ancestor = new File(path).getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+                FileTreeSnapshot ancestorTree = getTree(ancestor.getPath());
+                if (ancestorTree != null) {
+                    tree = DirectoryTreeDetails.subtreeOf(ancestorTree, path);
+                    if (tree != null) {
+                        putDirectory(tree);
+                    }
+                    break;
+                }
+            }
+        }
+        return tree;
+    }
+
+    @Nullable
+    private FileTreeSnapshot getTree(String path) {
         if (cachedDirectories.contains(path)) {
             return cacheTrees.get(path);
         } else {
@@ -105,6 +130,13 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         }
     }
 
+    @Override
+    public boolean hasDescendantDirectoryTrees(String path) {
+        String prefix = path + File.separatorChar;
+        String candidate = treePaths.ceiling(prefix);
+        return candidate != null && candidate.startsWith(prefix);
+    }
+
     @Override
     public void putDirectory(FileTreeSnapshot directory) {
         if (cachedDirectories.contains(directory.getPath())) {
@@ -112,6 +144,70 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         } else {
             trees.put(directory.getPath(), directory);
         }
+        synchronized (treeIndexLock) {
+            treeRoots = treeRoots.plus(new File(directory.getPath()));
+            treePaths.add(directory.getPath());
+        }
+    }
+
+    private void reindexTrees() {
+        synchronized (treeIndexLock) {
+            treePaths.clear();
+            treePaths.addAll(trees.keySet());
+            treePaths.addAll(cacheTrees.keySet());
+            FileHierarchySet roots = DefaultFileHierarchySet.of();
+            for (String path : treePaths) {
+                roots = roots.plus(new File(path));
+            }
+            treeRoots = roots;
+        }
+    }
+
+    /**
+     * Discards all state for the given files, for their descendants and for any directory tree or snapshot that contains one of them.
+     */
+    protected void invalidate(Collection<File> changedFiles) {
+        if (changedFiles.isEmpty()) {
+            return;
+        }
+        FileHierarchySet changed = DefaultFileHierarchySet.of(changedFiles);
+        removeContained(files, changed);
+        removeContained(cacheFiles, changed);
+        removeContained(trees, changed);
+        removeContained(cacheTrees, changed);
+        removeContained(snapshots, changed);
+        removeContained(cacheSnapshots, changed);
+        for (File changedFile : changedFiles) {
+            for (File ancestor = changedFile.getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+                String path = ancestor.getPath();
+                trees.remove(path);
+                cacheTrees.remove(path);
+                snapshots.remove(path);
+                cacheSnapshots.remove(path);
+            }
+        }
+        reindexTrees();
+    }
+
+    private static void removeContained(Map<String, ?> entries, FileHierarchySet changed) {
+        for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+            if (changed.contains(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all state.
+     */
+    protected void invalidateAll() {
+        files.clear();
+        cacheFiles.clear();
+        trees.clear();
+        cacheTrees.clear();
+        snapshots.clear();
+        cacheSnapshots.clear();
+        reindexTrees();
     }
 
     @Override
@@ -121,6 +217,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         files.clear();
         trees.clear();
         snapshots.clear();
+        reindexTrees();
     }
 
     @Override
@@ -130,11 +227,6 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Override
     public void beforeComplete() {
         // We throw away all state between builds
-        files.clear();
-        cacheFiles.clear();
-        trees.clear();
-        cacheTrees.clear();
-        snapshots.clear();
-        cacheSnapshots.clear();
+        invalidateAll();
     }
 }
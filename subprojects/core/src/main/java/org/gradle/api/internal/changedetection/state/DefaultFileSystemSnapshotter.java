@@ -23,10 +23,12 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.api.specs.Spec;
 import org.gradle.cache.internal.ProducerGuard;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
@@ -38,7 +40,9 @@ import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Responsible for snapshotting various aspects of the file system.
@@ -61,9 +65,15 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
+    private final BatchFileHasher batchHasher;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        this(hasher, new ParallelFileHasher(1).forHasher(hasher), stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror);
+    }
+
+    public DefaultFileSystemSnapshotter(FileHasher hasher, BatchFileHasher batchHasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
         this.hasher = hasher;
+        this.batchHasher = batchHasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
@@ -134,7 +144,9 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
         // Currently cache only those trees where we want everything from a directory
         if (!dirTree.getPatterns().isEmpty()) {
             List<FileSnapshot> elements = Lists.newArrayList();
-            dirTree.visit(new FileVisitorImpl(elements));
+            DeferredHashingFileVisitor visitor = new DeferredHashingFileVisitor(elements);
+            dirTree.visit(visitor);
+            visitor.hashFiles();
             return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), elements);
         }
 
@@ -163,10 +175,53 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private FileTreeSnapshot doSnapshot(DirectoryFileTree directoryTree) {
         String path = getPath(directoryTree.getDir());
         List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
+        DeferredHashingFileVisitor visitor = new DeferredHashingFileVisitor(elements);
+        if (fileSystemMirror.hasDescendantDirectoryTrees(path) && directoryTree.getDir().isDirectory()) {
+            snapshotReusingDescendantTrees(directoryTree, directoryTree.getPatterns().getAsSpec(), directoryTree.getDir(), RelativePath.EMPTY_ROOT, visitor);
+        } else {
+            directoryTree.visit(visitor);
+        }
+        visitor.hashFiles();
         return new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
     }
 
+    /**
+     * Lists the given directory, and reuses the known details for those child directories that have been snapshotted already, rather than scanning them again.
+     */
+    private void snapshotReusingDescendantTrees(DirectoryFileTree directoryTree, Spec<FileTreeElement> spec, File dir, RelativePath relativePath, DeferredHashingFileVisitor visitor) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            // Let the walker report the problem
+            directoryTree.visitFrom(visitor, dir, relativePath);
+            return;
+        }
+        AtomicBoolean stopFlag = new AtomicBoolean();
+        for (File child : children) {
+            boolean isFile = child.isFile();
+            RelativePath childRelativePath = relativePath.append(isFile, child.getName());
+            FileVisitDetails details = new DefaultFileVisitDetails(child, childRelativePath, stopFlag, fileSystem, fileSystem, !isFile);
+            if (!spec.isSatisfiedBy(details)) {
+                continue;
+            }
+            if (isFile) {
+                visitor.visitFile(details);
+                continue;
+            }
+            visitor.visitDir(details);
+            String childPath = getPath(child);
+            FileTreeSnapshot childTree = fileSystemMirror.getDirectoryTree(childPath);
+            if (childTree != null) {
+                for (FileSnapshot descendant : childTree.getDescendants()) {
+                    visitor.add(DirectoryTreeDetails.withRelativePath(descendant, childRelativePath.append(descendant.getRelativePath())));
+                }
+            } else if (fileSystemMirror.hasDescendantDirectoryTrees(childPath)) {
+                snapshotReusingDescendantTrees(directoryTree, spec, child, childRelativePath, visitor);
+            } else {
+                directoryTree.visitFrom(visitor, child, childRelativePath);
+            }
+        }
+    }
+
     private String getPath(File file) {
         return stringInterner.intern(file.getAbsolutePath());
     }
@@ -224,4 +279,44 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
             fileTreeElements.add(new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
+
+    /**
+     * Collects the elements of a directory tree, leaving a placeholder for each regular file, whose content is hashed in bulk by {@link #hashFiles()} once the walk has finished.
+     *
+     * Only used for walks of the local file system, where the details of a file remain valid after the visit.
+     */
+    private class DeferredHashingFileVisitor implements FileVisitor {
+        private final List<FileSnapshot> fileTreeElements;
+        private final List<FileVisitDetails> files = new ArrayList<FileVisitDetails>();
+        private final List<Integer> fileIndexes = new ArrayList<Integer>();
+
+        DeferredHashingFileVisitor(List<FileSnapshot> fileTreeElements) {
+            this.fileTreeElements = fileTreeElements;
+        }
+
+        void add(FileSnapshot snapshot) {
+            fileTreeElements.add(snapshot);
+        }
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            fileTreeElements.add(new DirectoryFileSnapshot(getPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            files.add(fileDetails);
+            fileIndexes.add(fileTreeElements.size());
+            fileTreeElements.add(null);
+        }
+
+        void hashFiles() {
+            HashCode[] hashes = batchHasher.hashAll(files);
+            for (int i = 0; i < hashes.length; i++) {
+                FileVisitDetails fileDetails = files.get(i);
+                FileHashSnapshot content = new FileHashSnapshot(hashes[i], fileDetails.getLastModified());
+                fileTreeElements.set(fileIndexes.get(i), new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, content));
+            }
+        }
+    }
 }
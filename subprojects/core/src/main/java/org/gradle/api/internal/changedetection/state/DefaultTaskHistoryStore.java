@@ -50,4 +50,9 @@ public class DefaultTaskHistoryStore implements TaskHistoryStore, Closeable {
                 .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
         return cache.createCache(parameters);
     }
+
+    @Override
+    public void useCache(Runnable action) {
+        cache.useCache(action);
+    }
 }
@@ -16,6 +16,13 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.file.RelativePath;
+import org.gradle.internal.file.FileType;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
@@ -46,4 +53,53 @@ public class DirectoryTreeDetails implements FileTreeSnapshot {
     public String toString() {
         return path + " (" + descendants.size() + " descendants)";
     }
+
+    /**
+     * Creates a snapshot of a directory contained in the given tree, from the details already known for the tree.
+     *
+     * @return the snapshot, or null when the tree does not contain the directory.
+     */
+    @Nullable
+    public static FileTreeSnapshot subtreeOf(FileTreeSnapshot tree, String path) {
+        String treePath = tree.getPath();
+        String prefix = path + File.separatorChar;
+        int start = treePath.endsWith(File.separator) ? treePath.length() : treePath.length() + 1;
+        // Number of segments in the path of the directory relative to the root of the tree
+        int depth = 1;
+        for (int i = start; i < path.length(); i++) {
+            if (path.charAt(i) == File.separatorChar) {
+                depth++;
+            }
+        }
+        boolean found = false;
+        ImmutableList.Builder<FileSnapshot> descendants = ImmutableList.builder();
+        for (FileSnapshot descendant : tree.getDescendants()) {
+            String descendantPath = descendant.getPath();
+            if (descendantPath.startsWith(prefix)) {
+                String[] segments = descendant.getRelativePath().getSegments();
+                RelativePath relativePath = new RelativePath(descendant.getType() == FileType.RegularFile, Arrays.copyOfRange(segments, depth, segments.length));
+                descendants.add(withRelativePath(descendant, relativePath));
+            } else if (descendantPath.equals(path)) {
+                if (descendant.getType() != FileType.Directory) {
+                    return null;
+                }
+                found = true;
+            }
+        }
+        return found ? new DirectoryTreeDetails(path, descendants.build()) : null;
+    }
+
+    /**
+     * Creates a copy of the given descendant of a tree, located at the given relative path in another tree.
+     */
+    static FileSnapshot withRelativePath(FileSnapshot descendant, RelativePath relativePath) {
+        switch (descendant.getType()) {
+            case RegularFile:
+                return new RegularFileSnapshot(descendant.getPath(), relativePath, false, descendant.getContent());
+            case Directory:
+                return new DirectoryFileSnapshot(descendant.getPath(), relativePath, false);
+            default:
+                throw new IllegalArgumentException("Unexpected file type in directory tree: " + descendant.getType());
+        }
+    }
 }
@@ -72,6 +72,10 @@ public class FileHashSnapshot implements FileContentSnapshot {
         return hash.toString();
     }
 
+    long getLastModified() {
+        return lastModified;
+    }
+
     @Override
     public FileType getType() {
         return FileType.RegularFile;
@@ -40,5 +40,10 @@ public interface FileSystemMirror {
     @Nullable
     FileTreeSnapshot getDirectoryTree(String path);
 
+    /**
+     * Returns true when details are known for some directory tree strictly inside the given directory.
+     */
+    boolean hasDescendantDirectoryTrees(String path);
+
     void putDirectory(FileTreeSnapshot directory);
 }
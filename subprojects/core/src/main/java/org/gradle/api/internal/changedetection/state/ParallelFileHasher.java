@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hashes the regular files found while walking a directory tree, splitting the work across a fork/join pool so that idle threads steal work from busy ones.
+ *
+ * The hashes are returned in the order of the given files, regardless of the order in which they are calculated.
+ *
+ * The pool is sized to the maximum number of workers of the build, so that all of the workers hashing at the same time share that many threads.
+ */
+public class ParallelFileHasher implements ParallelismConfigurationListener, Stoppable {
+    // Below this, handing the work to other threads costs more than it saves
+    private static final int MIN_FILES_TO_SPLIT = 64;
+    private static final int FILES_PER_TASK = 16;
+
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private volatile ForkJoinPool pool;
+
+    /**
+     * Creates a hasher that uses up to the given number of threads. Hashes on the calling thread when {@code parallelism} is 1.
+     */
+    public ParallelFileHasher(int parallelism) {
+        this.parallelismConfigurationManager = null;
+        this.pool = createPool(parallelism);
+    }
+
+    /**
+     * Creates a hasher that uses up to the maximum number of workers, and follows changes to it.
+     */
+    public ParallelFileHasher(ParallelismConfigurationManager parallelismConfigurationManager) {
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        this.pool = createPool(parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount());
+        parallelismConfigurationManager.addListener(this);
+    }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        int parallelism = parallelismConfiguration.getMaxWorkerCount();
+        ForkJoinPool current = pool;
+        if (current == null ? parallelism <= 1 : current.getParallelism() == parallelism) {
+            return;
+        }
+        pool = createPool(parallelism);
+        if (current != null) {
+            // Lets the hashing in progress finish
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Returns a batch hasher that hashes each of the given files using the given hasher, in parallel.
+     */
+    public BatchFileHasher forHasher(final FileHasher hasher) {
+        return new BatchFileHasher() {
+            @Override
+            public HashCode[] hashAll(List<? extends FileTreeElement> files) {
+                return hash(hasher, files);
+            }
+        };
+    }
+
+    public HashCode[] hash(FileHasher hasher, List<? extends FileTreeElement> files) {
+        HashCode[] hashes = new HashCode[files.size()];
+        HashFiles task = new HashFiles(hasher, files, hashes, 0, files.size());
+        ForkJoinPool pool = this.pool;
+        if (pool == null || files.size() < MIN_FILES_TO_SPLIT) {
+            task.hashRange();
+            return hashes;
+        }
+        try {
+            pool.invoke(task);
+        } catch (RejectedExecutionException e) {
+            // The pool was replaced after the maximum number of workers changed
+            task.hashRange();
+        }
+        return hashes;
+    }
+
+    @Override
+    public void stop() {
+        if (parallelismConfigurationManager != null) {
+            parallelismConfigurationManager.removeListener(this);
+        }
+        ForkJoinPool pool = this.pool;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ForkJoinPool createPool(int parallelism) {
+        return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    private static class HashFiles extends RecursiveAction {
+        private final FileHasher hasher;
+        private final List<? extends FileTreeElement> files;
+        private final HashCode[] hashes;
+        private final int start;
+        private final int end;
+
+        HashFiles(FileHasher hasher, List<? extends FileTreeElement> files, HashCode[] hashes, int start, int end) {
+            this.hasher = hasher;
+            this.files = files;
+            this.hashes = hashes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= FILES_PER_TASK) {
+                hashRange();
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new HashFiles(hasher, files, hashes, start, middle), new HashFiles(hasher, files, hashes, middle, end));
+        }
+
+        void hashRange() {
+            for (int i = start; i < end; i++) {
+                hashes[i] = hasher.hash(files.get(i));
+            }
+        }
+    }
+}
@@ -24,7 +24,6 @@ import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class SnapshotMapSerializer extends AbstractSerializer<Map<String, NormalizedFileSnapshot>> {
@@ -47,13 +46,13 @@ public class SnapshotMapSerializer extends AbstractSerializer<Map<String, Normal
     @Override
     public Map<String, NormalizedFileSnapshot> read(Decoder decoder) throws Exception {
         int snapshotsCount = decoder.readSmallInt();
-        Map<String, NormalizedFileSnapshot> snapshots = new LinkedHashMap<String, NormalizedFileSnapshot>(snapshotsCount);
+        CompactSnapshotMap.Builder snapshots = CompactSnapshotMap.builder(snapshotsCount);
         for (int i = 0; i < snapshotsCount; i++) {
             String absolutePath = stringInterner.intern(decoder.readString());
             NormalizedFileSnapshot snapshot = readSnapshot(absolutePath, decoder, stringInterner);
             snapshots.put(absolutePath, snapshot);
         }
-        return snapshots;
+        return snapshots.build();
     }
 
     private NormalizedFileSnapshot readSnapshot(String absolutePath, Decoder decoder, StringInterner stringInterner) throws IOException {
@@ -93,10 +92,9 @@ public class SnapshotMapSerializer extends AbstractSerializer<Map<String, Normal
     @Override
     public void write(Encoder encoder, Map<String, NormalizedFileSnapshot> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            NormalizedFileSnapshot snapshot = value.get(key);
-            writeSnapshot(encoder, snapshot);
+        for (Map.Entry<String, NormalizedFileSnapshot> entry : value.entrySet()) {
+            encoder.writeString(entry.getKey());
+            writeSnapshot(encoder, entry.getValue());
         }
     }
 
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.file.DefaultFileHierarchySet;
+import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link FileSystemMirror} that retains its state across builds, and discards only the state for those files that a {@link FileWatcher} reports as changed.
+ *
+ * <p>A file is watched when the mirror is first asked about it, which happens before the file is scanned, so that any change made while the file is being snapshotted is reported.
+ * Reported changes are queued and applied the next time the mirror is queried. They are applied again at the end of the build, to discard any snapshot that was stored after the change was reported.</p>
+ *
+ * <p>When the watcher fails or reports a change it cannot attribute to a file, the mirror discards all of its state and stops retaining state until the next build starts.</p>
+ */
+public class WatchingFileSystemMirror extends DefaultFileSystemMirror implements FileWatcherListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingFileSystemMirror.class);
+
+    /**
+     * Enables retaining file system state across builds in the daemon.
+     */
+    public static final String RETAIN_STATE_PROPERTY = "org.gradle.internal.filesystem.retain";
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final Queue<File> pendingChanges = new ConcurrentLinkedQueue<File>();
+    private volatile boolean changesLost;
+    private final Object lock = new Object();
+    // All guarded by lock
+    private final Set<File> changedDuringBuild = new LinkedHashSet<File>();
+    private FileHierarchySet watched = DefaultFileHierarchySet.of();
+    private FileWatcher fileWatcher;
+    private boolean reliable = true;
+
+    public WatchingFileSystemMirror(List<CachedJarFileStore> fileStores, FileWatcherFactory fileWatcherFactory) {
+        super(fileStores);
+        this.fileWatcherFactory = fileWatcherFactory;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(RETAIN_STATE_PROPERTY);
+    }
+
+    @Nullable
+    @Override
+    public FileSnapshot getFile(String path) {
+        applyPendingChanges();
+        FileSnapshot snapshot = super.getFile(path);
+        if (snapshot == null) {
+            watch(path);
+        }
+        return snapshot;
+    }
+
+    @Nullable
+    @Override
+    public Snapshot getContent(String path) {
+        applyPendingChanges();
+        Snapshot snapshot = super.getContent(path);
+        if (snapshot == null) {
+            watch(path);
+        }
+        return snapshot;
+    }
+
+    @Nullable
+    @Override
+    public FileTreeSnapshot getDirectoryTree(String path) {
+        applyPendingChanges();
+        FileTreeSnapshot snapshot = super.getDirectoryTree(path);
+        if (snapshot == null) {
+            watch(path);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+        // Called while the watcher holds its own locks, so only record the change here and apply it later
+        if (event.getType() == FileWatcherEvent.Type.UNDEFINED || event.getFile() == null) {
+            LOGGER.debug("Received an unspecific file system change, discarding all file system state.");
+            changesLost = true;
+            return;
+        }
+        pendingChanges.add(event.getFile().getAbsoluteFile());
+    }
+
+    private void watch(String path) {
+        synchronized (lock) {
+            if (!reliable || watched.contains(path)) {
+                return;
+            }
+            File file = new File(path);
+            try {
+                if (fileWatcher == null) {
+                    fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                        @Override
+                        public void execute(Throwable throwable) {
+                            LOGGER.debug("Failed to watch the file system for changes, discarding all file system state.", throwable);
+                            changesLost = true;
+                        }
+                    }, this);
+                }
+                fileWatcher.watch(FileSystemSubset.builder().add(file).build());
+                watched = watched.plus(file);
+            } catch (IOException e) {
+                LOGGER.debug("Could not watch " + path + " for changes, discarding all file system state.", e);
+                markUnreliable();
+            } catch (RuntimeException e) {
+                LOGGER.debug("Could not watch " + path + " for changes, discarding all file system state.", e);
+                markUnreliable();
+            }
+        }
+    }
+
+    private void applyPendingChanges() {
+        if (pendingChanges.isEmpty() && !changesLost) {
+            return;
+        }
+        synchronized (lock) {
+            if (changesLost) {
+                changesLost = false;
+                markUnreliable();
+                return;
+            }
+            List<File> changes = new ArrayList<File>();
+            for (File file = pendingChanges.poll(); file != null; file = pendingChanges.poll()) {
+                changes.add(file);
+            }
+            changedDuringBuild.addAll(changes);
+            invalidate(changes);
+        }
+    }
+
+    private void markUnreliable() {
+        reliable = false;
+        stopWatcher();
+        pendingChanges.clear();
+        invalidateAll();
+    }
+
+    private void stopWatcher() {
+        if (fileWatcher != null) {
+            fileWatcher.stop();
+            fileWatcher = null;
+        }
+        watched = DefaultFileHierarchySet.of();
+    }
+
+    @Override
+    public void afterStart() {
+        synchronized (lock) {
+            reliable = true;
+        }
+    }
+
+    @Override
+    public void beforeComplete() {
+        applyPendingChanges();
+        synchronized (lock) {
+            if (reliable) {
+                // Discard anything that was stored after a change to it was reported
+                invalidate(changedDuringBuild);
+            } else {
+                invalidateAll();
+            }
+            changedDuringBuild.clear();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (lock) {
+            stopWatcher();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.gradle.api.file.FileCopyDetails;
+import org.gradle.internal.UncheckedException;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the entries of a ZIP archive, compressing the contents of files on a pool of threads while keeping the entries in the order they are added.
+ *
+ * <p>A file no larger than {@link #MAX_BUFFERED_SIZE} is read into memory on the calling thread, so that its source only has to be readable while it is visited.
+ * It is then compressed on the pool and written to the archive as a raw entry. Contents that are already compressed, or that DEFLATE does not make smaller,
+ * are stored as they are. A larger file is written to the archive while it is read, once all of the entries added before it have been written.</p>
+ *
+ * <p>The archive is the same regardless of the number of threads used.</p>
+ */
+class ParallelZipWriter {
+    static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+    private static final long MAX_PENDING_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_PENDING_ENTRIES = 1024;
+
+    private final ZipArchiveOutputStream out;
+    private final int method;
+    private final ExecutorService executor;
+    private final Deque<PendingEntry> pending = new ArrayDeque<PendingEntry>();
+    private long pendingBytes;
+
+    /**
+     * Creates a writer that compresses the entries on the given executor, or on the calling thread when the executor is {@code null}.
+     *
+     * @param method the compression method of the file entries, either {@link ZipArchiveEntry#DEFLATED} or {@link ZipArchiveEntry#STORED}
+     */
+    ParallelZipWriter(ZipArchiveOutputStream out, int method, @Nullable ExecutorService executor) {
+        this.out = out;
+        this.method = method;
+        this.executor = executor;
+    }
+
+    void putDirectory(ZipArchiveEntry entry) throws IOException {
+        enqueue(Futures.immediateFuture(new RawEntry(entry, null, 0)), 0);
+    }
+
+    void putFile(final ZipArchiveEntry entry, FileCopyDetails details) throws IOException {
+        BufferingOutputStream buffer = new BufferingOutputStream(entry);
+        details.copyTo(buffer);
+        if (buffer.spilled) {
+            out.closeArchiveEntry();
+            return;
+        }
+        final byte[] contents = buffer.getBuffer();
+        final int length = buffer.getCount();
+        if (executor == null) {
+            enqueue(Futures.immediateFuture(compress(entry, contents, length)), length);
+            return;
+        }
+        enqueue(executor.submit(new Callable<RawEntry>() {
+            @Override
+            public RawEntry call() {
+                return compress(entry, contents, length);
+            }
+        }), length);
+    }
+
+    /**
+     * Writes all of the pending entries to the archive.
+     */
+    void finish() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    private void enqueue(Future<RawEntry> entry, int length) throws IOException {
+        pending.add(new PendingEntry(entry, length));
+        pendingBytes += length;
+        while (!pending.isEmpty() && (pending.peek().entry.isDone() || pendingBytes > MAX_PENDING_BYTES || pending.size() > MAX_PENDING_ENTRIES)) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        PendingEntry pendingEntry = pending.remove();
+        pendingBytes -= pendingEntry.length;
+        RawEntry next;
+        try {
+            next = Uninterruptibles.getUninterruptibly(pendingEntry.entry);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        if (next.contents == null) {
+            out.putArchiveEntry(next.entry);
+            out.closeArchiveEntry();
+        } else {
+            out.addRawArchiveEntry(next.entry, new ByteArrayInputStream(next.contents, 0, next.length));
+        }
+    }
+
+    private RawEntry compress(ZipArchiveEntry entry, byte[] contents, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, length);
+        entry.setCrc(crc.getValue());
+        entry.setSize(length);
+        if (method == ZipArchiveEntry.DEFLATED && !isCompressed(contents, length)) {
+            byte[] deflated = deflate(contents, length);
+            if (deflated != null) {
+                entry.setMethod(ZipArchiveEntry.DEFLATED);
+                entry.setCompressedSize(deflated.length);
+                return new RawEntry(entry, deflated, deflated.length);
+            }
+        }
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setCompressedSize(length);
+        return new RawEntry(entry, contents, length);
+    }
+
+    /**
+     * Returns the deflated contents, or {@code null} when they are not smaller than the contents.
+     */
+    @Nullable
+    private static byte[] deflate(byte[] contents, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents, 0, length);
+            deflater.finish();
+            byte[] deflated = new byte[Math.max(length, 64)];
+            int deflatedLength = 0;
+            while (!deflater.finished()) {
+                deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength);
+                if (deflatedLength >= length && !deflater.finished()) {
+                    return null;
+                }
+            }
+            return deflatedLength < length ? Arrays.copyOf(deflated, deflatedLength) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Detects contents in common compressed formats, such as nested archives and images, that DEFLATE cannot make smaller.
+     */
+    private static boolean isCompressed(byte[] contents, int length) {
+        return startsWith(contents, length, 0x50, 0x4b, 0x03, 0x04) // ZIP and JAR
+            || startsWith(contents, length, 0x1f, 0x8b) // GZIP
+            || startsWith(contents, length, 0x89, 0x50, 0x4e, 0x47) // PNG
+            || startsWith(contents, length, 0xff, 0xd8, 0xff) // JPEG
+            || startsWith(contents, length, 0x47, 0x49, 0x46, 0x38); // GIF
+    }
+
+    private static boolean startsWith(byte[] contents, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((contents[i] & 0xff) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class PendingEntry {
+        final Future<RawEntry> entry;
+        // The length of the uncompressed contents held in memory until the entry is written
+        final int length;
+
+        PendingEntry(Future<RawEntry> entry, int length) {
+            this.entry = entry;
+            this.length = length;
+        }
+    }
+
+    private static class RawEntry {
+        final ZipArchiveEntry entry;
+        final byte[] contents;
+        final int length;
+
+        RawEntry(ZipArchiveEntry entry, @Nullable byte[] contents, int length) {
+            this.entry = entry;
+            this.contents = contents;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Collects the contents of a file in memory, until they grow larger than {@link #MAX_BUFFERED_SIZE}. From then on, writes the entry to the archive directly.
+     */
+    private class BufferingOutputStream extends OutputStream {
+        private final ZipArchiveEntry entry;
+        private byte[] buffer = new byte[8192];
+        private int count;
+        boolean spilled;
+
+        BufferingOutputStream(ZipArchiveEntry entry) {
+            this.entry = entry;
+        }
+
+        byte[] getBuffer() {
+            return buffer;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (spilled) {
+                out.write(bytes, offset, length);
+                return;
+            }
+            if (count + length > MAX_BUFFERED_SIZE) {
+                spill();
+                out.write(bytes, offset, length);
+                return;
+            }
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(MAX_BUFFERED_SIZE, Math.max(buffer.length * 2, count + length)));
+            }
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        private void spill() throws IOException {
+            finish();
+            out.putArchiveEntry(entry);
+            out.write(buffer, 0, count);
+            buffer = null;
+            spilled = true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.gradle.api.Transformer;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Caches the entries listed in the central directory of ZIP archives across builds, keyed by the hash of the archive.
+ *
+ * <p>This allows a {@link ZipFileTree} to decide which entries to visit without opening the archive, and to read the contents of an entry
+ * straight from where they are stored in the archive, without parsing the central directory again.</p>
+ */
+public class ZipCentralDirectoryCache {
+    private final CrossBuildInMemoryCache<HashCode, List<ZipEntryMetadata>> cache;
+
+    public ZipCentralDirectoryCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    /**
+     * Returns the entries of the given archive, ordered by name.
+     */
+    public List<ZipEntryMetadata> getEntries(final File zipFile, HashCode hash) {
+        return cache.get(hash, new Transformer<List<ZipEntryMetadata>, HashCode>() {
+            @Override
+            public List<ZipEntryMetadata> transform(HashCode hashCode) {
+                try {
+                    return readEntries(zipFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    private static List<ZipEntryMetadata> readEntries(File zipFile) throws IOException {
+        // Decodes names using the platform encoding, unless the entry is flagged as UTF-8, in the same way as the Ant ZIP support
+        ZipFile zip = new ZipFile(zipFile, null);
+        try {
+            // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
+            // to us. So, collect the entries in a map and iterate over them in alphabetical order.
+            Map<String, ZipEntryMetadata> entriesByName = new TreeMap<String, ZipEntryMetadata>();
+            Enumeration<ZipArchiveEntry> entries = zip.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                entriesByName.put(entry.getName(), new ZipEntryMetadata(entry.getName(), entry.isDirectory(), entry.getSize(), entry.getTime(), entry.getUnixMode(),
+                    entry.getMethod(), entry.getDataOffset(), entry.getCompressedSize()));
+            }
+            return ImmutableList.copyOf(entriesByName.values());
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * The details of an entry of an archive that are available without reading its contents.
+     */
+    public static class ZipEntryMetadata {
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+        private final int unixMode;
+        private final int method;
+        private final long dataOffset;
+        private final long compressedSize;
+
+        ZipEntryMetadata(String name, boolean directory, long size, long lastModified, int unixMode, int method, long dataOffset, long compressedSize) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.unixMode = unixMode;
+            this.method = method;
+            this.dataOffset = dataOffset;
+            this.compressedSize = compressedSize;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public int getUnixMode() {
+            return unixMode;
+        }
+
+        /**
+         * The compression method of the contents, as defined by {@link java.util.zip.ZipEntry#getMethod()}.
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * The offset in the archive of the first byte of the stored contents.
+         */
+        public long getDataOffset() {
+            return dataOffset;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+    }
+}
@@ -15,10 +15,10 @@
  */
 package org.gradle.api.internal.file.archive;
 
-import org.apache.tools.zip.UnixStat;
-import org.apache.tools.zip.Zip64RequiredException;
-import org.apache.tools.zip.ZipEntry;
-import org.apache.tools.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.Zip64RequiredException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
@@ -34,11 +34,24 @@ import org.gradle.api.tasks.WorkResults;
 import org.gradle.api.tasks.bundling.Zip;
 import org.gradle.internal.IoActions;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Creates a ZIP archive from the files of a copy spec.
+ *
+ * <p>The files are visited and read in order on the calling thread, while their contents are compressed on a pool of threads. See {@link ParallelZipWriter}.</p>
+ */
 public class ZipCopyAction implements CopyAction {
+    /**
+     * The maximum number of threads used to compress the entries of archives, which are shared by all archives. Defaults to the maximum number of workers, and cannot exceed it.
+     */
+    public static final String PARALLELISM_PROPERTY = "org.gradle.zip.parallelism";
+
     /**
      * Note that setting the January 1st 1980 (or even worse, "0", as time) won't work due
      * to Java 8 doing some interesting time processing: It checks if this date is before January 1st 1980
@@ -61,17 +74,27 @@ public class ZipCopyAction implements CopyAction {
     private final DocumentationRegistry documentationRegistry;
     private final String encoding;
     private final boolean preserveFileTimestamps;
+    private final ExecutorService executor;
 
     public ZipCopyAction(File zipFile, ZipCompressor compressor, DocumentationRegistry documentationRegistry, String encoding, boolean preserveFileTimestamps) {
+        this(zipFile, compressor, documentationRegistry, encoding, preserveFileTimestamps, null);
+    }
+
+    /**
+     * Creates an action that compresses the entries of the archive on the given executor, or on the calling thread when the executor is {@code null}.
+     * The executor is not stopped by this action, so that it can be shared by several archives.
+     */
+    public ZipCopyAction(File zipFile, ZipCompressor compressor, DocumentationRegistry documentationRegistry, String encoding, boolean preserveFileTimestamps, @Nullable ExecutorService executor) {
         this.zipFile = zipFile;
         this.compressor = compressor;
         this.documentationRegistry = documentationRegistry;
         this.encoding = encoding;
         this.preserveFileTimestamps = preserveFileTimestamps;
+        this.executor = executor;
     }
 
     public WorkResult execute(final CopyActionProcessingStream stream) {
-        final ZipOutputStream zipOutStr;
+        final ZipArchiveOutputStream zipOutStr;
 
         try {
             zipOutStr = compressor.createArchiveOutputStream(zipFile);
@@ -80,9 +103,15 @@ public class ZipCopyAction implements CopyAction {
         }
 
         try {
-            IoActions.withResource(zipOutStr, new Action<ZipOutputStream>() {
-                public void execute(ZipOutputStream outputStream) {
-                    stream.process(new StreamAction(outputStream, encoding));
+            IoActions.withResource(zipOutStr, new Action<ZipArchiveOutputStream>() {
+                public void execute(ZipArchiveOutputStream outputStream) {
+                    ParallelZipWriter writer = new ParallelZipWriter(outputStream, compressor.getEntryCompressionMethod(), executor);
+                    stream.process(new StreamAction(outputStream, writer, encoding));
+                    try {
+                        writer.finish();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 }
             });
         } catch (UncheckedIOException e) {
@@ -97,12 +126,12 @@ public class ZipCopyAction implements CopyAction {
     }
 
     private class StreamAction implements CopyActionProcessingStreamAction {
-        private final ZipOutputStream zipOutStr;
+        private final ParallelZipWriter writer;
 
-        public StreamAction(ZipOutputStream zipOutStr, String encoding) {
-            this.zipOutStr = zipOutStr;
+        public StreamAction(ZipArchiveOutputStream zipOutStr, ParallelZipWriter writer, String encoding) {
+            this.writer = writer;
             if (encoding != null) {
-                this.zipOutStr.setEncoding(encoding);
+                zipOutStr.setEncoding(encoding);
             }
         }
 
@@ -116,12 +145,10 @@ public class ZipCopyAction implements CopyAction {
 
         private void visitFile(FileCopyDetails fileDetails) {
             try {
-                ZipEntry archiveEntry = new ZipEntry(fileDetails.getRelativePath().getPathString());
+                ZipArchiveEntry archiveEntry = new ZipArchiveEntry(fileDetails.getRelativePath().getPathString());
                 archiveEntry.setTime(getArchiveTimeFor(fileDetails));
                 archiveEntry.setUnixMode(UnixStat.FILE_FLAG | fileDetails.getMode());
-                zipOutStr.putNextEntry(archiveEntry);
-                fileDetails.copyTo(zipOutStr);
-                zipOutStr.closeEntry();
+                writer.putFile(archiveEntry, fileDetails);
             } catch (Exception e) {
                 throw new GradleException(String.format("Could not add %s to ZIP '%s'.", fileDetails, zipFile), e);
             }
@@ -130,11 +157,10 @@ public class ZipCopyAction implements CopyAction {
         private void visitDir(FileCopyDetails dirDetails) {
             try {
                 // Trailing slash in name indicates that entry is a directory
-                ZipEntry archiveEntry = new ZipEntry(dirDetails.getRelativePath().getPathString() + '/');
+                ZipArchiveEntry archiveEntry = new ZipArchiveEntry(dirDetails.getRelativePath().getPathString() + '/');
                 archiveEntry.setTime(getArchiveTimeFor(dirDetails));
                 archiveEntry.setUnixMode(UnixStat.DIR_FLAG | dirDetails.getMode());
-                zipOutStr.putNextEntry(archiveEntry);
-                zipOutStr.closeEntry();
+                writer.putDirectory(archiveEntry);
             } catch (Exception e) {
                 throw new GradleException(String.format("Could not add %s to ZIP '%s'.", dirDetails, zipFile), e);
             }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive;
+
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The pool of threads that compresses the entries of ZIP archives, shared by all of the archives that are created at the same time.
+ *
+ * <p>The number of threads is limited by the maximum number of workers, and can be limited further with {@link ZipCopyAction#PARALLELISM_PROPERTY}.</p>
+ */
+public class ZipEntryCompressionExecutor implements ParallelismConfigurationListener, Stoppable {
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private final ManagedExecutor executor;
+    private volatile int poolSize;
+
+    public ZipEntryCompressionExecutor(ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        this.poolSize = getPoolSize(parallelismConfigurationManager.getParallelismConfiguration());
+        this.executor = executorFactory.create("Compress ZIP entries", Math.max(1, poolSize));
+        parallelismConfigurationManager.addListener(this);
+    }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        poolSize = getPoolSize(parallelismConfiguration);
+        executor.setFixedPoolSize(Math.max(1, poolSize));
+    }
+
+    /**
+     * Returns the executor to compress entries on, or {@code null} when entries are to be compressed on the thread that creates the archive.
+     */
+    @Nullable
+    public ExecutorService getExecutor() {
+        return poolSize > 1 ? executor : null;
+    }
+
+    private static int getPoolSize(ParallelismConfiguration parallelismConfiguration) {
+        int maxWorkerCount = parallelismConfiguration.getMaxWorkerCount();
+        return Math.min(maxWorkerCount, Integer.getInteger(ZipCopyAction.PARALLELISM_PROPERTY, maxWorkerCount));
+    }
+
+    @Override
+    public void stop() {
+        parallelismConfigurationManager.removeListener(this);
+        executor.stop();
+    }
+}
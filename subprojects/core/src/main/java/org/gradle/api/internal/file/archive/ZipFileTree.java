@@ -15,47 +15,73 @@
  */
 package org.gradle.api.internal.file.archive;
 
-import org.apache.tools.zip.ZipEntry;
-import org.apache.tools.zip.ZipFile;
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.AbstractFileTreeElement;
 import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.api.internal.file.archive.ZipCentralDirectoryCache.ZipEntryMetadata;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.FileSystemMirroringFileTree;
-import org.gradle.api.internal.file.collections.MinimalFileTree;
+import org.gradle.api.internal.file.collections.PatternFilterableFileTree;
 import org.gradle.api.internal.file.collections.SingletonFileTree;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.util.PatternFilterable;
+import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.Chmod;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
-import java.util.Iterator;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
 
-public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree {
+/**
+ * A file tree of the entries of a ZIP archive.
+ *
+ * <p>The entries are listed from the central directory of the archive, which is cached by {@link ZipCentralDirectoryCache}, and the include and exclude patterns
+ * of the tree are applied to their names. As for a directory, the entries of an excluded directory are not visited, whether or not the archive contains an entry
+ * for the directory itself, so that visiting the tree and its mirror agree. The archive is only opened when the contents of an entry are read, and the contents
+ * are streamed from where they are stored in the archive. An entry is only extracted to disk when its {@link FileVisitDetails#getFile()} is requested.</p>
+ */
+public class ZipFileTree implements PatternFilterableFileTree, FileSystemMirroringFileTree {
     private final File zipFile;
     private final File tmpDir;
     private final Chmod chmod;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileHasher fileHasher;
+    private final ZipCentralDirectoryCache centralDirectoryCache;
+    private final PatternSet patternSet;
+
+    public ZipFileTree(File zipFile, File tmpDir, Chmod chmod, DirectoryFileTreeFactory directoryFileTreeFactory, FileHasher fileHasher, ZipCentralDirectoryCache centralDirectoryCache) {
+        this(zipFile, tmpDir, chmod, directoryFileTreeFactory, fileHasher, centralDirectoryCache, new PatternSet());
+    }
 
-    public ZipFileTree(File zipFile, File tmpDir, Chmod chmod, DirectoryFileTreeFactory directoryFileTreeFactory, FileHasher fileHasher) {
+    private ZipFileTree(File zipFile, File tmpDir, Chmod chmod, DirectoryFileTreeFactory directoryFileTreeFactory, FileHasher fileHasher, ZipCentralDirectoryCache centralDirectoryCache, PatternSet patternSet) {
         this.zipFile = zipFile;
         this.tmpDir = tmpDir;
         this.chmod = chmod;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
         this.fileHasher = fileHasher;
+        this.centralDirectoryCache = centralDirectoryCache;
+        this.patternSet = patternSet;
     }
 
     public String getDisplayName() {
@@ -63,7 +89,14 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
     }
 
     public DirectoryFileTree getMirror() {
-        return directoryFileTreeFactory.create(getExpandedDir());
+        return directoryFileTreeFactory.create(getExpandedDir(fileHasher.hash(zipFile)), patternSet);
+    }
+
+    @Override
+    public ZipFileTree filter(PatternFilterable patterns) {
+        PatternSet patternSet = this.patternSet.intersect();
+        patternSet.copyFrom(patterns);
+        return new ZipFileTree(zipFile, tmpDir, chmod, directoryFileTreeFactory, fileHasher, centralDirectoryCache, patternSet);
     }
 
     public void visit(FileVisitor visitor) {
@@ -75,26 +108,33 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
 
         AtomicBoolean stopFlag = new AtomicBoolean();
+        Spec<FileTreeElement> spec = patternSet.getAsSpec();
+        Map<String, Boolean> includedDirs = new HashMap<String, Boolean>();
 
         try {
-            ZipFile zip = new ZipFile(zipFile);
-            File expandedDir = getExpandedDir();
+            HashCode hash = fileHasher.hash(zipFile);
+            File expandedDir = getExpandedDir(hash);
+            LazyZipFile zip = new LazyZipFile(zipFile);
             try {
-                // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
-                // to us. So, collect the entries in a map and iterate over them in alphabetical order.
-                Map<String, ZipEntry> entriesByName = new TreeMap<String, ZipEntry>();
-                Enumeration entries = zip.getEntries();
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = (ZipEntry) entries.nextElement();
-                    entriesByName.put(entry.getName(), entry);
-                }
-                Iterator<ZipEntry> sortedEntries = entriesByName.values().iterator();
-                while (!stopFlag.get() && sortedEntries.hasNext()) {
-                    ZipEntry entry = sortedEntries.next();
+                for (ZipEntryMetadata entry : centralDirectoryCache.getEntries(zipFile, hash)) {
+                    if (stopFlag.get()) {
+                        break;
+                    }
+                    if (!isParentIncluded(entry.getName(), expandedDir, zip, stopFlag, spec, includedDirs)) {
+                        continue;
+                    }
+                    DetailsImpl details = new DetailsImpl(zipFile, expandedDir, entry, zip, stopFlag, chmod);
+                    boolean included = spec.isSatisfiedBy(details);
                     if (entry.isDirectory()) {
-                        visitor.visitDir(new DetailsImpl(zipFile, expandedDir, entry, zip, stopFlag, chmod));
+                        includedDirs.put(trimTrailingSlash(entry.getName()), included);
+                    }
+                    if (!included) {
+                        continue;
+                    }
+                    if (entry.isDirectory()) {
+                        visitor.visitDir(details);
                     } else {
-                        visitor.visitFile(new DetailsImpl(zipFile, expandedDir, entry, zip, stopFlag, chmod));
+                        visitor.visitFile(details);
                     }
                 }
             } finally {
@@ -105,24 +145,123 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
     }
 
+    /**
+     * Returns whether all of the directories containing the given entry are included, in the same way that {@link DirectoryFileTree} does not walk into excluded
+     * directories. Directories without an entry of their own are matched as if they had one.
+     */
+    private boolean isParentIncluded(String entryName, File expandedDir, LazyZipFile zip, AtomicBoolean stopFlag, Spec<FileTreeElement> spec, Map<String, Boolean> includedDirs) {
+        int separator = trimTrailingSlash(entryName).lastIndexOf('/');
+        if (separator <= 0) {
+            return true;
+        }
+        String parent = entryName.substring(0, separator);
+        Boolean included = includedDirs.get(parent);
+        if (included == null) {
+            included = isParentIncluded(parent, expandedDir, zip, stopFlag, spec, includedDirs)
+                && spec.isSatisfiedBy(new DetailsImpl(zipFile, expandedDir, new ZipEntryMetadata(parent + "/", true, 0, 0, 0, ZipEntry.STORED, 0, 0), zip, stopFlag, chmod));
+            includedDirs.put(parent, included);
+        }
+        return included;
+    }
+
+    private static String trimTrailingSlash(String name) {
+        return name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    }
+
     private File getBackingFile() {
         return zipFile;
     }
 
-    private File getExpandedDir() {
-        String expandedDirName = zipFile.getName() + "_" + fileHasher.hash(zipFile);
+    private File getExpandedDir(HashCode hash) {
+        String expandedDirName = zipFile.getName() + "_" + hash;
         return new File(tmpDir, expandedDirName);
     }
 
+    /**
+     * Opens the archive when the contents of the first entry are read, and reads the contents of each entry from the offset recorded in the cached central directory.
+     */
+    private static class LazyZipFile {
+        private final File zipFile;
+        private RandomAccessFile file;
+
+        LazyZipFile(File zipFile) {
+            this.zipFile = zipFile;
+        }
+
+        InputStream getInputStream(ZipEntryMetadata entry) throws IOException {
+            if (file == null) {
+                file = new RandomAccessFile(zipFile, "r");
+            }
+            InputStream content = new ChannelRangeInputStream(file.getChannel(), entry.getDataOffset(), entry.getCompressedSize());
+            switch (entry.getMethod()) {
+                case ZipEntry.STORED:
+                    return content;
+                case ZipEntry.DEFLATED:
+                    final Inflater inflater = new Inflater(true);
+                    // The inflater may need an extra byte past the end of the compressed contents
+                    return new InflaterInputStream(new SequenceInputStream(content, new ByteArrayInputStream(new byte[1])), inflater) {
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            inflater.end();
+                        }
+                    };
+                default:
+                    throw new IOException(String.format("Entry %s in ZIP '%s' uses unsupported compression method %d.", entry.getName(), zipFile, entry.getMethod()));
+            }
+        }
+
+        void close() throws IOException {
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a range of a file. Reads do not move the position of the channel, so that several entries can be read at the same time.
+     */
+    private static class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelRangeInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return read < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
     private static class DetailsImpl extends AbstractFileTreeElement implements FileVisitDetails {
         private final File originalFile;
         private final File expandedDir;
-        private final ZipEntry entry;
-        private final ZipFile zip;
+        private final ZipEntryMetadata entry;
+        private final LazyZipFile zip;
         private final AtomicBoolean stopFlag;
         private File file;
+        private RelativePath relativePath;
 
-        public DetailsImpl(File originalFile, File expandedDir, ZipEntry entry, ZipFile zip, AtomicBoolean stopFlag, Chmod chmod) {
+        public DetailsImpl(File originalFile, File expandedDir, ZipEntryMetadata entry, LazyZipFile zip, AtomicBoolean stopFlag, Chmod chmod) {
             super(chmod);
             this.originalFile = originalFile;
             this.expandedDir = expandedDir;
@@ -150,7 +289,7 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
 
         public long getLastModified() {
-            return entry.getTime();
+            return entry.getLastModified();
         }
 
         public boolean isDirectory() {
@@ -170,7 +309,10 @@ public class ZipFileTree implements MinimalFileTree, FileSystemMirroringFileTree
         }
 
         public RelativePath getRelativePath() {
-            return new RelativePath(!entry.isDirectory(), entry.getName().split("/"));
+            if (relativePath == null) {
+                relativePath = new RelativePath(!entry.isDirectory(), entry.getName().split("/"));
+            }
+            return relativePath;
         }
 
         public int getMode() {
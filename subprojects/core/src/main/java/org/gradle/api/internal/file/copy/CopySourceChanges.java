@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.copy;
+
+import org.gradle.api.Action;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
+import org.gradle.api.tasks.incremental.InputFileDetails;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The source files of a copy task that were added or modified since the task last executed.
+ */
+public class CopySourceChanges {
+    private final Set<File> outOfDate;
+
+    public CopySourceChanges(Set<File> outOfDate) {
+        this.outOfDate = outOfDate;
+    }
+
+    /**
+     * Collects the changes reported by the given inputs, which must be incremental.
+     */
+    public static CopySourceChanges of(IncrementalTaskInputs inputs) {
+        final Set<File> outOfDate = new HashSet<File>();
+        inputs.outOfDate(new Action<InputFileDetails>() {
+            @Override
+            public void execute(InputFileDetails details) {
+                outOfDate.add(details.getFile().getAbsoluteFile());
+            }
+        });
+        return new CopySourceChanges(outOfDate);
+    }
+
+    /**
+     * Returns true when the given source file was neither added nor modified.
+     */
+    public boolean isUnchanged(File sourceFile) {
+        return !outOfDate.contains(sourceFile.getAbsoluteFile());
+    }
+}
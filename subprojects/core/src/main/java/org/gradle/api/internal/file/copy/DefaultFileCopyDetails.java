@@ -17,14 +17,18 @@
 package org.gradle.api.internal.file.copy;
 
 import groovy.lang.Closure;
+import org.gradle.api.GradleException;
 import org.gradle.api.Transformer;
 import org.gradle.api.file.ContentFilterable;
 import org.gradle.api.file.DuplicatesStrategy;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.AbstractFileTreeElement;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
 import org.gradle.internal.nativeintegration.filesystem.Chmod;
+import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.util.Map;
 
@@ -69,6 +73,15 @@ public class DefaultFileCopyDetails extends AbstractFileTreeElement implements F
         return fileDetails.isDirectory();
     }
 
+    @Nullable
+    public File getSourceFile() {
+        // Calling getFile() on other kinds of details may extract the file from an archive
+        if (fileDetails instanceof DefaultFileVisitDetails && !fileDetails.isDirectory() && !filterChain.hasFilters()) {
+            return fileDetails.getFile();
+        }
+        return null;
+    }
+
     public long getLastModified() {
         return fileDetails.getLastModified();
     }
@@ -101,12 +114,40 @@ public class DefaultFileCopyDetails extends AbstractFileTreeElement implements F
 
     public boolean copyTo(File target) {
         if (filterChain.hasFilters()) {
+            if (fileDetails instanceof DefaultFileVisitDetails) {
+                unlink(fileDetails.getFile(), target);
+            }
             return super.copyTo(target);
-        } else {
-            final boolean copied = fileDetails.copyTo(target);
+        }
+        File sourceFile = getSourceFile();
+        if (sourceFile != null) {
+            validateTimeStamps();
+            boolean copied = transfer(sourceFile, target);
             adaptPermissions(target);
             return copied;
         }
+        final boolean copied = fileDetails.copyTo(target);
+        adaptPermissions(target);
+        return copied;
+    }
+
+    private boolean transfer(File sourceFile, File target) {
+        try {
+            GFileUtils.mkdirs(target.getParentFile());
+            // Only link when the target keeps the permissions of the source, as changing them would change the source too
+            boolean allowHardLink = FileTransfer.isHardLinkingEnabled() && getMode() == fileDetails.getMode();
+            return FileTransfer.transfer(sourceFile, target, allowHardLink);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not copy %s to '%s'.", getDisplayName(), target), e);
+        }
+    }
+
+    private void unlink(File sourceFile, File target) {
+        try {
+            FileTransfer.unlink(sourceFile, target);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not copy %s to '%s'.", getDisplayName(), target), e);
+        }
     }
 
     private void adaptPermissions(File target) {
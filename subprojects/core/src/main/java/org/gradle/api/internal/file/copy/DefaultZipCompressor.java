@@ -16,12 +16,13 @@
 package org.gradle.api.internal.file.copy;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.tools.zip.Zip64Mode;
-import org.apache.tools.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.gradle.api.UncheckedIOException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 public class DefaultZipCompressor implements ZipCompressor {
     private final int entryCompressionMethod;
@@ -32,9 +33,11 @@ public class DefaultZipCompressor implements ZipCompressor {
         zip64Mode = allowZip64Mode ? Zip64Mode.AsNeeded : Zip64Mode.Never;
     }
 
-    public ZipOutputStream createArchiveOutputStream(File destination) throws IOException {
-        ZipOutputStream outStream = new ZipOutputStream(destination);
+    public ZipArchiveOutputStream createArchiveOutputStream(File destination) throws IOException {
+        ZipArchiveOutputStream outStream = new ZipArchiveOutputStream(destination);
         try {
+            // Encode entry names with the platform encoding unless told otherwise
+            outStream.setEncoding(Charset.defaultCharset().name());
             outStream.setUseZip64(zip64Mode);
             outStream.setMethod(entryCompressionMethod);
             return outStream;
@@ -45,4 +48,9 @@ public class DefaultZipCompressor implements ZipCompressor {
         }
     }
 
+    @Override
+    public int getEntryCompressionMethod() {
+        return entryCompressionMethod;
+    }
+
 }
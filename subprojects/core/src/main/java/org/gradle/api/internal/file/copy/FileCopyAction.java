@@ -20,14 +20,28 @@ import org.gradle.api.tasks.WorkResult;
 import org.gradle.api.tasks.WorkResults;
 import org.gradle.internal.file.PathToFileResolver;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
 
 public class FileCopyAction implements CopyAction {
 
     private final PathToFileResolver fileResolver;
+    private final CopySourceChanges sourceChanges;
 
     public FileCopyAction(PathToFileResolver fileResolver) {
+        this(fileResolver, null);
+    }
+
+    /**
+     * Creates an action that copies only those files whose source changed when {@code sourceChanges} is given, and all files otherwise.
+     *
+     * A file is copied regardless of its source when its content is filtered, when its target does not exist, or when another file has already been processed for the same target.
+     */
+    public FileCopyAction(PathToFileResolver fileResolver, @Nullable CopySourceChanges sourceChanges) {
         this.fileResolver = fileResolver;
+        this.sourceChanges = sourceChanges;
     }
 
     public WorkResult execute(CopyActionProcessingStream stream) {
@@ -37,14 +51,23 @@ public class FileCopyAction implements CopyAction {
     }
 
     private class FileCopyDetailsInternalAction implements CopyActionProcessingStreamAction {
+        private final Set<File> targets = new HashSet<File>();
         private boolean didWork;
 
         public void processFile(FileCopyDetailsInternal details) {
             File target = fileResolver.resolve(details.getRelativePath().getPathString());
+            if (sourceChanges != null && targets.add(target) && isUpToDate(details, target)) {
+                return;
+            }
             boolean copied = details.copyTo(target);
             if (copied) {
                 didWork = true;
             }
         }
+
+        private boolean isUpToDate(FileCopyDetailsInternal details, File target) {
+            File sourceFile = details.getSourceFile();
+            return sourceFile != null && sourceChanges.isUnchanged(sourceFile) && target.isFile();
+        }
     }
 }
@@ -18,8 +18,17 @@ package org.gradle.api.internal.file.copy;
 
 import org.gradle.api.file.FileCopyDetails;
 
+import javax.annotation.Nullable;
+import java.io.File;
+
 public interface FileCopyDetailsInternal extends FileCopyDetails {
 
     boolean isIncludeEmptyDirs();
 
+    /**
+     * Returns the regular file that this element is copied from as is, or {@code null} when it is a directory, is not read directly from a file, such as an entry of a ZIP archive, or has its content filtered.
+     */
+    @Nullable
+    File getSourceFile();
+
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.copy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**
+ * Copies the content of a regular file to another file without passing it through Java streams.
+ *
+ * <p>The content is transferred between file channels, which lets the operating system copy it directly, for example using {@code sendfile} or {@code copy_file_range} on Linux.
+ * When enabled using {@link #HARD_LINKS_PROPERTY}, the target is created as a hard link to the source instead.</p>
+ *
+ * <p>The content of an existing target is not compared with the source, as that would read both files in full. Copy tasks skip the files whose source is unchanged
+ * when they run incrementally.</p>
+ *
+ * <p>A hard linked target shares its content with the source. Gradle deletes such a target before writing to it, when it copies to the target again without linking
+ * or with filters. Anything else that edits the target in place, such as a later task or an external tool, changes the source as well.
+ * Hard links are therefore only created when explicitly enabled, and should only be enabled when the targets are never edited in place.</p>
+ */
+public class FileTransfer {
+    /**
+     * Enables creating hard links to the source files instead of copying them.
+     *
+     * <p>A linked target is the same file as its source, so editing the target in place, rather than replacing it, also changes the source.
+     * Only enable this when nothing edits the copied files in place.</p>
+     */
+    public static final String HARD_LINKS_PROPERTY = "org.gradle.copy.hardlinks";
+
+    private FileTransfer() {
+    }
+
+    public static boolean isHardLinkingEnabled() {
+        return Boolean.getBoolean(HARD_LINKS_PROPERTY);
+    }
+
+    /**
+     * Makes the target contain the content of the source, linking to the source when {@code allowHardLink} is true and hard links are enabled.
+     *
+     * @return true when the target was written, false when it already was a link to the source.
+     */
+    public static boolean transfer(File source, File target, boolean allowHardLink) throws IOException {
+        boolean hardLink = allowHardLink && isHardLinkingEnabled();
+        if (target.exists()) {
+            if (Files.isSameFile(source.toPath(), target.toPath())) {
+                if (hardLink) {
+                    return false;
+                }
+                // Don't write through a link created by a previous copy, as that would change the source
+                Files.delete(target.toPath());
+            } else if (hardLink) {
+                Files.delete(target.toPath());
+            }
+        }
+        if (hardLink) {
+            try {
+                Files.createLink(target.toPath(), source.toPath());
+                return true;
+            } catch (IOException e) {
+                // The file system does not support hard links between these files, so copy instead
+            } catch (UnsupportedOperationException e) {
+                // Same as above
+            }
+        }
+        copy(source, target);
+        return true;
+    }
+
+    /**
+     * Deletes the target when it is a link to the source, so that writing to the target does not change the source.
+     */
+    public static void unlink(File source, File target) throws IOException {
+        if (target.exists() && Files.isSameFile(source.toPath(), target.toPath())) {
+            Files.delete(target.toPath());
+        }
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream inputStream = new FileInputStream(source);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(target);
+            try {
+                FileChannel sourceChannel = inputStream.getChannel();
+                FileChannel targetChannel = outputStream.getChannel();
+                long size = sourceChannel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = sourceChannel.transferTo(position, size - position, targetChannel);
+                    if (transferred <= 0) {
+                        // The source was truncated while copying
+                        break;
+                    }
+                    position += transferred;
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -127,6 +127,10 @@ public class NormalizingCopyActionDecorator implements CopyAction {
             throw new UnsupportedOperationException();
         }
 
+        public File getSourceFile() {
+            return null;
+        }
+
         public boolean isDirectory() {
             return !path.isFile();
         }
@@ -15,7 +15,7 @@
  */
 package org.gradle.api.internal.file.copy;
 
-import org.apache.tools.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.gradle.api.internal.file.archive.compression.ArchiveOutputStreamFactory;
 
 import java.io.File;
@@ -23,6 +23,11 @@ import java.io.IOException;
 
 public interface ZipCompressor extends ArchiveOutputStreamFactory {
 
-    ZipOutputStream createArchiveOutputStream(File destination) throws IOException;
+    ZipArchiveOutputStream createArchiveOutputStream(File destination) throws IOException;
+
+    /**
+     * Returns the compression method of the file entries, either {@link ZipArchiveOutputStream#DEFLATED} or {@link ZipArchiveOutputStream#STORED}.
+     */
+    int getEntryCompressionMethod();
 
 }
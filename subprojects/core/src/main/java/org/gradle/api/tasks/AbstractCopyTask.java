@@ -34,14 +34,17 @@ import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.file.copy.ClosureBackedTransformer;
 import org.gradle.api.internal.file.copy.CopyAction;
 import org.gradle.api.internal.file.copy.CopyActionExecuter;
+import org.gradle.api.internal.file.copy.CopySourceChanges;
 import org.gradle.api.internal.file.copy.CopySpecInternal;
 import org.gradle.api.internal.file.copy.CopySpecResolver;
 import org.gradle.api.internal.file.copy.CopySpecSource;
 import org.gradle.api.internal.file.copy.DefaultCopySpec;
 import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.reflect.Instantiator;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.FilterReader;
 import java.util.Map;
@@ -56,6 +59,7 @@ public abstract class AbstractCopyTask extends ConventionTask implements CopySpe
 
     private final CopySpecInternal rootSpec;
     private final CopySpecInternal mainSpec;
+    private IncrementalTaskInputs taskInputs;
 
     protected AbstractCopyTask() {
         this.rootSpec = createRootSpec();
@@ -175,6 +179,30 @@ public abstract class AbstractCopyTask extends ConventionTask implements CopySpe
         setDidWork(didWork.getDidWork());
     }
 
+    /**
+     * Copies the files of this task, making the given inputs available to {@link #collectSourceChanges()}.
+     */
+    void copyIncrementally(IncrementalTaskInputs inputs) {
+        taskInputs = inputs;
+        try {
+            copy();
+        } finally {
+            taskInputs = null;
+        }
+    }
+
+    /**
+     * Returns the changes to the source files since the last execution of this task, or {@code null} when all files need to be copied.
+     * Always returns {@code null} when the task is not executing incrementally, which happens when anything other than the source files has changed.
+     */
+    @Nullable
+    CopySourceChanges collectSourceChanges() {
+        if (taskInputs == null || !taskInputs.isIncremental()) {
+            return null;
+        }
+        return CopySourceChanges.of(taskInputs);
+    }
+
     protected CopyActionExecuter createCopyActionExecuter() {
         Instantiator instantiator = getInstantiator();
         FileSystem fileSystem = getFileSystem();
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.controller.BuildCacheLoadCommand;
+import org.gradle.caching.internal.controller.BuildCacheStoreCommand;
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the contents of output files as entries of the build cache, keyed by their content hash, so that they are shared between all cache entries that refer to them.
+ *
+ * <p>Contents are only stored in those build caches that do not contain them yet, so that storing contents that are already in the remote build cache
+ * does not transfer them again. Loading contents that are in the local build cache does not transfer them from the remote build cache.</p>
+ */
+public class BuildCacheTaskOutputBlobStore implements TaskOutputBlobStore {
+    /**
+     * Enables storing the contents of output files separately from the cache entries, by their content hash.
+     */
+    public static final String CONTENT_ADDRESSED_PROPERTY = "org.gradle.caching.content-addressed";
+
+    // Below this, the cost of an additional request to the remote build cache outweighs the saving
+    private static final long MIN_BLOB_SIZE = 4 * 1024;
+
+    private final BuildCacheController buildCacheController;
+    private final boolean storeEnabled;
+
+    public BuildCacheTaskOutputBlobStore(BuildCacheController buildCacheController, boolean storeEnabled) {
+        this.buildCacheController = buildCacheController;
+        this.storeEnabled = storeEnabled;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(CONTENT_ADDRESSED_PROPERTY);
+    }
+
+    @Override
+    public boolean store(HashCode hash, final File file) {
+        if (!storeEnabled || file.length() < MIN_BLOB_SIZE) {
+            return false;
+        }
+        final BuildCacheKey key = new TaskOutputContentKey(hash);
+        buildCacheController.storeMissing(new BuildCacheStoreCommand() {
+            @Override
+            public BuildCacheKey getKey() {
+                return key;
+            }
+
+            @Override
+            public Result store(OutputStream outputStream) throws IOException {
+                GZIPOutputStream output = new GZIPOutputStream(outputStream);
+                InputStream input = new FileInputStream(file);
+                try {
+                    IOUtils.copyLarge(input, output);
+                } finally {
+                    IOUtils.closeQuietly(input);
+                    IOUtils.closeQuietly(output);
+                }
+                return new Result() {
+                    @Override
+                    public long getArtifactEntryCount() {
+                        return 1;
+                    }
+
+                    @Override
+                    public Collection<BuildCacheKey> getReferencedKeys() {
+                        return Collections.emptyList();
+                    }
+                };
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean load(HashCode hash, final ContentReader reader) {
+        final BuildCacheKey key = new TaskOutputContentKey(hash);
+        Boolean loaded = buildCacheController.load(new BuildCacheLoadCommand<Boolean>() {
+            @Override
+            public BuildCacheKey getKey() {
+                return key;
+            }
+
+            @Override
+            public Result<Boolean> load(InputStream inputStream) throws IOException {
+                GZIPInputStream input = new GZIPInputStream(inputStream);
+                try {
+                    reader.read(input);
+                } finally {
+                    IOUtils.closeQuietly(input);
+                }
+                return new Result<Boolean>() {
+                    @Override
+                    public long getArtifactEntryCount() {
+                        return 1;
+                    }
+
+                    @Override
+                    public Boolean getMetadata() {
+                        return Boolean.TRUE;
+                    }
+
+                    @Override
+                    public Collection<BuildCacheKey> getReferencedKeys() {
+                        return Collections.emptyList();
+                    }
+                };
+            }
+        });
+        return loaded != null;
+    }
+}
@@ -31,6 +31,7 @@ import org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildC
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory.RemoteAccessMode;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -52,8 +53,14 @@ import static org.gradle.caching.internal.controller.BuildCacheControllerFactory
 
 public class BuildCacheTaskServices {
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    TaskOutputFileWriter createTaskOutputFileWriter(StreamHasher fileHasher, ExecutorFactory executorFactory) {
+        return new TaskOutputFileWriter(fileHasher, executorFactory, TaskOutputFileWriter.getParallelism());
+    }
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, BuildCacheController buildCacheController, TaskOutputFileWriter fileWriter) {
+        // Entries that refer to stored contents can always be unpacked, even when contents are not stored separately for this build
+        TaskOutputBlobStore blobStore = new BuildCacheTaskOutputBlobStore(buildCacheController, BuildCacheTaskOutputBlobStore.isEnabled());
+        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner, blobStore, fileWriter), TaskOutputCompression.fromSystemProperty());
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -83,6 +90,7 @@ public class BuildCacheTaskServices {
         ServiceRegistry serviceRegistry,
         BuildCacheConfigurationInternal buildCacheConfiguration,
         BuildOperationExecutor buildOperationExecutor,
+        ExecutorFactory executorFactory,
         InstantiatorFactory instantiatorFactory,
         GradleInternal gradle
     ) {
@@ -99,6 +107,7 @@ public class BuildCacheTaskServices {
 
         final BuildCacheController controller = BuildCacheControllerFactory.create(
             buildOperationExecutor,
+            executorFactory,
             buildIdentityPath,
             gradleUserHomeDir,
             buildCacheConfiguration,
@@ -35,10 +35,19 @@ import java.util.zip.GZIPOutputStream;
  * Adds compression and CRC32 checks to the packed task output.
  */
 public class GZipTaskOutputPacker implements TaskOutputPacker {
+    // The GZIP streams use a 512 byte buffer by default, which makes for a lot of small reads and writes
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final TaskOutputPacker delegate;
+    private final TaskOutputCompression compression;
 
     public GZipTaskOutputPacker(TaskOutputPacker delegate) {
+        this(delegate, TaskOutputCompression.DEFAULT);
+    }
+
+    public GZipTaskOutputPacker(TaskOutputPacker delegate, TaskOutputCompression compression) {
         this.delegate = delegate;
+        this.compression = compression;
     }
 
     @Override
@@ -53,7 +62,11 @@ public class GZipTaskOutputPacker implements TaskOutputPacker {
 
     private GZIPOutputStream createGzipOutputStream(OutputStream output) {
         try {
-            return new GZIPOutputStream(output);
+            return new GZIPOutputStream(output, BUFFER_SIZE) {
+                {
+                    def.setLevel(compression.getLevel());
+                }
+            };
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -71,7 +84,7 @@ public class GZipTaskOutputPacker implements TaskOutputPacker {
 
     private GZIPInputStream createGzipInputStream(InputStream input) {
         try {
-            return new GZIPInputStream(input);
+            return new GZIPInputStream(input, BUFFER_SIZE);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
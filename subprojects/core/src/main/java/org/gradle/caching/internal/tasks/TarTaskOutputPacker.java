@@ -16,11 +16,12 @@
 
 package org.gradle.caching.internal.tasks;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -29,6 +30,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.tools.zip.UnixStat;
 import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.DirectoryFileSnapshot;
@@ -40,6 +42,7 @@ import org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec;
 import org.gradle.api.internal.tasks.OutputType;
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
 import org.gradle.api.internal.tasks.TaskFilePropertySpec;
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
@@ -47,6 +50,7 @@ import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
+import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -56,9 +60,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,10 +76,17 @@ import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirect
 
 /**
  * Packages task output to a POSIX TAR file.
+ *
+ * <p>The contents of a regular file can be kept in a {@link TaskOutputBlobStore} instead of the TAR file. The TAR file then contains a reference to the contents
+ * in place of the file, which is an entry with the same path prefixed with {@code blob-} whose contents are the content hash of the file.</p>
+ *
+ * <p>Unpacked files are written using a {@link TaskOutputFileWriter}, which may write them concurrently with reading the rest of the TAR file.</p>
  */
 public class TarTaskOutputPacker implements TaskOutputPacker {
     private static final String METADATA_PATH = "METADATA";
-    private static final Pattern PROPERTY_PATH = Pattern.compile("(missing-)?property-([^/]+)(?:/(.*))?");
+    private static final Pattern PROPERTY_PATH = Pattern.compile("(missing-|blob-)?property-([^/]+)(?:/(.*))?");
+    private static final String MISSING_PREFIX = "missing-";
+    private static final String BLOB_PREFIX = "blob-";
     @SuppressWarnings("OctalInteger")
     private static final int FILE_PERMISSION_MASK = 0777;
     private static final int BUFFER_SIZE = 64 * 1024;
@@ -84,11 +100,23 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    private final TaskOutputBlobStore blobStore;
+    private final TaskOutputFileWriter fileWriter;
 
     public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this(fileSystem, streamHasher, stringInterner, TaskOutputBlobStore.NONE);
+    }
+
+    public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, TaskOutputBlobStore blobStore) {
+        this(fileSystem, streamHasher, stringInterner, blobStore, new TaskOutputFileWriter(streamHasher));
+    }
+
+    public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, TaskOutputBlobStore blobStore, TaskOutputFileWriter fileWriter) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.blobStore = blobStore;
+        this.fileWriter = fileWriter;
     }
 
     @Override
@@ -105,8 +133,9 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
             tarOutput.setAddPaxHeadersForNonAsciiNames(true);
             packMetadata(writeOrigin, tarOutput);
-            long entryCount = pack(propertySpecs, outputSnapshots, tarOutput);
-            return new PackResult(entryCount + 1);
+            Set<BuildCacheKey> referencedKeys = new LinkedHashSet<BuildCacheKey>();
+            long entryCount = pack(propertySpecs, outputSnapshots, tarOutput, referencedKeys);
+            return new PackResult(entryCount + 1, referencedKeys);
         } finally {
             IOUtils.closeQuietly(tarOutput);
         }
@@ -120,13 +149,13 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         tarOutput.closeArchiveEntry();
     }
 
-    private long pack(Collection<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, TarArchiveOutputStream tarOutput) {
+    private long pack(Collection<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, TarArchiveOutputStream tarOutput, Set<BuildCacheKey> referencedKeys) {
         long entries = 0;
         for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
             String propertyName = propertySpec.getPropertyName();
             Map<String, FileContentSnapshot> outputs = outputSnapshots.get(propertyName);
             try {
-                entries += packProperty(propertySpec, outputs, tarOutput);
+                entries += packProperty(propertySpec, outputs, tarOutput, referencedKeys);
             } catch (Exception ex) {
                 throw new GradleException(String.format("Could not pack property '%s': %s", propertyName, ex.getMessage()), ex);
             }
@@ -134,7 +163,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return entries;
     }
 
-    private long packProperty(CacheableTaskOutputFilePropertySpec propertySpec, Map<String, FileContentSnapshot> outputSnapshots, TarArchiveOutputStream tarOutput) throws IOException {
+    private long packProperty(CacheableTaskOutputFilePropertySpec propertySpec, Map<String, FileContentSnapshot> outputSnapshots, TarArchiveOutputStream tarOutput, Set<BuildCacheKey> referencedKeys) throws IOException {
         String propertyName = propertySpec.getPropertyName();
         File root = propertySpec.getOutputFile();
         if (root == null) {
@@ -147,16 +176,16 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
         switch (propertySpec.getOutputType()) {
             case DIRECTORY:
-                return storeDirectoryProperty(propertyPath, root, outputSnapshots, tarOutput);
+                return storeDirectoryProperty(propertyPath, root, outputSnapshots, tarOutput, referencedKeys);
             case FILE:
-                storeFileProperty(propertyPath, root, tarOutput);
+                storeFileProperty(propertyPath, root, outputSnapshots.get(root.getAbsolutePath()), tarOutput, referencedKeys);
                 return 1;
             default:
                 throw new AssertionError();
         }
     }
 
-    private long storeDirectoryProperty(String propertyPath, File directory, Map<String, FileContentSnapshot> outputSnapshots, final TarArchiveOutputStream tarOutput) throws IOException {
+    private long storeDirectoryProperty(String propertyPath, File directory, Map<String, FileContentSnapshot> outputSnapshots, final TarArchiveOutputStream tarOutput, Set<BuildCacheKey> referencedKeys) throws IOException {
         if (!directory.isDirectory()) {
             throw new IllegalArgumentException(String.format("Expected '%s' to be a directory", directory));
         }
@@ -183,7 +212,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             int mode = fileSystem.getUnixMode(file);
             switch (entry.getValue().getType()) {
                 case RegularFile:
-                    storeFileEntry(file, targetPath, file.length(), mode, tarOutput);
+                    storeFileEntry(file, targetPath, entry.getValue(), mode, tarOutput, referencedKeys);
                     break;
                 case Directory:
                     storeDirectoryEntry(targetPath, mode, tarOutput);
@@ -198,15 +227,15 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return entries;
     }
 
-    private void storeFileProperty(String propertyPath, File file, TarArchiveOutputStream tarOutput) throws IOException {
+    private void storeFileProperty(String propertyPath, File file, @Nullable FileContentSnapshot snapshot, TarArchiveOutputStream tarOutput, Set<BuildCacheKey> referencedKeys) throws IOException {
         if (!file.isFile()) {
             throw new IllegalArgumentException(String.format("Expected '%s' to be a file", file));
         }
-        storeFileEntry(file, propertyPath, file.length(), fileSystem.getUnixMode(file), tarOutput);
+        storeFileEntry(file, propertyPath, snapshot, fileSystem.getUnixMode(file), tarOutput, referencedKeys);
     }
 
     private void storeMissingProperty(String propertyPath, TarArchiveOutputStream tarOutput) throws IOException {
-        createTarEntry("missing-" + propertyPath, 0, UnixStat.FILE_FLAG | UnixStat.DEFAULT_FILE_PERM, tarOutput);
+        createTarEntry(MISSING_PREFIX + propertyPath, 0, UnixStat.FILE_FLAG | UnixStat.DEFAULT_FILE_PERM, tarOutput);
         tarOutput.closeArchiveEntry();
     }
 
@@ -215,8 +244,17 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         tarOutput.closeArchiveEntry();
     }
 
-    private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) throws IOException {
-        createTarEntry(path, size, UnixStat.FILE_FLAG | mode, tarOutput);
+    private void storeFileEntry(File inputFile, String path, @Nullable FileContentSnapshot snapshot, int mode, TarArchiveOutputStream tarOutput, Set<BuildCacheKey> referencedKeys) throws IOException {
+        HashCode hash = snapshot == null ? null : snapshot.getContentMd5();
+        if (hash != null && blobStore.store(hash, inputFile)) {
+            referencedKeys.add(new TaskOutputContentKey(hash));
+            byte[] reference = hash.toString().getBytes(Charsets.UTF_8);
+            createTarEntry(BLOB_PREFIX + path, reference.length, UnixStat.FILE_FLAG | mode, tarOutput);
+            tarOutput.write(reference);
+            tarOutput.closeArchiveEntry();
+            return;
+        }
+        createTarEntry(path, inputFile.length(), UnixStat.FILE_FLAG | mode, tarOutput);
         FileInputStream input = new FileInputStream(inputFile);
         try {
             IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
@@ -252,42 +290,54 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         });
         TarArchiveEntry tarEntry;
         TaskOutputOriginMetadata originMetadata = null;
-        ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+        PendingSnapshots propertyFileSnapshots = new PendingSnapshots();
+        Set<BuildCacheKey> referencedKeys = new LinkedHashSet<BuildCacheKey>();
 
         long entries = 0;
-        while ((tarEntry = tarInput.getNextTarEntry()) != null) {
-            ++entries;
-            String name = tarEntry.getName();
+        boolean unpacked = false;
+        try {
+            while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                ++entries;
+                String name = tarEntry.getName();
+
+                if (name.equals(METADATA_PATH)) {
+                    // handle origin metadata
+                    originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
+                } else {
+                    // handle output property
+                    Matcher matcher = PROPERTY_PATH.matcher(name);
+                    if (!matcher.matches()) {
+                        throw new IllegalStateException("Cached result format error, invalid contents: " + name);
+                    }
 
-            if (name.equals(METADATA_PATH)) {
-                // handle origin metadata
-                originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
-            } else {
-                // handle output property
-                Matcher matcher = PROPERTY_PATH.matcher(name);
-                if (!matcher.matches()) {
-                    throw new IllegalStateException("Cached result format error, invalid contents: " + name);
-                }
+                    String propertyName = matcher.group(2);
+                    ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+                    if (propertySpec == null) {
+                        throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    }
 
-                String propertyName = matcher.group(2);
-                ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
-                if (propertySpec == null) {
-                    throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    String prefix = matcher.group(1);
+                    boolean outputMissing = MISSING_PREFIX.equals(prefix);
+                    boolean blob = BLOB_PREFIX.equals(prefix);
+                    String childPath = matcher.group(3);
+                    unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, blob, propertyFileSnapshots, referencedKeys);
                 }
-
-                boolean outputMissing = matcher.group(1) != null;
-                String childPath = matcher.group(3);
-                unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, propertyFileSnapshots);
+            }
+            unpacked = true;
+        } finally {
+            if (!unpacked) {
+                // Do not leave files being written in the background
+                propertyFileSnapshots.awaitQuietly();
             }
         }
         if (originMetadata == null) {
             throw new IllegalStateException("Cached result format error, no origin metadata was found.");
         }
 
-        return new UnpackResult(originMetadata, entries, propertyFileSnapshots.build());
+        return new UnpackResult(originMetadata, entries, propertyFileSnapshots.await(), referencedKeys);
     }
 
-    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, ImmutableMultimap.Builder<String, FileSnapshot> fileSnapshots) throws IOException {
+    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, boolean blob, PendingSnapshots fileSnapshots, Set<BuildCacheKey> referencedKeys) throws IOException {
         File propertyRoot = propertySpec.getOutputFile();
         String propertyName = propertySpec.getPropertyName();
         if (propertyRoot == null) {
@@ -325,23 +375,89 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
             outputFile = new File(propertyRoot, childPath);
         }
 
-        String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
-        RelativePath relativePath = root ? RelativePath.parse(!isDirEntry, outputFile.getName()) : RelativePath.parse(!isDirEntry, childPath);
+        final String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
+        final RelativePath relativePath = root ? RelativePath.parse(!isDirEntry, outputFile.getName()) : RelativePath.parse(!isDirEntry, childPath);
+        final int mode = entry.getMode() & FILE_PERMISSION_MASK;
         if (isDirEntry) {
             FileUtils.forceMkdir(outputFile);
-            fileSnapshots.put(propertyName, new DirectoryFileSnapshot(internedPath, relativePath, root));
+            fileSystem.chmod(outputFile, mode);
+            fileSnapshots.add(propertyName, Futures.<FileSnapshot>immediateFuture(new DirectoryFileSnapshot(internedPath, relativePath, root)));
+        } else if (blob) {
+            HashCode hash = unpackBlob(input, outputFile);
+            referencedKeys.add(new TaskOutputContentKey(hash));
+            fileSnapshots.add(propertyName, Futures.immediateFuture(fileWritten(outputFile, internedPath, relativePath, root, mode, hash)));
         } else {
-            OutputStream output = new FileOutputStream(outputFile);
-            HashCode hash;
-            try {
-                hash = streamHasher.hashCopy(input, output);
-            } finally {
-                IOUtils.closeQuietly(output);
+            final File file = outputFile;
+            final boolean isRoot = root;
+            fileSnapshots.add(propertyName, fileWriter.write(input, entry.getSize(), outputFile, new Transformer<FileSnapshot, HashCode>() {
+                @Override
+                public FileSnapshot transform(HashCode hash) {
+                    return fileWritten(file, internedPath, relativePath, isRoot, mode, hash);
+                }
+            }));
+        }
+    }
+
+    private FileSnapshot fileWritten(File outputFile, String internedPath, RelativePath relativePath, boolean root, int mode, HashCode hash) {
+        FileHashSnapshot contentSnapshot = new FileHashSnapshot(hash, outputFile.lastModified());
+        fileSystem.chmod(outputFile, mode);
+        return new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot);
+    }
+
+    private HashCode unpackFile(InputStream input, File outputFile) throws IOException {
+        OutputStream output = new FileOutputStream(outputFile);
+        try {
+            return streamHasher.hashCopy(input, output);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    private HashCode unpackBlob(InputStream input, final File outputFile) throws IOException {
+        HashCode expectedHash = HashCode.fromString(IOUtils.toString(input, Charsets.UTF_8));
+        final HashCode[] hash = new HashCode[1];
+        boolean loaded = blobStore.load(expectedHash, new TaskOutputBlobStore.ContentReader() {
+            @Override
+            public void read(InputStream blobInput) throws IOException {
+                hash[0] = unpackFile(blobInput, outputFile);
+            }
+        });
+        if (!loaded) {
+            throw new IllegalStateException(String.format("Cached result format error, contents %s of '%s' not found.", expectedHash, outputFile));
+        }
+        if (!expectedHash.equals(hash[0])) {
+            throw new IllegalStateException(String.format("Cached result format error, contents of '%s' do not match hash %s.", outputFile, expectedHash));
+        }
+        return hash[0];
+    }
+
+    /**
+     * The snapshots of the unpacked files, in the order they were unpacked, some of which may still be being written.
+     */
+    private static class PendingSnapshots {
+        private final List<String> propertyNames = new ArrayList<String>();
+        private final List<Future<FileSnapshot>> snapshots = new ArrayList<Future<FileSnapshot>>();
+
+        void add(String propertyName, Future<FileSnapshot> snapshot) {
+            propertyNames.add(propertyName);
+            snapshots.add(snapshot);
+        }
+
+        ImmutableListMultimap<String, FileSnapshot> await() throws IOException {
+            List<FileSnapshot> results = TaskOutputFileWriter.awaitAll(snapshots);
+            ImmutableListMultimap.Builder<String, FileSnapshot> builder = ImmutableListMultimap.builder();
+            for (int i = 0; i < results.size(); i++) {
+                builder.put(propertyNames.get(i), results.get(i));
             }
-            FileHashSnapshot contentSnapshot = new FileHashSnapshot(hash, outputFile.lastModified());
-            fileSnapshots.put(propertyName, new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot));
+            return builder.build();
         }
 
-        fileSystem.chmod(outputFile, entry.getMode() & FILE_PERMISSION_MASK);
+        void awaitQuietly() {
+            try {
+                TaskOutputFileWriter.awaitAll(snapshots);
+            } catch (Throwable e) {
+                // Ignore, as unpacking has already failed
+            }
+        }
     }
 }
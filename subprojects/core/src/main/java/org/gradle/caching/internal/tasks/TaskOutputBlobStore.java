@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.internal.hash.HashCode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stores the contents of output files by their content hash, so that a file produced by many tasks is stored once only.
+ */
+public interface TaskOutputBlobStore {
+    /**
+     * Does not store any contents, so that output files are always packed together with the cache entry.
+     */
+    TaskOutputBlobStore NONE = new TaskOutputBlobStore() {
+        @Override
+        public boolean store(HashCode hash, File file) {
+            return false;
+        }
+
+        @Override
+        public boolean load(HashCode hash, ContentReader reader) {
+            return false;
+        }
+    };
+
+    /**
+     * Stores the contents of the given file, unless contents with the given hash are already stored. Returns false when the contents of the file
+     * are not stored here, and need to be packed together with the cache entry instead.
+     */
+    boolean store(HashCode hash, File file) throws IOException;
+
+    /**
+     * Reads the contents with the given hash. Returns false when no such contents are stored.
+     */
+    boolean load(HashCode hash, ContentReader reader) throws IOException;
+
+    interface ContentReader {
+        void read(InputStream input) throws IOException;
+    }
+}
@@ -142,6 +142,11 @@ public class TaskOutputCacheCommandFactory {
                 public TaskOutputOriginMetadata getMetadata() {
                     return unpackResult.getOriginMetadata();
                 }
+
+                @Override
+                public Collection<BuildCacheKey> getReferencedKeys() {
+                    return unpackResult.getReferencedKeys();
+                }
             };
         }
 
@@ -237,6 +242,11 @@ public class TaskOutputCacheCommandFactory {
                 public long getArtifactEntryCount() {
                     return packResult.getEntries();
                 }
+
+                @Override
+                public Collection<BuildCacheKey> getReferencedKeys() {
+                    return packResult.getReferencedKeys();
+                }
             };
         }
     }
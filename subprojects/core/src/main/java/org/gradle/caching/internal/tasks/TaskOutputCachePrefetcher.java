@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.api.Project;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.execution.taskgraph.ReadyTaskListener;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.gradle.internal.work.WorkerLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.tryLock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * Calculates the cache key of each cacheable task as soon as the task is ready to execute, and asks the build cache to prefetch the entry for it.
+ *
+ * <p>A task is ready once all of its dependencies have completed, so its inputs are known, but it may have to wait for a worker or for another task of its project
+ * to complete before it executes. The cache key is calculated on a separate thread, which acts as a worker: it holds a worker lease and the lock of the task's project
+ * while it calculates the key. A task is not prefetched when no worker lease is available or its project is locked, as the key would have to wait for a busy worker or project.</p>
+ *
+ * <p>Tasks that become ready while keys are being calculated are collected, and the entries for them are prefetched together.</p>
+ */
+public class TaskOutputCachePrefetcher implements ReadyTaskListener, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskOutputCachePrefetcher.class);
+
+    private final BuildCacheController buildCacheController;
+    private final TaskArtifactStateRepository repository;
+    private final WorkerLeaseService workerLeaseService;
+    private final ResourceLockCoordinationService coordinationService;
+    private final ManagedExecutor executor;
+    private final Queue<TaskInternal> readyTasks = new ConcurrentLinkedQueue<TaskInternal>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // The worker lease of the prefetch thread, only used by that thread
+    private WorkerLeaseRegistry.WorkerLease workerLease;
+
+    public TaskOutputCachePrefetcher(BuildCacheController buildCacheController, TaskArtifactStateRepository repository, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, ExecutorFactory executorFactory) {
+        this.buildCacheController = buildCacheController;
+        this.repository = repository;
+        this.workerLeaseService = workerLeaseService;
+        this.coordinationService = coordinationService;
+        this.executor = executorFactory.create("Task output cache prefetch", 1);
+    }
+
+    @Override
+    public void onReady(TaskInternal task) {
+        readyTasks.add(task);
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    scheduled.set(false);
+                    prefetchReadyTasks();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Stopped
+            readyTasks.clear();
+        }
+    }
+
+    private void prefetchReadyTasks() {
+        List<BuildCacheKey> keys = new ArrayList<BuildCacheKey>();
+        for (TaskInternal task = readyTasks.poll(); task != null; task = readyTasks.poll()) {
+            BuildCacheKey key = calculateKey(task);
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        if (!keys.isEmpty()) {
+            buildCacheController.prefetch(keys);
+        }
+    }
+
+    @Nullable
+    private BuildCacheKey calculateKey(TaskInternal task) {
+        if (workerLease == null) {
+            workerLease = workerLeaseService.getWorkerLease();
+        }
+        ResourceLock projectLock = getProjectLock(task.getProject());
+        if (!coordinationService.withStateLock(tryLock(workerLease, projectLock))) {
+            return null;
+        }
+        try {
+            if (!task.getState().getExecuted()) {
+                return calculateKeyWithProjectLock(task);
+            }
+            return null;
+        } finally {
+            coordinationService.withStateLock(unlock(workerLease, projectLock));
+        }
+    }
+
+    @Nullable
+    private BuildCacheKey calculateKeyWithProjectLock(TaskInternal task) {
+        try {
+            TaskOutputsInternal outputs = task.getOutputs();
+            if (!outputs.getHasOutput() || !outputs.getCachingState().isEnabled()) {
+                return null;
+            }
+            TaskOutputCachingBuildCacheKey cacheKey = repository.getStateFor(task).calculateCacheKey();
+            return cacheKey.isValid() ? cacheKey : null;
+        } catch (RuntimeException e) {
+            // The failure is reported when the task executes
+            LOGGER.debug("Could not calculate build cache key for {} ahead of execution.", task, e);
+            return null;
+        }
+    }
+
+    private ResourceLock getProjectLock(Project project) {
+        String gradlePath = ((GradleInternal) project.getGradle()).getIdentityPath().toString();
+        String projectPath = ((ProjectInternal) project).getIdentityPath().toString();
+        return workerLeaseService.getProjectLock(gradlePath, projectPath);
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+        executor.stop();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * The compression used for packed task output.
+ *
+ * <p>All modes produce GZIP streams, so that an entry can be unpacked regardless of the mode it was packed with, and the mode does not need to be part of the cache key.</p>
+ */
+public enum TaskOutputCompression {
+    /**
+     * Balances the size of entries with the time taken to pack them.
+     */
+    DEFAULT(Deflater.DEFAULT_COMPRESSION),
+    /**
+     * Packs several times faster than {@link #DEFAULT}, for somewhat larger entries. Useful when the build cache is on a fast network.
+     */
+    FAST(Deflater.BEST_SPEED),
+    /**
+     * Does not compress the contents at all, only adding the GZIP framing and CRC32 checks. Useful for outputs that are already compressed, such as archives.
+     */
+    STORE(Deflater.NO_COMPRESSION);
+
+    /**
+     * Selects the compression used for packing task output, one of {@code default}, {@code fast} or {@code store}.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.caching.compression";
+
+    private final int level;
+
+    TaskOutputCompression(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public static TaskOutputCompression fromSystemProperty() {
+        String value = System.getProperty(COMPRESSION_PROPERTY);
+        if (value == null) {
+            return DEFAULT;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unknown build cache compression '%s' set by %s, expected one of default, fast or store.", value, COMPRESSION_PROPERTY));
+        }
+    }
+}
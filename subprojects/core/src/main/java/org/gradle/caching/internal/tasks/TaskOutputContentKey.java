@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.hash.HashCode;
+
+/**
+ * The key of the contents of an output file that are stored in the build cache separately from the cache entries that refer to them.
+ */
+public class TaskOutputContentKey implements BuildCacheKey {
+    private final String hashCode;
+
+    public TaskOutputContentKey(HashCode hash) {
+        this.hashCode = hash.toString();
+    }
+
+    @Override
+    public String getHashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "content " + hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return hashCode.equals(((TaskOutputContentKey) o).hashCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getDisplayName();
+    }
+}
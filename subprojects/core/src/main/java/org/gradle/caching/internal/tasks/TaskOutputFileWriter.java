@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.Transformer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.StreamHasher;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Writes the files unpacked from a cache entry, hashing their contents as they are written.
+ *
+ * <p>Reading a cache entry is inherently sequential, but the files it contains can be written concurrently. Smaller files are read into memory and written on a pool of threads,
+ * which saves most of the time spent creating and closing files when unpacking many of them. Larger files are written on the calling thread, as are all files when no pool is used.
+ * The amount of contents held in memory at once is bounded.</p>
+ */
+public class TaskOutputFileWriter implements Stoppable {
+    /**
+     * The number of threads to write unpacked files with. Files are written on the unpacking thread when set to 1.
+     */
+    public static final String PARALLELISM_PROPERTY = "org.gradle.caching.unpack.parallelism";
+
+    private static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+
+    private final StreamHasher streamHasher;
+    private final ManagedExecutor executor;
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+
+    /**
+     * Creates a writer that writes all files on the calling thread.
+     */
+    public TaskOutputFileWriter(StreamHasher streamHasher) {
+        this.streamHasher = streamHasher;
+        this.executor = null;
+    }
+
+    public TaskOutputFileWriter(StreamHasher streamHasher, ExecutorFactory executorFactory, int parallelism) {
+        this.streamHasher = streamHasher;
+        this.executor = parallelism > 1 ? executorFactory.create("Build cache unpack", parallelism) : null;
+    }
+
+    public static int getParallelism() {
+        return Integer.getInteger(PARALLELISM_PROPERTY, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Writes the given number of bytes from the input to the given file. Once the file has been written, the given action is called with the hash of its contents.
+     *
+     * <p>The input is fully consumed when this method returns, though the file may not have been written yet. Use {@link #awaitAll(List)} to wait for the results.</p>
+     */
+    public <T> Future<T> write(InputStream input, long size, final File file, final Transformer<T, HashCode> onWritten) throws IOException {
+        if (executor == null || size > MAX_BUFFERED_FILE_SIZE) {
+            return Futures.immediateFuture(onWritten.transform(writeFile(input, file)));
+        }
+        final int bufferSize = (int) size;
+        bufferedBytes.acquireUninterruptibly(bufferSize);
+        final byte[] contents;
+        try {
+            contents = IOUtils.toByteArray(input, size);
+        } catch (IOException e) {
+            bufferedBytes.release(bufferSize);
+            throw e;
+        }
+        return executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                HashCode hash;
+                try {
+                    hash = writeFile(new ByteArrayInputStream(contents), file);
+                } finally {
+                    bufferedBytes.release(bufferSize);
+                }
+                return onWritten.transform(hash);
+            }
+        });
+    }
+
+    private HashCode writeFile(InputStream input, File file) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            return streamHasher.hashCopy(input, output);
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Waits for all of the given writes to complete, and returns their results in order. Fails with the first failure, once all writes have completed.
+     */
+    public static <T> List<T> awaitAll(List<Future<T>> writes) throws IOException {
+        List<T> results = new ArrayList<T>(writes.size());
+        Throwable failure = null;
+        for (Future<T> write : writes) {
+            try {
+                results.add(Uninterruptibles.getUninterruptibly(write));
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+        return results;
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
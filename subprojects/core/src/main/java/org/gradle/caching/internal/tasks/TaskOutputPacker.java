@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableListMultimap;
 import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
 import org.gradle.api.internal.changedetection.state.FileSnapshot;
 import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
@@ -27,6 +28,8 @@ import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.SortedSet;
 
@@ -43,14 +46,27 @@ public interface TaskOutputPacker {
 
     class PackResult {
         private final long entries;
+        private final Collection<BuildCacheKey> referencedKeys;
 
         public PackResult(long entries) {
+            this(entries, Collections.<BuildCacheKey>emptyList());
+        }
+
+        public PackResult(long entries, Collection<BuildCacheKey> referencedKeys) {
             this.entries = entries;
+            this.referencedKeys = referencedKeys;
         }
 
         public long getEntries() {
             return entries;
         }
+
+        /**
+         * The keys of the contents stored in the build cache that the packed entry refers to.
+         */
+        public Collection<BuildCacheKey> getReferencedKeys() {
+            return referencedKeys;
+        }
     }
 
     UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException;
@@ -59,11 +75,17 @@ public interface TaskOutputPacker {
         private final TaskOutputOriginMetadata originMetadata;
         private final long entries;
         private final ImmutableListMultimap<String, FileSnapshot> snapshots;
+        private final Collection<BuildCacheKey> referencedKeys;
 
         public UnpackResult(TaskOutputOriginMetadata originMetadata, long entries, ImmutableListMultimap<String, FileSnapshot> snapshots) {
+            this(originMetadata, entries, snapshots, Collections.<BuildCacheKey>emptyList());
+        }
+
+        public UnpackResult(TaskOutputOriginMetadata originMetadata, long entries, ImmutableListMultimap<String, FileSnapshot> snapshots, Collection<BuildCacheKey> referencedKeys) {
             this.originMetadata = originMetadata;
             this.entries = entries;
             this.snapshots = snapshots;
+            this.referencedKeys = referencedKeys;
         }
 
         public TaskOutputOriginMetadata getOriginMetadata() {
@@ -77,5 +99,12 @@ public interface TaskOutputPacker {
         public ImmutableListMultimap<String, FileSnapshot> getSnapshots() {
             return snapshots;
         }
+
+        /**
+         * The keys of the contents stored in the build cache that the unpacked entry refers to.
+         */
+        public Collection<BuildCacheKey> getReferencedKeys() {
+            return referencedKeys;
+        }
     }
 }
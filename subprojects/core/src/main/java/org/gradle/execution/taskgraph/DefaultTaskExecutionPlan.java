@@ -18,7 +18,6 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -42,6 +41,7 @@ import org.gradle.api.specs.Specs;
 import org.gradle.execution.MultipleBuildFailures;
 import org.gradle.execution.TaskFailureHandler;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.Factory;
 import org.gradle.internal.Pair;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.graph.CachingDirectedGraphWalker;
@@ -53,11 +53,12 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.Path;
-import org.gradle.util.TextUtil;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -65,6 +66,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -73,7 +75,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -89,35 +90,58 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
  * methods.
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    /**
+     * Enables ranking the ready tasks by the longest path of remaining work that starts at them, using the durations of the tasks in previous builds.
+     */
+    public static final String CRITICAL_PATH_PROPERTY = "org.gradle.internal.tasks.critical-path";
+
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final ReadyTaskQueue executionQueue = new ReadyTaskQueue();
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private TaskFailureHandler failureHandler = new RethrowingFailureHandler();
+    private ReadyTaskListener readyTaskListener;
 
     private final BuildCancellationToken cancellationToken;
     private final Set<TaskInfo> runningTasks = Sets.newIdentityHashSet();
     private final Set<Task> filteredTasks = Sets.newIdentityHashSet();
     private final Map<TaskInfo, TaskMutationInfo> taskMutations = Maps.newIdentityHashMap();
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
-    private final Map<Pair<TaskInfo, TaskInfo>, Boolean> reachableCache = Maps.newHashMap();
-    private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
+    private final Map<TaskInfo, Integer> planPositions = Maps.newHashMap();
+    private final Map<TaskInfo, BitSet> reachableTasks = Maps.newHashMap();
+    private final PathOwnerIndex<TaskInfo> runningTaskMutations = new PathOwnerIndex<TaskInfo>();
+    private final PathOwnerIndex<TaskInfo> consumedOutputs = new PathOwnerIndex<TaskInfo>();
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final Factory<? extends TaskDurationHistory> durationHistoryFactory;
+    private TaskDurationHistory durationHistory;
+    private final Map<TaskInfo, Timer> taskTimers = Maps.newIdentityHashMap();
 
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle) {
+        this(cancellationToken, coordinationService, workerLeaseService, gradle, null);
+    }
+
+    /**
+     * @param durationHistoryFactory Creates the history used to rank the ready tasks by their longest remaining path. Ready tasks are selected in plan order when null.
+     */
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle, @Nullable Factory<? extends TaskDurationHistory> durationHistoryFactory) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.durationHistoryFactory = durationHistoryFactory;
+    }
+
+    public static boolean isCriticalPathSchedulingEnabled() {
+        return Boolean.getBoolean(CRITICAL_PATH_PROPERTY);
     }
 
     @Override
@@ -353,9 +377,78 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
+        planPositions.clear();
+        reachableTasks.clear();
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            planPositions.put(taskInfo, planPositions.size());
+        }
+
         executionQueue.clear();
-        executionQueue.addAll(executionPlan.values());
+        TaskDurationHistory durationHistory = getDurationHistory();
+        if (durationHistory == null) {
+            for (TaskInfo taskInfo : executionPlan.values()) {
+                executionQueue.add(taskInfo);
+            }
+        } else {
+            Map<TaskInfo, Long> ranks = rankByLongestRemainingPath(durationHistory);
+            for (TaskInfo taskInfo : executionPlan.values()) {
+                executionQueue.add(taskInfo, ranks.get(taskInfo));
+            }
+        }
+    }
+
+    @Nullable
+    private TaskDurationHistory getDurationHistory() {
+        if (durationHistory == null && durationHistoryFactory != null) {
+            durationHistory = durationHistoryFactory.create();
+        }
+        return durationHistory;
+    }
+
+    /**
+     * Ranks each task of the plan by the total duration of the longest chain of tasks that starts with the task and follows the dependency, mustRunAfter
+     * and shouldRunAfter edges back towards the end of the plan. A task always ranks higher than the tasks that have to or should run after it, so that
+     * ranking does not reorder tasks that are ordered relative to each other.
+     */
+    private Map<TaskInfo, Long> rankByLongestRemainingPath(TaskDurationHistory durationHistory) {
+        Map<TaskInfo, Long> durations = Maps.newHashMap();
+        long knownTotal = 0;
+        int knownCount = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            Long duration = durationHistory.getDuration(taskInfo.getTask());
+            if (duration != null) {
+                durations.put(taskInfo, duration);
+                knownTotal += duration;
+                knownCount++;
+            }
+        }
+        // Assume that tasks that have not run before take as long as an average task
+        long unknownDuration = knownCount == 0 ? 1 : knownTotal / knownCount;
+
+        Map<TaskInfo, Long> remainingAfter = Maps.newHashMap();
+        Map<TaskInfo, Long> ranks = Maps.newHashMap();
+        List<TaskInfo> tasks = new ArrayList<TaskInfo>(executionPlan.values());
+        // A task always comes after the tasks it depends on or should run after in the plan, so visit the plan backwards
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = tasks.get(i);
+            Long duration = durations.get(taskInfo);
+            Long after = remainingAfter.get(taskInfo);
+            long rank = Math.max(1, duration == null ? unknownDuration : duration) + (after == null ? 0 : after);
+            ranks.put(taskInfo, rank);
+            updateRemainingAfter(remainingAfter, taskInfo.getDependencySuccessors(), rank);
+            updateRemainingAfter(remainingAfter, taskInfo.getMustSuccessors(), rank);
+            updateRemainingAfter(remainingAfter, taskInfo.getShouldSuccessors(), rank);
+        }
+        return ranks;
+    }
 
+    private static void updateRemainingAfter(Map<TaskInfo, Long> remainingAfter, Iterable<TaskInfo> predecessors, long rank) {
+        for (TaskInfo predecessor : predecessors) {
+            Long current = remainingAfter.get(predecessor);
+            if (current == null || current < rank) {
+                remainingAfter.put(predecessor, rank);
+            }
+        }
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -513,9 +606,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 failures.clear();
                 taskMutations.clear();
                 canonicalizedFileCache.clear();
-                reachableCache.clear();
-                dependenciesCompleteCache.clear();
+                planPositions.clear();
+                reachableTasks.clear();
+                runningTaskMutations.clear();
+                consumedOutputs.clear();
                 runningTasks.clear();
+                taskTimers.clear();
                 return FINISHED;
             }
         });
@@ -538,6 +634,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    public void useReadyTaskListener(ReadyTaskListener listener) {
+        this.readyTaskListener = listener;
+    }
+
     @Override
     public boolean executeWithTask(final WorkerLease workerLease, final Action<TaskInfo> taskExecution) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
@@ -556,6 +656,8 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     return FINISHED;
                 }
 
+                notifyReadyTasks();
+
                 if (allProjectsLocked()) {
                     return RETRY;
                 }
@@ -581,36 +683,46 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return workRemaining.get();
     }
 
+    private void notifyReadyTasks() {
+        List<TaskInfo> readyTasks = executionQueue.takeNewlyReadyTasks();
+        if (readyTaskListener == null) {
+            return;
+        }
+        for (TaskInfo taskInfo : readyTasks) {
+            readyTaskListener.onReady(taskInfo.getTask());
+        }
+    }
+
     private TaskInfo selectNextTask(final WorkerLease workerLease) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
-        final Iterator<TaskInfo> iterator = executionQueue.iterator();
+        // Only visits the tasks whose dependencies are complete
+        final Iterator<TaskInfo> iterator = executionQueue.readyTasks();
         while (iterator.hasNext()) {
             final TaskInfo taskInfo = iterator.next();
-            if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
-                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
-                    @Override
-                    public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
-                        ResourceLock projectLock = getProjectLock(taskInfo);
-                        // TODO: convert output file checks to a resource lock
-                        if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
-                            return FAILED;
-                        }
-
-                        selected.set(taskInfo);
-                        if (taskInfo.allDependenciesSuccessful()) {
-                            recordTaskStarted(taskInfo);
-                            taskInfo.startExecution();
-                        } else {
-                            taskInfo.skipExecution();
-                        }
-                        iterator.remove();
-                        return FINISHED;
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ResourceLock projectLock = getProjectLock(taskInfo);
+                    // TODO: convert output file checks to a resource lock
+                    if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
+                        return FAILED;
                     }
-                });
 
-                if (selected.get() != null) {
-                    break;
+                    selected.set(taskInfo);
+                    iterator.remove();
+                    if (taskInfo.allDependenciesSuccessful()) {
+                        recordTaskStarted(taskInfo);
+                        taskInfo.startExecution();
+                    } else {
+                        taskInfo.skipExecution();
+                        executionQueue.taskComplete(taskInfo);
+                    }
+                    return FINISHED;
                 }
+            });
+
+            if (selected.get() != null) {
+                break;
             }
         }
         return selected.get();
@@ -629,19 +741,6 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
-    private boolean allDependenciesComplete(TaskInfo taskInfo) {
-        if (dependenciesCompleteCache.contains(taskInfo)) {
-            return true;
-        }
-
-        boolean dependenciesComplete = taskInfo.allDependenciesComplete();
-        if (dependenciesComplete) {
-            dependenciesCompleteCache.add(taskInfo);
-        }
-
-        return dependenciesComplete;
-    }
-
     private boolean allProjectsLocked() {
         for (ResourceLock lock : projectLocks.values()) {
             if (!lock.isLocked()) {
@@ -662,18 +761,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean canRunWithCurrentlyExecutedTasks(TaskInfo taskInfo) {
-        Set<String> candidateTaskDestroyables = getDestroyablePaths(taskInfo);
-
-        if (!candidateTaskDestroyables.isEmpty() && !taskInfo.getTask().getOutputs().getFileProperties().isEmpty()) {
-            throw new IllegalStateException("Task " + taskInfo.getTask().getIdentityPath() + " has both outputs and destroyables defined.  A task can define either outputs or destroyables, but not both.");
-        }
-
-        if (!candidateTaskDestroyables.isEmpty() && !taskInfo.getTask().getInputs().getFileProperties().isEmpty()) {
-            throw new IllegalStateException("Task " + taskInfo.getTask().getIdentityPath() + " has both inputs and destroyables defined.  A task can define either inputs or destroyables, but not both.");
-        }
+        TaskMutationInfo taskMutationInfo = resolveMutations(taskInfo);
+        Set<String> candidateTaskDestroyables = taskMutationInfo.destroyablePaths;
 
         if (!runningTasks.isEmpty()) {
-            Set<String> candidateTaskOutputs = getOutputPaths(taskInfo);
+            Set<String> candidateTaskOutputs = taskMutationInfo.outputPaths;
             Set<String> candidateTaskMutations = !candidateTaskOutputs.isEmpty() ? candidateTaskOutputs : candidateTaskDestroyables;
             Pair<TaskInfo, String> overlap = firstRunningTaskWithOverlappingMutations(candidateTaskMutations);
             if (overlap != null) {
@@ -689,6 +781,32 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return true;
     }
 
+    /**
+     * Resolves the output and destroyable paths of the given task, the first time the task is considered for execution. By then the tasks it depends on
+     * are complete, so the paths do not change afterwards.
+     */
+    private TaskMutationInfo resolveMutations(TaskInfo taskInfo) {
+        TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
+        if (taskMutationInfo.resolved) {
+            return taskMutationInfo;
+        }
+
+        Set<String> destroyablePaths = getDestroyablePaths(taskInfo);
+
+        if (!destroyablePaths.isEmpty() && !taskInfo.getTask().getOutputs().getFileProperties().isEmpty()) {
+            throw new IllegalStateException("Task " + taskInfo.getTask().getIdentityPath() + " has both outputs and destroyables defined.  A task can define either outputs or destroyables, but not both.");
+        }
+
+        if (!destroyablePaths.isEmpty() && !taskInfo.getTask().getInputs().getFileProperties().isEmpty()) {
+            throw new IllegalStateException("Task " + taskInfo.getTask().getIdentityPath() + " has both inputs and destroyables defined.  A task can define either inputs or destroyables, but not both.");
+        }
+
+        taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
+        taskMutationInfo.destroyablePaths.addAll(destroyablePaths);
+        taskMutationInfo.resolved = true;
+        return taskMutationInfo;
+    }
+
     private Set<String> canonicalizedPaths(final Map<File, String> cache, Iterable<File> files) {
         Function<File, String> canonicalize = new Function<File, String>() {
             @Override
@@ -711,14 +829,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     @Nullable
     private Pair<TaskInfo, String> firstRunningTaskWithOverlappingMutations(Set<String> candidateTaskMutations) {
-        if (!candidateTaskMutations.isEmpty()) {
-            for (TaskInfo runningTask : runningTasks) {
-                TaskMutationInfo taskMutationInfo = taskMutations.get(runningTask);
-                Iterable<String> runningTaskMutations = Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths);
-                String firstOverlap = findFirstOverlap(candidateTaskMutations, runningTaskMutations);
-                if (firstOverlap != null) {
-                    return Pair.of(runningTask, firstOverlap);
-                }
+        for (String path : candidateTaskMutations) {
+            Pair<TaskInfo, String> overlap = runningTaskMutations.findFirstOverlap(path);
+            if (overlap != null) {
+                return overlap;
             }
         }
 
@@ -727,18 +841,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     @Nullable
     private Pair<TaskInfo, String> firstTaskWithDestroyedIntermediateInput(final TaskInfo taskInfo, Set<String> destroyablePaths) {
-        if (!destroyablePaths.isEmpty()) {
-            Iterator<TaskMutationInfo> iterator = taskMutations.values().iterator();
-            while (iterator.hasNext()) {
-                TaskMutationInfo taskMutationInfo = iterator.next();
-                if (taskMutationInfo.task.isComplete() && !taskMutationInfo.consumingTasks.isEmpty()) {
-                    String firstOverlap = findFirstOverlap(destroyablePaths, taskMutationInfo.outputPaths);
-                    if (firstOverlap != null) {
-                        for (TaskInfo consumingTask : taskMutationInfo.consumingTasks) {
-                            if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
-                                return Pair.of(consumingTask, firstOverlap);
-                            }
-                        }
+        if (consumedOutputs.isEmpty()) {
+            return null;
+        }
+        for (String path : destroyablePaths) {
+            for (Map.Entry<TaskInfo, String> overlap : consumedOutputs.findOverlaps(path).entrySet()) {
+                for (TaskInfo consumingTask : taskMutations.get(overlap.getKey()).consumingTasks) {
+                    if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
+                        return Pair.of(consumingTask, overlap.getValue());
                     }
                 }
             }
@@ -746,38 +856,45 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return null;
     }
 
+    /**
+     * Returns true when the given task of the plan has to wait for the other given task of the plan, through the incomplete tasks it depends on or must run after.
+     * The tasks reachable from a task are calculated the first time they are needed and kept as a set of plan positions, reusing the sets already kept for
+     * the tasks on the way.
+     */
     private boolean isReachableFrom(TaskInfo fromTask, TaskInfo toTask) {
-        Pair<TaskInfo, TaskInfo> taskPair = Pair.of(fromTask, toTask);
-        if (reachableCache.get(taskPair) != null) {
-            return reachableCache.get(taskPair);
+        BitSet reachable = reachableTasks.get(fromTask);
+        if (reachable == null) {
+            reachable = incompleteTasksReachableFrom(fromTask);
+            reachableTasks.put(fromTask, reachable);
         }
+        Integer position = planPositions.get(toTask);
+        return position != null && reachable.get(position);
+    }
 
-        boolean reachable = false;
-        for (TaskInfo dependency : Iterables.concat(fromTask.getMustSuccessors(), fromTask.getDependencySuccessors())) {
-            if (!dependency.isComplete()) {
-                if (dependency == toTask) {
-                    reachable = true;
+    private BitSet incompleteTasksReachableFrom(TaskInfo fromTask) {
+        BitSet reachable = new BitSet();
+        Set<TaskInfo> visited = Sets.newIdentityHashSet();
+        Deque<TaskInfo> queue = new ArrayDeque<TaskInfo>();
+        queue.add(fromTask);
+        while (!queue.isEmpty()) {
+            TaskInfo task = queue.pop();
+            for (TaskInfo dependency : Iterables.concat(task.getMustSuccessors(), task.getDependencySuccessors())) {
+                if (dependency.isComplete() || !visited.add(dependency)) {
+                    continue;
                 }
-                if (isReachableFrom(dependency, toTask)) {
-                    reachable = true;
+                Integer position = planPositions.get(dependency);
+                if (position != null) {
+                    reachable.set(position);
                 }
-            }
-        }
-
-        reachableCache.put(taskPair, reachable);
-        return reachable;
-    }
-
-    private String findFirstOverlap(Iterable<String> paths1, Iterable<String> paths2) {
-        for (String path1 : paths1) {
-            for (String path2 : paths2) {
-                if (pathsOverlap(path1, path2)) {
-                    return TextUtil.shorterOf(path1, path2);
+                BitSet reachableFromDependency = reachableTasks.get(dependency);
+                if (reachableFromDependency != null) {
+                    reachable.or(reachableFromDependency);
+                } else {
+                    queue.add(dependency);
                 }
             }
         }
-
-        return null;
+        return reachable;
     }
 
     private Set<String> getOutputPaths(TaskInfo task) {
@@ -792,42 +909,50 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return canonicalizedPaths(canonicalizedFileCache, ((TaskDestroyablesInternal)task.getTask().getDestroyables()).getFilesReadOnly());
     }
 
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
-    }
-
     private void recordTaskStarted(TaskInfo taskInfo) {
         runningTasks.add(taskInfo);
-        TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
-        taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
-        taskMutationInfo.destroyablePaths.addAll(getDestroyablePaths(taskInfo));
+        if (durationHistory != null) {
+            taskTimers.put(taskInfo, Time.startTimer());
+        }
+        TaskMutationInfo taskMutationInfo = resolveMutations(taskInfo);
+        for (String path : taskMutationInfo.outputPaths) {
+            runningTaskMutations.add(path, taskInfo);
+        }
+        for (String path : taskMutationInfo.destroyablePaths) {
+            runningTaskMutations.add(path, taskInfo);
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
         runningTasks.remove(taskInfo);
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
+        for (String path : taskMutationInfo.outputPaths) {
+            runningTaskMutations.remove(path, taskInfo);
+        }
+        for (String path : taskMutationInfo.destroyablePaths) {
+            runningTaskMutations.remove(path, taskInfo);
+        }
         for (TaskInfo producerTask : taskMutationInfo.consumesOutputOf) {
             TaskMutationInfo producerTaskMutationInfo = taskMutations.get(producerTask);
             if (producerTaskMutationInfo.consumingTasks.remove(taskInfo) && canRemoveTaskMutation(producerTaskMutationInfo)) {
                 taskMutations.remove(producerTask);
+                removeConsumedOutputs(producerTaskMutationInfo);
             }
         }
 
         if (canRemoveTaskMutation(taskMutationInfo)) {
             taskMutations.remove(taskInfo);
+        } else if (!taskMutationInfo.consumingTasks.isEmpty()) {
+            // Keep track of the outputs that are still to be consumed, so that they are not destroyed before they are
+            for (String path : taskMutationInfo.outputPaths) {
+                consumedOutputs.add(path, taskInfo);
+            }
+        }
+    }
+
+    private void removeConsumedOutputs(TaskMutationInfo taskMutationInfo) {
+        for (String path : taskMutationInfo.outputPaths) {
+            consumedOutputs.remove(path, taskMutationInfo.task);
         }
     }
 
@@ -836,6 +961,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     public void taskComplete(final TaskInfo taskInfo) {
+        final AtomicReference<Long> duration = new AtomicReference<Long>();
         coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
             @Override
             public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
@@ -844,17 +970,29 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     handleFailure(taskInfo);
                 }
 
+                Timer timer = taskTimers.remove(taskInfo);
+                if (timer != null && !taskInfo.isFailed()) {
+                    duration.set(timer.getElapsedMillis());
+                }
+
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                executionQueue.taskComplete(taskInfo);
                 return FINISHED;
             }
         });
+        if (duration.get() != null) {
+            // Write to the history outside of the state lock, so that other workers are not held up
+            durationHistory.recordDuration(taskInfo.getTask(), duration.get());
+        }
     }
 
     private void enforceFinalizerTasks(TaskInfo taskInfo) {
         for (TaskInfo finalizerNode : taskInfo.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
-                enforceWithDependencies(finalizerNode, Sets.<TaskInfo>newHashSet());
+                Set<TaskInfo> enforcedTasks = Sets.newHashSet();
+                enforceWithDependencies(finalizerNode, enforcedTasks);
+                executionQueue.tasksEnforced(enforcedTasks);
             }
         }
     }
@@ -921,6 +1059,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 aborted = true;
             }
         }
+        if (aborted) {
+            executionQueue.recheckWaitingTasks();
+        }
         return aborted;
     }
 
@@ -963,12 +1104,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean workRemaining() {
-        for (TaskInfo taskInfo : executionQueue) {
-            if (!taskInfo.isComplete()) {
-                return true;
-            }
-        }
-        return false;
+        return executionQueue.hasIncompleteTasks();
     }
 
     private static class GraphEdge {
@@ -1003,6 +1139,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         final Set<TaskInfo> consumesOutputOf = Sets.newHashSet();
         final Set<String> outputPaths = Sets.newHashSet();
         final Set<String> destroyablePaths = Sets.newHashSet();
+        boolean resolved;
 
         TaskMutationInfo(TaskInfo task) {
             this.task = task;
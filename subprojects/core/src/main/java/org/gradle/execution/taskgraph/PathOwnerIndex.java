@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.base.StandardSystemProperty;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.internal.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of canonical file paths and their owners, arranged as a tree of path segments so that the owners of the paths that overlap a given path, that is
+ * the path itself, its ancestors and its descendants, can be found by walking the segments of the given path once, regardless of the number of indexed paths.
+ *
+ * <p>A path may have several owners, and an owner may own a path several times. Each ownership is removed separately.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+class PathOwnerIndex<T> {
+    private static final char SEPARATOR = StandardSystemProperty.FILE_SEPARATOR.value().charAt(0);
+
+    private final Node<T> root = new Node<T>("");
+
+    void add(String path, T owner) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            node.ownedBelow++;
+            int end = segmentEnd(path, start);
+            node = node.child(path, start, end);
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.owners == null) {
+            node.owners = Lists.newArrayListWithCapacity(1);
+        }
+        node.owners.add(owner);
+    }
+
+    /**
+     * Removes one ownership of the given path by the given owner. Does nothing when the path is not owned by the owner.
+     */
+    void remove(String path, T owner) {
+        List<Node<T>> nodes = new ArrayList<Node<T>>();
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            nodes.add(node);
+            int end = segmentEnd(path, start);
+            node = node.children == null ? null : node.children.get(path.substring(start, end));
+            if (node == null) {
+                return;
+            }
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.owners == null || !node.owners.remove(owner)) {
+            return;
+        }
+        if (node.owners.isEmpty()) {
+            node.owners = null;
+        }
+        Node<T> child = node;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node<T> parent = nodes.get(i);
+            parent.ownedBelow--;
+            if (child.isEmpty()) {
+                parent.children.remove(child.segment);
+            }
+            child = parent;
+        }
+    }
+
+    /**
+     * Returns some owner of a path that overlaps the given path, along with the shorter of the two paths, or null when no indexed path overlaps the given path.
+     */
+    @Nullable
+    Pair<T, String> findFirstOverlap(String path) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(path, start);
+            node = node.children == null ? null : node.children.get(path.substring(start, end));
+            if (node == null) {
+                return null;
+            }
+            if (node.owners != null) {
+                // The path itself or one of its ancestors
+                return Pair.of(node.owners.get(0), path.substring(0, end));
+            }
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.ownedBelow == 0) {
+            return null;
+        }
+        // Some descendant. Each node on the way down either has owners or has descendants with owners
+        while (node.owners == null) {
+            for (Node<T> child : node.children.values()) {
+                if (!child.isEmpty()) {
+                    node = child;
+                    break;
+                }
+            }
+        }
+        return Pair.of(node.owners.get(0), path);
+    }
+
+    /**
+     * Returns each owner of a path that overlaps the given path, along with the shorter of the two paths for the first such path found.
+     */
+    Map<T, String> findOverlaps(String path) {
+        Map<T, String> overlaps = Maps.newLinkedHashMap();
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(path, start);
+            node = node.children == null ? null : node.children.get(path.substring(start, end));
+            if (node == null) {
+                return overlaps;
+            }
+            if (node.owners != null) {
+                addOwners(node, path.substring(0, end), overlaps);
+            }
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.ownedBelow > 0) {
+            List<Node<T>> queue = Lists.newArrayList(node.children.values());
+            while (!queue.isEmpty()) {
+                Node<T> descendant = queue.remove(queue.size() - 1);
+                if (descendant.owners != null) {
+                    addOwners(descendant, path, overlaps);
+                }
+                if (descendant.ownedBelow > 0) {
+                    queue.addAll(descendant.children.values());
+                }
+            }
+        }
+        return overlaps;
+    }
+
+    private static <T> void addOwners(Node<T> node, String overlap, Map<T, String> overlaps) {
+        for (T owner : node.owners) {
+            if (!overlaps.containsKey(owner)) {
+                overlaps.put(owner, overlap);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return root.ownedBelow == 0;
+    }
+
+    void clear() {
+        root.children = null;
+        root.ownedBelow = 0;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf(SEPARATOR, start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static class Node<T> {
+        final String segment;
+        Map<String, Node<T>> children;
+        List<T> owners;
+        // The number of ownerships of the descendants of this node
+        int ownedBelow;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node<T> child(String path, int start, int end) {
+            String segment = path.substring(start, end);
+            if (children == null) {
+                children = Maps.newHashMap();
+            }
+            Node<T> child = children.get(segment);
+            if (child == null) {
+                child = new Node<T>(segment);
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        boolean isEmpty() {
+            return owners == null && ownedBelow == 0;
+        }
+    }
+}
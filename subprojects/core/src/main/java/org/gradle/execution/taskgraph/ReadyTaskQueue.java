@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The tasks of an execution plan that have not yet been selected for execution, arranged so that selecting the next task does not need to look at tasks
+ * whose dependencies are not complete.
+ *
+ * <p>Each queued task is either ready, when all of its dependencies are complete, waiting for one of its incomplete dependencies, or dormant, when it must not
+ * run unless it is enforced later. A waiting task is only checked again when the dependency it waits for completes, at which point it waits for its next
+ * incomplete dependency or becomes ready. Tasks that wait for a task outside of the plan, such as a task of an included build, are checked again each time
+ * the ready tasks are requested, as nothing reports when such a task completes.</p>
+ *
+ * <p>Ready tasks are returned in order of decreasing priority, and tasks with the same priority in the order they were added to the queue, which is
+ * the order of the execution plan. Without priorities, ready tasks are returned in plan order.</p>
+ *
+ * <p>Not thread-safe. The plan accesses this while holding its state lock.</p>
+ */
+class ReadyTaskQueue {
+    private final Map<TaskInfo, Integer> positions = Maps.newHashMap();
+    private final Map<TaskInfo, Long> priorities = Maps.newHashMap();
+    private final TreeSet<TaskInfo> readyTasks = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo o1, TaskInfo o2) {
+            int result = priorities.get(o2).compareTo(priorities.get(o1));
+            if (result != 0) {
+                return result;
+            }
+            return positions.get(o1).compareTo(positions.get(o2));
+        }
+    });
+    private final ListMultimap<TaskInfo, TaskInfo> waitingTasks = ArrayListMultimap.create();
+    private final List<TaskInfo> waitingForExternalTasks = Lists.newArrayList();
+    private final Set<TaskInfo> dormantTasks = Sets.newHashSet();
+    private final Set<TaskInfo> reportedReadyTasks = Sets.newHashSet();
+    private final List<TaskInfo> newlyReadyTasks = Lists.newArrayList();
+
+    /**
+     * Adds a task of the plan. Tasks must be added in plan order.
+     */
+    void add(TaskInfo task) {
+        add(task, 0);
+    }
+
+    /**
+     * Adds a task of the plan with the given priority. Tasks must be added in plan order.
+     */
+    void add(TaskInfo task, long priority) {
+        positions.put(task, positions.size());
+        priorities.put(task, priority);
+        enqueue(task);
+    }
+
+    private void enqueue(TaskInfo task) {
+        if (task.isMustNotRun()) {
+            dormantTasks.add(task);
+            return;
+        }
+        if (!task.isReady()) {
+            // Has been skipped or aborted, and will not run
+            return;
+        }
+        TaskInfo incompleteDependency = firstIncompleteDependency(task);
+        if (incompleteDependency == null) {
+            readyTasks.add(task);
+            if (reportedReadyTasks.add(task)) {
+                newlyReadyTasks.add(task);
+            }
+        } else if (positions.containsKey(incompleteDependency)) {
+            waitingTasks.put(incompleteDependency, task);
+        } else {
+            waitingForExternalTasks.add(task);
+        }
+    }
+
+    @Nullable
+    private static TaskInfo firstIncompleteDependency(TaskInfo task) {
+        for (TaskInfo dependency : task.getMustSuccessors()) {
+            if (!dependency.isComplete()) {
+                return dependency;
+            }
+        }
+        for (TaskInfo dependency : task.getDependencySuccessors()) {
+            if (!dependency.isComplete()) {
+                return dependency;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the ready tasks, highest priority first. The selected task should be removed using {@link Iterator#remove()}, directly after it
+     * has been returned by {@link Iterator#next()}. Tasks that can no longer run are discarded as they are encountered.
+     */
+    Iterator<TaskInfo> readyTasks() {
+        if (!waitingForExternalTasks.isEmpty()) {
+            List<TaskInfo> tasks = Lists.newArrayList(waitingForExternalTasks);
+            waitingForExternalTasks.clear();
+            for (TaskInfo task : tasks) {
+                enqueue(task);
+            }
+        }
+        final Iterator<TaskInfo> iterator = readyTasks.iterator();
+        return new Iterator<TaskInfo>() {
+            private TaskInfo next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && iterator.hasNext()) {
+                    TaskInfo candidate = iterator.next();
+                    if (candidate.isReady()) {
+                        next = candidate;
+                    } else {
+                        iterator.remove();
+                        enqueue(candidate);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public TaskInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TaskInfo result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    /**
+     * Returns the tasks that have become ready since this method was last called. Each task is returned once only, even when it later waits for a dependency again.
+     */
+    List<TaskInfo> takeNewlyReadyTasks() {
+        if (newlyReadyTasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<TaskInfo> tasks = Lists.newArrayList(newlyReadyTasks);
+        newlyReadyTasks.clear();
+        return tasks;
+    }
+
+    /**
+     * Called when the given task of the plan has completed, either because it was executed or because it was skipped.
+     */
+    void taskComplete(TaskInfo task) {
+        for (TaskInfo waitingTask : waitingTasks.removeAll(task)) {
+            enqueue(waitingTask);
+        }
+    }
+
+    /**
+     * Called when the given tasks have been enforced, possibly making dormant tasks ready to run and ready tasks wait for the enforced tasks.
+     */
+    void tasksEnforced(Iterable<TaskInfo> tasks) {
+        List<TaskInfo> affected = Lists.newArrayList();
+        for (TaskInfo task : tasks) {
+            if (dormantTasks.remove(task)) {
+                affected.add(task);
+            }
+            for (TaskInfo predecessor : task.getDependencyPredecessors()) {
+                if (positions.containsKey(predecessor) && readyTasks.remove(predecessor)) {
+                    affected.add(predecessor);
+                }
+            }
+        }
+        for (TaskInfo task : affected) {
+            enqueue(task);
+        }
+    }
+
+    /**
+     * Checks all waiting tasks again. Called when execution is aborted, which completes many tasks at once.
+     */
+    void recheckWaitingTasks() {
+        List<TaskInfo> tasks = Lists.newArrayList(waitingTasks.values());
+        waitingTasks.clear();
+        for (TaskInfo task : tasks) {
+            enqueue(task);
+        }
+    }
+
+    /**
+     * Returns true when some queued task is still to be executed.
+     */
+    boolean hasIncompleteTasks() {
+        for (TaskInfo task : readyTasks) {
+            if (!task.isComplete()) {
+                return true;
+            }
+        }
+        for (TaskInfo task : waitingTasks.values()) {
+            if (!task.isComplete()) {
+                return true;
+            }
+        }
+        for (TaskInfo task : waitingForExternalTasks) {
+            if (!task.isComplete()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void clear() {
+        positions.clear();
+        priorities.clear();
+        readyTasks.clear();
+        waitingTasks.clear();
+        waitingForExternalTasks.clear();
+        dormantTasks.clear();
+        reportedReadyTasks.clear();
+        newlyReadyTasks.clear();
+    }
+}
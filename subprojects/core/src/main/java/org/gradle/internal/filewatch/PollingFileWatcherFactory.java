@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A {@link FileWatcherFactory} that detects changes by comparing the metadata of the watched files with the metadata recorded when they were last polled.
+ *
+ * <p>Does not use any background threads. The watched files are polled at the start of each build, or whenever {@link #poll()} is called, and changes are reported to the listeners on the polling thread.
+ * This makes it usable on platforms where no native file change notification is available, and in tests.</p>
+ */
+public class PollingFileWatcherFactory implements FileWatcherFactory, RootBuildLifecycleListener {
+    private final FileSystem fileSystem;
+    private final List<PollingFileWatcher> watchers = new CopyOnWriteArrayList<PollingFileWatcher>();
+
+    public PollingFileWatcherFactory(FileSystem fileSystem) {
+        this.fileSystem = fileSystem;
+    }
+
+    @Override
+    public FileWatcher watch(Action<? super Throwable> onError, FileWatcherListener listener) {
+        PollingFileWatcher watcher = new PollingFileWatcher(onError, listener);
+        watchers.add(watcher);
+        return watcher;
+    }
+
+    /**
+     * Polls all running watchers for changes, notifying their listeners of any change found.
+     */
+    public void poll() {
+        for (PollingFileWatcher watcher : watchers) {
+            watcher.poll();
+        }
+    }
+
+    @Override
+    public void afterStart() {
+        poll();
+    }
+
+    @Override
+    public void beforeComplete() {
+    }
+
+    private class PollingFileWatcher implements FileWatcher {
+        private final Action<? super Throwable> onError;
+        private final FileWatcherListener listener;
+        private final List<File> roots = new ArrayList<File>();
+        private final Map<File, FileMetadataSnapshot> state = new HashMap<File, FileMetadataSnapshot>();
+        private volatile boolean running = true;
+
+        PollingFileWatcher(Action<? super Throwable> onError, FileWatcherListener listener) {
+            this.onError = onError;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public synchronized void watch(FileSystemSubset fileSystemSubset) {
+            for (File candidate : fileSystemSubset.getRoots()) {
+                File root = candidate.getAbsoluteFile();
+                if (isWatched(root)) {
+                    continue;
+                }
+                for (Iterator<File> iterator = roots.iterator(); iterator.hasNext();) {
+                    if (isAncestorOrSelf(root, iterator.next())) {
+                        iterator.remove();
+                    }
+                }
+                roots.add(root);
+                collect(root, state);
+            }
+        }
+
+        synchronized void poll() {
+            if (!running) {
+                return;
+            }
+            try {
+                Map<File, FileMetadataSnapshot> current = new HashMap<File, FileMetadataSnapshot>();
+                for (File root : roots) {
+                    collect(root, current);
+                }
+                for (Map.Entry<File, FileMetadataSnapshot> entry : current.entrySet()) {
+                    FileMetadataSnapshot previous = state.get(entry.getKey());
+                    if (previous == null) {
+                        listener.onChange(this, FileWatcherEvent.create(entry.getKey()));
+                    } else if (hasChanged(previous, entry.getValue())) {
+                        listener.onChange(this, FileWatcherEvent.modify(entry.getKey()));
+                    }
+                }
+                for (File file : state.keySet()) {
+                    if (!current.containsKey(file)) {
+                        listener.onChange(this, FileWatcherEvent.delete(file));
+                    }
+                }
+                state.clear();
+                state.putAll(current);
+            } catch (RuntimeException e) {
+                stop();
+                onError.execute(e);
+            }
+        }
+
+        private boolean isWatched(File file) {
+            for (File root : roots) {
+                if (isAncestorOrSelf(root, file)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void collect(File file, Map<File, FileMetadataSnapshot> into) {
+            FileMetadataSnapshot metadata = fileSystem.stat(file);
+            into.put(file, metadata);
+            if (metadata.getType() == FileType.Directory) {
+                File[] children = file.listFiles();
+                if (children != null) {
+                    for (File child : children) {
+                        collect(child, into);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            running = false;
+            watchers.remove(this);
+            roots.clear();
+            state.clear();
+        }
+    }
+
+    private static boolean isAncestorOrSelf(File ancestor, File file) {
+        String ancestorPath = ancestor.getPath();
+        String path = file.getPath();
+        return path.equals(ancestorPath) || path.startsWith(ancestorPath + File.separator);
+    }
+
+    private static boolean hasChanged(FileMetadataSnapshot previous, FileMetadataSnapshot current) {
+        return previous.getType() != current.getType()
+            || previous.getLastModified() != current.getLastModified()
+            || previous.getLength() != current.getLength();
+    }
+}
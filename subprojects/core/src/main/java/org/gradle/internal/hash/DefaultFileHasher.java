@@ -19,24 +19,72 @@ import org.apache.commons.io.IOUtils;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.os.OperatingSystem;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
+/**
+ * Hashes the content of files. Small files are streamed through a pooled heap buffer. Files of at least the channel threshold are read into a pooled direct buffer,
+ * which avoids copying their content into the heap. Only very large files, of at least the mapping threshold, are mapped into memory, so that the number of mappings
+ * waiting to be garbage collected stays small.
+ */
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Below this size, reading through a channel costs more than copying the content into the heap.
+     */
+    public static final long DEFAULT_CHANNEL_THRESHOLD = 256 * 1024;
+    /**
+     * Below this size, the content is read rather than mapped.
+     */
+    public static final long DEFAULT_MAPPING_THRESHOLD = 64 * 1024 * 1024;
+    private static final long UNKNOWN_LENGTH = -1;
+
     private final StreamHasher streamHasher;
+    private final long channelThreshold;
+    private final long mappingThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        // A mapped file cannot be deleted on Windows until the mapping is garbage collected, so never map files there
+        this(streamHasher, DEFAULT_CHANNEL_THRESHOLD, OperatingSystem.current().isWindows() ? Long.MAX_VALUE : DEFAULT_MAPPING_THRESHOLD);
+    }
+
+    public DefaultFileHasher(StreamHasher streamHasher, long channelThreshold, long mappingThreshold) {
         this.streamHasher = streamHasher;
+        this.channelThreshold = channelThreshold;
+        this.mappingThreshold = mappingThreshold;
     }
 
     @Override
     public HashCode hash(File file) {
+        return hash(file, UNKNOWN_LENGTH);
+    }
+
+    @Override
+    public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
+        return hash(file, fileDetails.getLength());
+    }
+
+    @Override
+    public HashCode hash(FileTreeElement fileDetails) {
+        return hash(fileDetails.getFile(), fileDetails.getSize());
+    }
+
+    private HashCode hash(File file, long length) {
         try {
-            InputStream inputStream = new FileInputStream(file);
+            FileInputStream inputStream = new FileInputStream(file);
             try {
+                if (length == UNKNOWN_LENGTH || length >= channelThreshold) {
+                    // The length may be stale, so check it against the file that was actually opened
+                    long size = inputStream.getChannel().size();
+                    if (size >= mappingThreshold) {
+                        return streamHasher.hashMapped(inputStream.getChannel());
+                    }
+                    if (size >= channelThreshold) {
+                        return streamHasher.hash(inputStream.getChannel());
+                    }
+                }
                 return streamHasher.hash(inputStream);
             } finally {
                 IOUtils.closeQuietly(inputStream);
@@ -45,14 +93,4 @@ public class DefaultFileHasher implements FileHasher {
             throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
         }
     }
-
-    @Override
-    public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
-        return hash(file);
-    }
-
-    @Override
-    public HashCode hash(FileTreeElement fileDetails) {
-        return hash(fileDetails.getFile());
-    }
 }
@@ -21,11 +21,20 @@ import org.gradle.internal.io.NullOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
+    // Map large files a region at a time, to avoid exhausting the address space of 32-bit VMs
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
+    private final Queue<ByteBuffer> directBuffers = new ArrayBlockingQueue<ByteBuffer>(16);
     private final ContentHasherFactory hasherFactory;
 
     public DefaultStreamHasher(ContentHasherFactory hasherFactory) {
@@ -46,6 +55,44 @@ public class DefaultStreamHasher implements StreamHasher {
         return doHash(inputStream, outputStream);
     }
 
+    @Override
+    public HashCode hash(FileChannel channel) throws IOException {
+        ByteBuffer buffer = takeDirectBuffer();
+        try {
+            Hasher hasher = hasherFactory.create();
+            long position = 0;
+            while (true) {
+                buffer.clear();
+                int nread = channel.read(buffer, position);
+                if (nread < 0) {
+                    break;
+                }
+                position += nread;
+                buffer.flip();
+                hasher.putBytes(buffer);
+            }
+            return hasher.hash();
+        } finally {
+            directBuffers.offer(buffer);
+        }
+    }
+
+    @Override
+    public HashCode hashMapped(FileChannel channel) throws IOException {
+        Hasher hasher = hasherFactory.create();
+        long size = channel.size();
+        try {
+            for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                hasher.putBytes(region);
+            }
+        } catch (InternalError e) {
+            // The VM reports reading a mapped region of a file that has been truncated as an error rather than an exception
+            return hash(channel);
+        }
+        return hasher.hash();
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
@@ -69,6 +116,14 @@ public class DefaultStreamHasher implements StreamHasher {
         buffers.offer(buffer);
     }
 
+    private ByteBuffer takeDirectBuffer() {
+        ByteBuffer buffer = directBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
     private byte[] takeBuffer() {
         byte[] buffer = buffers.poll();
         if (buffer == null) {
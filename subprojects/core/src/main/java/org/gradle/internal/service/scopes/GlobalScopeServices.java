@@ -38,6 +38,7 @@ import org.gradle.api.internal.file.DefaultFileCollectionFactory;
 import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.TmpDirTemporaryFileProvider;
+import org.gradle.api.internal.file.archive.ZipCentralDirectoryCache;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.model.DefaultObjectFactory;
@@ -245,6 +246,10 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem);
     }
 
+    ZipCentralDirectoryCache createZipCentralDirectoryCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        return new ZipCentralDirectoryCache(cacheFactory);
+    }
+
     FileCollectionFactory createFileCollectionFactory() {
         return new DefaultFileCollectionFactory();
     }
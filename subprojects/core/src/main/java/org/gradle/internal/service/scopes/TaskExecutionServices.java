@@ -62,8 +62,10 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.cache.FileLockManager;
 import org.gradle.cache.PersistentCache;
 import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.controller.BuildCachePrefetcher;
 import org.gradle.caching.internal.tasks.BuildCacheTaskServices;
 import org.gradle.caching.internal.tasks.TaskOutputCacheCommandFactory;
+import org.gradle.caching.internal.tasks.TaskOutputCachePrefetcher;
 import org.gradle.execution.taskgraph.TaskPlanExecutor;
 import org.gradle.execution.taskgraph.TaskPlanExecutorFactory;
 import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
@@ -73,6 +75,7 @@ import org.gradle.internal.concurrent.ParallelismConfigurationManager;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.reflect.Instantiator;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.scan.config.BuildScanPluginApplied;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
 import org.gradle.internal.serialize.DefaultSerializerRegistry;
@@ -104,9 +107,13 @@ public class TaskExecutionServices {
                                     AsyncWorkTracker asyncWorkTracker,
                                     BuildOutputCleanupRegistry cleanupRegistry,
                                     TaskOutputFilesRepository taskOutputFilesRepository,
-                                    BuildScanPluginApplied buildScanPlugin) {
+                                    BuildScanPluginApplied buildScanPlugin,
+                                    TaskOutputCachePrefetcher taskOutputCachePrefetcher) {
 
         boolean taskOutputCacheEnabled = startParameter.isBuildCacheEnabled();
+        if (taskOutputCacheEnabled && BuildCachePrefetcher.isEnabled()) {
+            listenerManager.addListener(taskOutputCachePrefetcher);
+        }
         boolean scanPluginApplied = buildScanPlugin.isBuildScanPluginApplied();
         TaskOutputsGenerationListener taskOutputsGenerationListener = listenerManager.getBroadcaster(TaskOutputsGenerationListener.class);
 
@@ -196,6 +203,10 @@ public class TaskExecutionServices {
         return new DefaultTaskOutputFilesRepository(cacheAccess, fileSystemMirror, inMemoryCacheDecoratorFactory);
     }
 
+    TaskOutputCachePrefetcher createTaskOutputCachePrefetcher(BuildCacheController buildCacheController, TaskArtifactStateRepository repository, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, ExecutorFactory executorFactory) {
+        return new TaskOutputCachePrefetcher(buildCacheController, repository, workerLeaseService, coordinationService, executorFactory);
+    }
+
     TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, StartParameter startParameter, TaskHistoryRepository taskHistoryRepository, TaskOutputFilesRepository taskOutputsRepository) {
 
         return new ShortCircuitTaskArtifactStateRepository(
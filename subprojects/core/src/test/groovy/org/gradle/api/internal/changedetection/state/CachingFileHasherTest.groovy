@@ -193,4 +193,65 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def hashesBatchOfFilesHashingOnlyThoseNotUpToDate() {
+        def upToDate = tmpDir.createFile("up-to-date")
+        def changed = tmpDir.createFile("changed")
+        def upToDateDetails = Stub(FileTreeElement) {
+            getFile() >> upToDate
+            getLastModified() >> 123L
+            getSize() >> 321L
+        }
+        def changedDetails = Stub(FileTreeElement) {
+            getFile() >> changed
+            getLastModified() >> 124L
+            getSize() >> 421L
+        }
+
+        when:
+        def result = hasher.hashAll([upToDateDetails, changedDetails])
+
+        then:
+        result as List == [oldHash, hash]
+
+        and:
+        1 * cacheAccess.useCache(_) >> { Runnable action -> action.run() }
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(upToDate.absolutePath, 123L) >> true
+        1 * cache.get(upToDate.absolutePath) >> new FileInfo(oldHash, 321L, 123L)
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(changed.absolutePath, 124L) >> true
+        1 * cache.get(changed.absolutePath) >> new FileInfo(oldHash, 1024L, 124L)
+        0 * _._
+
+        then:
+        1 * target.hash(changedDetails) >> hash
+
+        then:
+        1 * cacheAccess.useCache(_) >> { Runnable action -> action.run() }
+        1 * cache.put(changed.absolutePath, _) >> { String key, FileInfo fileInfo ->
+            assert fileInfo.hash == hash
+            assert fileInfo.length == 421L
+            assert fileInfo.timestamp == 124L
+        }
+        0 * _._
+    }
+
+    def doesNotHashBatchOfFilesWhenAllAreUpToDate() {
+        def fileDetails = Stub(FileTreeElement) {
+            getFile() >> file
+            getLastModified() >> 123L
+            getSize() >> 321L
+        }
+
+        when:
+        def result = hasher.hashAll([fileDetails])
+
+        then:
+        result as List == [hash]
+
+        and:
+        1 * cacheAccess.useCache(_) >> { Runnable action -> action.run() }
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, 123L) >> true
+        1 * cache.get(file.absolutePath) >> new FileInfo(hash, 321L, 123L)
+        0 * _._
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.Hashing
+import spock.lang.Specification
+
+class CompactSnapshotMapTest extends Specification {
+    def "copy has the same entries in the same order"() {
+        def snapshots = new LinkedHashMap<String, NormalizedFileSnapshot>()
+        snapshots["/root/z.txt"] = new NonNormalizedFileSnapshot("/root/z.txt", new FileHashSnapshot(hash("z"), 123L))
+        snapshots["/root/dir"] = new DefaultNormalizedFileSnapshot("dir", DirContentSnapshot.INSTANCE)
+        snapshots["/root/dir/a.txt"] = new IndexedNormalizedFileSnapshot("/root/dir/a.txt", 10, new FileHashSnapshot(hash("a")))
+        snapshots["/root/missing"] = new IgnoredPathFileSnapshot(MissingFileContentSnapshot.INSTANCE)
+
+        when:
+        def copy = CompactSnapshotMap.copyOf(snapshots)
+
+        then:
+        copy instanceof CompactSnapshotMap
+        copy == snapshots
+        snapshots == copy
+        copy.hashCode() == snapshots.hashCode()
+        copy.keySet() as List == snapshots.keySet() as List
+        copy.values() as List == snapshots.values() as List
+        copy.entrySet() as List == snapshots.entrySet() as List
+        copy.get("/root/dir/a.txt").normalizedPath == "a.txt"
+        copy.get("/root/z.txt").snapshot.isContentAndMetadataUpToDate(new FileHashSnapshot(hash("z"), 123L))
+        !copy.get("/root/z.txt").snapshot.isContentAndMetadataUpToDate(new FileHashSnapshot(hash("z"), 124L))
+        copy.containsKey("/root/dir")
+        !copy.containsKey("/root/other")
+        copy.get("/root/other") == null
+        CompactSnapshotMap.copyOf(copy).is(copy)
+    }
+
+    def "keeps snapshots that cannot be encoded as they are"() {
+        def shortHash = new NonNormalizedFileSnapshot("/a", new FileHashSnapshot(HashCode.fromInt(1)))
+        def otherPath = new NonNormalizedFileSnapshot("/elsewhere", new FileHashSnapshot(hash("b")))
+        def custom = Stub(NormalizedFileSnapshot)
+        def snapshots = ["/a": shortHash, "/b": otherPath, "/c": custom]
+
+        when:
+        def copy = CompactSnapshotMap.copyOf(snapshots)
+
+        then:
+        copy.get("/a") == shortHash
+        copy.get("/b") == otherPath
+        copy.get("/c").is(custom)
+        copy.keySet() as List == ["/a", "/b", "/c"]
+    }
+
+    def "can look up many entries"() {
+        def builder = CompactSnapshotMap.builder(0)
+        1000.times {
+            def path = "/file$it" as String
+            builder.put(path, new NonNormalizedFileSnapshot(path, new FileHashSnapshot(hash("$it"))))
+        }
+
+        when:
+        def map = builder.build()
+
+        then:
+        map.size() == 1000
+        (0..<1000).every { map.get("/file$it" as String).snapshot.contentMd5 == hash("$it") }
+        !map.containsKey("/file1000")
+    }
+
+    private static HashCode hash(String content) {
+        return Hashing.md5().hashString(content)
+    }
+}
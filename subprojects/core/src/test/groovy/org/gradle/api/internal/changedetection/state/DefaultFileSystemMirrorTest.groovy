@@ -141,4 +141,26 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "knows about directory trees below a directory"() {
+        def dir = tmpDir.file("dir")
+        def tree = Stub(FileTreeSnapshot)
+
+        given:
+        _ * tree.path >> dir.file("child/grandchild").path
+
+        expect:
+        !mirror.hasDescendantDirectoryTrees(dir.path)
+
+        mirror.putDirectory(tree)
+
+        mirror.hasDescendantDirectoryTrees(dir.path)
+        mirror.hasDescendantDirectoryTrees(dir.file("child").path)
+        !mirror.hasDescendantDirectoryTrees(dir.file("child/grandchild").path)
+        !mirror.hasDescendantDirectoryTrees(dir.file("chi").path)
+
+        mirror.beforeTaskOutputsGenerated()
+
+        !mirror.hasDescendantDirectoryTrees(dir.path)
+    }
 }
@@ -154,6 +154,59 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         snapshot4.is(snapshot3)
     }
 
+    def "fetches details of a directory tree from the details of an ancestor tree"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("f1")
+        d.createFile("d1/f2")
+        d.createFile("d1/d3/f3")
+        d.createDir("d2")
+
+        expect:
+        def snapshot = snapshotter.snapshotDirectoryTree(d)
+        snapshot.descendants.size() == 6
+
+        d.createFile("d1/not-seen")
+        def subtree = snapshotter.snapshotDirectoryTree(d.file("d1"))
+        subtree.path == d.file("d1").path
+        subtree.descendants.collect { it.relativePath.pathString } as Set == ["f2", "d3", "d3/f3"] as Set
+        subtree.descendants.every { !it.root }
+        def f3 = subtree.descendants.find { it.name == "f3" }
+        f3.path == d.file("d1/d3/f3").path
+        f3.content == snapshot.descendants.find { it.name == "f3" }.content
+
+        snapshotter.snapshotDirectoryTree(d.file("d1")).is(subtree)
+    }
+
+    def "reuses the details of descendant trees when fetching details of a directory tree"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("f1")
+        d.createFile("d1/f2")
+        d.createFile("d1/d3/f3")
+        d.createDir("d2")
+
+        expect:
+        def childTree = snapshotter.snapshotDirectoryTree(d.file("d1"))
+        childTree.descendants.size() == 3
+
+        d.createFile("d1/not-seen")
+        d.createFile("d2/f4")
+        def snapshot = snapshotter.snapshotDirectoryTree(d)
+        snapshot.descendants.collect { it.relativePath.pathString } as Set == ["f1", "d1", "d1/f2", "d1/d3", "d1/d3/f3", "d2", "d2/f4"] as Set
+        snapshot.descendants.find { it.name == "f3" }.relativePath.segments as List == ["d1", "d3", "f3"]
+    }
+
+    def "does not use the details of an ancestor tree after task outputs are generated"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("d1/f1")
+
+        expect:
+        snapshotter.snapshotDirectoryTree(d)
+        fileSystemMirror.beforeTaskOutputsGenerated()
+
+        d.createFile("d1/f2")
+        snapshotter.snapshotDirectoryTree(d.file("d1")).descendants.size() == 2
+    }
+
     def "snapshots a file and caches the result"() {
         def f = tmpDir.createFile("f")
 
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.FileTreeElement
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
+import org.gradle.internal.hash.FileHasher
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ParallelFileHasherTest extends Specification {
+    def fileHasher = Stub(FileHasher) {
+        hash(_ as FileTreeElement) >> { FileTreeElement element -> HashCode.fromInt(element.name as int) }
+    }
+
+    @Unroll
+    def "returns hashes in the order of the files when hashing #count files with parallelism #parallelism"() {
+        def hasher = new ParallelFileHasher(parallelism)
+        def files = (0..<count).collect { index -> Stub(FileTreeElement) { getName() >> "$index" } }
+
+        when:
+        def hashes = hasher.hash(fileHasher, files)
+
+        then:
+        hashes as List == (0..<count).collect { HashCode.fromInt(it) }
+
+        cleanup:
+        hasher.stop()
+
+        where:
+        count | parallelism
+        0     | 1
+        10    | 1
+        1000  | 1
+        10    | 4
+        1000  | 4
+    }
+
+    def "batch hasher for a file hasher hashes each of the files"() {
+        def hasher = new ParallelFileHasher(4)
+        def files = (0..<100).collect { index -> Stub(FileTreeElement) { getName() >> "$index" } }
+
+        when:
+        def hashes = hasher.forHasher(fileHasher).hashAll(files)
+
+        then:
+        hashes as List == (0..<100).collect { HashCode.fromInt(it) }
+
+        cleanup:
+        hasher.stop()
+    }
+
+    def "propagates failure to hash a file"() {
+        def hasher = new ParallelFileHasher(4)
+        def failure = new RuntimeException("broken")
+        def files = (0..<1000).collect { index -> Stub(FileTreeElement) { getName() >> "$index" } }
+        def failingHasher = Stub(FileHasher) {
+            hash(_ as FileTreeElement) >> { FileTreeElement element -> if (element.name == "500") { throw failure }; HashCode.fromInt(1) }
+        }
+
+        when:
+        hasher.hash(failingHasher, files)
+
+        then:
+        def e = thrown(RuntimeException)
+        e.message == "broken"
+
+        cleanup:
+        hasher.stop()
+    }
+
+    def "sizes pool to maximum number of workers and follows changes to it"() {
+        def parallelismConfigurationManager = Mock(ParallelismConfigurationManager) {
+            getParallelismConfiguration() >> new DefaultParallelismConfiguration(false, 3)
+        }
+        def files = (0..<1000).collect { index -> Stub(FileTreeElement) { getName() >> "$index" } }
+
+        when:
+        def hasher = new ParallelFileHasher(parallelismConfigurationManager)
+
+        then:
+        1 * parallelismConfigurationManager.addListener(_)
+        hasher.pool.parallelism == 3
+
+        when:
+        hasher.onParallelismConfigurationChange(new DefaultParallelismConfiguration(false, 1))
+
+        then:
+        hasher.pool == null
+        hasher.hash(fileHasher, files) as List == (0..<1000).collect { HashCode.fromInt(it) }
+
+        when:
+        hasher.onParallelismConfigurationChange(new DefaultParallelismConfiguration(false, 2))
+
+        then:
+        hasher.pool.parallelism == 2
+        hasher.hash(fileHasher, files) as List == (0..<1000).collect { HashCode.fromInt(it) }
+
+        when:
+        hasher.stop()
+
+        then:
+        1 * parallelismConfigurationManager.removeListener(hasher)
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.PollingFileWatcherFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+class WatchingFileSystemMirrorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def watcherFactory = new PollingFileWatcherFactory(TestFiles.fileSystem())
+    def mirror = new WatchingFileSystemMirror([], watcherFactory)
+
+    def cleanup() {
+        mirror.stop()
+    }
+
+    def "retains state about unchanged files across builds"() {
+        def file = tmpDir.createFile("a")
+        def dir = tmpDir.createDir("dir")
+        def fileSnapshot = snapshot(file)
+        def treeSnapshot = tree(dir)
+        def snapshot = Stub(Snapshot)
+
+        when:
+        mirror.afterStart()
+        mirror.getFile(file.path)
+        mirror.getDirectoryTree(dir.path)
+        mirror.getContent(dir.path)
+        mirror.putFile(fileSnapshot)
+        mirror.putDirectory(treeSnapshot)
+        mirror.putContent(dir.path, snapshot)
+        mirror.beforeComplete()
+
+        and:
+        mirror.afterStart()
+        watcherFactory.poll()
+
+        then:
+        mirror.getFile(file.path) == fileSnapshot
+        mirror.getDirectoryTree(dir.path) == treeSnapshot
+        mirror.getContent(dir.path) == snapshot
+    }
+
+    def "discards state about changed files and the trees that contain them"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def other = dir.createFile("b")
+        def fileSnapshot = snapshot(file)
+        def otherSnapshot = snapshot(other)
+        def treeSnapshot = tree(dir)
+
+        when:
+        mirror.afterStart()
+        mirror.getDirectoryTree(dir.path)
+        mirror.getFile(file.path)
+        mirror.getFile(other.path)
+        mirror.putDirectory(treeSnapshot)
+        mirror.putFile(fileSnapshot)
+        mirror.putFile(otherSnapshot)
+        mirror.beforeComplete()
+
+        and:
+        file.text = "changed"
+        file.lastModified = file.lastModified() - 2000
+        mirror.afterStart()
+        watcherFactory.poll()
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getFile(other.path) == otherSnapshot
+    }
+
+    def "discards state about the descendants of a deleted directory"() {
+        def dir = tmpDir.createDir("dir")
+        def file = dir.createFile("a")
+        def fileSnapshot = snapshot(file)
+
+        when:
+        mirror.afterStart()
+        mirror.getFile(file.path)
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        and:
+        dir.deleteDir()
+        mirror.afterStart()
+        watcherFactory.poll()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards state that was stored after a change to it was reported"() {
+        def file = tmpDir.createFile("a")
+        def fileSnapshot = snapshot(file)
+
+        when:
+        mirror.afterStart()
+        mirror.getFile(file.path)
+        mirror.onChange(Stub(FileWatcher), FileWatcherEvent.modify(file))
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards all state when changes cannot be attributed to a file"() {
+        def file = tmpDir.createFile("a")
+        def other = tmpDir.createFile("b")
+        def fileSnapshot = snapshot(file)
+        def otherSnapshot = snapshot(other)
+
+        when:
+        mirror.afterStart()
+        mirror.getFile(file.path)
+        mirror.putFile(fileSnapshot)
+        mirror.getFile(other.path)
+        mirror.putFile(otherSnapshot)
+        mirror.onChange(Stub(FileWatcher), FileWatcherEvent.undefined())
+
+        then:
+        mirror.getFile(file.path) == null
+        mirror.getFile(other.path) == null
+
+        when:
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards state about files that are not in a cache when task outputs are generated"() {
+        def file = tmpDir.createFile("a")
+        def fileSnapshot = snapshot(file)
+
+        when:
+        mirror.afterStart()
+        mirror.putFile(fileSnapshot)
+        mirror.beforeTaskOutputsGenerated()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    private FileSnapshot snapshot(File file) {
+        def snapshot = Stub(FileSnapshot)
+        _ * snapshot.path >> file.path
+        return snapshot
+    }
+
+    private FileTreeSnapshot tree(File dir) {
+        def snapshot = Stub(FileTreeSnapshot)
+        _ * snapshot.path >> dir.path
+        return snapshot
+    }
+}
@@ -15,8 +15,9 @@
  */
 package org.gradle.api.internal.file.archive
 
-import org.apache.tools.zip.Zip64RequiredException
-import org.apache.tools.zip.ZipOutputStream
+import org.apache.commons.compress.archivers.zip.Zip64RequiredException
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipFile
 import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.DocumentationRegistry
 import org.gradle.api.internal.file.CopyActionProcessingStreamAction
@@ -24,6 +25,7 @@ import org.gradle.api.internal.file.copy.CopyActionProcessingStream
 import org.gradle.api.internal.file.copy.DefaultZipCompressor
 import org.gradle.api.internal.file.copy.FileCopyDetailsInternal
 import org.gradle.api.tasks.bundling.Zip
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.archive.ZipTestFixture
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -45,7 +47,7 @@ class ZipCopyActionTest extends Specification {
 
     def setup() {
         zipFile = tmpDir.getTestDirectory().file("test.zip")
-        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipOutputStream.STORED), new DocumentationRegistry(), encoding, false)
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipArchiveOutputStream.STORED), new DocumentationRegistry(), encoding, false)
     }
 
     void createsZipFile() {
@@ -87,7 +89,7 @@ class ZipCopyActionTest extends Specification {
     void wrapsFailureToOpenOutputFile() {
         given:
         def invalidZipFile = tmpDir.createDir("test.zip")
-        visitor = new ZipCopyAction(invalidZipFile, new DefaultZipCompressor(false, ZipOutputStream.STORED), new DocumentationRegistry(), encoding, false)
+        visitor = new ZipCopyAction(invalidZipFile, new DefaultZipCompressor(false, ZipArchiveOutputStream.STORED), new DocumentationRegistry(), encoding, false)
 
         when:
         visitor.execute(new CopyActionProcessingStream() {
@@ -103,14 +105,14 @@ class ZipCopyActionTest extends Specification {
 
     void wrapsZip64Failure() {
         given:
-        def zipOutputStream = Mock(ZipOutputStream)
+        def zipOutputStream = Mock(ZipArchiveOutputStream)
         zipOutputStream.close() >> {
             throw new Zip64RequiredException("xyz")
         }
 
-        def compressor = new DefaultZipCompressor(false, ZipOutputStream.STORED) {
+        def compressor = new DefaultZipCompressor(false, ZipArchiveOutputStream.STORED) {
             @Override
-            ZipOutputStream createArchiveOutputStream(File destination) {
+            ZipArchiveOutputStream createArchiveOutputStream(File destination) {
                 zipOutputStream
             }
         }
@@ -144,6 +146,75 @@ class ZipCopyActionTest extends Specification {
         e.cause.is(failure)
     }
 
+    def "creates the same archive when compressing entries concurrently"() {
+        given:
+        def executorFactory = new DefaultExecutorFactory()
+        def files = [dir("dir")] + (1..200).collect { file("dir/file$it") } + [largeFile("large", ParallelZipWriter.MAX_BUFFERED_SIZE * 2), file("last")]
+        def serialZip = tmpDir.file("serial.zip")
+        def parallelZip = tmpDir.file("parallel.zip")
+
+        when:
+        zip(new ZipCopyAction(serialZip, new DefaultZipCompressor(false, ZipArchiveOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false), files)
+        try {
+            zip(new ZipCopyAction(parallelZip, new DefaultZipCompressor(false, ZipArchiveOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false, executorFactory.create("compress", 4)), files)
+        } finally {
+            executorFactory.stop()
+        }
+
+        then:
+        parallelZip.bytes == serialZip.bytes
+        entryNames(parallelZip) == files.collect { it.directory ? it.relativePath.pathString + "/" : it.relativePath.pathString }
+
+        when:
+        TestFile expandDir = tmpDir.getTestDirectory().file("expanded")
+        parallelZip.unzipTo(expandDir)
+
+        then:
+        expandDir.file("dir/file200").assertContents(equalTo("contents of dir/file200"))
+        expandDir.file("large").length() == ParallelZipWriter.MAX_BUFFERED_SIZE * 2
+    }
+
+    def "stores entries that are already compressed"() {
+        given:
+        visitor = new ZipCopyAction(zipFile, new DefaultZipCompressor(false, ZipArchiveOutputStream.DEFLATED), new DocumentationRegistry(), encoding, false)
+        def nested = tmpDir.file("nested.zip")
+        nested.withOutputStream { out -> new java.util.zip.ZipOutputStream(out).withCloseable { it.putNextEntry(new java.util.zip.ZipEntry("a")); it << "a" * 1000 } }
+        def nestedZip = fileWithContent("lib/nested.jar", nested.bytes)
+        def text = fileWithContent("text.txt", ("a" * 1000).bytes)
+
+        when:
+        zip(nestedZip, text)
+
+        then:
+        def archive = new ZipFile(zipFile)
+        try {
+            assert archive.getEntry("lib/nested.jar").method == ZipArchiveOutputStream.STORED
+            assert archive.getEntry("text.txt").method == ZipArchiveOutputStream.DEFLATED
+            assert archive.getInputStream(archive.getEntry("lib/nested.jar")).bytes == nested.bytes
+        } finally {
+            archive.close()
+        }
+    }
+
+    private static List<String> entryNames(File file) {
+        def archive = new ZipFile(file)
+        try {
+            return archive.entriesInPhysicalOrder.collect { it.name }
+        } finally {
+            archive.close()
+        }
+    }
+
+    private static void zip(ZipCopyAction action, List<FileCopyDetailsInternal> files) {
+        action.execute(new CopyActionProcessingStream() {
+            void process(CopyActionProcessingStreamAction streamAction) {
+                for (FileCopyDetailsInternal f : files) {
+                    streamAction.processFile(f)
+                }
+            }
+        })
+    }
+
     private void zip(final FileCopyDetailsInternal... files) {
         visitor.execute(new CopyActionProcessingStream() {
             void process(CopyActionProcessingStreamAction action) {
@@ -166,6 +237,24 @@ class ZipCopyActionTest extends Specification {
         mock
     }
 
+    private FileCopyDetailsInternal largeFile(final String path, int size) {
+        def bytes = new byte[size]
+        new Random(1).nextBytes(bytes)
+        fileWithContent(path, bytes)
+    }
+
+    private FileCopyDetailsInternal fileWithContent(final String path, byte[] content) {
+        def mock = Mock(FileCopyDetailsInternal)
+        mock.getRelativePath() >> RelativePath.parse(false, path)
+        mock.getLastModified() >> 1000L
+        mock.isDirectory() >> false
+        mock.getMode() >> 1
+        mock.copyTo(_ as OutputStream) >> { OutputStream out ->
+            out.write(content)
+        }
+        mock
+    }
+
     private FileCopyDetailsInternal dir(final String path) {
         def mock = Mock(FileCopyDetailsInternal)
         mock.getRelativePath() >> RelativePath.parse(false, path)
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive
+
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
+import spock.lang.Specification
+
+class ZipEntryCompressionExecutorTest extends Specification {
+    def executorFactory = new DefaultExecutorFactory()
+    def parallelismConfigurationManager = Mock(ParallelismConfigurationManager)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "compresses on the calling thread when there is a single worker"() {
+        given:
+        parallelismConfigurationManager.getParallelismConfiguration() >> new DefaultParallelismConfiguration(false, 1)
+
+        when:
+        def compressionExecutor = new ZipEntryCompressionExecutor(executorFactory, parallelismConfigurationManager)
+
+        then:
+        compressionExecutor.executor == null
+    }
+
+    def "shares one executor between archives and follows the maximum number of workers"() {
+        given:
+        parallelismConfigurationManager.getParallelismConfiguration() >> new DefaultParallelismConfiguration(false, 4)
+        def compressionExecutor = new ZipEntryCompressionExecutor(executorFactory, parallelismConfigurationManager)
+
+        expect:
+        compressionExecutor.executor != null
+        compressionExecutor.executor.is(compressionExecutor.executor)
+
+        when:
+        compressionExecutor.onParallelismConfigurationChange(new DefaultParallelismConfiguration(false, 1))
+
+        then:
+        compressionExecutor.executor == null
+
+        when:
+        compressionExecutor.stop()
+
+        then:
+        1 * parallelismConfigurationManager.removeListener(compressionExecutor)
+    }
+}
@@ -17,21 +17,33 @@ package org.gradle.api.internal.file.archive;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.InvalidUserDataException;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.internal.file.collections.MinimalFileTree;
+import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.test.fixtures.file.TestFile;
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider;
 import org.gradle.util.Resources;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.gradle.api.file.FileVisitorUtil.*;
 import static org.gradle.api.internal.file.TestFiles.*;
 import static org.gradle.api.tasks.AntBuilderAwareUtil.assertSetContainsForAllTypes;
 import static org.gradle.util.WrapUtil.toList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
@@ -41,7 +53,7 @@ public class ZipFileTreeTest {
     private final TestFile zipFile = tmpDir.getTestDirectory().file("test.zip");
     private final TestFile rootDir = tmpDir.getTestDirectory().file("root");
     private final TestFile expandDir = tmpDir.getTestDirectory().file("tmp");
-    private final ZipFileTree tree = new ZipFileTree(zipFile, expandDir, fileSystem(), directoryFileTreeFactory(), fileHasher());
+    private final ZipFileTree tree = new ZipFileTree(zipFile, expandDir, fileSystem(), directoryFileTreeFactory(), fileHasher(), zipCentralDirectoryCache());
 
     @Test
     public void displayName() {
@@ -58,6 +70,106 @@ public class ZipFileTreeTest {
         assertSetContainsForAllTypes(tree, toList("subdir/file1.txt", "subdir2/file2.txt"));
     }
 
+    @Test
+    public void appliesPatternsToEntryNames() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.file("subdir/file2.java").write("content");
+        rootDir.file("subdir2/file3.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        MinimalFileTree filtered = tree.filter(new PatternSet().include("subdir/**").exclude("**/*.java"));
+
+        assertVisits(filtered, toList("subdir/file1.txt"), toList("subdir"));
+    }
+
+    @Test
+    public void doesNotVisitEntriesOfExcludedDirectoryWithoutDirectoryEntry() throws IOException {
+        ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            writeEntry(outputStream, "dir/excluded/file1.txt", ZipEntry.DEFLATED);
+            writeEntry(outputStream, "dir/file2.txt", ZipEntry.DEFLATED);
+        } finally {
+            outputStream.close();
+        }
+
+        MinimalFileTree filtered = tree.filter(new PatternSet().exclude("dir/excluded"));
+
+        assertVisits(filtered, toList("dir/file2.txt"), new ArrayList<String>());
+    }
+
+    @Test
+    public void readsStoredAndDeflatedEntries() throws IOException {
+        ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            writeEntry(outputStream, "deflated.txt", ZipEntry.DEFLATED);
+            writeEntry(outputStream, "stored.txt", ZipEntry.STORED);
+        } finally {
+            outputStream.close();
+        }
+
+        final Map<String, String> contents = new HashMap<String, String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                fileDetails.copyTo(outputStream);
+                contents.put(fileDetails.getPath(), new String(outputStream.toByteArray()));
+            }
+        });
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("deflated.txt", "content of deflated.txt");
+        expected.put("stored.txt", "content of stored.txt");
+        assertThat(contents, equalTo(expected));
+    }
+
+    private static void writeEntry(ZipOutputStream outputStream, String name, int method) throws IOException {
+        byte[] content = ("content of " + name.substring(name.lastIndexOf('/') + 1)).getBytes();
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setCrc(crc.getValue());
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+        }
+        outputStream.putNextEntry(entry);
+        outputStream.write(content);
+        outputStream.closeEntry();
+    }
+
+    @Test
+    public void streamsEntryContentsWithoutExtractingThem() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        final List<String> contents = new ArrayList<String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                fileDetails.copyTo(outputStream);
+                contents.add(new String(outputStream.toByteArray()));
+            }
+        });
+
+        assertThat(contents, equalTo(toList("content")));
+        assertFalse(expandDir.exists());
+    }
+
+    @Test
+    public void seesChangesToArchive() {
+        rootDir.file("file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+        assertVisits(tree, toList("file1.txt"), new ArrayList<String>());
+
+        rootDir.file("file2.txt").write("content");
+        zipFile.delete();
+        rootDir.zipTo(zipFile);
+        assertVisits(tree, toList("file1.txt", "file2.txt"), new ArrayList<String>());
+    }
+
     @Test
     public void canStopVisitingFiles() {
         rootDir.file("subdir/file1.txt").write("content");
@@ -29,6 +29,7 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 
 import static org.gradle.api.internal.file.copy.CopyActionExecuterUtil.visit;
 
@@ -54,6 +55,44 @@ public class FileCopyActionTest {
         );
     }
 
+    @Test
+    public void incrementalCopyOnlyCopiesChangedSourcesAndMissingTargets() throws IOException {
+        File unchanged = tmpDir.createFile("src/unchanged.txt");
+        File changed = tmpDir.createFile("src/changed.txt");
+        File missing = tmpDir.createFile("src/missing.txt");
+        tmpDir.createFile("dest/unchanged.txt");
+        tmpDir.createFile("dest/changed.txt");
+        CopySourceChanges sourceChanges = new CopySourceChanges(Collections.singleton(changed));
+
+        FileCopyAction visitor = new FileCopyAction(TestFiles.resolver(destDir), sourceChanges);
+        visit(visitor,
+                skippedFile(new RelativePath(true, "unchanged.txt"), unchanged),
+                file(new RelativePath(true, "changed.txt"), new File(destDir, "changed.txt"), changed),
+                file(new RelativePath(true, "missing.txt"), new File(destDir, "missing.txt"), missing)
+        );
+    }
+
+    private FileCopyDetailsInternal skippedFile(final RelativePath relativePath, final File sourceFile) {
+        final FileCopyDetailsInternal details = context.mock(FileCopyDetailsInternal.class, relativePath.getPathString());
+        context.checking(new Expectations() {{
+            allowing(details).getRelativePath();
+            will(returnValue(relativePath));
+            allowing(details).getSourceFile();
+            will(returnValue(sourceFile));
+            never(details).copyTo(with(any(File.class)));
+        }});
+        return details;
+    }
+
+    private FileCopyDetailsInternal file(final RelativePath relativePath, final File targetFile, final File sourceFile) {
+        final FileCopyDetailsInternal details = file(relativePath, targetFile);
+        context.checking(new Expectations() {{
+            allowing(details).getSourceFile();
+            will(returnValue(sourceFile));
+        }});
+        return details;
+    }
+
     private FileCopyDetailsInternal file(final RelativePath relativePath, final File targetFile) {
         final FileCopyDetailsInternal details = context.mock(FileCopyDetailsInternal.class, relativePath.getPathString());
         context.checking(new Expectations() {{
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.copy
+
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.WorkspaceTest
+import org.gradle.util.Requires
+import org.gradle.util.SetSystemProperties
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+
+import java.nio.file.Files
+
+class FileTransferTest extends WorkspaceTest {
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
+
+    TestFile source
+    TestFile target
+
+    def setup() {
+        source = file("source.txt")
+        target = file("dest/target.txt")
+        source.text = "content"
+        target.parentFile.mkdirs()
+    }
+
+    def "copies content to a new target"() {
+        when:
+        def written = FileTransfer.transfer(source, target, true)
+
+        then:
+        written
+        target.text == "content"
+        !Files.isSameFile(source.toPath(), target.toPath())
+    }
+
+    def "replaces the content of a target that differs from the source"() {
+        given:
+        target.text = "other"
+
+        when:
+        def written = FileTransfer.transfer(source, target, true)
+
+        then:
+        written
+        target.text == "content"
+    }
+
+    def "writes a target that has the content of the source without comparing them"() {
+        given:
+        target.text = "content"
+        target.lastModified = 1000000000000L
+
+        when:
+        def written = FileTransfer.transfer(source, target, true)
+
+        then:
+        written
+        target.text == "content"
+        target.lastModified() != 1000000000000L
+    }
+
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "links the target to the source when hard links are enabled"() {
+        given:
+        System.setProperty(FileTransfer.HARD_LINKS_PROPERTY, "true")
+        target.text = "other"
+
+        when:
+        FileTransfer.transfer(source, target, true)
+
+        then:
+        Files.isSameFile(source.toPath(), target.toPath())
+        target.text == "content"
+    }
+
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "does not write a target that is already linked to the source"() {
+        given:
+        System.setProperty(FileTransfer.HARD_LINKS_PROPERTY, "true")
+        Files.createLink(target.toPath(), source.toPath())
+
+        when:
+        def written = FileTransfer.transfer(source, target, true)
+
+        then:
+        !written
+        Files.isSameFile(source.toPath(), target.toPath())
+    }
+
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "copies instead of linking when linking is not allowed for the target"() {
+        given:
+        System.setProperty(FileTransfer.HARD_LINKS_PROPERTY, "true")
+
+        when:
+        FileTransfer.transfer(source, target, false)
+
+        then:
+        !Files.isSameFile(source.toPath(), target.toPath())
+        target.text == "content"
+    }
+
+    @Requires(TestPrecondition.UNIX_DERIVATIVE)
+    def "breaks a link to the source when hard links are disabled"() {
+        given:
+        Files.createLink(target.toPath(), source.toPath())
+
+        when:
+        def written = FileTransfer.transfer(source, target, true)
+        target.text = "changed"
+
+        then:
+        written
+        source.text == "content"
+    }
+}
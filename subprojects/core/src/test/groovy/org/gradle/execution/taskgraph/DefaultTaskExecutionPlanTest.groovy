@@ -31,6 +31,7 @@ import org.gradle.api.tasks.TaskDependency
 import org.gradle.api.tasks.TaskDestroyables
 import org.gradle.execution.TaskFailureHandler
 import org.gradle.initialization.BuildCancellationToken
+import org.gradle.internal.Factory
 import org.gradle.internal.resources.ResourceLock
 import org.gradle.internal.resources.ResourceLockCoordinationService
 import org.gradle.internal.resources.ResourceLockState
@@ -870,6 +871,66 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "selects the ready task with the longest remaining path first when task durations are known"() {
+        given:
+        def history = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), factoryOf(history))
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        history.getDuration(a) >> 10L
+        history.getDuration(b) >> 5L
+        history.getDuration(c) >> 100L
+
+        when:
+        addToGraphAndPopulate([a, c])
+
+        then:
+        executes(a, b, c)
+        executedTasks == [b, c, a]
+    }
+
+    def "ranking by remaining path does not reorder tasks that should run after others"() {
+        given:
+        def history = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), factoryOf(history))
+        Task a = task("a")
+        Task b = task("b", shouldRunAfter: [a])
+        history.getDuration(a) >> 1L
+        history.getDuration(b) >> 1000L
+
+        when:
+        addToGraphAndPopulate([a, b])
+
+        then:
+        executedTasks == [a, b]
+    }
+
+    def "records the durations of tasks that complete successfully"() {
+        given:
+        def history = Mock(TaskDurationHistory)
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), factoryOf(history))
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+
+        when:
+        addToGraphAndPopulate([b])
+        executedTasks
+
+        then:
+        1 * history.recordDuration(a, { it >= 0 })
+        1 * history.recordDuration(b, { it >= 0 })
+    }
+
+    private static Factory<TaskDurationHistory> factoryOf(TaskDurationHistory history) {
+        return new Factory<TaskDurationHistory>() {
+            @Override
+            TaskDurationHistory create() {
+                return history
+            }
+        }
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.internal.Pair
+import spock.lang.Specification
+
+class PathOwnerIndexTest extends Specification {
+    def index = new PathOwnerIndex<String>()
+
+    def "finds owner of the same path"() {
+        when:
+        index.add(path("a/b"), "owner")
+
+        then:
+        index.findFirstOverlap(path("a/b")) == Pair.of("owner", path("a/b"))
+        index.findOverlaps(path("a/b")) == [owner: path("a/b")]
+    }
+
+    def "finds owner of an ancestor path"() {
+        when:
+        index.add(path("a"), "owner")
+
+        then:
+        index.findFirstOverlap(path("a/b/c")) == Pair.of("owner", path("a"))
+        index.findOverlaps(path("a/b/c")) == [owner: path("a")]
+    }
+
+    def "finds owner of a descendant path"() {
+        when:
+        index.add(path("a/b/c"), "owner")
+
+        then:
+        index.findFirstOverlap(path("a")) == Pair.of("owner", path("a"))
+        index.findOverlaps(path("a")) == [owner: path("a")]
+    }
+
+    def "does not find owners of paths that only share a prefix"() {
+        when:
+        index.add(path("a/bc"), "owner")
+        index.add(path("a/b/c"), "other")
+
+        then:
+        index.findFirstOverlap(path("a/b")) == Pair.of("other", path("a/b"))
+        index.findOverlaps(path("a/b")) == [other: path("a/b")]
+        index.findFirstOverlap(path("a/bcd")) == null
+        index.findFirstOverlap(path("a/d")) == null
+        index.findOverlaps(path("a/d")).isEmpty()
+    }
+
+    def "finds all owners of overlapping paths"() {
+        when:
+        index.add(path("a"), "ancestor")
+        index.add(path("a/b"), "self")
+        index.add(path("a/b"), "other")
+        index.add(path("a/b/c/d"), "descendant")
+        index.add(path("a/e"), "unrelated")
+
+        then:
+        index.findOverlaps(path("a/b")) == [ancestor: path("a"), self: path("a/b"), other: path("a/b"), descendant: path("a/b")]
+    }
+
+    def "removes each ownership separately"() {
+        given:
+        index.add(path("a/b"), "owner")
+        index.add(path("a/b"), "owner")
+        index.add(path("a/b/c"), "other")
+
+        when:
+        index.remove(path("a/b"), "owner")
+
+        then:
+        index.findOverlaps(path("a/b")) == [owner: path("a/b"), other: path("a/b")]
+
+        when:
+        index.remove(path("a/b"), "owner")
+
+        then:
+        index.findOverlaps(path("a/b")) == [other: path("a/b")]
+        !index.isEmpty()
+
+        when:
+        index.remove(path("a/b/c"), "other")
+
+        then:
+        index.findFirstOverlap(path("a")) == null
+        index.isEmpty()
+    }
+
+    def "ignores removal of paths that are not owned"() {
+        given:
+        index.add(path("a/b"), "owner")
+
+        when:
+        index.remove(path("a/b"), "other")
+        index.remove(path("a/c"), "owner")
+        index.remove(path("a"), "owner")
+
+        then:
+        index.findFirstOverlap(path("a/b")) == Pair.of("owner", path("a/b"))
+    }
+
+    private static String path(String relativePath) {
+        return new File("/root", relativePath).absolutePath
+    }
+}
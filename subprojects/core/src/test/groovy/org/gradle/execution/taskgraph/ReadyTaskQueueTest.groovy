@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.Task
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+
+class ReadyTaskQueueTest extends Specification {
+    def queue = new ReadyTaskQueue()
+
+    def "returns tasks whose dependencies are complete in plan order"() {
+        def a = required("a")
+        def b = required("b")
+        def c = required("c")
+        def d = required("d")
+        c.addDependencySuccessor(a)
+        d.addDependencySuccessor(b)
+        d.addDependencySuccessor(c)
+
+        when:
+        [b, a, c, d].each { queue.add(it) }
+
+        then:
+        readyTasks() == [b, a]
+
+        when:
+        run(a)
+
+        then:
+        readyTasks() == [b, c]
+
+        when:
+        run(c)
+
+        then:
+        readyTasks() == [b]
+
+        when:
+        run(b)
+
+        then:
+        readyTasks() == [d]
+        queue.hasIncompleteTasks()
+
+        when:
+        run(d)
+
+        then:
+        readyTasks() == []
+        !queue.hasIncompleteTasks()
+    }
+
+    def "returns ready tasks with higher priority first"() {
+        def a = required("a")
+        def b = required("b")
+        def c = required("c")
+        def d = required("d")
+        d.addDependencySuccessor(a)
+
+        when:
+        queue.add(a, 1)
+        queue.add(b, 5)
+        queue.add(c, 1)
+        queue.add(d, 10)
+
+        then:
+        readyTasks() == [b, a, c]
+
+        when:
+        run(a)
+
+        then:
+        readyTasks() == [d, b, c]
+    }
+
+    def "task that must run after another task waits for it"() {
+        def a = required("a")
+        def b = required("b")
+        b.addMustSuccessor(a)
+
+        when:
+        [a, b].each { queue.add(it) }
+
+        then:
+        readyTasks() == [a]
+
+        when:
+        run(a)
+
+        then:
+        readyTasks() == [b]
+    }
+
+    def "dormant task becomes ready once enforced"() {
+        def a = required("a")
+        def finalizer = info("finalizer")
+        finalizer.mustNotRun()
+        def finalizerDependency = info("finalizerDependency")
+        finalizerDependency.mustNotRun()
+        finalizer.addDependencySuccessor(finalizerDependency)
+
+        when:
+        [a, finalizerDependency, finalizer].each { queue.add(it) }
+
+        then:
+        readyTasks() == [a]
+        queue.hasIncompleteTasks()
+
+        when:
+        finalizer.enforceRun()
+        finalizerDependency.enforceRun()
+        queue.tasksEnforced([finalizer, finalizerDependency])
+
+        then:
+        readyTasks() == [a, finalizerDependency]
+
+        when:
+        run(finalizerDependency)
+
+        then:
+        readyTasks() == [a, finalizer]
+    }
+
+    def "task waiting for a task outside of the plan becomes ready when that task completes"() {
+        def external = required("external")
+        def a = required("a")
+        a.addDependencySuccessor(external)
+
+        when:
+        queue.add(a)
+
+        then:
+        readyTasks() == []
+        queue.hasIncompleteTasks()
+
+        when:
+        external.startExecution()
+        external.finishExecution()
+
+        then:
+        readyTasks() == [a]
+    }
+
+    def "discards tasks that are skipped while waiting"() {
+        def a = required("a")
+        def b = required("b")
+        b.addDependencySuccessor(a)
+        [a, b].each { queue.add(it) }
+
+        when:
+        a.skipExecution()
+        b.skipExecution()
+        queue.recheckWaitingTasks()
+
+        then:
+        readyTasks() == []
+        !queue.hasIncompleteTasks()
+    }
+
+    def "reports each task once when it becomes ready"() {
+        def a = required("a")
+        def b = required("b")
+        def c = required("c")
+        c.addDependencySuccessor(a)
+
+        when:
+        [a, b, c].each { queue.add(it) }
+
+        then:
+        queue.takeNewlyReadyTasks() == [a, b]
+        queue.takeNewlyReadyTasks() == []
+
+        when:
+        run(a)
+
+        then:
+        queue.takeNewlyReadyTasks() == [c]
+
+        when:
+        readyTasks()
+
+        then:
+        queue.takeNewlyReadyTasks() == []
+    }
+
+    private List<TaskInfo> readyTasks() {
+        def tasks = []
+        def iterator = queue.readyTasks()
+        while (iterator.hasNext()) {
+            tasks << iterator.next()
+        }
+        return tasks
+    }
+
+    private void run(TaskInfo taskInfo) {
+        def iterator = queue.readyTasks()
+        def next = iterator.next()
+        while (next != taskInfo) {
+            next = iterator.next()
+        }
+        iterator.remove()
+        taskInfo.startExecution()
+        taskInfo.finishExecution()
+        queue.taskComplete(taskInfo)
+    }
+
+    private TaskInfo required(String name) {
+        def taskInfo = info(name)
+        taskInfo.require()
+        return taskInfo
+    }
+
+    private TaskInfo info(String name) {
+        def task = Stub(TaskInternal) {
+            getPath() >> name
+            compareTo(_) >> { Task other -> name <=> other.path }
+        }
+        return new TaskInfo(task)
+    }
+}
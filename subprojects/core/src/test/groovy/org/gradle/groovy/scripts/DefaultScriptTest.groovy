@@ -21,6 +21,8 @@ package org.gradle.groovy.scripts
 import org.codehaus.groovy.control.CompilerConfiguration
 import org.gradle.api.initialization.dsl.ScriptHandler
 import org.gradle.api.internal.file.FileLookup
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.archive.ZipCentralDirectoryCache
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.logging.LoggingManager
@@ -67,6 +69,8 @@ class DefaultScriptTest {
             will(returnValue(context.mock(StreamHasher)))
             allowing(serviceRegistryMock).get(FileHasher)
             will(returnValue(context.mock(FileHasher)))
+            allowing(serviceRegistryMock).get(ZipCentralDirectoryCache)
+            will(returnValue(TestFiles.zipCentralDirectoryCache()))
         }
 
         DefaultScript script = new GroovyShell(createBaseCompilerConfiguration()).parse(testScriptText)
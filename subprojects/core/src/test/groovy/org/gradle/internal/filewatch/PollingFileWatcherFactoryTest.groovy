@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch
+
+import org.gradle.api.Action
+import org.gradle.api.internal.file.FileSystemSubset
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+class PollingFileWatcherFactoryTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def factory = new PollingFileWatcherFactory(TestFiles.fileSystem())
+    def listener = Mock(FileWatcherListener)
+    def onError = Mock(Action)
+
+    def "reports created, modified and deleted files when polled"() {
+        def dir = tmpDir.createDir("dir")
+        def modified = dir.createFile("modified")
+        def deleted = dir.createFile("deleted")
+        def watcher = factory.watch(onError, listener)
+        watcher.watch(FileSystemSubset.builder().add(dir).build())
+
+        when:
+        factory.poll()
+
+        then:
+        0 * listener._
+
+        when:
+        def created = dir.createFile("created")
+        modified.text = "modified"
+        modified.lastModified = modified.lastModified() - 2000
+        deleted.delete()
+        factory.afterStart()
+
+        then:
+        1 * listener.onChange(watcher, { it.type == FileWatcherEvent.Type.CREATE && it.file == created })
+        1 * listener.onChange(watcher, { it.type == FileWatcherEvent.Type.MODIFY && it.file == modified })
+        1 * listener.onChange(watcher, { it.type == FileWatcherEvent.Type.DELETE && it.file == deleted })
+        0 * listener._
+        0 * onError._
+    }
+
+    def "reports a watched file that is created"() {
+        def file = tmpDir.file("missing")
+        def watcher = factory.watch(onError, listener)
+        watcher.watch(FileSystemSubset.builder().add(file).build())
+
+        when:
+        file.createFile()
+        factory.poll()
+
+        then:
+        1 * listener.onChange(watcher, { it.file == file })
+        0 * listener._
+    }
+
+    def "does not report changes after the watcher has been stopped"() {
+        def file = tmpDir.createFile("file")
+        def watcher = factory.watch(onError, listener)
+        watcher.watch(FileSystemSubset.builder().add(file).build())
+
+        when:
+        watcher.stop()
+        file.delete()
+        factory.poll()
+
+        then:
+        !watcher.running
+        0 * listener._
+    }
+}
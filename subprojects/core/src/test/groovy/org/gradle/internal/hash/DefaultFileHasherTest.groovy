@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+class DefaultFileHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def streamHasher = new DefaultStreamHasher(new DefaultContentHasherFactory())
+    def streamingHasher = new DefaultFileHasher(streamHasher, Long.MAX_VALUE, Long.MAX_VALUE)
+    def channelHasher = new DefaultFileHasher(streamHasher, 0, Long.MAX_VALUE)
+    def mappingHasher = new DefaultFileHasher(streamHasher, 0, 0)
+
+    @Unroll
+    def "mapped, read and streamed content of #size bytes have the same hash"() {
+        def file = tmpDir.file("file.bin")
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        file.bytes = content
+
+        expect:
+        mappingHasher.hash(file) == streamingHasher.hash(file)
+        mappingHasher.hash(file, DefaultFileMetadata.file(file.lastModified(), size)) == streamingHasher.hash(file)
+        channelHasher.hash(file) == streamingHasher.hash(file)
+        channelHasher.hash(file, DefaultFileMetadata.file(file.lastModified(), size)) == streamingHasher.hash(file)
+
+        where:
+        size << [0, 1, 8191, 8192, 8193, 64 * 1024, 1024 * 1024 + 17]
+    }
+
+    def "uses the length of the opened file rather than the given length"() {
+        def hasher = new DefaultFileHasher(streamHasher, 10, 10)
+        def file = tmpDir.file("file.txt")
+        file.text = "some longer content"
+
+        expect:
+        hasher.hash(file, DefaultFileMetadata.file(0, 1)) == streamingHasher.hash(file)
+        hasher.hash(file, DefaultFileMetadata.file(0, 1000)) == streamingHasher.hash(file)
+    }
+
+    def "reads content when mapped file is truncated"() {
+        def content = "some content".bytes
+        def channel = Mock(FileChannel) {
+            size() >> 1000
+            map(_, _, _) >> { throw new InternalError("a fault occurred in an unsafe memory access operation") }
+            read(_ as ByteBuffer, _ as long) >> { ByteBuffer buffer, long position ->
+                if (position >= content.length) {
+                    return -1
+                }
+                buffer.put(content, (int) position, content.length - (int) position)
+                return content.length - (int) position
+            }
+        }
+
+        expect:
+        streamHasher.hashMapped(channel) == streamHasher.hash(new ByteArrayInputStream(content))
+    }
+
+    def "fails to hash missing file"() {
+        def file = tmpDir.file("missing")
+
+        when:
+        mappingHasher.hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create MD5 hash for file '$file'."
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+/**
+ * Compares parsing POMs into a DOM with parsing them using {@link PomDomParser}, which streams the POM and keeps only the elements that are used.
+ *
+ * <p>The POMs are modelled on real-world POMs: a library POM with a handful of dependencies and a build section, and a parent POM that manages the versions
+ * of many modules and configures many plugins.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class PomParsingBenchmark {
+    @Param({"library", "parent"})
+    String pom;
+
+    byte[] content;
+    byte[] m2Entities;
+    DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup
+    public void setup() throws Exception {
+        content = pom.equals("library") ? pom(20, 0, 5) : pom(10, 800, 40);
+        m2Entities = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+    }
+
+    @Benchmark
+    public Document dom() throws Exception {
+        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        documentBuilder.setEntityResolver(new EntityResolver() {
+            @Override
+            public InputSource resolveEntity(String publicId, String systemId) {
+                return new InputSource(new ByteArrayInputStream(m2Entities));
+            }
+        });
+        return documentBuilder.parse(new PomDomParser.AddDTDFilterInputStream(new ByteArrayInputStream(content)), "pom.xml");
+    }
+
+    @Benchmark
+    public PomDomParser.PomElement streaming() throws Exception {
+        return PomDomParser.parse(new ByteArrayInputStream(content), "pom.xml");
+    }
+
+    private static byte[] pom(int dependencies, int managedDependencies, int plugins) throws Exception {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+        pom.append("  <parent><groupId>org.example</groupId><artifactId>example-parent</artifactId><version>1.0</version></parent>\n");
+        pom.append("  <artifactId>example</artifactId>\n  <packaging>jar</packaging>\n");
+        pom.append("  <name>Example</name>\n  <description>An example module with a longer description of what it does.</description>\n");
+        pom.append("  <licenses><license><name>The Apache Software License, Version 2.0</name><url>http://www.apache.org/licenses/LICENSE-2.0.txt</url></license></licenses>\n");
+        pom.append("  <developers>\n");
+        for (int i = 0; i < 10; i++) {
+            pom.append("    <developer><id>dev").append(i).append("</id><name>Developer ").append(i).append("</name><email>dev").append(i).append("@example.org</email></developer>\n");
+        }
+        pom.append("  </developers>\n");
+        pom.append("  <properties>\n");
+        for (int i = 0; i < 30; i++) {
+            pom.append("    <module").append(i).append(".version>").append(i).append(".0</module").append(i).append(".version>\n");
+        }
+        pom.append("  </properties>\n");
+        if (managedDependencies > 0) {
+            pom.append("  <dependencyManagement>\n    <dependencies>\n");
+            for (int i = 0; i < managedDependencies; i++) {
+                dependency(pom, "org.example.managed", "managed" + i, "${module" + (i % 30) + ".version}", null);
+            }
+            pom.append("    </dependencies>\n  </dependencyManagement>\n");
+        }
+        pom.append("  <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            dependency(pom, "org.example", "dependency" + i, "1." + i, i % 3 == 0 ? "test" : null);
+        }
+        pom.append("  </dependencies>\n");
+        pom.append("  <build>\n    <plugins>\n");
+        for (int i = 0; i < plugins; i++) {
+            pom.append("      <plugin>\n        <groupId>org.apache.maven.plugins</groupId>\n        <artifactId>maven-plugin").append(i).append("</artifactId>\n        <version>2.").append(i).append("</version>\n");
+            pom.append("        <executions><execution><id>default</id><phase>package</phase><goals><goal>run</goal></goals></execution></executions>\n");
+            pom.append("        <configuration>\n");
+            for (int j = 0; j < 10; j++) {
+                pom.append("          <option").append(j).append(">value ").append(j).append("</option").append(j).append(">\n");
+            }
+            pom.append("        </configuration>\n      </plugin>\n");
+        }
+        pom.append("    </plugins>\n  </build>\n");
+        pom.append("</project>\n");
+        return pom.toString().getBytes("UTF-8");
+    }
+
+    private static void dependency(StringBuilder pom, String group, String name, String version, String scope) {
+        pom.append("      <dependency>\n        <groupId>").append(group).append("</groupId>\n        <artifactId>").append(name).append("</artifactId>\n        <version>").append(version).append("</version>\n");
+        if (scope != null) {
+            pom.append("        <scope>").append(scope).append("</scope>\n");
+        }
+        pom.append("        <exclusions><exclusion><groupId>commons-logging</groupId><artifactId>commons-logging</artifactId></exclusion></exclusions>\n");
+        pom.append("      </dependency>\n");
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.Exclude;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures checking the modules of a dependency graph against the exclusions accumulated along the paths through the graph.
+ *
+ * <p>The graph has the shape of the repositories generated for the performance tests: modules named {@code group:artifactN}, arranged in chains of dependencies.
+ * Each dependency declares a number of excludes, which are intersected along each chain. Each chain is also reached through a second path, so the exclusions of both paths are unioned.</p>
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ModuleExclusionBenchmark {
+    private static final int GRAPH_SIZE = 1000;
+    private static final int DEPTH = 5;
+
+    @Param({"exact", "mixed"})
+    String rules;
+
+    @Param({"5", "50"})
+    int excludesPerDependency;
+
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    ModuleIdentifier[] modules;
+    ModuleExclusion[] exclusions;
+
+    @Setup
+    public void setup() {
+        moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+        ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        modules = new ModuleIdentifier[GRAPH_SIZE];
+        for (int i = 0; i < GRAPH_SIZE; i++) {
+            modules[i] = moduleIdentifierFactory.module("group", "artifact" + i);
+        }
+        exclusions = new ModuleExclusion[GRAPH_SIZE / DEPTH];
+        for (int chain = 0; chain < exclusions.length; chain++) {
+            ModuleExclusion exclusion = ModuleExclusions.excludeNone();
+            for (int level = 0; level < DEPTH; level++) {
+                exclusion = moduleExclusions.intersect(exclusion, moduleExclusions.excludeAny(excludes(chain * DEPTH + level)));
+            }
+            exclusions[chain] = moduleExclusions.union(exclusion, moduleExclusions.excludeAny(excludes(chain * DEPTH + GRAPH_SIZE)));
+        }
+    }
+
+    @Benchmark
+    public int excludeModule() {
+        int excluded = 0;
+        for (ModuleExclusion exclusion : exclusions) {
+            for (ModuleIdentifier module : modules) {
+                if (exclusion.excludeModule(module)) {
+                    excluded++;
+                }
+            }
+        }
+        return excluded;
+    }
+
+    private List<Exclude> excludes(int dependency) {
+        List<Exclude> excludes = new ArrayList<Exclude>(excludesPerDependency);
+        for (int i = 0; i < excludesPerDependency; i++) {
+            int seed = dependency + i;
+            switch (seed % 4) {
+                case 0:
+                    excludes.add(new DefaultExclude(moduleIdentifierFactory.module("group", "artifact" + (seed * 7 % GRAPH_SIZE))));
+                    break;
+                case 1:
+                    excludes.add(new DefaultExclude(moduleIdentifierFactory.module("excluded" + seed, "*")));
+                    break;
+                case 2:
+                    excludes.add(new DefaultExclude(moduleIdentifierFactory.module("*", "excluded" + seed)));
+                    break;
+                default:
+                    if (rules.equals("mixed")) {
+                        excludes.add(new DefaultExclude(moduleIdentifierFactory.module("group", "artifact" + seed % 10 + "\\d"), new String[0], "regexp"));
+                    } else {
+                        excludes.add(new DefaultExclude(moduleIdentifierFactory.module("excluded" + seed, "excluded" + seed)));
+                    }
+            }
+        }
+        return excludes;
+    }
+}
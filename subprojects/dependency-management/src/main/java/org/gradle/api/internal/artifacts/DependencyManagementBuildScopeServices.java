@@ -52,6 +52,7 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectLocalCo
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultLocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.mvnsettings.DefaultMavenFileLocations;
@@ -292,7 +293,13 @@ class DependencyManagementBuildScopeServices {
                                                                 List<ResolverProviderFactory> resolverFactories,
                                                                 ImmutableModuleIdentifierFactory moduleIdentifierFactory,
                                                                 ModuleExclusions moduleExclusions,
-                                                                BuildOperationExecutor buildOperationExecutor) {
+                                                                BuildOperationExecutor buildOperationExecutor,
+                                                                VersionSelectorScheme versionSelectorScheme,
+                                                                CacheLockingManager cacheLockingManager,
+                                                                StartParameter startParameter) {
+        ResolvedGraphCache resolvedGraphCache = ResolvedGraphCache.isEnabled() && !startParameter.isRefreshDependencies()
+            ? new ResolvedGraphCache(cacheLockingManager, moduleIdentifierFactory)
+            : null;
         return new DefaultArtifactDependencyResolver(
             buildOperationExecutor,
             resolverFactories,
@@ -300,7 +307,9 @@ class DependencyManagementBuildScopeServices {
             dependencyDescriptorFactory,
             versionComparator,
             moduleIdentifierFactory,
-            moduleExclusions
+            moduleExclusions,
+            versionSelectorScheme,
+            resolvedGraphCache
         );
     }
 
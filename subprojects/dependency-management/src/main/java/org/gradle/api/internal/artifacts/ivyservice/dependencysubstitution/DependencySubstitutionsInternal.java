@@ -24,6 +24,11 @@ import org.gradle.api.internal.artifacts.configurations.MutationValidator;
 public interface DependencySubstitutionsInternal extends DependencySubstitutions, DependencySubstitutionRules {
     DependencySubstitutions allWithDependencyResolveDetails(Action<? super DependencyResolveDetails> rule);
 
+    /**
+     * Returns true when any rule has been registered, including those registered using {@link #allWithDependencyResolveDetails(Action)}.
+     */
+    boolean hasAnyRules();
+
     void setMutationValidator(MutationValidator validator);
 
     DependencySubstitutionsInternal copy();
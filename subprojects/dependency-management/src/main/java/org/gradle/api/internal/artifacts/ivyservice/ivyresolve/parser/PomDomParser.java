@@ -16,39 +16,89 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Parses a POM into a tree of {@link PomElement}s with a streaming parser, keeping only the elements that are used to build the module metadata.
+ * Everything else, such as the build, reporting and developer information, is skipped as it is read, so is never held in memory.
+ */
 public final class PomDomParser {
-    private PomDomParser() {}
+    private static final Set<String> PROJECT_CHILDREN = ImmutableSet.of("groupId", "artifactId", "version", "packaging", "parent", "distributionManagement", "properties", "dependencies", "dependencyManagement", "profiles");
+    private static final Set<String> DISTRIBUTION_MGT_CHILDREN = ImmutableSet.of("relocation");
+    private static final Set<String> PROFILES_CHILDREN = ImmutableSet.of("profile");
+    private static final Set<String> PROFILE_CHILDREN = ImmutableSet.of("id", "activation", "properties", "dependencies", "dependencyManagement");
+    private static final byte[] M2_ENTITIES_RESOURCE;
+    private static final SAXParserFactory SAX_PARSER_FACTORY;
 
-    public static String getTextContent(Element element) {
-        StringBuilder result = new StringBuilder();
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
 
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node child = childNodes.item(i);
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+            SAX_PARSER_FACTORY.setValidating(false);
+            SAX_PARSER_FACTORY.setNamespaceAware(false);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
 
-            switch (child.getNodeType()) {
-                case Node.CDATA_SECTION_NODE:
-                case Node.TEXT_NODE:
-                    result.append(child.getNodeValue());
-                    break;
-                default:
-                    break;
-            }
+    private PomDomParser() {}
+
+    /**
+     * Parses the given POM, returning its root element.
+     */
+    public static PomElement parse(InputStream stream, String systemId) throws IOException, SAXException {
+        // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+        // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+        try {
+            SAXParser parser = SAX_PARSER_FACTORY.newSAXParser();
+            InputSource source = new InputSource(new AddDTDFilterInputStream(stream));
+            source.setSystemId(systemId);
+            PomHandler handler = new PomHandler();
+            parser.parse(source, handler);
+            return handler.root;
+        } catch (ParserConfigurationException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(original);
         }
+    }
 
-        return result.toString();
+    public static String getTextContent(PomElement element) {
+        return element.getText();
     }
 
-    public static String getFirstChildText(Element parentElem, String name) {
-        Element node = getFirstChildElement(parentElem, name);
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
         if (node != null) {
             return getTextContent(node);
         } else {
@@ -56,32 +106,133 @@ public final class PomDomParser {
         }
     }
 
-    public static Element getFirstChildElement(Element parentElem, String name) {
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
         if (parentElem == null) {
             return null;
         }
-        NodeList childs = parentElem.getChildNodes();
-        for (int i = 0; i < childs.getLength(); i++) {
-            Node node = childs.item(i);
-            if (node instanceof Element && name.equals(node.getNodeName())) {
-                return (Element) node;
+        for (PomElement child : parentElem.getChildren()) {
+            if (name.equals(child.getName())) {
+                return child;
             }
         }
         return null;
     }
 
-    public static List<Element> getAllChilds(Element parent) {
-        List<Element> r = new LinkedList<Element>();
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        List<PomElement> r = new LinkedList<PomElement>();
         if (parent != null) {
-            NodeList childs = parent.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element) {
-                    r.add((Element) node);
+            r.addAll(parent.getChildren());
+        }
+        return r;
+    }
+
+    /**
+     * An element of a POM. Holds the text directly contained by the element, and its child elements.
+     */
+    public static final class PomElement {
+        private final String name;
+        private StringBuilder text;
+        private List<PomElement> children;
+
+        PomElement(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getText() {
+            return text == null ? "" : text.toString();
+        }
+
+        public List<PomElement> getChildren() {
+            return children == null ? Collections.<PomElement>emptyList() : children;
+        }
+
+        private void appendText(char[] ch, int start, int length) {
+            if (text == null) {
+                text = new StringBuilder(length);
+            }
+            text.append(ch, start, length);
+        }
+
+        private void addChild(PomElement child) {
+            if (children == null) {
+                children = new ArrayList<PomElement>();
+            }
+            children.add(child);
+        }
+    }
+
+    private static class PomHandler extends DefaultHandler {
+        private final LinkedList<PomElement> elements = new LinkedList<PomElement>();
+        // The names of the child elements to keep for each element on the stack, or null to keep all child elements
+        private final LinkedList<Set<String>> keptChildren = new LinkedList<Set<String>>();
+        private PomElement root;
+        private int skipDepth;
+
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) throws IOException, SAXException {
+            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                return new InputSource(new ByteArrayInputStream(M2_ENTITIES_RESOURCE));
+            }
+            return null;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (skipDepth > 0) {
+                skipDepth++;
+                return;
+            }
+            PomElement element = new PomElement(qName);
+            if (root == null) {
+                root = element;
+                elements.addFirst(element);
+                keptChildren.addFirst(PROJECT_CHILDREN);
+                return;
+            }
+            Set<String> kept = keptChildren.getFirst();
+            if (kept != null && !kept.contains(qName)) {
+                skipDepth = 1;
+                return;
+            }
+            elements.getFirst().addChild(element);
+            elements.addFirst(element);
+            keptChildren.addFirst(keptChildrenOf(kept, qName));
+        }
+
+        private static Set<String> keptChildrenOf(Set<String> keptByParent, String name) {
+            if (keptByParent == PROJECT_CHILDREN) {
+                if (name.equals("distributionManagement")) {
+                    return DISTRIBUTION_MGT_CHILDREN;
                 }
+                if (name.equals("profiles")) {
+                    return PROFILES_CHILDREN;
+                }
+            } else if (keptByParent == PROFILES_CHILDREN) {
+                return PROFILE_CHILDREN;
+            }
+            return null;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (skipDepth > 0) {
+                skipDepth--;
+                return;
+            }
+            elements.removeFirst();
+            keptChildren.removeFirst();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (skipDepth == 0 && !elements.isEmpty()) {
+                elements.getFirst().appendText(ch, start, length);
             }
         }
-        return r;
     }
 
     public static final class AddDTDFilterInputStream extends FilterInputStream {
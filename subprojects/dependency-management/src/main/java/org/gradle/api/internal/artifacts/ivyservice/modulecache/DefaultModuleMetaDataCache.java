@@ -28,6 +28,8 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.Factory;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
 import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
 import org.gradle.internal.serialize.AbstractSerializer;
 import org.gradle.internal.serialize.Decoder;
@@ -36,7 +38,9 @@ import org.gradle.util.BuildCommencedTimeProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
+import java.io.File;
+
+public class DefaultModuleMetaDataCache implements ModuleMetaDataCache, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultModuleMetaDataCache.class);
 
     private final BuildCommencedTimeProvider timeProvider;
@@ -49,7 +53,20 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
 
-        moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetaData.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributesFactory), moduleIdentifierFactory, moduleExclusions);
+        File metaDataStoreDirectory = artifactCacheMetaData.getMetaDataStoreDirectory();
+        DefaultPathKeyFileStore metaDataStore = new DefaultPathKeyFileStore(metaDataStoreDirectory);
+        ModuleMetadataSerializer moduleMetadataSerializer = new ModuleMetadataSerializer(attributesFactory);
+        if (MappedModuleMetadataStore.isEnabled()) {
+            File segmentsDir = new File(metaDataStoreDirectory.getParentFile(), "descriptor-segments");
+            moduleMetadataStore = new MappedModuleMetadataStore(segmentsDir, metaDataStore, moduleMetadataSerializer, moduleIdentifierFactory, moduleExclusions);
+        } else {
+            moduleMetadataStore = new ModuleMetadataStore(metaDataStore, moduleMetadataSerializer, moduleIdentifierFactory, moduleExclusions);
+        }
+    }
+
+    @Override
+    public void stop() {
+        CompositeStoppable.stoppable(moduleMetadataStore).stop();
     }
 
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> getCache() {
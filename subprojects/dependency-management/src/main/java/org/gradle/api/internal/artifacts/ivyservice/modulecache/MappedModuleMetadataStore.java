@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import com.google.common.io.Files;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.resource.local.DefaultLocallyAvailableResource;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link ModuleMetadataStore} that keeps the metadata of each repository in a single memory-mapped {@link ModuleMetadataSegment}, rather than in one file per module version.
+ *
+ * <p>Metadata that is only found in the file per module version store, for example because it was written by an earlier Gradle version, is copied into the segment the first time it is read.</p>
+ */
+public class MappedModuleMetadataStore extends ModuleMetadataStore implements Closeable {
+    /**
+     * Enables storing module metadata in memory-mapped segment files.
+     */
+    public static final String MAPPED_STORE_PROPERTY = "org.gradle.internal.resolution.mapped-metadata-store";
+
+    private final File segmentsDir;
+    private final Map<String, ModuleMetadataSegment> segments = new HashMap<String, ModuleMetadataSegment>();
+
+    public MappedModuleMetadataStore(File segmentsDir, PathKeyFileStore metaDataStore, ModuleMetadataSerializer moduleMetadataSerializer, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
+        super(metaDataStore, moduleMetadataSerializer, moduleIdentifierFactory, moduleExclusions);
+        this.segmentsDir = segmentsDir;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(MAPPED_STORE_PROPERTY);
+    }
+
+    @Override
+    public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
+        ModuleMetadataSegment segment = segmentFor(component);
+        String key = getFilePath(component);
+        try {
+            InputStream inputStream = segment.get(key);
+            if (inputStream != null) {
+                return read(inputStream);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + segment.getFile(), e);
+        }
+
+        LocallyAvailableResource resource = findModuleDescriptor(component);
+        if (resource == null) {
+            return null;
+        }
+        try {
+            byte[] value = Files.toByteArray(resource.getFile());
+            segment.put(key, value);
+            return read(new ByteArrayInputStream(value));
+        } catch (Exception e) {
+            throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
+        }
+    }
+
+    @Override
+    public LocallyAvailableResource putModuleDescriptor(ModuleComponentAtRepositoryKey component, ModuleComponentResolveMetadata metadata) {
+        ModuleMetadataSegment segment = segmentFor(component);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            write(outputStream, metadata);
+            if (segment.put(getFilePath(component), outputStream.toByteArray())) {
+                return new DefaultLocallyAvailableResource(segment.getFile());
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        // The segment is full, and no longer holds an entry for the component that would hide the one in the file per module version store
+        return super.putModuleDescriptor(component, metadata);
+    }
+
+    @Override
+    public void close() {
+        synchronized (segments) {
+            CompositeStoppable.stoppable(segments.values()).stop();
+            segments.clear();
+        }
+    }
+
+    private ModuleMetadataSegment segmentFor(ModuleComponentAtRepositoryKey component) {
+        synchronized (segments) {
+            String repositoryId = component.getRepositoryId();
+            ModuleMetadataSegment segment = segments.get(repositoryId);
+            if (segment == null) {
+                segment = new ModuleMetadataSegment(segmentsDir, repositoryId);
+                segments.put(repositoryId, segment);
+            }
+            return segment;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.util.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file that holds the serialized module metadata of a single repository, and is read through a memory mapping.
+ *
+ * <p>The file starts with a header, followed by one record per stored entry: the length of the key, the length of the value, the CRC32 checksum of the key and value,
+ * the UTF-8 encoded key and the value. The records are indexed the first time the file is read, and the index is extended whenever the file grows, including when
+ * another process appends to it. An entry that is stored again replaces the previous one in the index.</p>
+ *
+ * <p>A record that was only partially written, detected by its checksum, ends the file and is overwritten by the next record appended. The mapping is larger than the
+ * records it holds, and doubles in size when it runs out of space, so the file is only mapped again once in a while.</p>
+ *
+ * <p>Once the replaced records take up more space than the records in use, or the file reaches its maximum size, the records in use are copied to a new file that replaces
+ * the current one. The files are numbered, and the replaced file is marked in its header, so that other processes switch to the new file as well.
+ * Callers are expected to hold the artifact cache lock, so that only one process writes at a time.</p>
+ */
+class ModuleMetadataSegment implements Closeable {
+    private static final int MAGIC = 0x474d4d53;
+    private static final int VERSION = 2;
+    private static final int STATE_OFFSET = 8;
+    private static final int STATE_CURRENT = 0;
+    private static final int STATE_REPLACED = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int MIN_MAPPED_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File dir;
+    private final String name;
+    private final int maxSize;
+    private final Map<String, Record> index = new HashMap<String, Record>();
+    private File file;
+    private long generation;
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+    // The end of the last complete record
+    private int end;
+    // The size of the records that have been replaced by a later record
+    private long replacedSize;
+
+    ModuleMetadataSegment(File dir, String name) {
+        this(dir, name, Integer.MAX_VALUE);
+    }
+
+    ModuleMetadataSegment(File dir, String name, int maxSize) {
+        this.dir = dir;
+        this.name = name;
+        this.maxSize = maxSize;
+        this.file = fileFor(1);
+    }
+
+    synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the value stored for the given key, or null when there is none. The returned stream reads directly from the mapped file.
+     */
+    @Nullable
+    synchronized InputStream get(String key) throws IOException {
+        refresh();
+        Record record = index.get(key);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer value = buffer.duplicate();
+        value.position(record.getValueOffset());
+        value.limit(record.getValueOffset() + record.valueLength);
+        return new ByteBufferInputStream(value.slice());
+    }
+
+    /**
+     * Appends the given value for the given key. Returns false when the segment cannot hold the value, in which case the segment no longer holds any value for the key.
+     */
+    synchronized boolean put(String key, byte[] value) throws IOException {
+        refresh();
+        byte[] keyBytes = key.getBytes(UTF_8);
+        long recordSize = (long) RECORD_HEADER_SIZE + keyBytes.length + value.length;
+        Record previous = index.get(key);
+        long garbageSize = replacedSize + (previous == null ? 0 : previous.getSize());
+        boolean full = end + recordSize > maxSize;
+        if (garbageSize > 0 && (full || shouldCompact(garbageSize))) {
+            compact(key);
+        }
+        if (end + recordSize > maxSize) {
+            return false;
+        }
+        if (end + recordSize > buffer.capacity()) {
+            map(end + recordSize);
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(keyBytes);
+        checksum.update(value);
+        ByteBuffer record = ByteBuffer.allocate((int) recordSize);
+        record.putInt(keyBytes.length).putInt(value.length).putInt((int) checksum.getValue()).put(keyBytes).put(value);
+        record.flip();
+        write(randomAccessFile.getChannel(), record, end);
+        addToIndex(key, new Record(end, keyBytes.length, value.length));
+        end += recordSize;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFile();
+    }
+
+    private boolean shouldCompact(long garbageSize) {
+        long usedSize = end - HEADER_SIZE - garbageSize;
+        return garbageSize > usedSize && garbageSize >= maxSize / 64;
+    }
+
+    private void refresh() throws IOException {
+        if (randomAccessFile == null) {
+            open();
+        } else if (buffer.getInt(STATE_OFFSET) == STATE_REPLACED) {
+            // Another process has moved the records to a new file
+            closeFile();
+            open();
+        }
+        long size = randomAccessFile.length();
+        if (size > buffer.capacity()) {
+            map(size);
+        }
+        scan();
+    }
+
+    private void open() throws IOException {
+        GFileUtils.mkdirs(dir);
+        long latest = 1;
+        File[] candidates = dir.listFiles();
+        for (File candidate : candidates) {
+            latest = Math.max(latest, generationOf(candidate));
+        }
+        for (File candidate : candidates) {
+            long candidateGeneration = generationOf(candidate);
+            if ((candidateGeneration > 0 && candidateGeneration < latest) || isIncompleteFile(candidate)) {
+                // A file that was replaced, or that was not completely written. Another process may still have it mapped, in which case it is deleted later
+                candidate.delete();
+            }
+        }
+
+        generation = latest;
+        file = fileFor(generation);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        if (randomAccessFile.length() < HEADER_SIZE) {
+            write(randomAccessFile.getChannel(), header(), 0);
+        }
+        map(randomAccessFile.length());
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("File " + file + " is not a module metadata segment.");
+        }
+        if (buffer.getInt(STATE_OFFSET) != STATE_CURRENT) {
+            // Replacing this file did not complete
+            writeState(STATE_CURRENT);
+        }
+        end = HEADER_SIZE;
+        scan();
+    }
+
+    private void closeFile() throws IOException {
+        index.clear();
+        buffer = null;
+        end = 0;
+        replacedSize = 0;
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } finally {
+                randomAccessFile = null;
+            }
+        }
+    }
+
+    /**
+     * Maps at least the given number of bytes of the file, extending the file when it is shorter. Mappings that are still referenced by a stream stay valid.
+     */
+    private void map(long minSize) throws IOException {
+        long size = buffer == null ? MIN_MAPPED_SIZE : 2L * buffer.capacity();
+        size = Math.min(Math.max(size, minSize), maxSize);
+        buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void scan() {
+        int limit = buffer.capacity();
+        while (end + RECORD_HEADER_SIZE <= limit) {
+            int keyLength = buffer.getInt(end);
+            int valueLength = buffer.getInt(end + 4);
+            int checksum = buffer.getInt(end + 8);
+            if (keyLength <= 0 || valueLength < 0 || (long) end + RECORD_HEADER_SIZE + keyLength + valueLength > limit) {
+                // Unused space or partially written record
+                return;
+            }
+            byte[] contents = new byte[keyLength + valueLength];
+            ByteBuffer contentsBuffer = buffer.duplicate();
+            contentsBuffer.position(end + RECORD_HEADER_SIZE);
+            contentsBuffer.get(contents);
+            CRC32 actualChecksum = new CRC32();
+            actualChecksum.update(contents);
+            if ((int) actualChecksum.getValue() != checksum) {
+                // Partially written record
+                return;
+            }
+            Record record = new Record(end, keyLength, valueLength);
+            addToIndex(new String(contents, 0, keyLength, UTF_8), record);
+            end += record.getSize();
+        }
+    }
+
+    private void addToIndex(String key, Record record) {
+        Record previous = index.put(key, record);
+        if (previous != null) {
+            replacedSize += previous.getSize();
+        }
+    }
+
+    /**
+     * Copies the records in use, except the record for the given key, to a new file that replaces the current one.
+     */
+    private void compact(String excludedKey) throws IOException {
+        File nextFile = fileFor(generation + 1);
+        File tempFile = new File(dir, nextFile.getName() + ".tmp");
+        RandomAccessFile next = new RandomAccessFile(tempFile, "rw");
+        try {
+            next.setLength(0);
+            FileChannel channel = next.getChannel();
+            long position = write(channel, header(), 0);
+            for (Map.Entry<String, Record> entry : index.entrySet()) {
+                if (entry.getKey().equals(excludedKey)) {
+                    continue;
+                }
+                Record record = entry.getValue();
+                ByteBuffer bytes = buffer.duplicate();
+                bytes.position(record.offset);
+                bytes.limit(record.offset + record.getSize());
+                position = write(channel, bytes, position);
+            }
+        } finally {
+            next.close();
+        }
+
+        // Mark the current file first, so that no process keeps writing to it once the new file is in place
+        File replacedFile = file;
+        writeState(STATE_REPLACED);
+        closeFile();
+        if (!tempFile.renameTo(nextFile)) {
+            throw new IOException("Could not rename " + tempFile + " to " + nextFile + ".");
+        }
+        replacedFile.delete();
+        open();
+    }
+
+    private void writeState(int state) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4);
+        bytes.putInt(state);
+        bytes.flip();
+        write(randomAccessFile.getChannel(), bytes, STATE_OFFSET);
+    }
+
+    private File fileFor(long generation) {
+        return new File(dir, name + "-" + generation + ".bin");
+    }
+
+    private long generationOf(File candidate) {
+        String fileName = candidate.getName();
+        String prefix = name + "-";
+        if (!fileName.startsWith(prefix) || !fileName.endsWith(".bin")) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(fileName.substring(prefix.length(), fileName.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private boolean isIncompleteFile(File candidate) {
+        String fileName = candidate.getName();
+        return fileName.startsWith(name + "-") && fileName.endsWith(".bin.tmp");
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(STATE_CURRENT);
+        header.flip();
+        return header;
+    }
+
+    private static long write(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+        return position;
+    }
+
+    private static class Record {
+        final int offset;
+        final int keyLength;
+        final int valueLength;
+
+        Record(int offset, int keyLength, int valueLength) {
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        int getValueOffset() {
+            return offset + RECORD_HEADER_SIZE + keyLength;
+        }
+
+        int getSize() {
+            return RECORD_HEADER_SIZE + keyLength + valueLength;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -30,6 +30,8 @@ import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 public class ModuleMetadataStore {
 
@@ -46,16 +48,10 @@ public class ModuleMetadataStore {
     }
 
     public MutableModuleComponentResolveMetadata getModuleDescriptor(ModuleComponentAtRepositoryKey component) {
-        String filePath = getFilePath(component);
-        final LocallyAvailableResource resource = metaDataStore.get(filePath);
+        final LocallyAvailableResource resource = findModuleDescriptor(component);
         if (resource != null) {
             try {
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(resource.getFile()));
-                try {
-                    return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, moduleExclusions);
-                } finally {
-                    decoder.close();
-                }
+                return read(new FileInputStream(resource.getFile()));
             } catch (Exception e) {
                 throw new RuntimeException("Could not load module metadata from " + resource.getDisplayName(), e);
             }
@@ -68,12 +64,7 @@ public class ModuleMetadataStore {
         return metaDataStore.add(filePath, new Action<File>() {
             public void execute(File moduleDescriptorFile) {
                 try {
-                    KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(moduleDescriptorFile));
-                    try {
-                        moduleMetadataSerializer.write(encoder, metadata);
-                    } finally {
-                        encoder.close();
-                    }
+                    write(new FileOutputStream(moduleDescriptorFile), metadata);
                 } catch (Exception e) {
                     throw UncheckedException.throwAsUncheckedException(e);
                 }
@@ -81,7 +72,29 @@ public class ModuleMetadataStore {
         });
     }
 
-    private String getFilePath(ModuleComponentAtRepositoryKey componentId) {
+    protected LocallyAvailableResource findModuleDescriptor(ModuleComponentAtRepositoryKey component) {
+        return metaDataStore.get(getFilePath(component));
+    }
+
+    protected MutableModuleComponentResolveMetadata read(InputStream inputStream) throws Exception {
+        KryoBackedDecoder decoder = new KryoBackedDecoder(inputStream);
+        try {
+            return moduleMetadataSerializer.read(decoder, moduleIdentifierFactory, moduleExclusions);
+        } finally {
+            decoder.close();
+        }
+    }
+
+    protected void write(OutputStream outputStream, ModuleComponentResolveMetadata metadata) throws Exception {
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        try {
+            moduleMetadataSerializer.write(encoder, metadata);
+        } finally {
+            encoder.close();
+        }
+    }
+
+    protected String getFilePath(ModuleComponentAtRepositoryKey componentId) {
         ModuleComponentIdentifier moduleComponentIdentifier = componentId.getComponentId();
         return moduleComponentIdentifier.getGroup() + "/" + moduleComponentIdentifier.getModule() + "/" + moduleComponentIdentifier.getVersion() + "/" + componentId.getRepositoryId() + "/descriptor.bin";
     }
@@ -28,6 +28,7 @@ import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ComponentResolver
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolverProviderFactory;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.DependencyDescriptorFactory;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DependencyArtifactsVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedArtifactsGraphVisitor;
@@ -35,12 +36,18 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.Modul
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraph;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphRecorder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache.ResolvedGraphReplayer;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.ConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
 import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
@@ -50,6 +57,7 @@ import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 public class DefaultArtifactDependencyResolver implements ArtifactDependencyResolver {
@@ -61,8 +69,11 @@ public class DefaultArtifactDependencyResolver implements ArtifactDependencyReso
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final ModuleExclusions moduleExclusions;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ResolvedGraphCache resolvedGraphCache;
 
-    public DefaultArtifactDependencyResolver(BuildOperationExecutor buildOperationExecutor, List<ResolverProviderFactory> resolverFactories, ResolveIvyFactory ivyFactory, DependencyDescriptorFactory dependencyDescriptorFactory, VersionComparator versionComparator, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
+    public DefaultArtifactDependencyResolver(BuildOperationExecutor buildOperationExecutor, List<ResolverProviderFactory> resolverFactories, ResolveIvyFactory ivyFactory, DependencyDescriptorFactory dependencyDescriptorFactory, VersionComparator versionComparator, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions,
+                                             VersionSelectorScheme versionSelectorScheme, @Nullable ResolvedGraphCache resolvedGraphCache) {
         this.resolverFactories = resolverFactories;
         this.ivyFactory = ivyFactory;
         this.dependencyDescriptorFactory = dependencyDescriptorFactory;
@@ -70,6 +81,8 @@ public class DefaultArtifactDependencyResolver implements ArtifactDependencyReso
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.moduleExclusions = moduleExclusions;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.resolvedGraphCache = resolvedGraphCache;
     }
 
     @Override
@@ -79,9 +92,41 @@ public class DefaultArtifactDependencyResolver implements ArtifactDependencyReso
         DependencyGraphBuilder builder = createDependencyGraphBuilder(resolvers, resolveContext.getResolutionStrategy(), metadataHandler, edgeFilter, consumerSchema, moduleIdentifierFactory, moduleExclusions, buildOperationExecutor);
 
         DependencyGraphVisitor artifactsGraphVisitor = new ResolvedArtifactsGraphVisitor(artifactsVisitor, resolvers.getArtifactSelector(), moduleExclusions);
+        DependencyGraphVisitor visitor = new CompositeDependencyGraphVisitor(graphVisitor, artifactsGraphVisitor);
+
+        String graphKey = null;
+        ResolvedGraph previousGraph = null;
+        ResolvedGraphRecorder recorder = null;
+        if (resolvedGraphCache != null && edgeFilter == Specs.<DependencyMetadata>satisfyAll()) {
+            ComponentResolveMetadata rootMetadata = resolveContext.toRootComponentMetaData();
+            graphKey = resolvedGraphCache.keyFor(resolveContext, rootMetadata, repositories, metadataHandler);
+            if (graphKey != null) {
+                previousGraph = resolvedGraphCache.get(graphKey);
+                if (previousGraph != null && replay(previousGraph, rootMetadata, resolvers, metadataHandler, consumerSchema, visitor)) {
+                    LOGGER.debug("Replayed the resolved graph of {}", resolveContext);
+                    return;
+                }
+                recorder = new ResolvedGraphRecorder(moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+                visitor = new CompositeDependencyGraphVisitor(visitor, recorder);
+            }
+        }
 
         // Resolve the dependency graph
-        builder.resolve(resolveContext, new CompositeDependencyGraphVisitor(graphVisitor, artifactsGraphVisitor));
+        builder.resolve(resolveContext, visitor);
+
+        if (recorder != null) {
+            ResolvedGraph graph = recorder.getGraph();
+            if (graph != null) {
+                resolvedGraphCache.store(graphKey, graph);
+            } else if (previousGraph != null) {
+                resolvedGraphCache.remove(graphKey);
+            }
+        }
+    }
+
+    private boolean replay(ResolvedGraph graph, ComponentResolveMetadata rootMetadata, ComponentResolversChain resolvers, GlobalDependencyResolutionRules metadataHandler, AttributesSchemaInternal consumerSchema, DependencyGraphVisitor visitor) {
+        ResolvedGraphReplayer replayer = new ResolvedGraphReplayer(resolvers.getComponentResolver(), consumerSchema, moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+        return replayer.replay(graph, rootMetadata, visitor);
     }
 
     private DependencyGraphBuilder createDependencyGraphBuilder(ComponentResolversChain componentSource, ResolutionStrategyInternal resolutionStrategy, GlobalDependencyResolutionRules globalRules, Spec<? super DependencyMetadata> edgeFilter, AttributesSchemaInternal attributesSchema, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions, BuildOperationExecutor buildOperationExecutor) {
@@ -92,7 +137,18 @@ public class DefaultArtifactDependencyResolver implements ArtifactDependencyReso
         ResolveContextToComponentResolver requestResolver = createResolveContextConverter();
         ConflictHandler conflictHandler = createConflictHandler(resolutionStrategy, globalRules);
 
-        return new DependencyGraphBuilder(componentIdResolver, componentMetaDataResolver, requestResolver, conflictHandler, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, buildOperationExecutor, globalRules.getModuleMetadataProcessor().getModuleReplacements());
+        return new DependencyGraphBuilder(componentIdResolver, componentMetaDataResolver, requestResolver, conflictHandler, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, buildOperationExecutor, globalRules.getModuleMetadataProcessor().getModuleReplacements(),
+            versionSelectorScheme, canPrefetchMetadata(resolutionStrategy, globalRules));
+    }
+
+    /**
+     * Metadata can only be fetched ahead of the graph traversal when no rule may select another component than the one a dependency requests.
+     */
+    private static boolean canPrefetchMetadata(ResolutionStrategyInternal resolutionStrategy, GlobalDependencyResolutionRules globalRules) {
+        return resolutionStrategy.getForcedModules().isEmpty()
+            && !resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            && !resolutionStrategy.getDependencySubstitution().hasAnyRules()
+            && !globalRules.getDependencySubstitutionRules().hasRules();
     }
 
     private ComponentResolversChain createResolvers(ResolveContext resolveContext, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules metadataHandler, ArtifactTypeRegistry artifactTypeRegistry) {
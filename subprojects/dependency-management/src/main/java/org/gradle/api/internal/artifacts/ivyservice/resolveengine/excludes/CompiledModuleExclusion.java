@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.artifacts.ModuleIdentifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The module exclusions of an {@link IntersectionExclusion}, flattened so that a module can be checked against all of them without visiting each exclusion in turn.
+ *
+ * <p>Exclusions of a group, a module name or a module id are held in hash sets, so that checking a module against any number of them takes at most 3 lookups and allocates nothing.
+ * Any other exclusion is checked one by one, after the lookups. Artifact exclusions are left out, as they never exclude a module.</p>
+ */
+final class CompiledModuleExclusion {
+    private final boolean excludesAll;
+    private final Set<String> groups;
+    private final Set<String> moduleNames;
+    private final Map<String, Set<String>> groupsByModuleName;
+    private final AbstractModuleExclusion[] others;
+
+    private CompiledModuleExclusion(boolean excludesAll, Set<String> groups, Set<String> moduleNames, Map<String, Set<String>> groupsByModuleName, AbstractModuleExclusion[] others) {
+        this.excludesAll = excludesAll;
+        this.groups = groups;
+        this.moduleNames = moduleNames;
+        this.groupsByModuleName = groupsByModuleName;
+        this.others = others;
+    }
+
+    static CompiledModuleExclusion compile(AbstractModuleExclusion[] exclusions) {
+        boolean excludesAll = false;
+        Set<String> groups = Sets.newHashSet();
+        Set<String> moduleNames = Sets.newHashSet();
+        Map<String, Set<String>> groupsByModuleName = Maps.newHashMap();
+        List<AbstractModuleExclusion> others = Lists.newArrayList();
+        for (AbstractModuleExclusion exclusion : exclusions) {
+            if (exclusion instanceof ExcludeAllModulesSpec) {
+                excludesAll = true;
+            } else if (exclusion instanceof GroupNameExcludeSpec) {
+                groups.add(((GroupNameExcludeSpec) exclusion).group);
+            } else if (exclusion instanceof ModuleNameExcludeSpec) {
+                moduleNames.add(((ModuleNameExcludeSpec) exclusion).module);
+            } else if (exclusion instanceof ModuleIdExcludeSpec) {
+                ModuleIdentifier moduleId = ((ModuleIdExcludeSpec) exclusion).moduleId;
+                Set<String> moduleGroups = groupsByModuleName.get(moduleId.getName());
+                if (moduleGroups == null) {
+                    moduleGroups = Sets.newHashSet();
+                    groupsByModuleName.put(moduleId.getName(), moduleGroups);
+                }
+                moduleGroups.add(moduleId.getGroup());
+            } else if (!(exclusion instanceof ArtifactExcludeSpec)) {
+                others.add(exclusion);
+            }
+        }
+        return new CompiledModuleExclusion(excludesAll, groups, moduleNames, groupsByModuleName, others.toArray(new AbstractModuleExclusion[0]));
+    }
+
+    boolean excludeModule(ModuleIdentifier module) {
+        if (excludesAll) {
+            return true;
+        }
+        String group = module.getGroup();
+        String name = module.getName();
+        if (groups.contains(group) || moduleNames.contains(name)) {
+            return true;
+        }
+        Set<String> moduleGroups = groupsByModuleName.get(name);
+        if (moduleGroups != null && moduleGroups.contains(group)) {
+            return true;
+        }
+        for (AbstractModuleExclusion other : others) {
+            if (other.excludeModule(module)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -28,6 +28,8 @@ import java.util.Collection;
 class IntersectionExclusion extends AbstractCompositeExclusion {
     private final ImmutableModuleExclusionSet excludeSpecs;
     private final boolean mergeable;
+    // Compiled on first use, as many intersections are only created to be merged. Safe to publish without synchronization, as it is immutable
+    private CompiledModuleExclusion compiled;
 
     public IntersectionExclusion(ImmutableModuleExclusionSet specs) {
         this.excludeSpecs = specs;
@@ -60,12 +62,12 @@ class IntersectionExclusion extends AbstractCompositeExclusion {
     }
 
     public boolean excludeModule(ModuleIdentifier element) {
-        for (AbstractModuleExclusion excludeSpec : excludeSpecs) {
-            if (excludeSpec.excludeModule(element)) {
-                return true;
-            }
+        CompiledModuleExclusion compiled = this.compiled;
+        if (compiled == null) {
+            compiled = CompiledModuleExclusion.compile(excludeSpecs.elements);
+            this.compiled = compiled;
         }
-        return false;
+        return compiled.excludeModule(element);
     }
 
     public boolean excludeArtifact(ModuleIdentifier module, IvyArtifactName artifact) {
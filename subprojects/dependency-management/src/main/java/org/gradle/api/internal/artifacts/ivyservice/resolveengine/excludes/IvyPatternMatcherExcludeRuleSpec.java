@@ -16,11 +16,14 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import org.apache.ivy.plugins.matcher.Matcher;
 import org.apache.ivy.plugins.matcher.PatternMatcher;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.component.model.IvyArtifactName;
 
+import javax.annotation.Nullable;
+
 /**
  * A ModuleResolutionFilter that excludes any module/artifact that matches the exclude rule, using an Ivy pattern matcher.
  */
@@ -29,12 +32,23 @@ class IvyPatternMatcherExcludeRuleSpec extends AbstractModuleExclusion {
     private final IvyArtifactName ivyArtifactName;
     private final PatternMatcher matcher;
     private final boolean isArtifactExclude;
+    // Compiled once, as compiling a pattern is far more expensive than matching it
+    private final Matcher groupMatcher;
+    private final Matcher moduleMatcher;
+    private final Matcher artifactNameMatcher;
+    private final Matcher extensionMatcher;
+    private final Matcher typeMatcher;
 
     IvyPatternMatcherExcludeRuleSpec(Exclude rule) {
         this.moduleId = rule.getModuleId();
         this.ivyArtifactName = rule.getArtifact();
         this.matcher = PatternMatchers.getInstance().getMatcher(rule.getMatcher());
         isArtifactExclude = !isWildcard(ivyArtifactName.getName()) || !isWildcard(ivyArtifactName.getType()) || !isWildcard(ivyArtifactName.getExtension());
+        this.groupMatcher = compile(moduleId.getGroup());
+        this.moduleMatcher = compile(moduleId.getName());
+        this.artifactNameMatcher = compile(ivyArtifactName.getName());
+        this.extensionMatcher = compile(ivyArtifactName.getExtension());
+        this.typeMatcher = compile(ivyArtifactName.getType());
     }
 
     @Override
@@ -70,25 +84,26 @@ class IvyPatternMatcherExcludeRuleSpec extends AbstractModuleExclusion {
         if (isArtifactExclude) {
             return false;
         }
-        return matches(moduleId.getGroup(), module.getGroup()) && matches(moduleId.getName(), module.getName());
+        return groupMatcher.matches(module.getGroup()) && moduleMatcher.matches(module.getName());
     }
 
     public boolean excludeArtifact(ModuleIdentifier module, IvyArtifactName artifact) {
         if (!isArtifactExclude) {
             return false;
         }
-        return matches(moduleId.getGroup(), module.getGroup())
-            && matches(moduleId.getName(), module.getName())
-            && matches(ivyArtifactName.getName(), artifact.getName())
-            && matches(ivyArtifactName.getExtension(), artifact.getExtension())
-            && matches(ivyArtifactName.getType(), artifact.getType());
+        return groupMatcher.matches(module.getGroup())
+            && moduleMatcher.matches(module.getName())
+            && artifactNameMatcher.matches(artifact.getName())
+            && extensionMatcher.matches(artifact.getExtension())
+            && typeMatcher.matches(artifact.getType());
     }
 
     public boolean mayExcludeArtifacts() {
         return isArtifactExclude;
     }
 
-    private boolean matches(String expression, String input) {
-        return matcher.getMatcher(expression).matches(input);
+    @Nullable
+    private Matcher compile(@Nullable String expression) {
+        return expression == null ? null : matcher.getMatcher(expression);
     }
 }
@@ -40,7 +40,7 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  *
  * <p>This class attempts to reduce execution time, by flattening union and intersection specs, at the cost of more analysis at construction time. This is taken advantage of by {@link
  * DependencyGraphBuilder}, on the assumption that there are many more edges in the dependency graph than there are exclude rules (ie
- * we evaluate the rules much more often that we construct them). </p>
+ * we evaluate the rules much more often that we construct them). For the same reason, an intersection compiles its rules into hash lookups the first time it is evaluated, see {@link CompiledModuleExclusion}.</p>
  *
  * <p>Also, this class attempts to be quite accurate in determining if 2 specs will exclude exactly the same set of modules. {@link DependencyGraphBuilder}
  * uses this to avoid traversing the dependency graph of a particular version that has already been traversed when a new incoming edge is added (eg a newly discovered dependency) and when an incoming
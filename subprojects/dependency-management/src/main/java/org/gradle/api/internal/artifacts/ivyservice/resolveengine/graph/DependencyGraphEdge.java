@@ -22,6 +22,7 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.Modul
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.internal.component.model.ComponentArtifactMetadata;
 import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
 
 import javax.annotation.Nullable;
 import java.util.Set;
@@ -34,6 +35,11 @@ public interface DependencyGraphEdge extends DependencyResult {
 
     DependencyGraphSelector getSelector();
 
+    /**
+     * Returns the dependency of the source node that this edge was created for.
+     */
+    DependencyMetadata getDependencyMetadata();
+
     // TODO This should be replaced by getRequested()
     ModuleVersionSelector getRequestedModuleVersion();
 
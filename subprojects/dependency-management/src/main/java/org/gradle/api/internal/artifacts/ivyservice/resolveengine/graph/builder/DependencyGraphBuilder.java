@@ -27,6 +27,7 @@ import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolveContext;
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
@@ -69,13 +70,16 @@ public class DependencyGraphBuilder {
     private final ModuleExclusions moduleExclusions;
     private final BuildOperationExecutor buildOperationExecutor;
     private final ModuleReplacementsData moduleReplacementsData;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final boolean prefetchMetadata;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
                                   ConflictHandler conflictHandler, Spec<? super DependencyMetadata> edgeFilter,
                                   AttributesSchemaInternal attributesSchema,
                                   ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions,
-                                  BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData) {
+                                  BuildOperationExecutor buildOperationExecutor, ModuleReplacementsData moduleReplacementsData,
+                                  VersionSelectorScheme versionSelectorScheme, boolean prefetchMetadata) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -86,6 +90,8 @@ public class DependencyGraphBuilder {
         this.moduleExclusions = moduleExclusions;
         this.buildOperationExecutor = buildOperationExecutor;
         this.moduleReplacementsData = moduleReplacementsData;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.prefetchMetadata = prefetchMetadata;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -94,10 +100,12 @@ public class DependencyGraphBuilder {
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, moduleReplacementsData);
+        MetadataPrefetcher prefetcher = prefetchMetadata && MetadataPrefetcher.isEnabled() ? new MetadataPrefetcher(metaDataResolver, edgeFilter, versionSelectorScheme, buildOperationExecutor) : null;
+        ComponentMetaDataResolver componentMetaDataResolver = prefetcher != null ? prefetcher : metaDataResolver;
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, componentMetaDataResolver, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions, moduleReplacementsData);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.getRoot().getComponent()));
 
-        traverseGraph(resolveState);
+        traverseGraph(resolveState, prefetcher, componentMetaDataResolver);
 
         resolveState.getRoot().getComponent().setSelectionReason(VersionSelectionReasons.ROOT);
 
@@ -108,7 +116,7 @@ public class DependencyGraphBuilder {
     /**
      * Traverses the dependency graph, resolving conflicts and building the paths from the root configuration.
      */
-    private void traverseGraph(final ResolveState resolveState) {
+    private void traverseGraph(final ResolveState resolveState, @Nullable MetadataPrefetcher prefetcher, ComponentMetaDataResolver componentMetaDataResolver) {
         resolveState.onMoreSelected(resolveState.getRoot());
         final List<EdgeState> dependencies = Lists.newArrayList();
         final List<EdgeState> dependenciesMissingLocalMetadata = Lists.newArrayList();
@@ -116,6 +124,9 @@ public class DependencyGraphBuilder {
 
         while (resolveState.peek() != null || conflictHandler.hasConflicts()) {
             if (resolveState.peek() != null) {
+                if (prefetcher != null) {
+                    prefetcher.beforeTraversing(resolveState.peek(), resolveState.getQueuedNodes());
+                }
                 final NodeState node = resolveState.pop();
                 LOGGER.debug("Visiting configuration {}.", node);
 
@@ -124,7 +135,7 @@ public class DependencyGraphBuilder {
                 dependenciesMissingLocalMetadata.clear();
                 node.visitOutgoingDependencies(dependencies);
 
-                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache, componentMetaDataResolver);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 conflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
@@ -203,12 +214,13 @@ public class DependencyGraphBuilder {
                               final List<EdgeState> dependencies,
                               final List<EdgeState> dependenciesMissingMetadataLocally,
                               final ResolveState resolveState,
-                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                              final ComponentMetaDataResolver componentMetaDataResolver) {
         if (dependencies.isEmpty()) {
             return;
         }
         performSelectionSerially(dependencies, resolveState);
-        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache);
+        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache, componentMetaDataResolver);
         downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
         attachToTargetRevisionsSerially(dependencies);
 
@@ -256,12 +268,13 @@ public class DependencyGraphBuilder {
      *
      * @param dependencies the dependencies to be resolved
      * @param dependenciesToBeResolvedInParallel output, edges which will need parallel metadata download
+     * @param componentMetaDataResolver the resolver used by the traversal, which knows about metadata that has already been fetched ahead of the traversal
      */
-    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, ComponentMetaDataResolver componentMetaDataResolver) {
         for (EdgeState dependency : dependencies) {
             ComponentState targetComponent = dependency.getTargetComponent();
             if (targetComponent != null && !targetComponent.fastResolve() && performPreemptiveDownload(targetComponent)) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
+                if (!componentMetaDataResolver.isFetchingMetadataCheap(toComponentId(targetComponent.getId(), componentIdentifierCache))) {
                     dependenciesToBeResolvedInParallel.add(dependency);
                 }
             }
@@ -69,7 +69,8 @@ class EdgeState implements DependencyGraphEdge {
         return from;
     }
 
-    DependencyMetadata getDependencyMetadata() {
+    @Override
+    public DependencyMetadata getDependencyMetadata() {
         return dependencyMetadata;
     }
 
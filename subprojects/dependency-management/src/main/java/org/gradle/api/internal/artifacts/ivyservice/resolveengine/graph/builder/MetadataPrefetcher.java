@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fetches the metadata of components ahead of the graph traversal, for all nodes that are waiting to be traversed at once rather than one node at a time.
+ *
+ * <p>The components to fetch are guessed from the dependencies of the waiting nodes, without touching the state of the graph, so the traversal and conflict resolution
+ * happen in exactly the same order as without fetching ahead. Only dependencies on a fixed version of a module are fetched, as their component identifier is known without
+ * resolving the dependency. The fetched metadata is handed out the first time the traversal asks for it. A component that the traversal never asks for, because its
+ * dependency was excluded or evicted, has been fetched for nothing.</p>
+ *
+ * <p>Must not be used when dependency substitution or forcing rules apply, as these may select another component than the one the dependency requests.</p>
+ */
+class MetadataPrefetcher implements ComponentMetaDataResolver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataPrefetcher.class);
+
+    /**
+     * Enables fetching metadata ahead of the graph traversal.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolution.prefetch-metadata";
+
+    private final ComponentMetaDataResolver delegate;
+    private final Spec<? super DependencyMetadata> edgeFilter;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final ConcurrentMap<ComponentIdentifier, DefaultBuildableComponentResolveResult> prefetched = Maps.newConcurrentMap();
+    // Only used by the traversing thread
+    private final Set<NodeState> scanned = Sets.newHashSet();
+    private final Set<ComponentIdentifier> requested = Sets.newHashSet();
+
+    MetadataPrefetcher(ComponentMetaDataResolver delegate, Spec<? super DependencyMetadata> edgeFilter, VersionSelectorScheme versionSelectorScheme, BuildOperationExecutor buildOperationExecutor) {
+        this.delegate = delegate;
+        this.edgeFilter = edgeFilter;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.buildOperationExecutor = buildOperationExecutor;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Called before the given node is traversed. When the node has not been seen before, fetches the metadata for the dependencies of all of the waiting nodes.
+     */
+    public void beforeTraversing(NodeState next, Collection<NodeState> waiting) {
+        if (scanned.contains(next)) {
+            return;
+        }
+        final List<ComponentIdentifier> toFetch = Lists.newArrayList();
+        for (NodeState node : waiting) {
+            if (!scanned.add(node)) {
+                continue;
+            }
+            ConfigurationMetadata metadata = node.getMetadata();
+            if (!node.isRoot() && !metadata.isTransitive()) {
+                continue;
+            }
+            for (DependencyMetadata dependency : metadata.getDependencies()) {
+                ComponentIdentifier id = prefetchableTarget(dependency);
+                if (id != null && requested.add(id) && !delegate.isFetchingMetadataCheap(id)) {
+                    toFetch.add(id);
+                }
+            }
+        }
+        if (toFetch.isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Fetching {} metadata files ahead of traversing {}", toFetch.size(), next);
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
+            @Override
+            public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
+                for (ComponentIdentifier id : toFetch) {
+                    buildOperationQueue.add(new PrefetchMetadataOperation(id));
+                }
+            }
+        });
+    }
+
+    @Nullable
+    private ComponentIdentifier prefetchableTarget(DependencyMetadata dependency) {
+        if (!(dependency.getSelector() instanceof ModuleComponentSelector) || dependency.isChanging() || !dependency.getArtifacts().isEmpty() || !edgeFilter.isSatisfiedBy(dependency)) {
+            return null;
+        }
+        if (dependency instanceof DslOriginDependencyMetadata && ((DslOriginDependencyMetadata) dependency).getSource() instanceof ClientModule) {
+            return null;
+        }
+        ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getSelector();
+        if (!isFixedVersion(selector.getVersion())) {
+            return null;
+        }
+        return DefaultModuleComponentIdentifier.newId(selector.getGroup(), selector.getModule(), selector.getVersion());
+    }
+
+    private boolean isFixedVersion(String version) {
+        return version != null && !version.isEmpty() && !versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        if (isDefault(componentOverrideMetadata)) {
+            DefaultBuildableComponentResolveResult prefetchedResult = prefetched.remove(identifier);
+            if (prefetchedResult != null) {
+                prefetchedResult.applyTo(result);
+                result.resolved(prefetchedResult.getMetaData());
+                return;
+            }
+        }
+        delegate.resolve(identifier, componentOverrideMetadata, result);
+    }
+
+    private static boolean isDefault(ComponentOverrideMetadata componentOverrideMetadata) {
+        return !componentOverrideMetadata.isChanging() && componentOverrideMetadata.getArtifacts().isEmpty() && componentOverrideMetadata.getClientModule() == null;
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return prefetched.containsKey(identifier) || delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    private class PrefetchMetadataOperation implements RunnableBuildOperation {
+        private final ComponentIdentifier id;
+
+        PrefetchMetadataOperation(ComponentIdentifier id) {
+            this.id = id;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+            try {
+                delegate.resolve(id, new DefaultComponentOverrideMetadata(), result);
+            } catch (RuntimeException e) {
+                // Leave it to the traversal to resolve the component again and report the failure, if the component turns out to be required
+                LOGGER.debug("Could not fetch metadata for {} ahead of traversal.", id, e);
+                return;
+            }
+            // Only keep the component when found, so that the traversal resolves the component again and reports a failure or a missing component itself
+            if (result.hasResult() && result.getFailure() == null) {
+                prefetched.put(id, result);
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Resolve " + id);
+        }
+    }
+}
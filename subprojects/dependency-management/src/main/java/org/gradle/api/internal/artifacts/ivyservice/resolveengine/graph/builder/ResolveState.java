@@ -137,6 +137,13 @@ class ResolveState {
         return queue.isEmpty() ? null : queue.getFirst();
     }
 
+    /**
+     * Returns the nodes waiting to be traversed, in the order they will be traversed.
+     */
+    public Collection<NodeState> getQueuedNodes() {
+        return queue;
+    }
+
     public NodeState pop() {
         NodeState next = queue.removeFirst();
         queued.remove(next);
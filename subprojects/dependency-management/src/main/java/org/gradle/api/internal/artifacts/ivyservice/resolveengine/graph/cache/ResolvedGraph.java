@@ -0,0 +1,232 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * The shape of a resolved dependency graph, as recorded by {@link ResolvedGraphRecorder}.
+ *
+ * <p>Refers to the dependencies of each node by their position in the node's configuration, rather than holding the metadata itself, so that the graph can be
+ * persisted and later replayed against the current metadata of its components.</p>
+ */
+public class ResolvedGraph {
+    private final Long rootNodeId;
+    private final List<Selector> selectors;
+    private final List<Component> components;
+    private final List<Node> nodes;
+    private final List<Long> edgeVisitOrder;
+
+    public ResolvedGraph(Long rootNodeId, List<Selector> selectors, List<Component> components, List<Node> nodes, List<Long> edgeVisitOrder) {
+        this.rootNodeId = rootNodeId;
+        this.selectors = selectors;
+        this.components = components;
+        this.nodes = nodes;
+        this.edgeVisitOrder = edgeVisitOrder;
+    }
+
+    public Long getRootNodeId() {
+        return rootNodeId;
+    }
+
+    /**
+     * The selectors, in the order they were visited.
+     */
+    public List<Selector> getSelectors() {
+        return selectors;
+    }
+
+    public List<Component> getComponents() {
+        return components;
+    }
+
+    /**
+     * The nodes, in the order they were visited.
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The ids of the nodes, in the consumer-first order in which their edges were visited.
+     */
+    public List<Long> getEdgeVisitOrder() {
+        return edgeVisitOrder;
+    }
+
+    public static class Selector {
+        private final Long id;
+        private final ComponentSelector requested;
+
+        public Selector(Long id, ComponentSelector requested) {
+            this.id = id;
+            this.requested = requested;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public ComponentSelector getRequested() {
+            return requested;
+        }
+    }
+
+    public static class Component {
+        private final Long id;
+        private final ModuleVersionIdentifier moduleVersion;
+        private final ComponentIdentifier componentId;
+        private final ComponentSelectionReason selectionReason;
+        private final HashValue contentHash;
+
+        public Component(Long id, ModuleVersionIdentifier moduleVersion, @Nullable ComponentIdentifier componentId, ComponentSelectionReason selectionReason, @Nullable HashValue contentHash) {
+            this.id = id;
+            this.moduleVersion = moduleVersion;
+            this.componentId = componentId;
+            this.selectionReason = selectionReason;
+            this.contentHash = contentHash;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public ModuleVersionIdentifier getModuleVersion() {
+            return moduleVersion;
+        }
+
+        /**
+         * The id of the component, or null for the root component, which is always taken from the current metadata.
+         */
+        @Nullable
+        public ComponentIdentifier getComponentId() {
+            return componentId;
+        }
+
+        public ComponentSelectionReason getSelectionReason() {
+            return selectionReason;
+        }
+
+        /**
+         * The hash of the metadata the component was resolved from, when known.
+         */
+        @Nullable
+        public HashValue getContentHash() {
+            return contentHash;
+        }
+    }
+
+    public static class Node {
+        private final Long id;
+        private final Long componentId;
+        private final String configuration;
+        private final List<EdgeRef> incomingEdges;
+        private final List<Edge> outgoingEdges;
+
+        public Node(Long id, Long componentId, String configuration, List<EdgeRef> incomingEdges, List<Edge> outgoingEdges) {
+            this.id = id;
+            this.componentId = componentId;
+            this.configuration = configuration;
+            this.incomingEdges = incomingEdges;
+            this.outgoingEdges = outgoingEdges;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getComponentId() {
+            return componentId;
+        }
+
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        public List<EdgeRef> getIncomingEdges() {
+            return incomingEdges;
+        }
+
+        public List<Edge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+    }
+
+    /**
+     * An outgoing edge of a node.
+     */
+    public static class Edge {
+        private final int dependencyIndex;
+        private final Long selectorId;
+        private final boolean force;
+        private final List<Long> targets;
+
+        public Edge(int dependencyIndex, Long selectorId, boolean force, List<Long> targets) {
+            this.dependencyIndex = dependencyIndex;
+            this.selectorId = selectorId;
+            this.force = force;
+            this.targets = targets;
+        }
+
+        /**
+         * The position of the dependency in the dependencies of the source node's configuration.
+         */
+        public int getDependencyIndex() {
+            return dependencyIndex;
+        }
+
+        public Long getSelectorId() {
+            return selectorId;
+        }
+
+        public boolean isForce() {
+            return force;
+        }
+
+        public List<Long> getTargets() {
+            return targets;
+        }
+    }
+
+    /**
+     * Refers to the outgoing edge of another node.
+     */
+    public static class EdgeRef {
+        private final Long fromNodeId;
+        private final int dependencyIndex;
+
+        public EdgeRef(Long fromNodeId, int dependencyIndex) {
+            this.fromNodeId = fromNodeId;
+            this.dependencyIndex = dependencyIndex;
+        }
+
+        public Long getFromNodeId() {
+            return fromNodeId;
+        }
+
+        public int getDependencyIndex() {
+            return dependencyIndex;
+        }
+    }
+}
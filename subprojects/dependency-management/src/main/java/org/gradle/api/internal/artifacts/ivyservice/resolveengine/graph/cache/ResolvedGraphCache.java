@@ -0,0 +1,276 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ResolveContext;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectionReasonSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Retains resolved dependency graphs across builds, so that a configuration whose dependencies have not changed can be resolved by replaying its graph.
+ *
+ * <p>A graph is stored under a key made from the identity of the configuration, its conflict resolution strategy, its forced modules and the repositories it is
+ * resolved from. Everything else that a graph depends on, such as the declared dependencies and the metadata of the components, is checked against the
+ * stored graph when it is replayed.</p>
+ */
+public class ResolvedGraphCache {
+    /**
+     * Enables retaining resolved dependency graphs across builds.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.internal.resolution.graph-cache";
+
+    private final CacheLockingManager cacheLockingManager;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final Object lock = new Object();
+    private volatile PersistentIndexedCache<String, ResolvedGraph> cache;
+
+    public ResolvedGraphCache(CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Creates the cache when first used, so that it is not created when retaining graphs is disabled. Configurations may be resolved in parallel.
+     */
+    private PersistentIndexedCache<String, ResolvedGraph> getCache() {
+        PersistentIndexedCache<String, ResolvedGraph> cache = this.cache;
+        if (cache == null) {
+            synchronized (lock) {
+                cache = this.cache;
+                if (cache == null) {
+                    cache = cacheLockingManager.createCache("resolved-graphs", BaseSerializerFactory.STRING_SERIALIZER, new ResolvedGraphSerializer(moduleIdentifierFactory));
+                    this.cache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the key to store the graph of the given configuration under, or null when the graph cannot be stored because rules may select other components
+     * than those it requests.
+     */
+    @Nullable
+    public String keyFor(ResolveContext resolveContext, ComponentResolveMetadata rootMetadata, List<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules globalRules) {
+        ResolutionStrategyInternal resolutionStrategy = resolveContext.getResolutionStrategy();
+        if (repositories.isEmpty()
+            || resolutionStrategy.resolveGraphToDetermineTaskDependencies()
+            || resolutionStrategy.getDependencySubstitution().hasAnyRules()
+            || globalRules.getDependencySubstitutionRules().hasRules()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(rootMetadata.getComponentId().getDisplayName());
+        hasher.putString(resolveContext.getName());
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        List<String> forcedModules = new ArrayList<String>();
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            forcedModules.add(forcedModule.getGroup() + ":" + forcedModule.getName() + ":" + forcedModule.getVersion());
+        }
+        Collections.sort(forcedModules);
+        hasher.putInt(forcedModules.size());
+        for (String forcedModule : forcedModules) {
+            hasher.putString(forcedModule);
+        }
+        hasher.putInt(repositories.size());
+        for (ResolutionAwareRepository repository : repositories) {
+            hasher.putString(repository.createResolver().getId());
+        }
+        return hasher.hash().toString();
+    }
+
+    @Nullable
+    public ResolvedGraph get(String key) {
+        return getCache().get(key);
+    }
+
+    public void store(String key, ResolvedGraph graph) {
+        getCache().put(key, graph);
+    }
+
+    public void remove(String key) {
+        getCache().remove(key);
+    }
+
+    private static class ResolvedGraphSerializer extends AbstractSerializer<ResolvedGraph> {
+        private final ComponentSelectorSerializer selectorSerializer = new ComponentSelectorSerializer();
+        private final ComponentIdentifierSerializer componentIdSerializer = new ComponentIdentifierSerializer();
+        private final ComponentSelectionReasonSerializer reasonSerializer = new ComponentSelectionReasonSerializer();
+        private final ModuleVersionIdentifierSerializer moduleVersionSerializer;
+
+        ResolvedGraphSerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+            this.moduleVersionSerializer = new ModuleVersionIdentifierSerializer(moduleIdentifierFactory);
+        }
+
+        @Override
+        public void write(Encoder encoder, ResolvedGraph graph) throws Exception {
+            encoder.writeSmallLong(graph.getRootNodeId());
+            encoder.writeSmallInt(graph.getSelectors().size());
+            for (ResolvedGraph.Selector selector : graph.getSelectors()) {
+                encoder.writeSmallLong(selector.getId());
+                selectorSerializer.write(encoder, selector.getRequested());
+            }
+            encoder.writeSmallInt(graph.getComponents().size());
+            for (ResolvedGraph.Component component : graph.getComponents()) {
+                writeComponent(encoder, component);
+            }
+            encoder.writeSmallInt(graph.getNodes().size());
+            for (ResolvedGraph.Node node : graph.getNodes()) {
+                writeNode(encoder, node);
+            }
+            writeIds(encoder, graph.getEdgeVisitOrder());
+        }
+
+        @Override
+        public ResolvedGraph read(Decoder decoder) throws Exception {
+            Long rootNodeId = decoder.readSmallLong();
+            int selectorCount = decoder.readSmallInt();
+            List<ResolvedGraph.Selector> selectors = new ArrayList<ResolvedGraph.Selector>(selectorCount);
+            for (int i = 0; i < selectorCount; i++) {
+                Long id = decoder.readSmallLong();
+                ComponentSelector requested = selectorSerializer.read(decoder);
+                selectors.add(new ResolvedGraph.Selector(id, requested));
+            }
+            int componentCount = decoder.readSmallInt();
+            List<ResolvedGraph.Component> components = new ArrayList<ResolvedGraph.Component>(componentCount);
+            for (int i = 0; i < componentCount; i++) {
+                components.add(readComponent(decoder));
+            }
+            int nodeCount = decoder.readSmallInt();
+            List<ResolvedGraph.Node> nodes = new ArrayList<ResolvedGraph.Node>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(readNode(decoder));
+            }
+            List<Long> edgeVisitOrder = readIds(decoder);
+            return new ResolvedGraph(rootNodeId, selectors, components, nodes, edgeVisitOrder);
+        }
+
+        private void writeComponent(Encoder encoder, ResolvedGraph.Component component) throws Exception {
+            encoder.writeSmallLong(component.getId());
+            moduleVersionSerializer.write(encoder, component.getModuleVersion());
+            ComponentIdentifier componentId = component.getComponentId();
+            encoder.writeBoolean(componentId != null);
+            if (componentId != null) {
+                componentIdSerializer.write(encoder, componentId);
+            }
+            reasonSerializer.write(encoder, component.getSelectionReason());
+            HashValue contentHash = component.getContentHash();
+            encoder.writeBoolean(contentHash != null);
+            if (contentHash != null) {
+                encoder.writeBinary(contentHash.asByteArray());
+            }
+        }
+
+        private ResolvedGraph.Component readComponent(Decoder decoder) throws Exception {
+            Long id = decoder.readSmallLong();
+            ModuleVersionIdentifier moduleVersion = moduleVersionSerializer.read(decoder);
+            ComponentIdentifier componentId = decoder.readBoolean() ? componentIdSerializer.read(decoder) : null;
+            ComponentSelectionReason selectionReason = reasonSerializer.read(decoder);
+            HashValue contentHash = decoder.readBoolean() ? new HashValue(decoder.readBinary()) : null;
+            return new ResolvedGraph.Component(id, moduleVersion, componentId, selectionReason, contentHash);
+        }
+
+        private void writeNode(Encoder encoder, ResolvedGraph.Node node) throws Exception {
+            encoder.writeSmallLong(node.getId());
+            encoder.writeSmallLong(node.getComponentId());
+            encoder.writeString(node.getConfiguration());
+            encoder.writeSmallInt(node.getIncomingEdges().size());
+            for (ResolvedGraph.EdgeRef edge : node.getIncomingEdges()) {
+                encoder.writeSmallLong(edge.getFromNodeId());
+                encoder.writeSmallInt(edge.getDependencyIndex());
+            }
+            encoder.writeSmallInt(node.getOutgoingEdges().size());
+            for (ResolvedGraph.Edge edge : node.getOutgoingEdges()) {
+                encoder.writeSmallInt(edge.getDependencyIndex());
+                encoder.writeSmallLong(edge.getSelectorId());
+                encoder.writeBoolean(edge.isForce());
+                writeIds(encoder, edge.getTargets());
+            }
+        }
+
+        private ResolvedGraph.Node readNode(Decoder decoder) throws Exception {
+            Long id = decoder.readSmallLong();
+            Long componentId = decoder.readSmallLong();
+            String configuration = decoder.readString();
+            int incomingCount = decoder.readSmallInt();
+            List<ResolvedGraph.EdgeRef> incoming = new ArrayList<ResolvedGraph.EdgeRef>(incomingCount);
+            for (int i = 0; i < incomingCount; i++) {
+                Long fromNodeId = decoder.readSmallLong();
+                int dependencyIndex = decoder.readSmallInt();
+                incoming.add(new ResolvedGraph.EdgeRef(fromNodeId, dependencyIndex));
+            }
+            int outgoingCount = decoder.readSmallInt();
+            List<ResolvedGraph.Edge> outgoing = new ArrayList<ResolvedGraph.Edge>(outgoingCount);
+            for (int i = 0; i < outgoingCount; i++) {
+                int dependencyIndex = decoder.readSmallInt();
+                Long selectorId = decoder.readSmallLong();
+                boolean force = decoder.readBoolean();
+                List<Long> targets = readIds(decoder);
+                outgoing.add(new ResolvedGraph.Edge(dependencyIndex, selectorId, force, targets));
+            }
+            return new ResolvedGraph.Node(id, componentId, configuration, incoming, outgoing);
+        }
+
+        private static void writeIds(Encoder encoder, List<Long> ids) throws Exception {
+            encoder.writeSmallInt(ids.size());
+            for (Long id : ids) {
+                encoder.writeSmallLong(id);
+            }
+        }
+
+        private static List<Long> readIds(Decoder decoder) throws Exception {
+            int count = decoder.readSmallInt();
+            List<Long> ids = new ArrayList<Long>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(decoder.readSmallLong());
+            }
+            return ids;
+        }
+    }
+}
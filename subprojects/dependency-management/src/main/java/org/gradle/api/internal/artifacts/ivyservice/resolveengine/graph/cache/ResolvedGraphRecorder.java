@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the shape of a resolved dependency graph, so that it can be replayed by {@link ResolvedGraphReplayer}.
+ *
+ * <p>Gives up as soon as it finds something that a replay could not reproduce from the metadata of the components alone, such as a failure, a dynamic version,
+ * a cycle, or exclusions that depend on the order in which the graph was traversed.</p>
+ */
+public class ResolvedGraphRecorder implements DependencyGraphVisitor {
+    private final ResolvedGraphRules rules;
+    private final List<ResolvedGraph.Selector> selectors = new ArrayList<ResolvedGraph.Selector>();
+    private final Map<Long, ResolvedGraph.Component> components = new LinkedHashMap<Long, ResolvedGraph.Component>();
+    private final List<Long> nodeVisitOrder = new ArrayList<Long>();
+    private final Map<Long, ResolvedGraph.Node> nodes = new HashMap<Long, ResolvedGraph.Node>();
+    private final List<Long> edgeVisitOrder = new ArrayList<Long>();
+    private final Map<DependencyGraphEdge, Integer> edgeIndexes = new IdentityHashMap<DependencyGraphEdge, Integer>();
+    private final Map<DependencyGraphEdge, ModuleExclusion> edgeExclusions = new IdentityHashMap<DependencyGraphEdge, ModuleExclusion>();
+    private Long rootNodeId;
+    private Long rootComponentId;
+    private boolean replayable = true;
+    private ResolvedGraph graph;
+
+    public ResolvedGraphRecorder(ModuleExclusions moduleExclusions, ImmutableModuleIdentifierFactory moduleIdentifierFactory, VersionSelectorScheme versionSelectorScheme, ModuleReplacementsData moduleReplacements) {
+        this.rules = new ResolvedGraphRules(moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, moduleReplacements);
+    }
+
+    /**
+     * Returns the recorded graph, or null when the graph cannot be replayed.
+     */
+    @Nullable
+    public ResolvedGraph getGraph() {
+        return graph;
+    }
+
+    @Override
+    public void start(DependencyGraphNode root) {
+        rootNodeId = root.getNodeId();
+        rootComponentId = root.getOwner().getResultId();
+    }
+
+    @Override
+    public void visitSelector(DependencyGraphSelector selector) {
+        if (!(selector.getRequested() instanceof ModuleComponentSelector)) {
+            replayable = false;
+            return;
+        }
+        selectors.add(new ResolvedGraph.Selector(selector.getResultId(), selector.getRequested()));
+    }
+
+    @Override
+    public void visitNode(DependencyGraphNode node) {
+        if (!replayable) {
+            return;
+        }
+        DependencyGraphComponent owner = node.getOwner();
+        if (node.isRoot() != owner.getResultId().equals(rootComponentId)) {
+            // Another node of the root component
+            replayable = false;
+            return;
+        }
+        nodeVisitOrder.add(node.getNodeId());
+        if (components.containsKey(owner.getResultId())) {
+            return;
+        }
+        if (!ResolvedGraphRules.isReplayable(owner.getSelectionReason()) || (!node.isRoot() && !rules.isReplayable(owner.getMetadata()))) {
+            replayable = false;
+            return;
+        }
+        components.put(owner.getResultId(), new ResolvedGraph.Component(owner.getResultId(), owner.getModuleVersion(), node.isRoot() ? null : owner.getComponentId(), owner.getSelectionReason(), ResolvedGraphRules.contentHashOf(owner.getMetadata())));
+    }
+
+    @Override
+    public void visitEdges(DependencyGraphNode node) {
+        if (!replayable) {
+            return;
+        }
+        replayable = recordEdges(node);
+    }
+
+    private boolean recordEdges(DependencyGraphNode node) {
+        List<ResolvedGraph.EdgeRef> incoming = new ArrayList<ResolvedGraph.EdgeRef>();
+        List<ModuleExclusion> transitiveIncoming = new ArrayList<ModuleExclusion>();
+        for (DependencyGraphEdge edge : node.getIncomingEdges()) {
+            Integer index = edgeIndexes.get(edge);
+            if (index == null) {
+                // The edges of the source node have not been visited yet, which only happens for cycles
+                return false;
+            }
+            incoming.add(new ResolvedGraph.EdgeRef(edge.getFrom().getNodeId(), index));
+            if (ResolvedGraphRules.isTransitive(edge.getFrom().getMetadata(), edge.getDependencyMetadata())) {
+                transitiveIncoming.add(edgeExclusions.get(edge));
+            }
+        }
+        if (node.isRoot() != incoming.isEmpty()) {
+            return false;
+        }
+
+        // Check that the outgoing edges are exactly those a single traversal with the final exclusions would create
+        List<ResolvedGraph.Edge> outgoing = new ArrayList<ResolvedGraph.Edge>();
+        Iterator<? extends DependencyGraphEdge> edges = node.getOutgoingEdges().iterator();
+        if (node.isRoot() || !transitiveIncoming.isEmpty()) {
+            ConfigurationMetadata metadata = node.getMetadata();
+            ModuleExclusion filter = rules.filterFor(metadata, transitiveIncoming);
+            List<? extends DependencyMetadata> dependencies = metadata.getDependencies();
+            for (int i = 0; i < dependencies.size(); i++) {
+                DependencyMetadata dependency = dependencies.get(i);
+                if (rules.isExcluded(filter, dependency)) {
+                    continue;
+                }
+                if (!edges.hasNext()) {
+                    return false;
+                }
+                DependencyGraphEdge edge = edges.next();
+                if (edge.getDependencyMetadata() != dependency || !recordEdge(edge, i, filter, outgoing)) {
+                    return false;
+                }
+            }
+        }
+        if (edges.hasNext()) {
+            return false;
+        }
+
+        nodes.put(node.getNodeId(), new ResolvedGraph.Node(node.getNodeId(), node.getOwner().getResultId(), node.getResolvedConfigurationId().getConfiguration(), incoming, outgoing));
+        edgeVisitOrder.add(node.getNodeId());
+        return true;
+    }
+
+    private boolean recordEdge(DependencyGraphEdge edge, int index, ModuleExclusion filter, List<ResolvedGraph.Edge> outgoing) {
+        DependencyMetadata dependency = edge.getDependencyMetadata();
+        if (edge.getFailure() != null || !rules.isReplayable(dependency)) {
+            return false;
+        }
+        ModuleExclusion exclusions = rules.exclusionsFor(dependency, edge.getFrom().getMetadata(), filter);
+        if (!exclusions.equals(edge.getExclusions(rules.getModuleExclusions()))) {
+            // The exclusions were calculated from an earlier state of the graph
+            return false;
+        }
+        List<Long> targets = new ArrayList<Long>();
+        for (DependencyGraphNode target : edge.getTargets()) {
+            if (target.isRoot() || !target.getOwner().getResultId().equals(edge.getSelected())) {
+                return false;
+            }
+            targets.add(target.getNodeId());
+        }
+        if (targets.isEmpty()) {
+            return false;
+        }
+        edgeIndexes.put(edge, index);
+        edgeExclusions.put(edge, exclusions);
+        outgoing.add(new ResolvedGraph.Edge(index, edge.getSelector().getResultId(), dependency.isForce(), targets));
+        return true;
+    }
+
+    @Override
+    public void finish(DependencyGraphNode root) {
+        if (!replayable || edgeVisitOrder.size() != nodeVisitOrder.size()) {
+            return;
+        }
+        List<ResolvedGraph.Node> orderedNodes = new ArrayList<ResolvedGraph.Node>(nodeVisitOrder.size());
+        for (Long nodeId : nodeVisitOrder) {
+            ResolvedGraph.Node node = nodes.get(nodeId);
+            if (node == null) {
+                return;
+            }
+            orderedNodes.add(node);
+        }
+        graph = new ResolvedGraph(rootNodeId, selectors, new ArrayList<ResolvedGraph.Component>(components.values()), orderedNodes, edgeVisitOrder);
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphComponent;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphEdge;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.local.model.LocalConfigurationMetadata;
+import org.gradle.internal.component.local.model.LocalFileDependencyMetadata;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays a graph recorded by {@link ResolvedGraphRecorder} to a {@link DependencyGraphVisitor}, instead of resolving the graph again.
+ *
+ * <p>The graph is rebuilt from the current metadata of its components before anything is visited. Each component must still have the same metadata, each node
+ * must still have the same dependencies, after applying the current exclusions, and each dependency must still request the same selector and select the same
+ * configurations of its target. When anything differs, nothing is visited and the graph has to be resolved again.</p>
+ */
+public class ResolvedGraphReplayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphReplayer.class);
+
+    private final ComponentMetaDataResolver metaDataResolver;
+    private final AttributesSchemaInternal attributesSchema;
+    private final ResolvedGraphRules rules;
+
+    public ResolvedGraphReplayer(ComponentMetaDataResolver metaDataResolver, AttributesSchemaInternal attributesSchema, ModuleExclusions moduleExclusions, ImmutableModuleIdentifierFactory moduleIdentifierFactory, VersionSelectorScheme versionSelectorScheme, ModuleReplacementsData moduleReplacements) {
+        this.metaDataResolver = metaDataResolver;
+        this.attributesSchema = attributesSchema;
+        this.rules = new ResolvedGraphRules(moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, moduleReplacements);
+    }
+
+    /**
+     * Replays the given graph to the given visitor.
+     *
+     * @return true if the graph was replayed, false if it no longer matches the metadata of its components, in which case nothing has been visited.
+     */
+    public boolean replay(ResolvedGraph graph, ComponentResolveMetadata rootMetadata, DependencyGraphVisitor visitor) {
+        ReplayedGraph replayed = rebuild(graph, rootMetadata);
+        if (replayed == null) {
+            LOGGER.debug("Cannot replay the resolved graph of {}, as its dependencies have changed.", rootMetadata.getComponentId());
+            return false;
+        }
+        replayed.visit(visitor);
+        return true;
+    }
+
+    @Nullable
+    private ReplayedGraph rebuild(ResolvedGraph graph, ComponentResolveMetadata rootMetadata) {
+        Map<Long, ReplayedComponent> components = new HashMap<Long, ReplayedComponent>();
+        for (ResolvedGraph.Component component : graph.getComponents()) {
+            ComponentResolveMetadata metadata = component.getComponentId() == null ? rootMetadata : resolve(component);
+            if (metadata == null) {
+                return null;
+            }
+            components.put(component.getId(), new ReplayedComponent(component.getId(), metadata, component.getSelectionReason()));
+        }
+
+        Map<Long, ResolvedGraph.Node> recordedNodes = new HashMap<Long, ResolvedGraph.Node>();
+        Map<Long, ReplayedNode> nodes = new LinkedHashMap<Long, ReplayedNode>();
+        for (ResolvedGraph.Node node : graph.getNodes()) {
+            ReplayedComponent owner = components.get(node.getComponentId());
+            if (owner == null) {
+                return null;
+            }
+            ConfigurationMetadata configuration = owner.getMetadata().getConfiguration(node.getConfiguration());
+            if (configuration == null) {
+                return null;
+            }
+            recordedNodes.put(node.getId(), node);
+            nodes.put(node.getId(), new ReplayedNode(node.getId(), node.getId().equals(graph.getRootNodeId()), owner, configuration));
+        }
+        ReplayedNode root = nodes.get(graph.getRootNodeId());
+        if (root == null) {
+            return null;
+        }
+
+        Map<Long, ReplayedSelector> selectors = new LinkedHashMap<Long, ReplayedSelector>();
+        for (ResolvedGraph.Selector selector : graph.getSelectors()) {
+            selectors.put(selector.getId(), new ReplayedSelector(selector.getId(), selector.getRequested()));
+        }
+
+        // Connect the nodes in consumer-first order, so that the exclusions of the incoming edges of each node are known before its outgoing edges are created
+        Set<Long> connected = new HashSet<Long>();
+        List<ReplayedNode> edgeVisitOrder = new ArrayList<ReplayedNode>(graph.getEdgeVisitOrder().size());
+        int expectedIncoming = 0;
+        for (Long nodeId : graph.getEdgeVisitOrder()) {
+            ReplayedNode node = nodes.get(nodeId);
+            if (node == null || !connected.add(nodeId) || !connect(recordedNodes.get(nodeId), node, nodes, selectors)) {
+                return null;
+            }
+            edgeVisitOrder.add(node);
+            for (ReplayedEdge edge : node.outgoingEdges) {
+                expectedIncoming += edge.targets.size();
+            }
+        }
+        if (connected.size() != nodes.size()) {
+            return null;
+        }
+        int incoming = 0;
+        for (ReplayedNode node : nodes.values()) {
+            incoming += node.incomingEdges.size();
+        }
+        if (incoming != expectedIncoming) {
+            return null;
+        }
+        return new ReplayedGraph(root, selectors.values(), nodes.values(), edgeVisitOrder);
+    }
+
+    @Nullable
+    private ComponentResolveMetadata resolve(ResolvedGraph.Component component) {
+        DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        metaDataResolver.resolve(component.getComponentId(), new DefaultComponentOverrideMetadata(), result);
+        if (result.getFailure() != null) {
+            return null;
+        }
+        ComponentResolveMetadata metadata = result.getMetaData();
+        if (!metadata.getId().equals(component.getModuleVersion()) || !rules.isReplayable(metadata)) {
+            return null;
+        }
+        HashValue contentHash = ResolvedGraphRules.contentHashOf(metadata);
+        if (component.getContentHash() == null ? contentHash != null : !component.getContentHash().equals(contentHash)) {
+            return null;
+        }
+        return metadata;
+    }
+
+    private boolean connect(ResolvedGraph.Node recorded, ReplayedNode node, Map<Long, ReplayedNode> nodes, Map<Long, ReplayedSelector> selectors) {
+        List<ModuleExclusion> transitiveIncoming = new ArrayList<ModuleExclusion>();
+        for (ResolvedGraph.EdgeRef ref : recorded.getIncomingEdges()) {
+            ReplayedNode from = nodes.get(ref.getFromNodeId());
+            ReplayedEdge edge = from == null ? null : from.outgoingByIndex.get(ref.getDependencyIndex());
+            if (edge == null || !edge.targets.contains(node)) {
+                return false;
+            }
+            node.incomingEdges.add(edge);
+            if (ResolvedGraphRules.isTransitive(from.getMetadata(), edge.dependency)) {
+                transitiveIncoming.add(edge.exclusions);
+            }
+        }
+        if (!node.isRoot() && transitiveIncoming.isEmpty()) {
+            return recorded.getOutgoingEdges().isEmpty();
+        }
+
+        ModuleExclusion filter = rules.filterFor(node.getMetadata(), transitiveIncoming);
+        List<? extends DependencyMetadata> dependencies = node.getMetadata().getDependencies();
+        Iterator<ResolvedGraph.Edge> edges = recorded.getOutgoingEdges().iterator();
+        for (int i = 0; i < dependencies.size(); i++) {
+            DependencyMetadata dependency = dependencies.get(i);
+            if (rules.isExcluded(filter, dependency)) {
+                continue;
+            }
+            if (!edges.hasNext()) {
+                return false;
+            }
+            ResolvedGraph.Edge edge = edges.next();
+            ReplayedEdge replayed = edge.getDependencyIndex() == i ? connectEdge(node, dependency, edge, filter, nodes, selectors) : null;
+            if (replayed == null) {
+                return false;
+            }
+            node.outgoingEdges.add(replayed);
+            node.outgoingByIndex.put(i, replayed);
+        }
+        return !edges.hasNext();
+    }
+
+    @Nullable
+    private ReplayedEdge connectEdge(ReplayedNode from, DependencyMetadata dependency, ResolvedGraph.Edge edge, ModuleExclusion filter, Map<Long, ReplayedNode> nodes, Map<Long, ReplayedSelector> selectors) {
+        ReplayedSelector selector = selectors.get(edge.getSelectorId());
+        if (selector == null || !selector.getRequested().equals(dependency.getSelector()) || dependency.isForce() != edge.isForce() || !rules.isReplayable(dependency)) {
+            return null;
+        }
+        List<ReplayedNode> targets = new ArrayList<ReplayedNode>(edge.getTargets().size());
+        for (Long targetId : edge.getTargets()) {
+            ReplayedNode target = nodes.get(targetId);
+            if (target == null || target.isRoot()) {
+                return null;
+            }
+            targets.add(target);
+        }
+        if (targets.isEmpty()) {
+            return null;
+        }
+
+        // The dependency must still select the same configurations of the selected component
+        ReplayedComponent targetComponent = targets.get(0).getOwner();
+        Set<ConfigurationMetadata> targetConfigurations;
+        try {
+            targetConfigurations = dependency.selectConfigurations(from.getOwner().getMetadata(), from.getMetadata(), targetComponent.getMetadata(), attributesSchema);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (targetConfigurations.size() != targets.size()) {
+            return null;
+        }
+        Iterator<ReplayedNode> expectedTargets = targets.iterator();
+        for (ConfigurationMetadata targetConfiguration : targetConfigurations) {
+            ReplayedNode target = expectedTargets.next();
+            if (target.getOwner() != targetComponent || !targetConfiguration.getName().equals(target.getMetadata().getName())) {
+                return null;
+            }
+        }
+
+        ModuleExclusion exclusions = rules.exclusionsFor(dependency, from.getMetadata(), filter);
+        return new ReplayedEdge(from, dependency, selector, exclusions, targets, targetComponent);
+    }
+
+    private static class ReplayedGraph {
+        private final ReplayedNode root;
+        private final Iterable<ReplayedSelector> selectors;
+        private final Iterable<ReplayedNode> nodes;
+        private final List<ReplayedNode> edgeVisitOrder;
+
+        ReplayedGraph(ReplayedNode root, Iterable<ReplayedSelector> selectors, Iterable<ReplayedNode> nodes, List<ReplayedNode> edgeVisitOrder) {
+            this.root = root;
+            this.selectors = selectors;
+            this.nodes = nodes;
+            this.edgeVisitOrder = edgeVisitOrder;
+        }
+
+        void visit(DependencyGraphVisitor visitor) {
+            visitor.start(root);
+            for (ReplayedSelector selector : selectors) {
+                visitor.visitSelector(selector);
+            }
+            for (ReplayedNode node : nodes) {
+                visitor.visitNode(node);
+            }
+            for (ReplayedNode node : edgeVisitOrder) {
+                visitor.visitEdges(node);
+            }
+            visitor.finish(root);
+        }
+    }
+
+    private static class ReplayedSelector implements DependencyGraphSelector {
+        private final Long id;
+        private final ComponentSelector requested;
+
+        ReplayedSelector(Long id, ComponentSelector requested) {
+            this.id = id;
+            this.requested = requested;
+        }
+
+        @Override
+        public Long getResultId() {
+            return id;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return requested;
+        }
+
+        @Override
+        public String toString() {
+            return requested.getDisplayName();
+        }
+    }
+
+    private static class ReplayedComponent implements DependencyGraphComponent {
+        private final Long id;
+        private final ComponentResolveMetadata metadata;
+        private final ComponentSelectionReason selectionReason;
+        private final List<ReplayedNode> nodes = new ArrayList<ReplayedNode>(1);
+
+        ReplayedComponent(Long id, ComponentResolveMetadata metadata, ComponentSelectionReason selectionReason) {
+            this.id = id;
+            this.metadata = metadata;
+            this.selectionReason = selectionReason;
+        }
+
+        @Override
+        public Long getResultId() {
+            return id;
+        }
+
+        @Override
+        public ModuleVersionIdentifier getModuleVersion() {
+            return metadata.getId();
+        }
+
+        @Override
+        public ComponentSelectionReason getSelectionReason() {
+            return selectionReason;
+        }
+
+        @Override
+        public ComponentIdentifier getComponentId() {
+            return metadata.getComponentId();
+        }
+
+        @Override
+        public ComponentResolveMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Set<ReplayedComponent> getDependents() {
+            Set<ReplayedComponent> dependents = new LinkedHashSet<ReplayedComponent>();
+            for (ReplayedNode node : nodes) {
+                for (ReplayedEdge edge : node.incomingEdges) {
+                    dependents.add(edge.from.getOwner());
+                }
+            }
+            return dependents;
+        }
+
+        @Override
+        public String toString() {
+            return metadata.getId().toString();
+        }
+    }
+
+    private static class ReplayedNode implements DependencyGraphNode {
+        private final Long id;
+        private final boolean root;
+        private final ReplayedComponent owner;
+        private final ConfigurationMetadata metadata;
+        private final ResolvedConfigurationIdentifier configurationId;
+        private final Set<ReplayedEdge> incomingEdges = new LinkedHashSet<ReplayedEdge>();
+        private final Set<ReplayedEdge> outgoingEdges = new LinkedHashSet<ReplayedEdge>();
+        private final Map<Integer, ReplayedEdge> outgoingByIndex = new HashMap<Integer, ReplayedEdge>();
+
+        ReplayedNode(Long id, boolean root, ReplayedComponent owner, ConfigurationMetadata metadata) {
+            this.id = id;
+            this.root = root;
+            this.owner = owner;
+            this.metadata = metadata;
+            this.configurationId = new ResolvedConfigurationIdentifier(owner.getModuleVersion(), metadata.getName());
+            owner.nodes.add(this);
+        }
+
+        @Override
+        public Long getNodeId() {
+            return id;
+        }
+
+        @Override
+        public boolean isRoot() {
+            return root;
+        }
+
+        @Override
+        public ResolvedConfigurationIdentifier getResolvedConfigurationId() {
+            return configurationId;
+        }
+
+        @Override
+        public ReplayedComponent getOwner() {
+            return owner;
+        }
+
+        @Override
+        public Set<ReplayedEdge> getIncomingEdges() {
+            return incomingEdges;
+        }
+
+        @Override
+        public Set<ReplayedEdge> getOutgoingEdges() {
+            return outgoingEdges;
+        }
+
+        @Override
+        public Set<? extends LocalFileDependencyMetadata> getOutgoingFileEdges() {
+            if (metadata instanceof LocalConfigurationMetadata) {
+                if (root) {
+                    return ((LocalConfigurationMetadata) metadata).getFiles();
+                }
+                // Only when this node has a transitive incoming edge
+                for (ReplayedEdge incomingEdge : incomingEdges) {
+                    if (ResolvedGraphRules.isTransitive(incomingEdge.from.getMetadata(), incomingEdge.dependency)) {
+                        return ((LocalConfigurationMetadata) metadata).getFiles();
+                    }
+                }
+            }
+            return Collections.emptySet();
+        }
+
+        @Override
+        public ConfigurationMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s(%s)", owner, metadata.getName());
+        }
+    }
+
+    private static class ReplayedEdge implements DependencyGraphEdge {
+        private final ReplayedNode from;
+        private final DependencyMetadata dependency;
+        private final ReplayedSelector selector;
+        private final ModuleExclusion exclusions;
+        private final List<ReplayedNode> targets;
+        private final ReplayedComponent targetComponent;
+
+        ReplayedEdge(ReplayedNode from, DependencyMetadata dependency, ReplayedSelector selector, ModuleExclusion exclusions, List<ReplayedNode> targets, ReplayedComponent targetComponent) {
+            this.from = from;
+            this.dependency = dependency;
+            this.selector = selector;
+            this.exclusions = exclusions;
+            this.targets = targets;
+            this.targetComponent = targetComponent;
+        }
+
+        @Override
+        public ReplayedNode getFrom() {
+            return from;
+        }
+
+        @Override
+        public DependencyGraphSelector getSelector() {
+            return selector;
+        }
+
+        @Override
+        public DependencyMetadata getDependencyMetadata() {
+            return dependency;
+        }
+
+        @Override
+        public ModuleVersionSelector getRequestedModuleVersion() {
+            return dependency.getRequested();
+        }
+
+        @Override
+        public ModuleExclusion getExclusions(ModuleExclusions moduleExclusions) {
+            return exclusions;
+        }
+
+        @Override
+        public Set<ComponentArtifactMetadata> getArtifacts(ConfigurationMetadata metaData) {
+            return dependency.getArtifacts(from.getMetadata(), metaData);
+        }
+
+        @Override
+        public ModuleDependency getModuleDependency() {
+            if (dependency instanceof DslOriginDependencyMetadata) {
+                return ((DslOriginDependencyMetadata) dependency).getSource();
+            }
+            return null;
+        }
+
+        @Override
+        public Iterable<ReplayedNode> getTargets() {
+            return targets;
+        }
+
+        @Override
+        public ComponentSelector getRequested() {
+            return dependency.getSelector();
+        }
+
+        @Override
+        public ModuleVersionResolveException getFailure() {
+            return null;
+        }
+
+        @Override
+        public Long getSelected() {
+            return targetComponent.getResultId();
+        }
+
+        @Override
+        public ComponentSelectionReason getReason() {
+            return targetComponent.getSelectionReason();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s", from, dependency);
+        }
+    }
+}
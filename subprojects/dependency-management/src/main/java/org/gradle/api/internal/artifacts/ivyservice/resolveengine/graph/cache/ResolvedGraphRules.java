@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache;
+
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ComponentSelectionReason;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Decides which parts of a dependency graph can be replayed, and calculates the exclusions of nodes and edges in the same way as the graph builder does.
+ *
+ * <p>Only graphs made of module components that are selected using fixed versions, without any rules that could select something else, can be replayed.</p>
+ */
+class ResolvedGraphRules {
+    private final ModuleExclusions moduleExclusions;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ModuleReplacementsData moduleReplacements;
+
+    ResolvedGraphRules(ModuleExclusions moduleExclusions, ImmutableModuleIdentifierFactory moduleIdentifierFactory, VersionSelectorScheme versionSelectorScheme, ModuleReplacementsData moduleReplacements) {
+        this.moduleExclusions = moduleExclusions;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.moduleReplacements = moduleReplacements;
+    }
+
+    ModuleExclusions getModuleExclusions() {
+        return moduleExclusions;
+    }
+
+    boolean isReplayable(DependencyMetadata dependency) {
+        if (!(dependency.getSelector() instanceof ModuleComponentSelector) || dependency.isChanging() || !dependency.getArtifacts().isEmpty()) {
+            return false;
+        }
+        if (dependency instanceof DslOriginDependencyMetadata && ((DslOriginDependencyMetadata) dependency).getSource() instanceof ClientModule) {
+            return false;
+        }
+        String version = dependency.getRequested().getVersion();
+        return version != null && !versionSelectorScheme.parseSelector(version).isDynamic();
+    }
+
+    /**
+     * Checks a component other than the root.
+     */
+    boolean isReplayable(ComponentResolveMetadata metadata) {
+        return metadata.getComponentId() instanceof ModuleComponentIdentifier
+            && !metadata.isChanging()
+            && !moduleReplacements.participatesInReplacements(metadata.getId().getModule());
+    }
+
+    static boolean isReplayable(ComponentSelectionReason reason) {
+        return reason == VersionSelectionReasons.REQUESTED
+            || reason == VersionSelectionReasons.ROOT
+            || reason == VersionSelectionReasons.FORCED
+            || reason == VersionSelectionReasons.CONFLICT_RESOLUTION;
+    }
+
+    @Nullable
+    static HashValue contentHashOf(ComponentResolveMetadata metadata) {
+        return metadata instanceof ModuleComponentResolveMetadata ? ((ModuleComponentResolveMetadata) metadata).getContentHash() : null;
+    }
+
+    static boolean isTransitive(ConfigurationMetadata from, DependencyMetadata dependency) {
+        return from.isTransitive() && dependency.isTransitive();
+    }
+
+    /**
+     * Calculates the exclusions that apply to the outgoing edges of a node, from the exclusions of its transitive incoming edges.
+     */
+    ModuleExclusion filterFor(ConfigurationMetadata metadata, List<ModuleExclusion> transitiveIncoming) {
+        ModuleExclusion filter;
+        if (transitiveIncoming.isEmpty()) {
+            filter = ModuleExclusions.excludeNone();
+        } else {
+            filter = transitiveIncoming.get(0);
+            for (int i = 1; i < transitiveIncoming.size(); i++) {
+                filter = moduleExclusions.union(filter, transitiveIncoming.get(i));
+            }
+        }
+        return moduleExclusions.intersect(filter, metadata.getExclusions(moduleExclusions));
+    }
+
+    boolean isExcluded(ModuleExclusion filter, DependencyMetadata dependency) {
+        if (filter == ModuleExclusions.excludeNone()) {
+            return false;
+        }
+        ModuleIdentifier targetModuleId = moduleIdentifierFactory.module(dependency.getRequested().getGroup(), dependency.getRequested().getName());
+        return filter.excludeModule(targetModuleId);
+    }
+
+    /**
+     * Calculates the exclusions of an edge, given the exclusions that apply to the outgoing edges of its source node.
+     */
+    ModuleExclusion exclusionsFor(DependencyMetadata dependency, ConfigurationMetadata from, ModuleExclusion filter) {
+        List<Exclude> excludes = dependency.getExcludes(from.getHierarchy());
+        ModuleExclusion edgeExclusions = excludes.isEmpty() ? ModuleExclusions.excludeNone() : moduleExclusions.excludeAny(excludes);
+        return moduleExclusions.intersect(edgeExclusions, filter);
+    }
+}
@@ -132,6 +132,47 @@ class PomReaderTest extends AbstractPomReaderTest {
         pomReader.properties.containsKey('some.prop2')
     }
 
+    def "ignores dependencies declared outside of the dependencies and dependency management of the project"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+
+    <build>
+        <plugins>
+            <plugin>
+                <groupId>group-plugin</groupId>
+                <artifactId>artifact-plugin</artifactId>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-three</groupId>
+                        <artifactId>artifact-three</artifactId>
+                        <version>version-three</version>
+                    </dependency>
+                </dependencies>
+            </plugin>
+        </plugins>
+    </build>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId><![CDATA[artifact-two]]></artifactId>
+            <version>version-&amp;two</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+        MavenDependencyKey key = new MavenDependencyKey('group-two', 'artifact-two', 'jar', null)
+
+        then:
+        pomReader.getDependencies().size() == 1
+        assertResolvedPomDependency(key, 'version-&two')
+    }
+
     def "get dependencies without custom properties"() {
         when:
         pomFile << """
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata
+import org.gradle.internal.resource.local.LocallyAvailableResource
+import org.gradle.internal.resource.local.PathKeyFileStore
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedModuleMetadataStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    PathKeyFileStore pathKeyFileStore = Mock()
+    ImmutableModuleIdentifierFactory moduleIdentifierFactory = Mock(ImmutableModuleIdentifierFactory) {
+        module(_, _) >> { args -> DefaultModuleIdentifier.newId(*args) }
+    }
+    ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
+    ModuleMetadataSerializer serializer = Mock()
+    def key = new ModuleComponentAtRepositoryKey("repositoryId", DefaultModuleComponentIdentifier.newId("org.test", "testArtifact", "1.0"))
+    def metadata = Stub(ModuleComponentResolveMetadata)
+    def decoded = Stub(MutableModuleComponentResolveMetadata)
+    MappedModuleMetadataStore store
+
+    def setup() {
+        store = createStore()
+        serializer.write(_, _) >> { encoder, ModuleComponentResolveMetadata value -> encoder.writeString(value.is(metadata) ? "metadata" : "other") }
+    }
+
+    def cleanup() {
+        store.close()
+    }
+
+    def "reads metadata written to segment"() {
+        when:
+        store.putModuleDescriptor(key, metadata)
+        def result = store.getModuleDescriptor(key)
+
+        then:
+        result == decoded
+        1 * serializer.read(_, moduleIdentifierFactory, moduleExclusions) >> { decoder, factory, exclusions -> assert decoder.readString() == "metadata"; decoded }
+        0 * pathKeyFileStore._
+        temporaryFolder.file("segments/repositoryId-1.bin").file
+    }
+
+    def "reads metadata written by another store instance"() {
+        given:
+        store.putModuleDescriptor(key, metadata)
+        store.close()
+        store = createStore()
+
+        when:
+        def result = store.getModuleDescriptor(key)
+
+        then:
+        result == decoded
+        1 * serializer.read(_, _, _) >> { decoder, factory, exclusions -> assert decoder.readString() == "metadata"; decoded }
+        0 * pathKeyFileStore._
+    }
+
+    def "later entry replaces earlier entry"() {
+        given:
+        store.putModuleDescriptor(key, Stub(ModuleComponentResolveMetadata))
+        store.putModuleDescriptor(key, metadata)
+
+        when:
+        store.getModuleDescriptor(key)
+
+        then:
+        1 * serializer.read(_, _, _) >> { decoder, factory, exclusions -> assert decoder.readString() == "metadata"; decoded }
+    }
+
+    def "copies metadata from file store into segment"() {
+        given:
+        def descriptorFile = temporaryFolder.file("descriptor.bin")
+        def encoder = new KryoBackedEncoder(new FileOutputStream(descriptorFile))
+        encoder.writeString("metadata")
+        encoder.close()
+        def resource = Stub(LocallyAvailableResource) {
+            getFile() >> descriptorFile
+        }
+
+        when:
+        def first = store.getModuleDescriptor(key)
+        def second = store.getModuleDescriptor(key)
+
+        then:
+        first == decoded
+        second == decoded
+        1 * pathKeyFileStore.get("org.test/testArtifact/1.0/repositoryId/descriptor.bin") >> resource
+        2 * serializer.read(_, _, _) >> { decoder, factory, exclusions -> assert decoder.readString() == "metadata"; decoded }
+    }
+
+    def "returns null for metadata that is not cached"() {
+        expect:
+        store.getModuleDescriptor(key) == null
+    }
+
+    def "ignores partially written record detected by its checksum"() {
+        given:
+        store.putModuleDescriptor(key, Stub(ModuleComponentResolveMetadata))
+        store.close()
+        def segmentFile = temporaryFolder.file("segments/repositoryId-1.bin")
+        // Strings are encoded with the high bit set on the last character
+        corrupt(segmentFile, "othe")
+        store = createStore()
+        def otherKey = new ModuleComponentAtRepositoryKey("repositoryId", DefaultModuleComponentIdentifier.newId("org.test", "other", "1.0"))
+
+        when:
+        def missing = store.getModuleDescriptor(key)
+        store.putModuleDescriptor(otherKey, metadata)
+        def result = store.getModuleDescriptor(otherKey)
+
+        then:
+        missing == null
+        result == decoded
+        1 * pathKeyFileStore.get(_) >> null
+        1 * serializer.read(_, _, _) >> { decoder, factory, exclusions -> assert decoder.readString() == "metadata"; decoded }
+    }
+
+    private static void corrupt(File segmentFile, String value) {
+        def bytes = segmentFile.bytes
+        def index = new String(bytes, "ISO-8859-1").indexOf(value)
+        assert index >= 0
+        bytes[index] = (byte) (bytes[index] ^ 0xff)
+        segmentFile.bytes = bytes
+    }
+
+    private MappedModuleMetadataStore createStore() {
+        new MappedModuleMetadataStore(temporaryFolder.file("segments"), pathKeyFileStore, serializer, moduleIdentifierFactory, moduleExclusions)
+    }
+}
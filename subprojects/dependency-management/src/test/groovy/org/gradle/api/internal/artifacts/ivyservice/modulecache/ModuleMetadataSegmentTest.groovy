@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class ModuleMetadataSegmentTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def segments = []
+
+    def cleanup() {
+        segments*.close()
+    }
+
+    def "reads values appended to segment"() {
+        def segment = newSegment()
+
+        when:
+        segment.put("a", "value a".bytes)
+        segment.put("b", "value b".bytes)
+
+        then:
+        read(segment, "a") == "value a"
+        read(segment, "b") == "value b"
+        segment.get("c") == null
+    }
+
+    def "reads values appended by another segment instance"() {
+        def segment = newSegment()
+        def other = newSegment()
+        segment.put("a", "value a".bytes)
+
+        expect:
+        read(other, "a") == "value a"
+
+        when:
+        segment.put("a", "value b".bytes)
+
+        then:
+        read(other, "a") == "value b"
+    }
+
+    def "grows mapping when appending more than it holds"() {
+        def segment = newSegment()
+        def value = new byte[40 * 1024]
+
+        when:
+        3.times { segment.put("key" + it, value) }
+
+        then:
+        3.times { assert segment.get("key" + it).bytes == value }
+        segment.file.length() == 128 * 1024
+    }
+
+    def "moves values in use to new file once replaced values take up more space"() {
+        def segment = newSegment(1024)
+        def other = newSegment(1024)
+        segment.put("b", new byte[100])
+        other.get("b")
+
+        when:
+        10.times { segment.put("a", "value $it".bytes) }
+
+        then:
+        segment.file.name == "repo-2.bin"
+        read(segment, "a") == "value 9"
+        segment.get("b").bytes == new byte[100]
+        read(other, "a") == "value 9"
+        other.file.name == "repo-2.bin"
+    }
+
+    def "does not hold previous value for key when segment cannot hold new value"() {
+        def segment = newSegment(128)
+
+        when:
+        def stored = segment.put("a", "value a".bytes)
+        def replaced = segment.put("a", new byte[128])
+
+        then:
+        stored
+        !replaced
+        segment.get("a") == null
+        newSegment(128).get("a") == null
+    }
+
+    def "keeps stream valid when segment moves to new file"() {
+        def segment = newSegment(1024)
+        segment.put("a", "value a".bytes)
+        def stream = segment.get("a")
+
+        when:
+        10.times { segment.put("b", "value $it".bytes) }
+
+        then:
+        segment.file.name != "repo-1.bin"
+        stream.text == "value a"
+    }
+
+    def "ignores record with checksum mismatch at end of segment and overwrites it"() {
+        def segment = newSegment()
+        segment.put("a", "value a".bytes)
+        segment.put("b", "value b".bytes)
+        segment.close()
+        def bytes = segment.file.bytes
+        def index = new String(bytes, "ISO-8859-1").indexOf("value b")
+        bytes[index] = (byte) 'V'
+        segment.file.bytes = bytes
+
+        when:
+        def reopened = newSegment()
+
+        then:
+        read(reopened, "a") == "value a"
+        reopened.get("b") == null
+
+        when:
+        reopened.put("c", "value c".bytes)
+
+        then:
+        read(newSegment(), "c") == "value c"
+    }
+
+    def "rejects file that is not a segment"() {
+        temporaryFolder.file("repo-1.bin").text = "not a segment file"
+        def segment = newSegment()
+
+        when:
+        segment.get("a")
+
+        then:
+        def e = thrown(IOException)
+        e.message.contains("is not a module metadata segment")
+    }
+
+    private ModuleMetadataSegment newSegment(int maxSize = Integer.MAX_VALUE) {
+        def segment = new ModuleMetadataSegment(temporaryFolder.testDirectory, "repo", maxSize)
+        segments << segment
+        return segment
+    }
+
+    private static String read(ModuleMetadataSegment segment, String key) {
+        return segment.get(key).text
+    }
+}
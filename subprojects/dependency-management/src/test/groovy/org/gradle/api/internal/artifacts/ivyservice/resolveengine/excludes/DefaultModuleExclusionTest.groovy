@@ -289,6 +289,25 @@ class DefaultModuleExclusionTest extends Specification {
         !spec.excludeModule(moduleId("regexp", "module2"))
     }
 
+    def "does not accept module version that matches any of many exclude rules"() {
+        def rule1 = excludeRule("org", "module")
+        def rule2 = excludeRule("org2", "module")
+        def rule3 = excludeRule("org", "module2")
+        def rule4 = excludeArtifactRule("module3", "jar", "jar")
+        def unionSpec = union(excludeAny(excludeGroupRule("org3")), excludeAny(regexpExcludeRule("org.*", "module4")))
+        def spec = intersect(excludeAny(rule1, rule2, rule3, rule4), unionSpec)
+
+        expect:
+        spec.excludeModule(moduleId("org", "module"))
+        spec.excludeModule(moduleId("org2", "module"))
+        spec.excludeModule(moduleId("org", "module2"))
+        spec.excludeModule(moduleId("org3", "module4"))
+        !spec.excludeModule(moduleId("org3", "module"))
+        !spec.excludeModule(moduleId("org2", "module2"))
+        !spec.excludeModule(moduleId("org", "module3"))
+        !spec.excludeModule(moduleId("org3", "other"))
+    }
+
     def "specs with the same set of exclude rules accept the same modules as each other"() {
         def rule1 = excludeRule("org", "module")
         def rule2 = excludeRule("org", "module2")
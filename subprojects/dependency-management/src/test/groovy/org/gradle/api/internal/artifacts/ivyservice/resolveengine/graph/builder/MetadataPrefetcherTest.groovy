@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.api.Action
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.specs.Specs
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+class MetadataPrefetcherTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def buildOperationExecutor = Stub(BuildOperationExecutor) {
+        runAll(_) >> { Action action ->
+            action.execute(Stub(BuildOperationQueue) {
+                add(_) >> { args -> args[0].run(null) }
+            })
+        }
+    }
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator())
+    def prefetcher = new MetadataPrefetcher(delegate, Specs.satisfyAll(), versionSelectorScheme, buildOperationExecutor)
+
+    def "fetches the dependencies of all waiting nodes ahead of traversal"() {
+        def a = id('a', '1.0')
+        def b = id('b', '1.0')
+        def c = id('c', '2.0')
+        def metadataA = Stub(ComponentResolveMetadata)
+        def node1 = node(dependency('a', '1.0'), dependency('b', '1.0'))
+        def node2 = node(dependency('b', '1.0'), dependency('c', '2.0'))
+
+        when:
+        prefetcher.beforeTraversing(node1, [node1, node2])
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(a) >> false
+        1 * delegate.isFetchingMetadataCheap(b) >> false
+        1 * delegate.isFetchingMetadataCheap(c) >> true
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].resolved(metadataA) }
+        1 * delegate.resolve(b, _, _) >> { args -> args[2].resolved(Stub(ComponentResolveMetadata)) }
+        0 * delegate._
+
+        when:
+        prefetcher.beforeTraversing(node2, [node2])
+        def result = new DefaultBuildableComponentResolveResult()
+        prefetcher.resolve(a, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        result.metaData == metadataA
+        0 * delegate._
+    }
+
+    def "does not fetch dependencies on dynamic or changing versions ahead of traversal"() {
+        def changing = dependency('c', '1.0')
+        _ * changing.changing >> true
+        def node = node(dependency('a', '1.+'), dependency('b', '[1.0,2.0)'), dependency('d', 'latest.release'), dependency('e', ''), changing)
+
+        when:
+        prefetcher.beforeTraversing(node, [node])
+
+        then:
+        0 * delegate._
+    }
+
+    def "resolves components that could not be fetched ahead of traversal again using the delegate"() {
+        def a = id('a', '1.0')
+        def metadataA = Stub(ComponentResolveMetadata)
+        def node = node(dependency('a', '1.0'))
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.beforeTraversing(node, [node])
+
+        then:
+        1 * delegate.isFetchingMetadataCheap(a) >> false
+        1 * delegate.resolve(a, _, _) >> { args -> args[2].failed(new ModuleVersionResolveException(a, "broken")) }
+
+        when:
+        prefetcher.resolve(a, new DefaultComponentOverrideMetadata(), result)
+
+        then:
+        1 * delegate.resolve(a, _, result) >> { args -> args[2].resolved(metadataA) }
+        result.metaData == metadataA
+    }
+
+    def "resolves components that were not fetched ahead of traversal using the delegate"() {
+        def a = id('a', '1.0')
+        def override = new DefaultComponentOverrideMetadata()
+        def result = new DefaultBuildableComponentResolveResult()
+
+        when:
+        prefetcher.resolve(a, override, result)
+
+        then:
+        1 * delegate.resolve(a, override, result)
+    }
+
+    def id(String name, String version) {
+        return DefaultModuleComponentIdentifier.newId("group", name, version)
+    }
+
+    def dependency(String name, String version) {
+        def dependency = Mock(DependencyMetadata)
+        _ * dependency.selector >> DefaultModuleComponentSelector.newSelector("group", name, version)
+        _ * dependency.artifacts >> []
+        return dependency
+    }
+
+    def node(DependencyMetadata... dependencies) {
+        def metadata = Stub(ConfigurationMetadata) {
+            isTransitive() >> true
+            getDependencies() >> (dependencies as List)
+        }
+        return Stub(NodeState) {
+            getMetadata() >> metadata
+        }
+    }
+}
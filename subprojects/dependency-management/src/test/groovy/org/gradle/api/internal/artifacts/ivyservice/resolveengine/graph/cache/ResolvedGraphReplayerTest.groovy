@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.cache
+
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.ModuleVersionIdentifier
+import org.gradle.api.artifacts.ModuleVersionSelector
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleConflictResolver
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.CompositeDependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphNode
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphSelector
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder.DependencyGraphBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler
+import org.gradle.api.internal.attributes.AttributeContainerInternal
+import org.gradle.api.internal.attributes.AttributesSchemaInternal
+import org.gradle.api.specs.Specs
+import org.gradle.internal.component.external.descriptor.DefaultExclude
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.local.model.DefaultLocalComponentMetadata
+import org.gradle.internal.component.local.model.DslOriginDependencyMetadataWrapper
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver
+import org.gradle.internal.resolve.resolver.ResolveContextToComponentResolver
+import org.gradle.internal.resolve.result.BuildableComponentIdResolveResult
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.internal.component.local.model.TestComponentIdentifiers.newProjectId
+
+class ResolvedGraphReplayerTest extends Specification {
+    def configuration = Stub(ConfigurationInternal) {
+        getName() >> 'root'
+        getPath() >> 'root'
+    }
+    def attributesSchema = Mock(AttributesSchemaInternal)
+    def attributes = Mock(AttributeContainerInternal) {
+        isEmpty() >> true
+    }
+    def components = [:]
+    def idResolver = Stub(DependencyToComponentIdResolver) {
+        resolve(_, _) >> { DependencyMetadata dependency, BuildableComponentIdResolveResult result ->
+            def requested = dependency.requested
+            ComponentResolveMetadata component = components.values().find {
+                it.id.group == requested.group && it.id.name == requested.name && it.id.version == requested.version
+            }
+            result.resolved(component.componentId, component.id)
+        }
+    }
+    def metaDataResolver = Stub(ComponentMetaDataResolver) {
+        resolve(_, _, _) >> { ComponentIdentifier id, ComponentOverrideMetadata overrides, BuildableComponentResolveResult result ->
+            result.resolved(components[id])
+        }
+    }
+    def root = project('root')
+    def moduleResolver = Stub(ResolveContextToComponentResolver) {
+        resolve(_, _) >> { it[1].resolved(root) }
+    }
+    def moduleReplacements = Stub(ModuleReplacementsData)
+    def moduleIdentifierFactory = Mock(ImmutableModuleIdentifierFactory) {
+        module(_, _) >> { args ->
+            DefaultModuleIdentifier.newId(*args)
+        }
+    }
+    def moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator())
+    def buildOperationExecutor = Stub(BuildOperationExecutor) {
+        def queue = Stub(BuildOperationQueue) {
+            add(_) >> { args ->
+                args[0].run()
+            }
+        }
+        runAll(_) >> { args ->
+            args[0].execute(queue)
+        }
+    }
+    def builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, new DefaultConflictHandler(Stub(ModuleConflictResolver), moduleReplacements), Specs.satisfyAll(), attributesSchema, moduleIdentifierFactory, moduleExclusions, buildOperationExecutor, moduleReplacements, versionSelectorScheme, true)
+    def replayer = new ResolvedGraphReplayer(metaDataResolver, attributesSchema, moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, moduleReplacements)
+
+    def "replays the same visits as resolving the graph"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        def c = revision('c')
+        dependsOn root, a
+        dependsOn root, b
+        dependsOn a, c
+        dependsOn b, c
+
+        when:
+        def resolved = new RecordingVisitor()
+        def graph = record(resolved)
+
+        then:
+        graph != null
+
+        when:
+        def replayed = new RecordingVisitor()
+        def result = replayer.replay(graph, root, replayed)
+
+        then:
+        result
+        replayed.events == resolved.events
+    }
+
+    def "replays exclusions of the graph"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        def c = revision('c')
+        dependsOn root, a, exclude: c
+        dependsOn a, b
+        dependsOn b, c
+
+        when:
+        def resolved = new RecordingVisitor()
+        def graph = record(resolved)
+        def replayed = new RecordingVisitor()
+
+        then:
+        graph != null
+        replayer.replay(graph, root, replayed)
+        replayed.events == resolved.events
+        !resolved.events.any { it.contains('group:c:1.0') }
+    }
+
+    def "does not replay graph when the dependencies of a component have changed"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        dependsOn root, a
+
+        def graph = record(new RecordingVisitor())
+        def changed = revision('a')
+        dependsOn changed, b
+
+        when:
+        def replayed = new RecordingVisitor()
+        def result = replayer.replay(graph, root, replayed)
+
+        then:
+        !result
+        replayed.events.empty
+    }
+
+    def "does not replay graph when a dependency of the root has changed"() {
+        given:
+        def a = revision('a')
+        def b = revision('b')
+        dependsOn root, a
+
+        def graph = record(new RecordingVisitor())
+        def changed = project('root')
+        dependsOn changed, b
+
+        expect:
+        !replayer.replay(graph, changed, new RecordingVisitor())
+    }
+
+    def "does not record graph with a dynamic version"() {
+        given:
+        def dynamic = revision('a', '1.+')
+        dependsOn root, dynamic
+
+        expect:
+        record(new RecordingVisitor()) == null
+    }
+
+    private ResolvedGraph record(DependencyGraphVisitor visitor) {
+        def recorder = new ResolvedGraphRecorder(moduleExclusions, moduleIdentifierFactory, versionSelectorScheme, moduleReplacements)
+        builder.resolve(configuration, new CompositeDependencyGraphVisitor(visitor, recorder))
+        return recorder.graph
+    }
+
+    def revision(String name, String revision = '1.0') {
+        def id = newId("group", name, revision)
+        def metaData = new DefaultLocalComponentMetadata(id, DefaultModuleComponentIdentifier.newId(id), "release", attributesSchema)
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ["default"] as Set<String>, true, true, attributes, true, true)
+        components[metaData.componentId] = metaData
+        return metaData
+    }
+
+    def project(String name) {
+        def metaData = new DefaultLocalComponentMetadata(newId("group", name, "1.0"), newProjectId(":${name}"), "release", attributesSchema)
+        metaData.addConfiguration("default", "defaultConfig", [] as Set<String>, ["default"] as Set<String>, true, true, attributes, true, true)
+        metaData.addConfiguration("root", "rootConfig", ["default"] as Set<String>, ["default", "root"] as Set<String>, true, true, attributes, true, true)
+        return metaData
+    }
+
+    def dependsOn(Map<String, ?> args = [:], ComponentResolveMetadata from, ComponentResolveMetadata to) {
+        ModuleVersionIdentifier dependencyId = to.id
+        ModuleVersionSelector selector = newSelector(dependencyId.group, dependencyId.name, dependencyId.version)
+        def excludeRules = []
+        if (args.exclude) {
+            ComponentResolveMetadata excluded = args.exclude
+            excludeRules << new DefaultExclude(moduleIdentifierFactory.module(excluded.id.group, excluded.id.name))
+        }
+        def dependencyMetaData = new LocalComponentDependencyMetadata(DefaultModuleComponentSelector.newSelector(selector), selector, "default", null, "default", [] as Set<IvyArtifactName>,
+            excludeRules, false, false, true)
+        from.dependencies.add(new DslOriginDependencyMetadataWrapper(dependencyMetaData, Stub(ModuleDependency)))
+    }
+
+    static class RecordingVisitor implements DependencyGraphVisitor {
+        final List<String> events = []
+
+        @Override
+        void start(DependencyGraphNode root) {
+            events << "start ${describe(root)}".toString()
+        }
+
+        @Override
+        void visitSelector(DependencyGraphSelector selector) {
+            events << "selector ${selector.resultId} ${selector.requested}".toString()
+        }
+
+        @Override
+        void visitNode(DependencyGraphNode node) {
+            events << "node ${describe(node)} reason ${node.owner.selectionReason}".toString()
+        }
+
+        @Override
+        void visitEdges(DependencyGraphNode node) {
+            node.outgoingEdges.each { edge ->
+                events << "edge ${describe(node)} -> ${edge.selector.resultId} ${edge.targets.collect { describe(it) }}".toString()
+            }
+        }
+
+        @Override
+        void finish(DependencyGraphNode root) {
+            events << "finish ${describe(root)}".toString()
+        }
+
+        private static String describe(DependencyGraphNode node) {
+            return "${node.nodeId} ${node.owner.moduleVersion}:${node.metadata.name}"
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.test.fixtures.server.http
+
+import org.mortbay.util.URIUtil
+
+import javax.servlet.Filter
+import javax.servlet.FilterChain
+import javax.servlet.FilterConfig
+import javax.servlet.ServletException
+import javax.servlet.ServletRequest
+import javax.servlet.ServletResponse
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+/**
+ * Answers a {@code POST} of build cache keys to a directory with the keys that have an entry stored in the directory.
+ */
+class BatchLookupFilter implements Filter {
+    static final String KEYS_CONTENT_TYPE = "application/vnd.gradle.build-cache-keys.v1"
+    private FilterConfig filterConfig
+
+    @Override
+    void init(FilterConfig filterConfig) throws ServletException {
+        this.filterConfig = filterConfig
+    }
+
+    @Override
+    void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest && response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response)
+            return
+        }
+
+        HttpServletRequest httpRequest = (HttpServletRequest) request
+        HttpServletResponse httpResponse = (HttpServletResponse) response
+
+        if (httpRequest.getMethod() == "POST" && httpRequest.getContentType()?.startsWith(KEYS_CONTENT_TYPE)) {
+            doLookup(httpRequest, httpResponse)
+        } else {
+            chain.doFilter(httpRequest, httpResponse)
+        }
+    }
+
+    private void doLookup(HttpServletRequest request, HttpServletResponse response) {
+        def dir = new File(filterConfig.getServletContext().getRealPath(URIUtil.addPaths(request.getServletPath(), request.getPathInfo())))
+        def keys = request.getReader().readLines().findAll { String key -> !key.isEmpty() && new File(dir, key).isFile() }
+
+        response.setStatus(HttpServletResponse.SC_OK)
+        response.setContentType(KEYS_CONTENT_TYPE)
+        response.getWriter().write(keys.collect { it + "\n" }.join(""))
+    }
+
+    @Override
+    void destroy() {
+    }
+}
@@ -31,6 +31,7 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
     private TestFile cacheDir
     private long dropConnectionForPutBytes = -1
     private int blockIncomingConnectionsForSeconds = 0
+    private BatchLookupFilter batchLookupFilter
 
     HttpBuildCacheServer(TestDirectoryProvider provider) {
         this.provider = provider
@@ -53,9 +54,19 @@ class HttpBuildCacheServer extends ExternalResource implements HttpServerFixture
         if (blockIncomingConnectionsForSeconds > 0) {
             this.webapp.addFilter(new FilterHolder(new BlockFilter(blockIncomingConnectionsForSeconds)), "/*", 1)
         }
+        if (batchLookupFilter != null) {
+            this.webapp.addFilter(new FilterHolder(batchLookupFilter), "/*", 1)
+        }
         this.webapp.addFilter(RestFilter, "/*", 1)
     }
 
+    /**
+     * Answers lookups of several entries at once, in the same way as the HTTP build cache client sends them.
+     */
+    void withBatchLookup() {
+        this.batchLookupFilter = new BatchLookupFilter()
+    }
+
     void dropConnectionForPutAfterBytes(long numBytes) {
         this.dropConnectionForPutBytes = numBytes
     }
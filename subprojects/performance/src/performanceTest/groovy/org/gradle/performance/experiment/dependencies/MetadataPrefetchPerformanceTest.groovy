@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance.experiment.dependencies
+
+import org.gradle.performance.AbstractCrossBuildPerformanceTest
+import org.gradle.performance.categories.PerformanceExperiment
+import org.gradle.performance.fixture.BuildExperimentInvocationInfo
+import org.gradle.performance.fixture.BuildExperimentListener
+import org.gradle.performance.fixture.BuildExperimentListenerAdapter
+import org.gradle.performance.measure.MeasuredOperation
+import org.junit.experimental.categories.Category
+
+@Category(PerformanceExperiment)
+class MetadataPrefetchPerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    private final static String TEST_PROJECT_NAME = 'excludeRuleMergingBuild'
+
+    def "resolves large dependency graph from file repository with metadata fetched ahead"() {
+        when:
+        runner.testGroup = "dependency resolution"
+        runner.buildExperimentListener = new BuildExperimentListenerAdapter() {
+            @Override
+            void afterInvocation(BuildExperimentInvocationInfo invocationInfo, MeasuredOperation operation, BuildExperimentListener.MeasurementCallback measurementCallback) {
+                ['modules-2', 'external-resources'].each {
+                    new File("$invocationInfo.gradleUserHome/caches/$it").deleteDir()
+                }
+            }
+        }
+        runner.buildSpec {
+            warmUpCount = 2
+            invocationCount = 10
+            projectName(TEST_PROJECT_NAME).displayName("metadata fetched ahead").invocation {
+                tasksToRun("resolveDependencies").args("-Dorg.gradle.internal.resolution.prefetch-metadata=true").gradleOpts("-Xms1g", "-Xmx1g")
+            }
+        }
+        runner.baseline {
+            warmUpCount = 2
+            invocationCount = 10
+            projectName(TEST_PROJECT_NAME).displayName("metadata fetched per node").invocation {
+                tasksToRun("resolveDependencies").gradleOpts("-Xms1g", "-Xmx1g")
+            }
+        }
+
+        then:
+        runner.run()
+    }
+}
@@ -26,6 +26,7 @@ public class PersistentIndexedCacheParameters<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private int shards = 1;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -62,6 +63,22 @@ public class PersistentIndexedCacheParameters<K, V> {
         return cacheDecorator;
     }
 
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Spreads the entries of the cache over the given number of files, each with its own write-ahead log. The number of shards must be the same for all users of the cache.
+     *
+     * <p>All access to the cache still goes through the cache access worker and the cache file lock, so spreading the entries does not let updates proceed concurrently,
+     * and each update pays for a write to the log. Defaults to a single file.</p>
+     */
+    public PersistentIndexedCacheParameters<K, V> shards(int shards) {
+        assert shards > 0;
+        this.shards = shards;
+        return this;
+    }
+
     public PersistentIndexedCacheParameters<K, V> cacheDecorator(CacheDecorator cacheDecorator) {
         assert cacheDecorator != null;
         this.cacheDecorator = cacheDecorator;
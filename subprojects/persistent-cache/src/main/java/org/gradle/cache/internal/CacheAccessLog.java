@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.base.Charsets;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.IoActions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only log of the files stored in and read from a cache directory, in the order they were accessed. Allows the least recently used files to be found without scanning the directory.
+ *
+ * <p>The log is shared by all processes using the cache directory, so it should only be written while holding the lock for the cache.
+ * Each record is a single line, written with a single write, so that a record is either fully written or can be recognized as incomplete.</p>
+ */
+public class CacheAccessLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessLog.class);
+    public static final String FILE_NAME = "access.log";
+
+    private static final String SCAN_RECORD = "#";
+    private static final String STORE_RECORD = "S";
+    private static final String ACCESS_RECORD = "A";
+
+    private final File logFile;
+    private final File compactedLogFile;
+
+    public CacheAccessLog(File cacheDir) {
+        this.logFile = new File(cacheDir, FILE_NAME);
+        this.compactedLogFile = new File(cacheDir, FILE_NAME + ".new");
+    }
+
+    /**
+     * Returns true if the given file in the cache directory is used for the log.
+     */
+    public boolean isLogFile(String name) {
+        return name.equals(logFile.getName()) || name.equals(compactedLogFile.getName());
+    }
+
+    /**
+     * Records that a file with the given name and size was stored in the cache directory.
+     */
+    public void stored(String name, long size) {
+        append(STORE_RECORD + " " + name + " " + size + "\n");
+    }
+
+    /**
+     * Records that the file with the given name was read from the cache directory.
+     */
+    public void accessed(String name) {
+        append(ACCESS_RECORD + " " + name + "\n");
+    }
+
+    private synchronized void append(String record) {
+        try {
+            // Open the log for each record, so that a log replaced by another process is not written to after it has been replaced
+            FileOutputStream output = new FileOutputStream(logFile, true);
+            try {
+                output.write(record.getBytes(Charsets.UTF_8));
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            // The log is only used to decide what to clean up, so do not fail the access
+            LOGGER.debug("Could not write to cache access log " + logFile, e);
+        }
+    }
+
+    /**
+     * Reads the log.
+     *
+     * @return the state of the cache directory according to the log, or null if there is no log.
+     */
+    State read() {
+        if (!logFile.isFile()) {
+            return null;
+        }
+        State state = new State(0);
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), Charsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                state.apply(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            IoActions.closeQuietly(reader);
+        }
+        return state;
+    }
+
+    /**
+     * Replaces the log with the given state, discarding all records of files that are no longer present.
+     */
+    void write(State state) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(compactedLogFile), Charsets.UTF_8));
+            try {
+                writer.write(SCAN_RECORD + " " + state.getLastScan() + "\n");
+                for (Map.Entry<String, Long> entry : state.getEntries().entrySet()) {
+                    Long size = entry.getValue();
+                    if (size == null) {
+                        writer.write(ACCESS_RECORD + " " + entry.getKey() + "\n");
+                    } else {
+                        writer.write(STORE_RECORD + " " + entry.getKey() + " " + size + "\n");
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            Files.move(compactedLogFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "access log " + logFile;
+    }
+
+    /**
+     * The files in the cache directory, from the least recently used to the most recently used, with their sizes where known.
+     */
+    static class State {
+        private final Map<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        private long lastScan;
+
+        State(long lastScan) {
+            this.lastScan = lastScan;
+        }
+
+        /**
+         * The time the cache directory was last scanned for files that are missing from the log.
+         */
+        long getLastScan() {
+            return lastScan;
+        }
+
+        Map<String, Long> getEntries() {
+            return entries;
+        }
+
+        void stored(String name, long size) {
+            entries.put(name, size);
+        }
+
+        void accessed(String name) {
+            if (entries.get(name) == null) {
+                // Not stored since the log was started, so the size is not known
+                entries.put(name, null);
+            }
+        }
+
+        void apply(String line) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts.length == 2 && parts[0].equals(SCAN_RECORD)) {
+                    lastScan = Long.parseLong(parts[1]);
+                } else if (parts.length == 3 && parts[0].equals(STORE_RECORD)) {
+                    stored(parts[1], Long.parseLong(parts[2]));
+                } else if (parts.length == 2 && parts[0].equals(ACCESS_RECORD)) {
+                    accessed(parts[1]);
+                } else {
+                    LOGGER.debug("Ignoring malformed cache access log record '{}'", line);
+                }
+            } catch (NumberFormatException e) {
+                LOGGER.debug("Ignoring malformed cache access log record '{}'", line);
+            }
+        }
+    }
+}
@@ -29,6 +29,8 @@ import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.PersistentIndexedStore;
+import org.gradle.cache.internal.btree.ShardedBTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
@@ -279,8 +281,11 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (entry == null) {
                 final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
                 LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-                    public BTreePersistentIndexedCache<K, V> create() {
+                Factory<PersistentIndexedStore<K, V>> indexedCacheFactory = new Factory<PersistentIndexedStore<K, V>>() {
+                    public PersistentIndexedStore<K, V> create() {
+                        if (parameters.getShards() > 1) {
+                            return doCreateShardedCache(parameters.getCacheName(), parameters.getShards(), parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
                         return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
                     }
                 };
@@ -311,6 +316,10 @@ public class DefaultCacheAccess implements CacheCoordinator {
         return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
     }
 
+    <K, V> PersistentIndexedStore<K, V> doCreateShardedCache(String cacheName, int shards, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        return new ShardedBTreePersistentIndexedCache<K, V>(baseDir, cacheName, shards, keySerializer, valueSerializer);
+    }
+
     /**
      * Called just after the file lock has been acquired.
      */
@@ -439,6 +448,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleShards(faultMessages, parameters.getShards());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -481,6 +491,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleShards(Collection<String> faultMessages, int shards) {
+            if (shards != parameters.getShards()) {
+                faultMessages.add(
+                    String.format(" * Requested number of shards (%d) doesn't match current number of shards (%d)",
+                        shards, parameters.getShards()));
+            }
+        }
     }
 
     private static class InvalidCacheReuseException extends GradleException {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Ordering;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the least recently used files from a cache directory until the files it contains are smaller than a target size, using a {@link CacheAccessLog} to find them.
+ *
+ * <p>Only the files that are deleted, and those files whose size was not logged, are accessed. The cache directory is scanned only when there is no log yet,
+ * and occasionally after that to find any files that were stored without being logged, such as by older Gradle versions sharing the cache directory.
+ * Files that are found by scanning are treated as less recently used than the logged files, in order of their modification time.</p>
+ */
+public final class LeastRecentlyUsedCacheCleanup implements Action<PersistentCache> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeastRecentlyUsedCacheCleanup.class);
+    private static final long SCAN_INTERVAL = TimeUnit.DAYS.toMillis(30);
+    private static final Comparator<File> OLDEST_FIRST = Ordering.natural().onResultOf(new Function<File, Comparable<Long>>() {
+        @Override
+        public Comparable<Long> apply(File input) {
+            return input.lastModified();
+        }
+    });
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final CacheAccessLog accessLog;
+    private final long targetSizeInMB;
+    private final String partialFileSuffix;
+
+    public LeastRecentlyUsedCacheCleanup(BuildOperationExecutor buildOperationExecutor, CacheAccessLog accessLog, long targetSizeInMB, String partialFileSuffix) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.accessLog = accessLog;
+        this.targetSizeInMB = targetSizeInMB;
+        this.partialFileSuffix = partialFileSuffix;
+    }
+
+    @Override
+    public void execute(final PersistentCache persistentCache) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                cleanup(persistentCache, System.currentTimeMillis());
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Clean up " + persistentCache);
+            }
+        });
+    }
+
+    void cleanup(PersistentCache persistentCache, long now) {
+        File cacheDir = persistentCache.getBaseDir();
+        CacheAccessLog.State state = accessLog.read();
+        if (state == null || now - state.getLastScan() >= SCAN_INTERVAL) {
+            state = scan(cacheDir, state, now);
+        }
+
+        // All sizes are in bytes
+        long totalSize = 0;
+        for (Map.Entry<String, Long> entry : state.getEntries().entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(new File(cacheDir, entry.getKey()).length());
+            }
+            totalSize += entry.getValue();
+        }
+        LOGGER.info("{} consuming {} (target: {} MB).", persistentCache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB);
+
+        long targetSize = targetSizeInMB * 1024 * 1024;
+        long removedSize = 0;
+        int removedCount = 0;
+        for (Iterator<Map.Entry<String, Long>> iterator = state.getEntries().entrySet().iterator(); iterator.hasNext() && totalSize > targetSize;) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = new File(cacheDir, entry.getKey());
+            iterator.remove();
+            totalSize -= entry.getValue();
+            try {
+                if (file.delete()) {
+                    removedSize += entry.getValue();
+                    removedCount++;
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not clean up cache " + file, e);
+            }
+        }
+        if (removedCount > 0) {
+            LOGGER.info("{} removing {} cache entries ({} reclaimed).", persistentCache, removedCount, FileUtils.byteCountToDisplaySize(removedSize));
+        }
+
+        accessLog.write(state);
+    }
+
+    private CacheAccessLog.State scan(File cacheDir, CacheAccessLog.State logged, long now) {
+        LOGGER.info("Scanning {} for files missing from {}.", cacheDir, accessLog);
+        File[] files = cacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return canBeDeleted(name);
+            }
+        });
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files, OLDEST_FIRST);
+
+        CacheAccessLog.State state = new CacheAccessLog.State(now);
+        for (File file : files) {
+            state.stored(file.getName(), file.length());
+        }
+        if (logged != null) {
+            // Keep the order of the logged files, after the files that were not logged
+            for (Map.Entry<String, Long> entry : logged.getEntries().entrySet()) {
+                if (state.getEntries().containsKey(entry.getKey())) {
+                    state.stored(entry.getKey(), state.getEntries().get(entry.getKey()));
+                }
+            }
+        }
+        return state;
+    }
+
+    boolean canBeDeleted(String name) {
+        return !(name.endsWith(".properties") || name.endsWith(".lock") || name.endsWith(partialFileSuffix) || accessLog.isLogFile(name));
+    }
+}
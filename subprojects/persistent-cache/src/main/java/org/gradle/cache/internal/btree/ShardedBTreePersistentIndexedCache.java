@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PersistentIndexedStore} that spreads its entries over several {@link BTreePersistentIndexedCache} files, selected by the hash of the serialized key.
+ * Each shard has its own lock, so that the shards can be used and maintained independently.
+ *
+ * <p>Updates are not applied to the BTree of a shard straight away. Instead they are appended to the write-ahead log of the shard and kept in memory.
+ * Once enough updates have been logged, they are applied to the BTree by the thread making the update, while it holds the cache lock, after which the log is discarded. Updates that have been logged
+ * but not yet applied when the store is closed stay in the log, and are read back when the store is next opened. The same happens after a crash, in which
+ * case any incomplete record at the end of the log is discarded.</p>
+ *
+ * <p>Thread-safe. The cache file lock must be held from opening the store until it has been closed.</p>
+ */
+public class ShardedBTreePersistentIndexedCache<K, V> implements PersistentIndexedStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedBTreePersistentIndexedCache.class);
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 4096;
+    private static final Object REMOVED = new Object();
+
+    private final String displayName;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int compactionThreshold;
+    private final List<Shard> shards;
+
+    /**
+     * Creates a store with the given number of shards, using the files {@code <baseName>-<shard>.bin} and {@code <baseName>-<shard>.wal} in the given directory.
+     * The number of shards must not change between uses of the same files.
+     */
+    public ShardedBTreePersistentIndexedCache(File dir, String baseName, int shardCount, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(dir, baseName, shardCount, keySerializer, valueSerializer, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    ShardedBTreePersistentIndexedCache(File dir, String baseName, int shardCount, Serializer<K> keySerializer, Serializer<V> valueSerializer, int compactionThreshold) {
+        this.displayName = "cache " + baseName + " (" + dir + ")";
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.compactionThreshold = compactionThreshold;
+        this.shards = new ArrayList<Shard>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard(new File(dir, baseName + "-" + i + ".bin"), new File(dir, baseName + "-" + i + ".wal")));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        byte[] serializedKey = serialize(keySerializer, key);
+        return shardFor(serializedKey).get(key, serializedKey);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] serializedKey = serialize(keySerializer, key);
+        byte[] serializedValue = serialize(valueSerializer, value);
+        shardFor(serializedKey).put(key, serializedKey, value, serializedValue);
+    }
+
+    @Override
+    public void remove(K key) {
+        byte[] serializedKey = serialize(keySerializer, key);
+        shardFor(serializedKey).remove(key, serializedKey);
+    }
+
+    /**
+     * Applies all logged updates to the BTrees, discarding the logs.
+     */
+    public void compact() {
+        for (Shard shard : shards) {
+            shard.compact();
+        }
+    }
+
+    /**
+     * Closes the store. Logged updates that have not been applied are kept in the logs.
+     */
+    @Override
+    public void close() {
+        Throwable failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.close();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            throw UncheckedException.throwAsUncheckedException(failure);
+        }
+    }
+
+    private Shard shardFor(byte[] serializedKey) {
+        // Only depends on the serialized key, so that all processes select the same shard
+        int hash = Arrays.hashCode(serializedKey);
+        hash ^= hash >>> 16;
+        return shards.get((hash & Integer.MAX_VALUE) % shards.size());
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(bytes);
+        try {
+            serializer.write(encoder, value);
+            encoder.flush();
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T deserialize(Serializer<T> serializer, byte[] bytes) {
+        try {
+            return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(bytes)));
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final File cacheFile;
+        private final WriteAheadLog log;
+        // All guarded by lock
+        private BTreePersistentIndexedCache<K, V> btree;
+        private Map<ByteBuffer, PendingUpdate<K>> pending;
+
+        Shard(File cacheFile, File logFile) {
+            this.cacheFile = cacheFile;
+            this.log = new WriteAheadLog(logFile);
+        }
+
+        @Nullable
+        V get(K key, byte[] serializedKey) {
+            lock.lock();
+            try {
+                open();
+                PendingUpdate<K> update = pending.get(ByteBuffer.wrap(serializedKey));
+                if (update != null) {
+                    return update.value == REMOVED ? null : valueOf(update);
+                }
+                return btree.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, byte[] serializedKey, V value, byte[] serializedValue) {
+            lock.lock();
+            try {
+                open();
+                log.appendPut(serializedKey, serializedValue);
+                pending.put(ByteBuffer.wrap(serializedKey), new PendingUpdate<K>(key, value));
+                maybeCompact();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(K key, byte[] serializedKey) {
+            lock.lock();
+            try {
+                open();
+                log.appendRemove(serializedKey);
+                pending.put(ByteBuffer.wrap(serializedKey), new PendingUpdate<K>(key, REMOVED));
+                maybeCompact();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private V valueOf(PendingUpdate<K> update) {
+            @SuppressWarnings("unchecked") V value = (V) update.value;
+            return value;
+        }
+
+        private void open() {
+            if (btree != null) {
+                return;
+            }
+            btree = new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
+            pending = new HashMap<ByteBuffer, PendingUpdate<K>>();
+            // Pick up the updates that were logged but not applied by the last process to use this shard
+            log.replay(new WriteAheadLog.Visitor() {
+                @Override
+                public void put(byte[] key, byte[] value) {
+                    pending.put(ByteBuffer.wrap(key), new PendingUpdate<K>(deserialize(keySerializer, key), deserialize(valueSerializer, value)));
+                }
+
+                @Override
+                public void remove(byte[] key) {
+                    pending.put(ByteBuffer.wrap(key), new PendingUpdate<K>(deserialize(keySerializer, key), REMOVED));
+                }
+            });
+            if (!pending.isEmpty()) {
+                LOGGER.debug("Recovered {} updates for {} from its write-ahead log.", pending.size(), cacheFile);
+            }
+            maybeCompact();
+        }
+
+        private void maybeCompact() {
+            // Called while the cache lock is held, which is required to write to the BTree
+            if (pending.size() >= compactionThreshold) {
+                compact();
+            }
+        }
+
+        void compact() {
+            lock.lock();
+            try {
+                if (btree == null || pending.isEmpty()) {
+                    return;
+                }
+                List<PendingUpdate<K>> updates = new ArrayList<PendingUpdate<K>>(pending.values());
+                for (PendingUpdate<K> update : updates) {
+                    if (update.value == REMOVED) {
+                        btree.remove(update.key);
+                    } else {
+                        btree.put(update.key, valueOf(update));
+                    }
+                }
+                // Only discard the log once the updates are in the cache file
+                btree.flush();
+                log.truncate();
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (btree == null) {
+                    return;
+                }
+                try {
+                    log.close();
+                } finally {
+                    btree.close();
+                    btree = null;
+                    pending = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class PendingUpdate<K> {
+        final K key;
+        final Object value;
+
+        PendingUpdate(K key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
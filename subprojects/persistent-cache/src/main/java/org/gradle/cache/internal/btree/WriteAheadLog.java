@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the updates made to a cache file, which have not yet been applied to the cache file itself.
+ *
+ * <p>Each record holds the serialized key, the serialized value for a put or no value for a remove, and a checksum of the record. When the log is replayed,
+ * a truncated or corrupt record and anything after it is discarded, as it was not completely written before the process stopped.</p>
+ *
+ * <p>Each record is written to the log file as soon as it is appended, so that it is not lost when the process stops. The log file is synced to disk when it is closed.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+class WriteAheadLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    // Larger records are considered corrupt
+    private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    private final File logFile;
+    private final CRC32 checksum = new CRC32();
+    private FileOutputStream fileOutput;
+    private DataOutputStream output;
+    private long length;
+
+    WriteAheadLog(File logFile) {
+        this.logFile = logFile;
+    }
+
+    @Override
+    public String toString() {
+        return "write-ahead log " + logFile;
+    }
+
+    interface Visitor {
+        void put(byte[] key, byte[] value);
+
+        void remove(byte[] key);
+    }
+
+    /**
+     * Visits the records of the log in the order they were written, discarding any incomplete records at the end of the log.
+     */
+    void replay(Visitor visitor) {
+        if (!logFile.isFile()) {
+            return;
+        }
+        long validLength = 0;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+            try {
+                while (true) {
+                    int type = input.read();
+                    if (type < 0) {
+                        break;
+                    }
+                    checksum.reset();
+                    checksum.update(type);
+                    byte[] key = readBytes(input);
+                    byte[] value = type == PUT ? readBytes(input) : null;
+                    if ((type != PUT && type != REMOVE) || input.readLong() != checksum.getValue()) {
+                        LOGGER.debug("Found a corrupt record in {}. Discarding the remainder of the log.", this);
+                        break;
+                    }
+                    if (type == PUT) {
+                        visitor.put(key, value);
+                    } else {
+                        visitor.remove(key);
+                    }
+                    validLength += 1 + 4 + key.length + (value == null ? 0 : 4 + value.length) + 8;
+                }
+            } catch (EOFException e) {
+                LOGGER.debug("Found an incomplete record in {}. Discarding the remainder of the log.", this);
+            } catch (CorruptedCacheException e) {
+                LOGGER.debug("Found a corrupt record in {}. Discarding the remainder of the log.", this);
+            } finally {
+                input.close();
+            }
+            if (validLength < logFile.length()) {
+                RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+                try {
+                    file.setLength(validLength);
+                } finally {
+                    file.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not read %s.", this), e);
+        }
+        length = validLength;
+    }
+
+    private byte[] readBytes(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new CorruptedCacheException(String.format("Invalid record length %d.", length));
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        updateChecksum(length, bytes);
+        return bytes;
+    }
+
+    void appendPut(byte[] key, byte[] value) {
+        append(PUT, key, value);
+    }
+
+    void appendRemove(byte[] key) {
+        append(REMOVE, key, null);
+    }
+
+    private void append(byte type, byte[] key, byte[] value) {
+        try {
+            if (output == null) {
+                logFile.getParentFile().mkdirs();
+                fileOutput = new FileOutputStream(logFile, true);
+                output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            }
+            checksum.reset();
+            checksum.update(type);
+            output.writeByte(type);
+            writeBytes(key);
+            if (value != null) {
+                writeBytes(value);
+            }
+            output.writeLong(checksum.getValue());
+            // Buffered only to write the record in one go
+            output.flush();
+            length += 1 + 4 + key.length + (value == null ? 0 : 4 + value.length) + 8;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to %s.", this), e);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        updateChecksum(bytes.length, bytes);
+    }
+
+    private void updateChecksum(int length, byte[] bytes) {
+        checksum.update(length >>> 24);
+        checksum.update(length >>> 16);
+        checksum.update(length >>> 8);
+        checksum.update(length);
+        checksum.update(bytes);
+    }
+
+    /**
+     * Returns the number of bytes in the log.
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Discards all records, once they have been applied to the cache file.
+     */
+    void truncate() {
+        close(false);
+        if (logFile.exists() && !logFile.delete()) {
+            throw new UncheckedIOException(String.format("Could not delete %s.", this));
+        }
+        length = 0;
+    }
+
+    /**
+     * Closes the log file, after syncing it to disk.
+     */
+    void close() {
+        close(true);
+    }
+
+    private void close(boolean sync) {
+        if (output == null) {
+            return;
+        }
+        try {
+            if (sync) {
+                output.flush();
+                fileOutput.getFD().sync();
+            }
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close %s.", this), e);
+        } finally {
+            output = null;
+            fileOutput = null;
+        }
+    }
+}
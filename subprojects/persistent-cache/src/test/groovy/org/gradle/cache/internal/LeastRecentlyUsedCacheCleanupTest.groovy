@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.TimeUnit
+
+@Subject(LeastRecentlyUsedCacheCleanup)
+class LeastRecentlyUsedCacheCleanupTest extends Specification {
+    private static final long MB = 1024 * 1024
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.file("cache-dir").createDir()
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+    }
+    def accessLog = new CacheAccessLog(cacheDir)
+    def cleanupAction = new LeastRecentlyUsedCacheCleanup(new TestBuildOperationExecutor(), accessLog, 10, ".part")
+    def now = System.currentTimeMillis()
+
+    def "filters for cache entry files"() {
+        expect:
+        !cleanupAction.canBeDeleted("cache.properties")
+        !cleanupAction.canBeDeleted("gc.properties")
+        !cleanupAction.canBeDeleted("cache.lock")
+        !cleanupAction.canBeDeleted("entry.part")
+        !cleanupAction.canBeDeleted(CacheAccessLog.FILE_NAME)
+
+        cleanupAction.canBeDeleted("0" * 32)
+        cleanupAction.canBeDeleted("abcdefabcdefabcdefabcdefabcdef00")
+    }
+
+    def "deletes least recently used entries when cache is larger than target"() {
+        def first = createCacheEntry("first", 4 * MB)
+        def second = createCacheEntry("second", 4 * MB)
+        def third = createCacheEntry("third", 4 * MB)
+        def fourth = createCacheEntry("fourth", 1 * MB)
+        accessLog.accessed("first")
+
+        when:
+        cleanup(now)
+
+        then:
+        first.assertExists()
+        second.assertDoesNotExist()
+        third.assertExists()
+        fourth.assertExists()
+    }
+
+    def "deletes nothing when cache is smaller than target"() {
+        def entries = [createCacheEntry("first", 4 * MB), createCacheEntry("second", 4 * MB)]
+
+        when:
+        cleanup(now)
+
+        then:
+        entries.every { it.exists() }
+    }
+
+    def "uses logged sizes instead of looking at files"() {
+        def first = createCacheEntry("first", 1024)
+        def second = createCacheEntry("second", 1024)
+        cleanup(now)
+        accessLog.stored("first", 20 * MB)
+        accessLog.stored("second", 1024)
+
+        when:
+        cleanup(now)
+
+        then:
+        first.assertDoesNotExist()
+        second.assertExists()
+    }
+
+    def "scans for entries missing from log only when log has not been scanned recently"() {
+        def first = createCacheEntry("first", 4 * MB)
+        cleanup(now)
+        def unlogged = createCacheEntry("unlogged", 12 * MB)
+
+        when:
+        cleanup(now + TimeUnit.DAYS.toMillis(1))
+
+        then:
+        unlogged.assertExists()
+
+        when:
+        cleanup(now + TimeUnit.DAYS.toMillis(31))
+
+        then:
+        unlogged.assertDoesNotExist()
+        first.assertExists()
+    }
+
+    def "compacts log"() {
+        createCacheEntry("first", 1024)
+        createCacheEntry("second", 1024)
+        cleanup(now)
+        10.times {
+            accessLog.accessed("first")
+            accessLog.accessed("second")
+        }
+
+        when:
+        cleanup(now)
+
+        then:
+        cacheDir.file(CacheAccessLog.FILE_NAME).readLines() == ["# ${now}".toString(), "S first 1024", "S second 1024"]
+    }
+
+    def "ignores incomplete records"() {
+        def first = createCacheEntry("first", 4 * MB)
+        cleanup(now)
+        cacheDir.file(CacheAccessLog.FILE_NAME) << "S sec"
+
+        when:
+        cleanup(now)
+
+        then:
+        first.assertExists()
+        cacheDir.file(CacheAccessLog.FILE_NAME).readLines() == ["# ${now}".toString(), "S first ${4 * MB}".toString()]
+    }
+
+    private void cleanup(long time) {
+        cleanupAction.cleanup(persistentCache, time)
+    }
+
+    def createCacheEntry(String name, long size) {
+        def cacheEntry = cacheDir.file(name)
+        def data = new byte[size]
+        new Random().nextBytes(data)
+        cacheEntry.bytes = data
+        accessLog.stored(name, size)
+        return cacheEntry
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class ShardedBTreePersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    ShardedBTreePersistentIndexedCache<String, Integer> cache
+
+    def "persists added and removed entries"() {
+        given:
+        cache = createCache()
+
+        when:
+        (1..100).each { cache.put("key$it" as String, it) }
+        cache.remove("key7")
+
+        then:
+        cache.get("key1") == 1
+        cache.get("key100") == 100
+        cache.get("key7") == null
+        cache.get("unknown") == null
+
+        when:
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("key1") == 1
+        cache.get("key100") == 100
+        cache.get("key7") == null
+    }
+
+    def "spreads entries over the shards"() {
+        given:
+        cache = createCache()
+
+        when:
+        (1..100).each { cache.put("key$it" as String, it) }
+        cache.close()
+
+        then:
+        (0..3).every { tmpDir.file("cache-${it}.wal").length() > 0 }
+    }
+
+    def "applies logged updates to the BTree once enough have been logged"() {
+        given:
+        cache = createCache(1)
+
+        when:
+        (1..100).each { cache.put("key$it" as String, it) }
+        cache.remove("key50")
+        cache.close()
+
+        then:
+        (0..3).every { !tmpDir.file("cache-${it}.wal").exists() }
+
+        when:
+        cache = createCache(1)
+
+        then:
+        (1..100).every { it == 50 ? cache.get("key$it" as String) == null : cache.get("key$it" as String) == it }
+    }
+
+    def "compaction discards the logs"() {
+        given:
+        cache = createCache()
+        (1..100).each { cache.put("key$it" as String, it) }
+
+        when:
+        cache.compact()
+        cache.close()
+
+        then:
+        (0..3).every { !tmpDir.file("cache-${it}.wal").exists() }
+
+        when:
+        cache = createCache()
+
+        then:
+        (1..100).every { cache.get("key$it" as String) == it }
+    }
+
+    def "recovers updates that were logged by a process that did not close the cache"() {
+        given:
+        def crashed = createCache()
+        crashed.put("key", 1)
+        crashed.remove("other")
+
+        when:
+        cache = createCache()
+
+        then:
+        cache.get("key") == 1
+
+        cleanup:
+        crashed.close()
+    }
+
+    def "recovers the complete records of a log that was not completely written"() {
+        given:
+        cache = createCache()
+        cache.put("key", 1)
+        cache.put("key", 2)
+        cache.close()
+        def log = (0..3).collect { tmpDir.file("cache-${it}.wal") }.find { it.length() > 0 }
+        def length = log.length()
+
+        when:
+        // Chop off the end of the last record
+        def file = new RandomAccessFile(log, "rw")
+        file.setLength(length - 3)
+        file.close()
+        cache = createCache()
+
+        then:
+        cache.get("key") == 1
+        log.length() == length / 2
+
+        when:
+        cache.put("key", 3)
+        cache.close()
+        cache = createCache()
+
+        then:
+        cache.get("key") == 3
+    }
+
+    def "ignores a corrupt record in the log"() {
+        given:
+        cache = createCache()
+        cache.put("key", 1)
+        cache.close()
+        def log = (0..3).collect { tmpDir.file("cache-${it}.wal") }.find { it.length() > 0 }
+
+        when:
+        def file = new RandomAccessFile(log, "rw")
+        file.seek(log.length() - 1)
+        file.write(file.read() ^ 0xff)
+        file.close()
+        cache = createCache()
+
+        then:
+        cache.get("key") == null
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    private ShardedBTreePersistentIndexedCache<String, Integer> createCache(int compactionThreshold = 1000) {
+        return new ShardedBTreePersistentIndexedCache<String, Integer>(tmpDir.testDirectory, "cache", 4, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, compactionThreshold)
+    }
+}